@@ -1,4 +1,7 @@
+import cli.BatchCompiler;
+import circuit.preconstructed.CircuitCache;
 import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.CircuitFileLoader;
 import circuit.preconstructed.LowLevelCircuitGenerator;
 import circuit.preconstructed.exceptions.MissingCircuitDependencyException;
 import robot.SchematicFiller;
@@ -14,7 +17,14 @@ import static misc.SettingsConstants.*;
 import static physical2.SimplifiedPhysicalCircuitPipeline.circuitToSchematic;
 
 public class NorCircuit {
+  /**
+   * With arguments, compiles without asking anything (see {@code BatchCompiler}). Without, asks what to do.
+   */
   public static void main(String[] args) throws Exception {
+    CircuitCache.defaultCache.setEnabled(true);
+    if (args.length > 0) {
+      System.exit(BatchCompiler.run(args, System.out, System.err));
+    }
     Scanner sc = new Scanner(System.in);
     flower: while (true) {
       System.out.println("What are you here to do? ([c]ompile, [p]aste)");
@@ -51,10 +61,11 @@ public class NorCircuit {
           cc64.addAll(gen.operators(i));
         } catch (NumberFormatException ignored) {
           try {
-            cc64.getOrLoad(circuitRoot.resolve(line).toFile());
+            // Also loads whatever the file imports
+            new CircuitFileLoader(cc64).load(line);
           } catch (IOException e1) {
             e1.printStackTrace();
-          } catch (MissingCircuitDependencyException e1) {
+          } catch (MissingCircuitDependencyException | IllegalArgumentException e1) {
             System.err.println(e1.getMessage());
           }
         }
@@ -0,0 +1,342 @@
+package a_star;
+
+import java.util.Arrays;
+
+/**
+ * {@code AStar} specialized to the cells of a dense 3D grid, for running many searches over the same grid quickly.
+ * <p>
+ * Cells are numbered by {@code index(x, y, z)}, and all per cell state lives in {@code int} arrays indexed by cell.
+ * Searches step between face-adjacent cells, unless the grid was made with its own {@code Neighbors},
+ * in which case the cells are just numbered {@code 0} to {@code cellCount - 1} and can stand for any state.
+ * The open set is a binary heap that knows where each cell is in it, so a cheaper route to a queued cell
+ * moves it up in place (decrease-key) instead of queueing it again. Expanded cells are closed and never looked at again,
+ * which needs the heuristic to be consistent: it must never drop by more than the cost of a step.
+ * <p>
+ * The arrays are kept between searches. Each search bumps a generation number instead of clearing them,
+ * so starting a search costs nothing however big the grid is.
+ * <p>
+ * Not thread safe. Use one per thread.
+ */
+public class GridAStar {
+  /**
+   * Returned by {@code Costs.cost} for a step that can't be taken
+   */
+  public static final int BLOCKED = -1;
+
+  private static final int NOT_QUEUED = -1;
+  private static final int CLOSED = -2;
+
+  /**
+   * The cost of stepping from one cell to a neighboring one
+   */
+  @FunctionalInterface
+  public interface Costs {
+    /**
+     * @return A cost of at least {@code 0}, or {@code BLOCKED}
+     */
+    int cost(int from, int to);
+  }
+
+  /**
+   * An estimate of the cost from a cell to the nearest goal, which must be consistent (see {@code GridAStar})
+   */
+  @FunctionalInterface
+  public interface Heuristic {
+    int estimate(int cell);
+  }
+
+  /**
+   * The cells one step away from a cell, for searches that don't step between face-adjacent cells
+   */
+  @FunctionalInterface
+  public interface Neighbors {
+    /**
+     * Puts the cells one step from {@code cell} at the start of {@code out}
+     *
+     * @return How many were put
+     */
+    int neighbors(int cell, int[] out);
+  }
+
+  private final int xSize;
+  private final int ySize;
+  private final int zSize;
+  private final int cellCount;
+  private final Costs costs;
+  private final Neighbors neighbors;
+  private final int[] neighborBuffer;
+  private Heuristic heuristic = cell -> 0;
+
+  private final int[] generationOf;
+  private final int[] goalGenerationOf;
+  private int generation = 0;
+  private final int[] costTo;
+  private final int[] parent;
+  /**
+   * Where the cell is in {@code heap}, or {@code NOT_QUEUED} or {@code CLOSED}
+   */
+  private final int[] heapIndex;
+  private final int[] estimate;
+  private final int[] heap;
+  private int heapSize;
+  private int expanded;
+
+  public GridAStar(int xSize, int ySize, int zSize, Costs costs) {
+    if (xSize <= 0 || ySize <= 0 || zSize <= 0) {
+      throw new IllegalArgumentException("Grid must have positive size, not " + xSize + "x" + ySize + "x" + zSize);
+    }
+    long cells = (long) xSize * ySize * zSize;
+    if (cells > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Grid too large: " + xSize + "x" + ySize + "x" + zSize);
+    }
+    this.xSize = xSize;
+    this.ySize = ySize;
+    this.zSize = zSize;
+    this.cellCount = (int) cells;
+    this.costs = costs;
+    this.neighbors = null;
+    this.neighborBuffer = null;
+    generationOf = new int[cellCount];
+    goalGenerationOf = new int[cellCount];
+    costTo = new int[cellCount];
+    parent = new int[cellCount];
+    heapIndex = new int[cellCount];
+    estimate = new int[cellCount];
+    heap = new int[cellCount];
+  }
+
+  /**
+   * @param maxNeighbors The most cells {@code neighbors} ever puts out at once
+   */
+  public GridAStar(int cellCount, int maxNeighbors, Neighbors neighbors, Costs costs) {
+    if (cellCount <= 0) {
+      throw new IllegalArgumentException("Must have a positive number of cells, not " + cellCount);
+    }
+    this.xSize = cellCount;
+    this.ySize = 1;
+    this.zSize = 1;
+    this.cellCount = cellCount;
+    this.costs = costs;
+    this.neighbors = neighbors;
+    this.neighborBuffer = new int[maxNeighbors];
+    generationOf = new int[cellCount];
+    goalGenerationOf = new int[cellCount];
+    costTo = new int[cellCount];
+    parent = new int[cellCount];
+    heapIndex = new int[cellCount];
+    estimate = new int[cellCount];
+    heap = new int[cellCount];
+  }
+
+  public GridAStar setHeuristic(Heuristic heuristic) {
+    this.heuristic = heuristic;
+    return this;
+  }
+
+  public int index(int x, int y, int z) {
+    if (x < 0 || y < 0 || z < 0 || x >= xSize || y >= ySize || z >= zSize) {
+      throw new IndexOutOfBoundsException("(" + x + ", " + y + ", " + z + ") is outside a grid of size " + xSize + "x" + ySize + "x" + zSize);
+    }
+    return (z * ySize + y) * xSize + x;
+  }
+
+  public int x(int cell) {
+    return cell % xSize;
+  }
+
+  public int y(int cell) {
+    return cell / xSize % ySize;
+  }
+
+  public int z(int cell) {
+    return cell / xSize / ySize;
+  }
+
+  /**
+   * Finds a cheapest route from any of {@code starts} to any of {@code goals},
+   * moving between face-adjacent cells or as {@code Neighbors} says.
+   *
+   * @return The goal reached, or {@code -1} if none can be
+   */
+  public int search(int[] starts, int[] goals) {
+    nextGeneration();
+    expanded = 0;
+    for (int goal : goals) {
+      goalGenerationOf[goal] = generation;
+    }
+    for (int start : starts) {
+      open(start, 0, -1);
+    }
+
+    while (heapSize > 0) {
+      int cell = pop();
+      heapIndex[cell] = CLOSED;
+      expanded++;
+      if (goalGenerationOf[cell] == generation) {
+        return cell;
+      }
+      if (neighbors != null) {
+        int count = neighbors.neighbors(cell, neighborBuffer);
+        for (int i = 0; i < count; i++) {
+          relax(cell, neighborBuffer[i]);
+        }
+        continue;
+      }
+      int x = x(cell);
+      int y = y(cell);
+      int z = z(cell);
+      if (x > 0) {
+        relax(cell, cell - 1);
+      }
+      if (x < xSize - 1) {
+        relax(cell, cell + 1);
+      }
+      if (y > 0) {
+        relax(cell, cell - xSize);
+      }
+      if (y < ySize - 1) {
+        relax(cell, cell + xSize);
+      }
+      if (z > 0) {
+        relax(cell, cell - xSize * ySize);
+      }
+      if (z < zSize - 1) {
+        relax(cell, cell + xSize * ySize);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The cost of the route the last search found to {@code cell}, or {@code -1} if it didn't reach it
+   */
+  public int getPathCost(int cell) {
+    return generationOf[cell] == generation ? costTo[cell] : -1;
+  }
+
+  /**
+   * @return The cells of the route the last search found to {@code cell}, from the start it came from to {@code cell}
+   */
+  public int[] backtrace(int cell) {
+    if (generationOf[cell] != generation) {
+      throw new IllegalArgumentException("The last search didn't reach cell " + cell);
+    }
+    int length = 0;
+    for (int c = cell; c != -1; c = parent[c]) {
+      length++;
+    }
+    int[] r = new int[length];
+    for (int c = cell; c != -1; c = parent[c]) {
+      r[--length] = c;
+    }
+    return r;
+  }
+
+  /**
+   * @return How many cells the last search expanded
+   */
+  public int getExpandedCount() {
+    return expanded;
+  }
+
+  private void nextGeneration() {
+    heapSize = 0;
+    generation++;
+    if (generation == Integer.MAX_VALUE) {
+      // Only after billions of searches, so just start over
+      Arrays.fill(generationOf, 0);
+      Arrays.fill(goalGenerationOf, 0);
+      generation = 1;
+    }
+  }
+
+  private void relax(int from, int to) {
+    if (generationOf[to] == generation && heapIndex[to] == CLOSED) {
+      return;
+    }
+    int step = costs.cost(from, to);
+    if (step == BLOCKED) {
+      return;
+    }
+    if (step < 0) {
+      throw new IllegalStateException("Negative step cost " + step + " from " + from + " to " + to);
+    }
+    open(to, costTo[from] + step, from);
+  }
+
+  /**
+   * Queues {@code cell} at {@code cost}, or lowers it to {@code cost} if it's queued higher
+   */
+  private void open(int cell, int cost, int from) {
+    if (generationOf[cell] != generation) {
+      generationOf[cell] = generation;
+      heapIndex[cell] = NOT_QUEUED;
+      estimate[cell] = heuristic.estimate(cell);
+    } else if (heapIndex[cell] == CLOSED || cost >= costTo[cell]) {
+      return;
+    }
+    costTo[cell] = cost;
+    parent[cell] = from;
+    if (heapIndex[cell] == NOT_QUEUED) {
+      heapIndex[cell] = heapSize;
+      heap[heapSize++] = cell;
+    }
+    siftUp(heapIndex[cell]);
+  }
+
+  /**
+   * Lower total estimate first, and among equal estimates the one further along, since it's likely nearer a goal
+   */
+  private boolean before(int a, int b) {
+    int fa = costTo[a] + estimate[a];
+    int fb = costTo[b] + estimate[b];
+    return fa != fb ? fa < fb : costTo[a] > costTo[b];
+  }
+
+  private int pop() {
+    int top = heap[0];
+    heapSize--;
+    if (heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapIndex[heap[0]] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  private void siftUp(int i) {
+    int cell = heap[i];
+    while (i > 0) {
+      int p = (i - 1) >> 1;
+      if (!before(cell, heap[p])) {
+        break;
+      }
+      heap[i] = heap[p];
+      heapIndex[heap[i]] = i;
+      i = p;
+    }
+    heap[i] = cell;
+    heapIndex[cell] = i;
+  }
+
+  private void siftDown(int i) {
+    int cell = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+        child++;
+      }
+      if (!before(heap[child], cell)) {
+        break;
+      }
+      heap[i] = heap[child];
+      heapIndex[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = cell;
+    heapIndex[cell] = i;
+  }
+}
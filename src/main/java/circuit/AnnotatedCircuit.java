@@ -1,5 +1,6 @@
 package circuit;
 
+import graph.CompactGraph;
 import graph.TwoWayDirectedGraph;
 
 import java.util.Iterator;
@@ -17,6 +18,15 @@ public class AnnotatedCircuit extends Circuit {
     assert sum(outputSizes) == outputs.length;
   }
 
+  public AnnotatedCircuit(CompactGraph redstone, Integer[] inputs, Integer[] outputs, int[] inputSizes, int[] outputSizes) {
+    super(redstone, inputs, outputs);
+    this.inputSizes = inputSizes;
+    this.outputSizes = outputSizes;
+
+    assert sum(inputSizes) == inputs.length;
+    assert sum(outputSizes) == outputs.length;
+  }
+
   public AnnotatedCircuit(Circuit circuit, int[] inputSizes, int[] outputSizes) {
     super(circuit.redstone, circuit.inputs, circuit.outputs);
     this.inputSizes = inputSizes;
@@ -103,6 +113,16 @@ public class AnnotatedCircuit extends Circuit {
     return new AnnotatedCircuit(trimmed, inputSizes, outputSizes);
   }
 
+  public AnnotatedCircuit optimize() {
+    Circuit optimized = super.optimize();
+    return new AnnotatedCircuit(optimized, inputSizes, outputSizes);
+  }
+
+  public AnnotatedCircuit hashCons() {
+    Circuit hashConsed = super.hashCons();
+    return new AnnotatedCircuit(hashConsed, inputSizes, outputSizes);
+  }
+
   public String toString() {
     return "AnnotatedCircuit: "
         + getMultibitInputCount() + " Inputs ("
@@ -15,6 +15,11 @@ public class AnnotationCircuitBuilder extends CircuitBuilder {
   private ArrayList<Integer> outputCircuits;
   protected int[] circuitPositionOffsets;
   protected HashMap<Circuit, int[]> positionMaps;
+  private boolean hashConsing;
+  /**
+   * From positions to nodes of the circuit {@code toCircuit()} last returned, or {@code null} if they're the same
+   */
+  private int[] builtMapping;
 
   public AnnotationCircuitBuilder() {
     super();
@@ -22,6 +27,17 @@ public class AnnotationCircuitBuilder extends CircuitBuilder {
     outputCircuits = new ArrayList<Integer>();
     circuitPositionOffsets = null;
     positionMaps = null;
+    hashConsing = false;
+    builtMapping = null;
+  }
+
+  /**
+   * Whether {@code toCircuit()} merges nodes which are the NOR of the same nodes (see {@code Circuit.hashConsWithMapping}).
+   * Subcircuits often compute the same thing, such as two {@code and a b}s, or every digit of an addition
+   * extracting the same bits, and otherwise each copy becomes its own torches.
+   */
+  public void setHashConsing(boolean hashConsing) {
+    this.hashConsing = hashConsing;
   }
 
   /**
@@ -303,6 +319,22 @@ public class AnnotationCircuitBuilder extends CircuitBuilder {
       outputSizes[i] = outCircuit.outputSize();
     }
 
-    return new AnnotatedCircuit(builder.toCircuit(), inputSizes, outputSizes);
+    Circuit circuit = builder.toCircuit();
+    builtMapping = null;
+    if (hashConsing) {
+      Pair<Circuit, int[]> hashConsed = circuit.hashConsWithMapping();
+      circuit = hashConsed.getFirst();
+      builtMapping = hashConsed.getSecond();
+    }
+    return new AnnotatedCircuit(circuit, inputSizes, outputSizes);
+  }
+
+  /**
+   * Like {@code calculatePositionOfNode}, but in the circuit {@code toCircuit()} last returned,
+   * which merges positions when hash consing.
+   */
+  protected int calculateBuiltPositionOfNode(int circuitId, int localNodeId) {
+    int position = calculatePositionOfNode(circuitId, localNodeId);
+    return builtMapping == null ? position : builtMapping[position];
   }
 }
@@ -1,6 +1,11 @@
 package circuit;
 
+import circuit.simulation.BitParallelSimulator;
+import circuit.simulation.CircuitCompiler;
+import circuit.simulation.CompiledCircuit;
+import graph.CompactGraph;
 import graph.Edge;
+import graph.Levelization;
 import graph.TriState;
 import graph.TwoWayDirectedGraph;
 
@@ -17,12 +22,27 @@ import static graph.TriState.*;
  * Hence, A node is true iff any of its inputs is false
  */
 public class Circuit {
-  protected TwoWayDirectedGraph<Integer> redstone;
+  protected CompactGraph redstone;
   protected Integer[] inputs;
   protected Integer[] outputs;
-
+  /**
+   * Built the first time it is needed. See {@code getBitParallelSimulator()}.
+   */
+  private BitParallelSimulator bitParallelSimulator;
+  /**
+   * Built the first time it is needed. See {@code getCompiledCircuit()}.
+   */
+  private CompiledCircuit compiledCircuit;
+  /**
+   * Built the first time it is needed. See {@code getLevelization()}.
+   */
+  private Levelization levelization;
 
   public Circuit(TwoWayDirectedGraph<Integer> redstone, Integer[] inputs, Integer[] outputs) {
+    this(redstone == null ? null : CompactGraph.from(redstone), inputs, outputs);
+  }
+
+  public Circuit(CompactGraph redstone, Integer[] inputs, Integer[] outputs) {
     this.redstone = redstone;
     this.inputs = inputs;
     this.outputs = outputs;
@@ -57,10 +77,9 @@ public class Circuit {
       }
     }
 
-    Iterator<Edge<Integer>> edges = getEdges();
-    while (edges.hasNext()) {
-      Edge edge = edges.next();
-      if (edge.getStart().equals(edge.getEnd())) {
+    CompactGraph.EdgeCursor edges = redstone.edgeCursor();
+    while (edges.advance()) {
+      if (edges.start() == edges.end()) {
         return "A self loop exists";
         // TODO: check for loops in general?
       }
@@ -68,7 +87,14 @@ public class Circuit {
     return null;
   }
 
+  /**
+   * A boxing view of {@code getCompactGraph()}. Prefer that one in anything performance sensitive.
+   */
   public TwoWayDirectedGraph<Integer> getGraph() {
+    return redstone.asTwoWayDirectedGraph();
+  }
+
+  public CompactGraph getCompactGraph() {
     return redstone;
   }
 //  public Circuit copy() {
@@ -193,11 +219,68 @@ public class Circuit {
 
   }
 
+  /**
+   * Simulates 64 input vectors at once.
+   * Gives the same results as {@code simulate(boolean[])} would for each vector.
+   *
+   * @param inputWords One word per input bit. Bit {@code k} of each word belongs to input vector {@code k}.
+   * @return One word per output bit, laid out the same way.
+   */
+  public long[] simulate(long[] inputWords) {
+    return getBitParallelSimulator().simulate(inputWords);
+  }
+
+  /**
+   * The topological levels of the nodes, with the inputs as sources (whatever points to them, since their values are asserted).
+   * Built once and cached, and shared by the simulators, so anything else wanting an order or levels should use this too.
+   *
+   * @throws IllegalStateException If the circuit contains a loop
+   */
+  public synchronized Levelization getLevelization() {
+    if (levelization == null) {
+      int[] sources = new int[inputs.length];
+      for (int i = 0; i < inputs.length; i++) {
+        sources[i] = inputs[i];
+      }
+      Levelization l = Levelization.of(redstone, sources);
+      if (!l.isComplete()) {
+        throw new IllegalStateException("Circuit contains a loop, so it cannot be levelized");
+      }
+      levelization = l;
+    }
+    return levelization;
+  }
+
+  /**
+   * Since circuits are supposed to be immutable, the levelized simulator is built once and cached.
+   */
+  public synchronized BitParallelSimulator getBitParallelSimulator() {
+    if (bitParallelSimulator == null) {
+      bitParallelSimulator = new BitParallelSimulator(this);
+    }
+    return bitParallelSimulator;
+  }
+
+  /**
+   * Compiling is much slower than levelizing, but evaluation is much faster,
+   * so this is the one to use when the same circuit is evaluated millions of times.
+   * Built once and cached, like {@code getBitParallelSimulator()}.
+   */
+  public synchronized CompiledCircuit getCompiledCircuit() {
+    if (compiledCircuit == null) {
+      compiledCircuit = CircuitCompiler.compile(this);
+    }
+    return compiledCircuit;
+  }
+
   /**
    * @return The nodes which aren't inputs to the network and which don't have inputs
    */
   public Set<Integer> emptyInputs() {
-    Set<Integer> untouchedInputs = redstone.inputs();
+    Set<Integer> untouchedInputs = new HashSet<>();
+    for (int node : redstone.sources()) {
+      untouchedInputs.add(node);
+    }
     untouchedInputs.removeAll(Arrays.asList(inputs));
     return untouchedInputs;
   }
@@ -233,6 +316,8 @@ public class Circuit {
 
     TriState[] state = new TriState[redstone.size()];
     Arrays.fill(state, UNKNOWN);
+    CompactGraph.NeighborCursor outCursor = redstone.outCursor();
+    CompactGraph.NeighborCursor inCursor = redstone.inCursor();
 
     while (!assertStateStack.isEmpty()) {
       Set<Integer> checkStateSet = new HashSet<>();
@@ -242,21 +327,25 @@ public class Circuit {
         Integer i = item.getFirst();
         Boolean b = item.getSecond();
 
+        outCursor.reset(i);
         if (b) {
           state[i] = TRUE;
-          checkStateSet.addAll(redstone.outNeighborhood(i));
+          while (outCursor.hasNext()) {
+            checkStateSet.add(outCursor.next());
+          }
         } else {
           state[i] = FALSE;
-          for (Integer j : redstone.outNeighborhood(i)) {
-            assertStateStack.push(new Pair<>(j, true));
+          while (outCursor.hasNext()) {
+            assertStateStack.push(new Pair<>(outCursor.next(), true));
           }
         }
       }
 
       checkFlag:
       for (Integer checkNode : checkStateSet) {
-        for (Integer in : redstone.inNeighborhood(checkNode)) {
-          switch (state[in]) {
+        inCursor.reset(checkNode);
+        while (inCursor.hasNext()) {
+          switch (state[inCursor.next()]) {
             case UNKNOWN:
               continue checkFlag;
             case TRUE:
@@ -323,9 +412,13 @@ public class Circuit {
 
     // All nodes remaining at the end should be both either affected by input or affect output.
     // We want to start out by deleting all nodes which don't affect the output of the network at all
-    Set<Integer> nodesToDelete = new HashSet<>(redstone.nodes());
-    Set<Integer> affectsOutput = redstone.traceBackward(outputs);
-    nodesToDelete.removeAll(affectsOutput);
+    Set<Integer> nodesToDelete = new HashSet<>();
+    boolean[] affectsOutput = redstone.traceBackward(toIntArray(outputs));
+    for (int node = 0; node < size(); node++) {
+      if (!affectsOutput[node]) {
+        nodesToDelete.add(node);
+      }
+    }
 
     /* Removal of constant nodes
      *
@@ -359,7 +452,7 @@ public class Circuit {
         // All constant outputs must maintain their constant value
         // FALSE constants are fine without input, but TRUE constants need a FALSE input
         boolean trueConstant = false;
-        for (int preceedOutputNode : redstone.inNeighborhood(output)) {
+        for (int preceedOutputNode : redstone.inNeighbors(output)) {
           if (constantState[preceedOutputNode] == FALSE) {
             nodesToDelete.remove(preceedOutputNode);
             trueConstant = true;
@@ -378,7 +471,7 @@ public class Circuit {
      * - If an input or an output is involved in a merge, the input or output is the one being merged into
      *   - this means we cannot merge two inputs or an input and an output.
      */
-    GraphMerger<Integer> nodeMerges = new GraphMerger<>(getGraph());
+    GraphMerger<Integer> nodeMerges = GraphMerger.ofIndices(getGraph(), size());
     for (Integer node : nodesToDelete) {
       nodeMerges.removeNode(node);
     }
@@ -389,6 +482,14 @@ public class Circuit {
      * and its input as only the one edge taking it as input.
      */
 
+    boolean[] isEndpoint = new boolean[size()];
+    for (int i : inputs) {
+      isEndpoint[i] = true;
+    }
+    for (int i : outputs) {
+      isEndpoint[i] = true;
+    }
+
     Stack<Edge<Integer>> edgesToExamineForForwarding = new Stack<>();
     for (Iterator<Edge<Integer>> it = redstone.getEdges(); it.hasNext(); ) {
       edgesToExamineForForwarding.add(it.next());
@@ -401,7 +502,7 @@ public class Circuit {
       if (!nodeMerges.hasEdge(edge)) {
         continue;
       }
-      if (isCircuitEndpoint(start) || isCircuitEndpoint(end)) {
+      if (isEndpoint[start] || isEndpoint[end]) {
         // We should never delete an input or output
         continue;
       }
@@ -478,10 +579,166 @@ public class Circuit {
     return new Pair<>(scb.toCircuit(), nodeMapping);
   }
 
+  public Circuit optimize() {
+    return optimizeWithMapping().getFirst();
+  }
+
+  /**
+   * Does not modify the circuit in place.
+   * <p>
+   * Does everything {@code trimWithMapping} does and more, rewriting until nothing more can be removed:
+   * constants, every pair of torches in a row that can go without adding torches, nodes with the same fan in,
+   * nodes which feed nothing, and nodes no output depends on (see {@code CircuitOptimizer}).
+   * <p>
+   * Keeps all inputs and outputs.
+   * <p>
+   * Returns:
+   * - A Circuit which is functionally equivalent to this one.
+   * - A mapping of node ids from the original circuit to the new one. (-1 represents node deletion)
+   */
+  public Pair<Circuit, int[]> optimizeWithMapping() {
+    return new CircuitOptimizer(this).optimize();
+  }
+
+  public Circuit hashCons() {
+    return hashConsWithMapping().getFirst();
+  }
+
+  /**
+   * Does not modify the circuit in place.
+   * <p>
+   * Merges nodes which are the NOR of exactly the same nodes, since they always have the same state.
+   * Merging two nodes can make the nodes they feed the same in turn, so nodes are checked again
+   * whenever one of their inputs is merged, until nothing changes. Each node is looked up by its sorted fan in,
+   * so this takes about linear time.
+   * <p>
+   * Inputs are never merged, and neither are two outputs. When an output is merged with anything else,
+   * the output is kept.
+   * <p>
+   * Returns:
+   * - A Circuit which is functionally equivalent to this one.
+   * - A mapping of node ids from the original circuit to the new one.
+   */
+  public Pair<Circuit, int[]> hashConsWithMapping() {
+    int size = size();
+    boolean[] isInput = new boolean[size];
+    boolean[] isOutput = new boolean[size];
+    for (int i : inputs) {
+      isInput[i] = true;
+    }
+    for (int i : outputs) {
+      isOutput[i] = true;
+    }
+
+    // Which node each node has been merged into, and the members of each class as linked lists
+    int[] rep = new int[size];
+    int[] nextMember = new int[size];
+    int[] lastMember = new int[size];
+    for (int node = 0; node < size; node++) {
+      rep[node] = node;
+      nextMember[node] = -1;
+      lastMember[node] = node;
+    }
+
+    Map<FanIn, Integer> table = new HashMap<>();
+    FanIn[] keys = new FanIn[size];
+    int[] queue = new int[size];
+    boolean[] queued = new boolean[size];
+    int head = 0;
+    int queueSize = 0;
+    for (int node = 0; node < size; node++) {
+      if (!isInput[node]) {
+        queue[queueSize++] = node;
+        queued[node] = true;
+      }
+    }
+
+    while (queueSize > 0) {
+      int node = queue[head];
+      head = (head + 1) % size;
+      queueSize--;
+      queued[node] = false;
+      if (rep[node] != node) {
+        continue;
+      }
+
+      if (keys[node] != null && table.get(keys[node]) == node) {
+        table.remove(keys[node]);
+      }
+      int[] fanIn = redstone.inNeighbors(node);
+      for (int i = 0; i < fanIn.length; i++) {
+        fanIn[i] = rep[fanIn[i]];
+      }
+      FanIn key = new FanIn(fanIn);
+      keys[node] = key;
+      Integer match = table.putIfAbsent(key, node);
+      if (match == null || match == node || isOutput[node] && isOutput[match] || key.contains(node) || key.contains(match)) {
+        // Nothing to merge with, or nothing allowed to; merging a node with one feeding it would make a self loop
+        continue;
+      }
+
+      int keep = isOutput[node] ? node : match;
+      int gone = keep == node ? match : node;
+      table.put(key, keep);
+      for (int member = gone; member != -1; member = nextMember[member]) {
+        rep[member] = keep;
+        for (int i = 0; i < redstone.outDegree(member); i++) {
+          int fed = redstone.outNeighbor(member, i);
+          if (!isInput[fed] && !queued[fed]) {
+            queue[(head + queueSize) % size] = fed;
+            queueSize++;
+            queued[fed] = true;
+          }
+        }
+      }
+      nextMember[lastMember[keep]] = gone;
+      lastMember[keep] = lastMember[gone];
+    }
+
+    int[] nodeMapping = new int[size];
+    int runningId = 0;
+    for (int node = 0; node < size; node++) {
+      if (rep[node] == node) {
+        nodeMapping[node] = runningId++;
+      }
+    }
+    for (int node = 0; node < size; node++) {
+      nodeMapping[node] = nodeMapping[rep[node]];
+    }
+
+    SimpleCircuitBuilder scb = new SimpleCircuitBuilder();
+    scb.ensureSize(runningId);
+    CompactGraph.EdgeCursor edges = redstone.edgeCursor();
+    while (edges.advance()) {
+      int start = nodeMapping[edges.start()];
+      int end = nodeMapping[edges.end()];
+      if (start == end) {
+        throw new IllegalStateException("Invalid node graph");
+      }
+      scb.addEdge(start, end);
+    }
+    for (int i : inputs) {
+      scb.registerInput(nodeMapping[i]);
+    }
+    for (int i : outputs) {
+      scb.registerOutput(nodeMapping[i]);
+    }
+
+    return new Pair<>(scb.toCircuit(), nodeMapping);
+  }
+
   private static int mapCompressInt(Map<Integer, Integer> map, int[] compressMap, Integer val) {
     return map.getOrDefault(val, compressMap[val]);
   }
 
+  private static int[] toIntArray(Integer[] arr) {
+    int[] r = new int[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      r[i] = arr[i];
+    }
+    return r;
+  }
+
   private static boolean contains(Integer[] arr, int x) {
     for (int i : arr) {
       if (i == x) {
@@ -0,0 +1,319 @@
+package circuit;
+
+import graph.CompactGraph;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A compact binary form for {@code AnnotatedCircuit}s and {@code DebugCircuit}s.
+ * <p>
+ * A file starts with an 18 byte header: the magic bytes {@code NORC}, a version byte, a flags byte
+ * (bit 0 set if there is a debug section), and then the byte lengths of the three sections below as big-endian ints.
+ * The lengths let a reader jump straight to the ports or debug names without decoding the graph
+ * (see {@code MappedCircuitFile}).
+ * <p>
+ * Within the sections, every count, node id and length is an unsigned LEB128 varint.
+ * <p>
+ * - Graph: the node count and the edge count, the out degree of every node, then every node's out neighbors.
+ * Each row is sorted, so each neighbor is stored as the gap from the previous one (the first is stored as is).
+ * <p>
+ * - Ports: the input nodes, output nodes, multibit input sizes, and multibit output sizes, each as a count followed by the values
+ * <p>
+ * - Debug (only for a {@code DebugCircuit}, otherwise empty): global names and local names
+ * (a count, then sub circuit ids and UTF-8 strings), then output positions (a count, then sub circuit ids and node lists).
+ * Entries are sorted by id, so equal circuits always encode to the same bytes.
+ */
+public class CircuitFormat {
+  static final byte[] MAGIC = {'N', 'O', 'R', 'C'};
+  public static final int VERSION = 2;
+  static final int FLAG_DEBUG = 1;
+  static final int HEADER_SIZE = MAGIC.length + 2 + 3 * 4;
+
+  public static void write(AnnotatedCircuit circuit, Path path) throws IOException {
+    Files.write(path, encode(circuit));
+  }
+
+  /**
+   * Reads the whole file onto the heap, so nothing is left holding it once this returns.
+   * The circuit is copied out of the bytes anyway, so mapping the file instead would gain nothing here,
+   * and would keep it locked on Windows until the mapping was garbage collected.
+   *
+   * @return A {@code DebugCircuit} if the file has a debug section, and a plain {@code AnnotatedCircuit} otherwise
+   */
+  public static AnnotatedCircuit read(Path path) throws IOException {
+    return decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+  }
+
+  public static byte[] encode(AnnotatedCircuit circuit) {
+    boolean debug = circuit instanceof DebugCircuit;
+
+    ByteSink graphSection = new ByteSink();
+    CompactGraph graph = circuit.redstone;
+    int size = graph.size();
+    graphSection.varint(size);
+    graphSection.varint(graph.edgeCount());
+    for (int n = 0; n < size; n++) {
+      graphSection.varint(graph.outDegree(n));
+    }
+    CompactGraph.NeighborCursor cursor = graph.outCursor();
+    for (int n = 0; n < size; n++) {
+      int prev = 0;
+      cursor.reset(n);
+      while (cursor.hasNext()) {
+        int next = cursor.next();
+        graphSection.varint(next - prev);
+        prev = next;
+      }
+    }
+
+    ByteSink portSection = new ByteSink();
+    portSection.varints(circuit.inputs);
+    portSection.varints(circuit.outputs);
+    portSection.varints(circuit.inputSizes);
+    portSection.varints(circuit.outputSizes);
+
+    ByteSink debugSection = new ByteSink();
+    if (debug) {
+      DebugCircuit dc = (DebugCircuit) circuit;
+      debugSection.names(dc.globalNames);
+      debugSection.names(dc.localNames);
+      debugSection.varint(dc.outputPositions.size());
+      for (Map.Entry<Integer, int[]> entry : new TreeMap<Integer, int[]>(dc.outputPositions).entrySet()) {
+        debugSection.varint(entry.getKey());
+        debugSection.varints(entry.getValue());
+      }
+    }
+
+    ByteSink out = new ByteSink();
+    out.bytes(MAGIC);
+    out.u8(VERSION);
+    out.u8(debug ? FLAG_DEBUG : 0);
+    out.u32(graphSection.len);
+    out.u32(portSection.len);
+    out.u32(debugSection.len);
+    out.append(graphSection);
+    out.append(portSection);
+    out.append(debugSection);
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads a circuit starting at the buffer's position. The buffer itself isn't modified.
+   */
+  public static AnnotatedCircuit decode(ByteBuffer buffer) throws IOException {
+    return new MappedCircuitFile(buffer.slice()).toCircuit();
+  }
+
+  interface Decoder<T> {
+    T decode() throws IOException;
+  }
+
+  /**
+   * Turns the ways a bad file can trip up decoding into {@code IOException}s.
+   */
+  static <T> T checked(Decoder<T> decoder) throws IOException {
+    try {
+      return decoder.decode();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Circuit data ended early", e);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new IOException("Corrupt circuit data: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Checks the magic bytes and version, leaving the buffer at the section lengths.
+   *
+   * @return The flags byte
+   */
+  static int readHeader(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < HEADER_SIZE) {
+      throw new IOException("Not a circuit file");
+    }
+    byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not a circuit file");
+    }
+    int version = buffer.get() & 0xff;
+    if (version != VERSION) {
+      throw new IOException("Unsupported circuit file version " + version + " (expected " + VERSION + ")");
+    }
+    return buffer.get() & 0xff;
+  }
+
+  /**
+   * Decodes a graph section into CSR arrays. Nothing is allocated per edge.
+   */
+  static CompactGraph readGraph(ByteBuffer buffer) throws IOException {
+    int size = checkCount(buffer, readVarint(buffer));
+    int edgeCount = checkCount(buffer, readVarint(buffer));
+    int[] outStart = new int[size + 1];
+    for (int n = 0; n < size; n++) {
+      outStart[n + 1] = outStart[n] + readVarint(buffer);
+    }
+    if (outStart[size] != edgeCount) {
+      throw new IOException("Corrupt circuit data: out degrees add up to " + outStart[size] + " instead of " + edgeCount);
+    }
+    int[] outTargets = new int[edgeCount];
+    for (int n = 0; n < size; n++) {
+      int prev = 0;
+      for (int e = outStart[n]; e < outStart[n + 1]; e++) {
+        prev += readVarint(buffer);
+        outTargets[e] = prev;
+      }
+    }
+    return CompactGraph.fromCsr(size, outStart, outTargets);
+  }
+
+  static DebugCircuit readDebug(ByteBuffer buffer, AnnotatedCircuit circuit) throws IOException {
+    HashMap<Integer, String> globalNames = readNames(buffer);
+    HashMap<Integer, String> localNames = readNames(buffer);
+    HashMap<Integer, int[]> outputPositions = new HashMap<Integer, int[]>();
+    int count = readVarint(buffer);
+    for (int i = 0; i < count; i++) {
+      int id = readVarint(buffer);
+      outputPositions.put(id, readVarints(buffer));
+    }
+    return new DebugCircuit(circuit, globalNames, localNames, outputPositions);
+  }
+
+  static int readVarint(ByteBuffer buffer) throws IOException {
+    int r = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = buffer.get();
+      r |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        if (r < 0) {
+          throw new IOException("Corrupt circuit data: negative varint");
+        }
+        return r;
+      }
+    }
+    throw new IOException("Corrupt circuit data: varint too long");
+  }
+
+  static int[] readVarints(ByteBuffer buffer) throws IOException {
+    int[] r = new int[checkCount(buffer, readVarint(buffer))];
+    for (int i = 0; i < r.length; i++) {
+      r[i] = readVarint(buffer);
+    }
+    return r;
+  }
+
+  private static HashMap<Integer, String> readNames(ByteBuffer buffer) throws IOException {
+    HashMap<Integer, String> r = new HashMap<Integer, String>();
+    int count = readVarint(buffer);
+    for (int i = 0; i < count; i++) {
+      int id = readVarint(buffer);
+      byte[] utf8 = new byte[checkCount(buffer, readVarint(buffer))];
+      buffer.get(utf8);
+      r.put(id, new String(utf8, StandardCharsets.UTF_8));
+    }
+    return r;
+  }
+
+  /**
+   * Every counted item takes at least a byte, so this catches garbage counts before they turn into huge allocations.
+   */
+  private static int checkCount(ByteBuffer buffer, int count) throws IOException {
+    if (count > buffer.remaining()) {
+      throw new IOException("Circuit data ended early");
+    }
+    return count;
+  }
+
+  static Integer[] boxed(int[] ints) {
+    Integer[] r = new Integer[ints.length];
+    for (int i = 0; i < ints.length; i++) {
+      r[i] = ints[i];
+    }
+    return r;
+  }
+
+  /**
+   * A growable byte array with varint helpers.
+   */
+  private static class ByteSink {
+    private byte[] buf = new byte[256];
+    private int len = 0;
+
+    private void ensureCapacity(int extra) {
+      if (len + extra > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+      }
+    }
+
+    void u8(int b) {
+      ensureCapacity(1);
+      buf[len++] = (byte) b;
+    }
+
+    void u32(int x) {
+      u8(x >>> 24);
+      u8(x >>> 16);
+      u8(x >>> 8);
+      u8(x);
+    }
+
+    void bytes(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buf, len, bytes.length);
+      len += bytes.length;
+    }
+
+    void append(ByteSink other) {
+      ensureCapacity(other.len);
+      System.arraycopy(other.buf, 0, buf, len, other.len);
+      len += other.len;
+    }
+
+    void varint(int x) {
+      if (x < 0) {
+        throw new IllegalArgumentException("Can't store negative value " + x);
+      }
+      while ((x & ~0x7f) != 0) {
+        u8((x & 0x7f) | 0x80);
+        x >>>= 7;
+      }
+      u8(x);
+    }
+
+    void varints(int[] xs) {
+      varint(xs.length);
+      for (int x : xs) {
+        varint(x);
+      }
+    }
+
+    void varints(Integer[] xs) {
+      varint(xs.length);
+      for (Integer x : xs) {
+        varint(x);
+      }
+    }
+
+    void names(Map<Integer, String> names) {
+      varint(names.size());
+      for (Map.Entry<Integer, String> entry : new TreeMap<Integer, String>(names).entrySet()) {
+        varint(entry.getKey());
+        byte[] utf8 = entry.getValue().getBytes(StandardCharsets.UTF_8);
+        varint(utf8.length);
+        bytes(utf8);
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, len);
+    }
+  }
+}
@@ -0,0 +1,463 @@
+package circuit;
+
+import graph.TriState;
+import misc.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Rewrites a circuit until none of these apply anywhere:
+ * <p>
+ * - Constants: a node without inputs is {@code FALSE}, so whatever it feeds is {@code TRUE},
+ * and a {@code TRUE} node's torches are always off, so they can go. Seeded from {@code simulateRaw}.
+ * <p>
+ * - Double negation: a node fed by a single torch from {@code s} is just {@code NOT s},
+ * so the torches out of it can be fed straight from whatever feeds {@code s}, when that doesn't add torches.
+ * <p>
+ * - Shared fan in: nodes fed by exactly the same nodes are merged (see {@code Circuit.hashConsWithMapping}).
+ * <p>
+ * - Dangling nodes: a node which feeds nothing and isn't an output is deleted.
+ * <p>
+ * - Unreachable nodes: once nothing else applies, a node no output depends on is deleted, as in {@code trimWithMapping}.
+ * This catches loops that only feed themselves, which never become dangling.
+ * <p>
+ * Every rewrite puts the nodes it touched back on a worklist, so rewrites which enable each other
+ * (such as a collapse making two nodes the same, or a merge leaving a node feeding nothing) are all found,
+ * each costing only about the size of the nodes involved. Every rewrite removes a node or a torch, so it stops.
+ * The torches are kept as an array of neighbors per node in each direction, with each torch's place in them
+ * kept in a table, so adding, removing and finding a torch take constant time without boxing.
+ * <p>
+ * Inputs are never changed, and neither are outputs beyond what keeps them computing the same thing.
+ * Like {@code trimWithMapping}, collapsing torch pairs in a loop changes its timing.
+ */
+final class CircuitOptimizer {
+  private final Circuit circuit;
+  private final int size;
+  private final Adjacency forwards;
+  private final Adjacency backwards;
+  private final boolean[] isInput;
+  private final boolean[] isOutput;
+  private final boolean[] deleted;
+  /**
+   * The node each merged node was merged into, or {@code -1}
+   */
+  private final int[] mergedInto;
+
+  private final Map<FanIn, Integer> table = new HashMap<>();
+  private final FanIn[] keys;
+  /**
+   * A ring of the queued nodes. Each node is queued at most once, so it never needs more than {@code size} slots.
+   */
+  private final int[] worklist;
+  private int worklistStart;
+  private int worklistCount;
+  private final boolean[] queued;
+
+  CircuitOptimizer(Circuit circuit) {
+    this.circuit = circuit;
+    size = circuit.size();
+    forwards = new Adjacency(size, circuit.redstone.edgeCount());
+    backwards = new Adjacency(size, circuit.redstone.edgeCount());
+    for (int node = 0; node < size; node++) {
+      for (int i = 0; i < circuit.redstone.outDegree(node); i++) {
+        int end = circuit.redstone.outNeighbor(node, i);
+        forwards.add(node, end);
+        backwards.add(end, node);
+      }
+    }
+    isInput = new boolean[size];
+    isOutput = new boolean[size];
+    for (int i : circuit.inputs) {
+      isInput[i] = true;
+    }
+    for (int i : circuit.outputs) {
+      isOutput[i] = true;
+    }
+    deleted = new boolean[size];
+    mergedInto = new int[size];
+    for (int node = 0; node < size; node++) {
+      mergedInto[node] = -1;
+    }
+    keys = new FanIn[size];
+    worklist = new int[size];
+    queued = new boolean[size];
+  }
+
+  /**
+   * Returns:
+   * - A Circuit which is functionally equivalent to the original one.
+   * - A mapping of node ids from the original circuit to the new one. (-1 represents node deletion)
+   */
+  Pair<Circuit, int[]> optimize() {
+    seedConstants();
+    for (int node = 0; node < size; node++) {
+      enqueue(node);
+    }
+    do {
+      while (worklistCount > 0) {
+        int node = worklist[worklistStart];
+        worklistStart = worklistStart + 1 == size ? 0 : worklistStart + 1;
+        worklistCount--;
+        queued[node] = false;
+        if (deleted[node]) {
+          continue;
+        }
+        if (!sweep(node) && !propagateFalse(node) && !collapse(node)) {
+          share(node);
+        }
+      }
+    } while (sweepUnreachable());
+    return build();
+  }
+
+  /**
+   * Cuts constant nodes down to what keeps them constant: nothing into a {@code FALSE} node,
+   * and for a {@code TRUE} output, a single {@code FALSE} node. Nothing comes out of a {@code TRUE} node.
+   */
+  private void seedConstants() {
+    Stack<Pair<Integer, Boolean>> assertStateStack = new Stack<>();
+    for (Integer i : circuit.emptyInputs()) {
+      assertStateStack.push(new Pair<>(i, false));
+    }
+    TriState[] state = circuit.simulateRaw(assertStateStack);
+    for (int node = 0; node < size; node++) {
+      if (state[node] == TriState.FALSE && !isInput[node]) {
+        for (int from : backwards.toArray(node)) {
+          removeEdge(from, node);
+        }
+      }
+    }
+    for (int node = 0; node < size; node++) {
+      if (state[node] == TriState.TRUE && !isInput[node]) {
+        int feeder = -1;
+        for (int i = 0; i < backwards.degree(node); i++) {
+          int from = backwards.get(node, i);
+          if (state[from] == TriState.FALSE && !isInput[from]) {
+            feeder = from;
+            break;
+          }
+        }
+        if (isOutput[node] && feeder == -1) {
+          throw new IllegalStateException("TRUE output without FALSE input");
+        }
+        makeTrue(node, feeder);
+      }
+    }
+  }
+
+  /**
+   * Deletes {@code node} if it doesn't feed anything
+   */
+  private boolean sweep(int node) {
+    if (isInput[node] || isOutput[node] || forwards.degree(node) != 0) {
+      return false;
+    }
+    for (int from : backwards.toArray(node)) {
+      removeEdge(from, node);
+    }
+    delete(node);
+    return true;
+  }
+
+  /**
+   * Deletes every node that isn't an input and that no output depends on
+   *
+   * @return Whether anything was deleted
+   */
+  private boolean sweepUnreachable() {
+    boolean[] reached = new boolean[size];
+    int[] stack = new int[size];
+    int top = 0;
+    for (int output : circuit.outputs) {
+      if (!reached[output]) {
+        reached[output] = true;
+        stack[top++] = output;
+      }
+    }
+    while (top > 0) {
+      int node = stack[--top];
+      for (int i = 0; i < backwards.degree(node); i++) {
+        int from = backwards.get(node, i);
+        if (!reached[from]) {
+          reached[from] = true;
+          stack[top++] = from;
+        }
+      }
+    }
+
+    boolean changed = false;
+    for (int node = 0; node < size; node++) {
+      if (!reached[node] && !deleted[node] && !isInput[node]) {
+        for (int to : forwards.toArray(node)) {
+          removeEdge(node, to);
+        }
+        for (int from : backwards.toArray(node)) {
+          removeEdge(from, node);
+        }
+        delete(node);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * If {@code node} is a constant {@code FALSE}, makes everything it feeds a constant {@code TRUE}
+   */
+  private boolean propagateFalse(int node) {
+    if (isInput[node] || backwards.degree(node) != 0) {
+      return false;
+    }
+    boolean changed = false;
+    for (int to : forwards.toArray(node)) {
+      if (!isInput[to]) {
+        changed |= makeTrue(to, node);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param feeder A constant {@code FALSE} node feeding {@code node}, kept if {@code node} is an output
+   * @return Whether anything changed
+   */
+  private boolean makeTrue(int node, int feeder) {
+    boolean changed = false;
+    for (int to : forwards.toArray(node)) {
+      removeEdge(node, to);
+      changed = true;
+    }
+    for (int from : backwards.toArray(node)) {
+      if (!isOutput[node] || from != feeder) {
+        removeEdge(from, node);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * If {@code node} is fed by one torch from {@code s}, feeds everything it feeds from whatever feeds {@code s} instead,
+   * and deletes it, as long as that doesn't end up with more torches
+   */
+  private boolean collapse(int node) {
+    if (isInput[node] || isOutput[node] || backwards.degree(node) != 1 || forwards.degree(node) == 0) {
+      return false;
+    }
+    int s = backwards.get(node, 0);
+    if (isInput[s] || backwards.degree(s) == 0 || backwards.contains(s, node)) {
+      return false;
+    }
+
+    int added = 0;
+    for (int i = 0; i < forwards.degree(node); i++) {
+      int to = forwards.get(node, i);
+      if (isInput[to] || to == s || backwards.contains(s, to)) {
+        // Would change an input, or make a loop through s shorter, or make a self loop
+        return false;
+      }
+      for (int j = 0; j < backwards.degree(s); j++) {
+        if (!forwards.contains(backwards.get(s, j), to)) {
+          added++;
+        }
+      }
+    }
+    int removed = forwards.degree(node) + 1;
+    if (forwards.degree(s) == 1 && !isOutput[s]) {
+      // s only fed this node, so it goes too
+      removed += backwards.degree(s);
+    }
+    if (added > removed) {
+      return false;
+    }
+
+    int[] sources = backwards.toArray(s);
+    for (int to : forwards.toArray(node)) {
+      for (int from : sources) {
+        addEdge(from, to);
+      }
+      removeEdge(node, to);
+    }
+    removeEdge(s, node);
+    delete(node);
+    return true;
+  }
+
+  /**
+   * Merges {@code node} with another node fed by exactly the same nodes, if there is one
+   */
+  private void share(int node) {
+    if (isInput[node]) {
+      return;
+    }
+    if (keys[node] != null && table.get(keys[node]) == node) {
+      table.remove(keys[node]);
+    }
+    FanIn key = new FanIn(backwards.toArray(node));
+    keys[node] = key;
+    Integer match = table.putIfAbsent(key, node);
+    if (match == null || match == node) {
+      return;
+    }
+    if (!key.equals(new FanIn(backwards.toArray(match)))) {
+      // match has changed since it was put in the table, and is on the worklist to be put back
+      table.put(key, node);
+      return;
+    }
+    if (isOutput[node] && isOutput[match] || key.contains(node) || key.contains(match)) {
+      return;
+    }
+
+    int keep = isOutput[node] ? node : match;
+    int gone = keep == node ? match : node;
+    table.put(key, keep);
+    for (int to : forwards.toArray(gone)) {
+      addEdge(keep, to);
+      removeEdge(gone, to);
+    }
+    for (int from : backwards.toArray(gone)) {
+      removeEdge(from, gone);
+    }
+    delete(gone);
+    mergedInto[gone] = keep;
+  }
+
+  private void addEdge(int from, int to) {
+    if (forwards.add(from, to)) {
+      backwards.add(to, from);
+      enqueue(from);
+      enqueue(to);
+    }
+  }
+
+  private void removeEdge(int from, int to) {
+    if (forwards.remove(from, to)) {
+      backwards.remove(to, from);
+      enqueue(from);
+      enqueue(to);
+    }
+  }
+
+  private void delete(int node) {
+    deleted[node] = true;
+    if (keys[node] != null && table.get(keys[node]) == node) {
+      table.remove(keys[node]);
+    }
+  }
+
+  private void enqueue(int node) {
+    if (!queued[node] && !deleted[node]) {
+      queued[node] = true;
+      int end = worklistStart + worklistCount;
+      worklist[end >= size ? end - size : end] = node;
+      worklistCount++;
+    }
+  }
+
+  private Pair<Circuit, int[]> build() {
+    int[] nodeMapping = new int[size];
+    int runningId = 0;
+    for (int node = 0; node < size; node++) {
+      nodeMapping[node] = deleted[node] ? -1 : runningId++;
+    }
+    for (int node = 0; node < size; node++) {
+      int canonical = node;
+      while (deleted[canonical] && mergedInto[canonical] != -1) {
+        canonical = mergedInto[canonical];
+      }
+      nodeMapping[node] = nodeMapping[canonical];
+    }
+
+    SimpleCircuitBuilder scb = new SimpleCircuitBuilder();
+    scb.ensureSize(runningId);
+    for (int node = 0; node < size; node++) {
+      for (int i = 0; i < forwards.degree(node); i++) {
+        scb.addEdge(nodeMapping[node], nodeMapping[forwards.get(node, i)]);
+      }
+    }
+    for (int i : circuit.inputs) {
+      scb.registerInput(nodeMapping[i]);
+    }
+    for (int i : circuit.outputs) {
+      scb.registerOutput(nodeMapping[i]);
+    }
+    return new Pair<>(scb.toCircuit(), nodeMapping);
+  }
+
+  /**
+   * The torches in one direction: the neighbors of each node in a growable array,
+   * and where each torch is in its node's array, so one can be found or swapped out in constant time.
+   */
+  private static final class Adjacency {
+    private static final int[] NONE = new int[0];
+
+    private final int[][] neighbors;
+    private final int[] degree;
+    private final LongIntHashMap index;
+
+    Adjacency(int size, int edges) {
+      neighbors = new int[size][];
+      Arrays.fill(neighbors, NONE);
+      degree = new int[size];
+      index = new LongIntHashMap(-1, edges);
+    }
+
+    int degree(int node) {
+      return degree[node];
+    }
+
+    int get(int node, int i) {
+      return neighbors[node][i];
+    }
+
+    boolean contains(int node, int neighbor) {
+      return index.containsKey(key(node, neighbor));
+    }
+
+    /**
+     * @return A copy, so edges can be changed while going through it
+     */
+    int[] toArray(int node) {
+      return Arrays.copyOf(neighbors[node], degree[node]);
+    }
+
+    /**
+     * @return Whether it wasn't already there
+     */
+    boolean add(int node, int neighbor) {
+      long key = key(node, neighbor);
+      if (index.containsKey(key)) {
+        return false;
+      }
+      if (degree[node] == neighbors[node].length) {
+        neighbors[node] = Arrays.copyOf(neighbors[node], Math.max(4, 2 * degree[node]));
+      }
+      index.put(key, degree[node]);
+      neighbors[node][degree[node]++] = neighbor;
+      return true;
+    }
+
+    /**
+     * @return Whether it was there
+     */
+    boolean remove(int node, int neighbor) {
+      int i = index.remove(key(node, neighbor));
+      if (i == -1) {
+        return false;
+      }
+      int last = neighbors[node][--degree[node]];
+      if (last != neighbor) {
+        neighbors[node][i] = last;
+        index.put(key(node, last), i);
+      }
+      return true;
+    }
+
+    private static long key(int node, int neighbor) {
+      return (long) node << 32 | neighbor;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package circuit;
 
+import circuit.simulation.BitParallelSimulator;
 import graph.TriState;
 
 import java.util.*;
@@ -55,6 +56,17 @@ public class DebugCircuit extends AnnotatedCircuit {
     return circuitIds.get(outputName);
   }
 
+  /**
+   * @return The nodes holding the bits of the named signal, in order, or {@code null} if there is no such signal
+   */
+  public int[] getDebugNodes(String globalName) {
+    Integer circuitId = getCircuitId(globalName);
+    if (circuitId == null) {
+      return null;
+    }
+    return outputPositions.get(circuitId).clone();
+  }
+
   /**
    * @param input The input bits to the circuit
    * @return A map from global variable names to their multibit values
@@ -75,19 +87,7 @@ public class DebugCircuit extends AnnotatedCircuit {
 
     ArrayList<Pair<String, boolean[]>> r = new ArrayList<Pair<String, boolean[]>>();
 
-    // Order matters for output...
-    Integer[] circuitIds = new Integer[globalNames.size()];
-    {
-      int index = 0;
-      for (Integer circuitId : globalNames.keySet()) {
-        circuitIds[index] = circuitId;
-        index++;
-      }
-    }
-    Arrays.sort(circuitIds);
-
-
-    for (int circuitId : circuitIds) {
+    for (int circuitId : sortedCircuitIds()) {
       String globalName = globalNames.get(circuitId);
 
       int[] outPositions = outputPositions.get(circuitId);
@@ -113,4 +113,42 @@ public class DebugCircuit extends AnnotatedCircuit {
 
     return r;
   }
+
+  /**
+   * Simulates 64 input vectors at once. See {@code Circuit.simulate(long[])}.
+   *
+   * @param inputWords One word per input bit. Bit {@code k} of each word belongs to input vector {@code k}.
+   * @return The same list as {@code simulateDebug(boolean[])}, with one word per bit of each multibit value
+   */
+  public ArrayList<Pair<String, long[]>> simulateDebug(long[] inputWords) {
+    BitParallelSimulator simulator = getBitParallelSimulator();
+    if (inputWords.length != simulator.inputSize()) {
+      throw new UnsupportedOperationException("Invalid input length: Got " + inputWords.length + " words when the circuit needed " + simulator.inputSize() + "!");
+    }
+    long[] state = simulator.newState();
+    simulator.propagate(inputWords, state);
+
+    ArrayList<Pair<String, long[]>> r = new ArrayList<Pair<String, long[]>>();
+
+    for (int circuitId : sortedCircuitIds()) {
+      int[] outPositions = outputPositions.get(circuitId);
+
+      long[] subOutput = new long[outPositions.length];
+      for (int index = 0; index < outPositions.length; index++) {
+        subOutput[index] = state[outPositions[index]];
+      }
+      r.add(new Pair<String, long[]>(globalNames.get(circuitId), subOutput));
+    }
+
+    return r;
+  }
+
+  /**
+   * Order matters for output...
+   */
+  private Integer[] sortedCircuitIds() {
+    Integer[] circuitIds = globalNames.keySet().toArray(new Integer[0]);
+    Arrays.sort(circuitIds);
+    return circuitIds;
+  }
 }
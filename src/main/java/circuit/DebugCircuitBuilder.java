@@ -27,7 +27,7 @@ public class DebugCircuitBuilder extends AnnotationCircuitBuilder {
       Integer[] circuitOutputs = circuit.getOutputs();
       int[] outPos = new int[circuitOutputs.length];
       for (int i = 0; i < circuitOutputs.length; i++) {
-        outPos[i] = calculatePositionOfNode(circuitId, circuitOutputs[i]);
+        outPos[i] = calculateBuiltPositionOfNode(circuitId, circuitOutputs[i]);
       }
 
       outputPositions.put(circuitId, outPos);
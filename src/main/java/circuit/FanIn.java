@@ -0,0 +1,40 @@
+package circuit;
+
+import java.util.Arrays;
+
+/**
+ * The nodes feeding a node, sorted and without repeats, for looking up nodes by what they're the NOR of
+ */
+final class FanIn {
+  private final int[] nodes;
+  private final int hash;
+
+  /**
+   * @param nodes Sorted and deduplicated in place, and kept
+   */
+  FanIn(int[] nodes) {
+    Arrays.sort(nodes);
+    int count = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      if (i == 0 || nodes[i] != nodes[i - 1]) {
+        nodes[count++] = nodes[i];
+      }
+    }
+    this.nodes = count == nodes.length ? nodes : Arrays.copyOf(nodes, count);
+    hash = Arrays.hashCode(this.nodes);
+  }
+
+  boolean contains(int node) {
+    return Arrays.binarySearch(nodes, node) >= 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof FanIn && ((FanIn) obj).hash == hash && Arrays.equals(((FanIn) obj).nodes, nodes);
+  }
+}
@@ -19,9 +19,16 @@ public class GraphMerger<T> {
   private Merger<T> nodeMerger;
 
   public GraphMerger(TwoWayDirectedGraph<T> graph) {
+    this(graph, new Merger<>());
+  }
+
+  /**
+   * @param nodeMerger Keeps track of which nodes have been merged or deleted, starting with none of them
+   */
+  public GraphMerger(TwoWayDirectedGraph<T> graph, Merger<T> nodeMerger) {
     forwards = new HashMap<>();
     backwards = new HashMap<>();
-    nodeMerger = new Merger<>();
+    this.nodeMerger = nodeMerger;
 
     for (T node : graph.nodes()) {
       ensureNode(node);
@@ -32,6 +39,15 @@ public class GraphMerger<T> {
     }
   }
 
+  /**
+   * Merges the nodes of a graph numbered {@code 0} to {@code size - 1} with an {@code IntMerger},
+   * so merging and looking up canonical nodes stays near constant time however many nodes there are.
+   * Nodes outside that range can't be added afterwards.
+   */
+  public static GraphMerger<Integer> ofIndices(TwoWayDirectedGraph<Integer> graph, int size) {
+    return new GraphMerger<>(graph, new IntMerger(size));
+  }
+
   /**
    * Guarantees that {@code node} is a node in this graph.
    */
@@ -0,0 +1,149 @@
+package circuit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@code Merger} of the integers {@code 0} to {@code size - 1}, kept as a disjoint-set forest
+ * with path compression and union by rank, so any sequence of operations costs near-linear time overall.
+ * <p>
+ * Deletion is a merge with a sentinel element past the end, which stands for {@code null}.
+ * Which element is the root of a set is up to rank, so each root separately records
+ * the set's canonical representation, keeping the choice {@code merge} makes in {@code Merger}.
+ * <p>
+ * The members of each set are kept as a ring, so merging splices two rings in constant time,
+ * and a set's accumulation is only listed when asked for.
+ */
+public class IntMerger extends Merger<Integer> {
+  private static final int DELETED = -1;
+
+  private final int size;
+  private final int[] parent;
+  private final byte[] rank;
+  /**
+   * The canonical representation of the set each root stands for, or {@code DELETED}
+   */
+  private final int[] canonical;
+  /**
+   * The next member of the same set, going around a ring of all its members
+   */
+  private final int[] next;
+
+  public IntMerger(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Size must not be negative, not " + size);
+    }
+    this.size = size;
+    parent = new int[size + 1];
+    rank = new byte[size + 1];
+    canonical = new int[size + 1];
+    next = new int[size + 1];
+    for (int i = 0; i <= size; i++) {
+      parent[i] = i;
+      canonical[i] = i;
+      next[i] = i;
+    }
+    canonical[size] = DELETED;
+  }
+
+  @Override
+  public void delete(Integer item) {
+    union(find(item), find(null), DELETED);
+  }
+
+  @Override
+  public void merge(Integer a, Integer b) {
+    if (a == null) {
+      delete(b);
+    } else if (b == null) {
+      delete(a);
+    } else {
+      int rootB = find(b);
+      union(find(a), rootB, canonical[rootB]);
+    }
+  }
+
+  /**
+   * Joins the sets of two roots, if they're different, with the canonical representation {@code label}
+   * unless either set is deleted
+   */
+  private void union(int rootA, int rootB, int label) {
+    if (rootA == rootB) {
+      return;
+    }
+    if (canonical[rootA] == DELETED || canonical[rootB] == DELETED) {
+      label = DELETED;
+    }
+    int root = rootB;
+    if (rank[rootA] < rank[rootB]) {
+      parent[rootA] = rootB;
+    } else {
+      parent[rootB] = rootA;
+      if (rank[rootA] == rank[rootB]) {
+        rank[rootA]++;
+      }
+      root = rootA;
+    }
+    canonical[root] = label;
+
+    int swap = next[rootA];
+    next[rootA] = next[rootB];
+    next[rootB] = swap;
+  }
+
+  /**
+   * Points everything on the way from {@code item} straight at the root.
+   *
+   * @return The root of the set {@code item} is in, or of the deleted set for {@code null}
+   */
+  private int find(Integer item) {
+    if (item != null && (item < 0 || item >= size)) {
+      throw new IllegalArgumentException(item + " is not between 0 and " + size);
+    }
+    int start = item == null ? size : item;
+    int root = start;
+    while (parent[root] != root) {
+      root = parent[root];
+    }
+    int node = start;
+    while (parent[node] != root) {
+      int up = parent[node];
+      parent[node] = root;
+      node = up;
+    }
+    return root;
+  }
+
+  /**
+   * The returned collection is a copy, listed when this is called.
+   * For a deleted item, that's every deleted item.
+   *
+   * @return The collection of things which share a canonical representation with this item.
+   */
+  @Override
+  public Collection<Integer> getAccumulation(Integer item) {
+    int root = find(item);
+    List<Integer> members = new ArrayList<>();
+    int member = root;
+    do {
+      if (member != size) {
+        members.add(member);
+      }
+      member = next[member];
+    } while (member != root);
+    return Collections.unmodifiableList(members);
+  }
+
+  /**
+   * O(alpha(n)) amt
+   *
+   * @return The mapping, with {@code null} being returned if the node is deleted.
+   */
+  @Override
+  public Integer getMapping(Integer item) {
+    int label = canonical[find(item)];
+    return label == DELETED ? null : label;
+  }
+}
@@ -0,0 +1,221 @@
+package circuit;
+
+import graph.CompactGraph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A circuit file in {@code CircuitFormat}, memory mapped rather than read onto the heap.
+ * <p>
+ * Opening only checks the header. Each section is decoded when it is asked for, straight out of the mapping,
+ * so e.g. the ports of a huge circuit can be read without touching its edges,
+ * and {@code EdgeCursor} walks the edges without building the graph at all.
+ * <p>
+ * Mapped pages live in the OS page cache, so several processes reading the same file share them.
+ * <p>
+ * Java only unmaps a file when its mapping is garbage collected, and until then Windows won't let the file
+ * be deleted or replaced. {@code close()} drops this object's hold on the mapping so it can be collected,
+ * but {@code EdgeCursor}s already handed out keep it alive.
+ * Don't keep one open on a file that may be rewritten, such as a {@code CircuitCache} entry
+ * (which is why the cache reads entries with {@code CircuitFormat.read} instead).
+ */
+public class MappedCircuitFile implements Closeable {
+  private ByteBuffer buffer;
+  private final int flags;
+  private final int graphOffset;
+  private final int graphLength;
+  private final int portOffset;
+  private final int portLength;
+  private final int debugOffset;
+  private final int debugLength;
+
+  private int size = -1;
+  private int edgeCount = -1;
+  private int[] inputs;
+  private int[] outputs;
+  private int[] inputSizes;
+  private int[] outputSizes;
+
+  /**
+   * @param buffer Starts at the magic bytes. Isn't modified.
+   */
+  MappedCircuitFile(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.duplicate();
+    ByteBuffer header = buffer.duplicate();
+    flags = CircuitFormat.readHeader(header);
+    graphLength = header.getInt();
+    portLength = header.getInt();
+    debugLength = header.getInt();
+    if (graphLength < 0 || portLength < 0 || debugLength < 0
+        || (long) CircuitFormat.HEADER_SIZE + graphLength + portLength + debugLength > buffer.remaining()) {
+      throw new IOException("Circuit data ended early");
+    }
+    graphOffset = CircuitFormat.HEADER_SIZE;
+    portOffset = graphOffset + graphLength;
+    debugOffset = portOffset + portLength;
+  }
+
+  public static MappedCircuitFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Circuit file too large: " + path);
+      }
+      // The mapping stays valid after the channel is closed
+      return new MappedCircuitFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Lets go of the mapping. Anything that still has to read from it throws an {@code IOException} afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    buffer = null;
+  }
+
+  private synchronized ByteBuffer section(int offset, int length) throws IOException {
+    if (buffer == null) {
+      throw new IOException("Circuit file is closed");
+    }
+    ByteBuffer r = buffer.duplicate();
+    r.position(offset);
+    r.limit(offset + length);
+    return r.slice();
+  }
+
+  public boolean hasDebugSection() {
+    return (flags & CircuitFormat.FLAG_DEBUG) != 0;
+  }
+
+  public synchronized int size() throws IOException {
+    if (size == -1) {
+      ByteBuffer graph = section(graphOffset, graphLength);
+      size = CircuitFormat.checked(() -> CircuitFormat.readVarint(graph));
+      edgeCount = CircuitFormat.checked(() -> CircuitFormat.readVarint(graph));
+    }
+    return size;
+  }
+
+  public synchronized int edgeCount() throws IOException {
+    size();
+    return edgeCount;
+  }
+
+  private synchronized void readPorts() throws IOException {
+    if (inputs != null) {
+      return;
+    }
+    ByteBuffer ports = section(portOffset, portLength);
+    CircuitFormat.checked(() -> {
+      inputs = CircuitFormat.readVarints(ports);
+      outputs = CircuitFormat.readVarints(ports);
+      inputSizes = CircuitFormat.readVarints(ports);
+      outputSizes = CircuitFormat.readVarints(ports);
+      return null;
+    });
+  }
+
+  public int[] getInputs() throws IOException {
+    readPorts();
+    return inputs.clone();
+  }
+
+  public int[] getOutputs() throws IOException {
+    readPorts();
+    return outputs.clone();
+  }
+
+  public int[] getInputSizes() throws IOException {
+    readPorts();
+    return inputSizes.clone();
+  }
+
+  public int[] getOutputSizes() throws IOException {
+    readPorts();
+    return outputSizes.clone();
+  }
+
+  /**
+   * Decodes the graph section into CSR arrays. Nothing is allocated per edge.
+   */
+  public CompactGraph getCompactGraph() throws IOException {
+    ByteBuffer graph = section(graphOffset, graphLength);
+    return CircuitFormat.checked(() -> CircuitFormat.readGraph(graph));
+  }
+
+  /**
+   * @return A {@code DebugCircuit} if there is a debug section, and a plain {@code AnnotatedCircuit} otherwise
+   */
+  public AnnotatedCircuit toCircuit() throws IOException {
+    CompactGraph graph = getCompactGraph();
+    readPorts();
+    AnnotatedCircuit circuit = CircuitFormat.checked(() -> new AnnotatedCircuit(graph,
+        CircuitFormat.boxed(inputs), CircuitFormat.boxed(outputs), inputSizes.clone(), outputSizes.clone()));
+    if (!hasDebugSection()) {
+      return circuit;
+    }
+    ByteBuffer debug = section(debugOffset, debugLength);
+    return CircuitFormat.checked(() -> CircuitFormat.readDebug(debug, circuit));
+  }
+
+  /**
+   * Walks the edges in order of start node, then end node, decoding them straight from the mapping.
+   */
+  public EdgeCursor edgeCursor() throws IOException {
+    int size = size();
+    ByteBuffer graph = section(graphOffset, graphLength);
+    return CircuitFormat.checked(() -> new EdgeCursor(graph, size));
+  }
+
+  /**
+   * Use like {@code CompactGraph.EdgeCursor}: call {@code advance()}, and if it returns {@code true},
+   * read {@code start()} and {@code end()}.
+   */
+  public static final class EdgeCursor {
+    private final ByteBuffer degrees;
+    private final ByteBuffer targets;
+    private final int size;
+    private int node = -1;
+    private int remaining = 0;
+    private int end;
+
+    EdgeCursor(ByteBuffer graph, int size) throws IOException {
+      this.size = size;
+      degrees = graph.duplicate();
+      CircuitFormat.readVarint(degrees);
+      CircuitFormat.readVarint(degrees);
+      // The rows come right after the degrees
+      targets = degrees.duplicate();
+      for (int n = 0; n < size; n++) {
+        CircuitFormat.readVarint(targets);
+      }
+    }
+
+    public boolean advance() throws IOException {
+      while (remaining == 0) {
+        if (node + 1 >= size) {
+          return false;
+        }
+        node++;
+        remaining = CircuitFormat.readVarint(degrees);
+        end = 0;
+      }
+      remaining--;
+      end += CircuitFormat.readVarint(targets);
+      return true;
+    }
+
+    public int start() {
+      return node;
+    }
+
+    public int end() {
+      return end;
+    }
+  }
+}
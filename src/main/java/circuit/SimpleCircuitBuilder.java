@@ -1,8 +1,6 @@
 package circuit;
 
-import graph.Edge;
-import graph.GenerativeDirectedGraph;
-import graph.TwoWayDirectedGraph;
+import graph.CompactGraphBuilder;
 
 import java.util.ArrayList;
 
@@ -13,12 +11,12 @@ import java.util.ArrayList;
 public class SimpleCircuitBuilder {
   private ArrayList<Integer> inputs;
   private ArrayList<Integer> outputs;
-  private GenerativeDirectedGraph<Integer> redstone;
+  private CompactGraphBuilder redstone;
 
   public SimpleCircuitBuilder() {
     inputs = new ArrayList<Integer>();
     outputs = new ArrayList<Integer>();
-    redstone = GenerativeDirectedGraph.integerBase();
+    redstone = new CompactGraphBuilder();
   }
 
   public int addNode() {
@@ -30,7 +28,7 @@ public class SimpleCircuitBuilder {
   }
 
   public void addEdge(Integer start, Integer end) {
-    redstone.addEdge(new Edge<>(start, end));
+    redstone.addEdge(start, end);
   }
 
   public void registerInput(int inputNode) {
@@ -48,6 +46,6 @@ public class SimpleCircuitBuilder {
   }
 
   public Circuit toCircuit() {
-    return new Circuit(new TwoWayDirectedGraph<>(redstone), inputs.toArray(new Integer[0]), outputs.toArray(new Integer[0]));
+    return new Circuit(redstone.build(), inputs.toArray(new Integer[0]), outputs.toArray(new Integer[0]));
   }
 }
@@ -0,0 +1,359 @@
+package circuit.preconstructed;
+
+import circuit.AnnotatedCircuit;
+import circuit.CircuitFormat;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+import static misc.SettingsConstants.circuitCacheRoot;
+
+/**
+ * A content addressed directory of circuits, stored in {@code CircuitFormat}.
+ * <p>
+ * Entries are never overwritten or invalidated in place. Instead, everything a circuit was built from goes into its key
+ * (see {@code Key}), including the compiled code that built it, so changing a source or rebuilding with different code
+ * just makes lookups miss, and the stale entry is left behind unused.
+ * <p>
+ * A broken or unreadable entry counts as a miss. Failing to write an entry only costs the next run some time,
+ * so it is reported and otherwise ignored.
+ */
+public class CircuitCache {
+  /**
+   * Starts out disabled, so library code and tests always build circuits from the current sources.
+   * {@code NorCircuit} enables it.
+   */
+  public static final CircuitCache defaultCache = new CircuitCache(circuitCacheRoot, false);
+
+  private static final String CIRCUIT_EXTENSION = ".circuit";
+  private static final String DEPENDENCY_EXTENSION = ".deps";
+
+  private final Path directory;
+  private volatile boolean enabled;
+  /**
+   * Circuits are immutable, so their fingerprints only need to be computed once.
+   */
+  private final Map<AnnotatedCircuit, String> fingerprints = Collections.synchronizedMap(new WeakHashMap<AnnotatedCircuit, String>());
+
+  public CircuitCache(Path directory) {
+    this(directory, true);
+  }
+
+  public CircuitCache(Path directory, boolean enabled) {
+    this.directory = directory;
+    this.enabled = enabled;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * While disabled, every lookup misses and nothing is written.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public interface CircuitSource {
+    AnnotatedCircuit build() throws IOException;
+  }
+
+  /**
+   * @return The circuit stored under {@code key}, or {@code null} if there is none
+   */
+  public AnnotatedCircuit get(String key) {
+    if (!enabled) {
+      return null;
+    }
+    Path path = directory.resolve(key + CIRCUIT_EXTENSION);
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try {
+      return CircuitFormat.read(path);
+    } catch (IOException e) {
+      System.err.println("Ignoring unreadable cache entry " + path + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  public void put(String key, AnnotatedCircuit circuit) {
+    if (!enabled) {
+      return;
+    }
+    byte[] bytes = CircuitFormat.encode(circuit);
+    fingerprints.put(circuit, hex(sha256(bytes)));
+    writeAtomically(directory.resolve(key + CIRCUIT_EXTENSION), bytes);
+  }
+
+  public AnnotatedCircuit getOrBuild(String key, CircuitSource source) throws IOException {
+    AnnotatedCircuit circuit = get(key);
+    if (circuit == null) {
+      circuit = source.build();
+      put(key, circuit);
+    }
+    return circuit;
+  }
+
+  /**
+   * Looks up a circuit that was built from {@code sourceKey} plus some named circuits, which weren't known until it was built
+   * (e.g. a gate file and the circuits it calls).
+   * <p>
+   * The names are remembered under {@code sourceKey} by {@code putWithDependencies},
+   * and the entry is only used if each name still refers to a circuit with the same fingerprint.
+   *
+   * @return The cached circuit, or {@code null} if there is none
+   */
+  public AnnotatedCircuit getWithDependencies(String sourceKey, Map<String, AnnotatedCircuit> namedCircuits) {
+    if (!enabled) {
+      return null;
+    }
+    Path dependencyPath = directory.resolve(sourceKey + DEPENDENCY_EXTENSION);
+    if (!Files.isRegularFile(dependencyPath)) {
+      return null;
+    }
+    List<String> dependencies;
+    try {
+      dependencies = Files.readAllLines(dependencyPath, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return null;
+    }
+    String key = dependencyKey(sourceKey, dependencies, namedCircuits);
+    return key == null ? null : get(key);
+  }
+
+  public void putWithDependencies(String sourceKey, Collection<String> dependencies, Map<String, AnnotatedCircuit> namedCircuits, AnnotatedCircuit circuit) {
+    if (!enabled) {
+      return;
+    }
+    ArrayList<String> sorted = new ArrayList<String>(dependencies);
+    Collections.sort(sorted);
+    String key = dependencyKey(sourceKey, sorted, namedCircuits);
+    if (key == null) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String dependency : sorted) {
+      sb.append(dependency).append('\n');
+    }
+    writeAtomically(directory.resolve(sourceKey + DEPENDENCY_EXTENSION), sb.toString().getBytes(StandardCharsets.UTF_8));
+    put(key, circuit);
+  }
+
+  /**
+   * @return {@code null} if some dependency is missing from {@code namedCircuits}
+   */
+  private String dependencyKey(String sourceKey, List<String> dependencies, Map<String, AnnotatedCircuit> namedCircuits) {
+    Key key = new Key("dependencies").add(sourceKey);
+    for (String dependency : dependencies) {
+      AnnotatedCircuit circuit = namedCircuits.get(dependency);
+      if (circuit == null) {
+        return null;
+      }
+      key.add(dependency).add(fingerprint(circuit));
+    }
+    return key.toString();
+  }
+
+  /**
+   * @return A hash of the circuit's structure, ports and debug names
+   */
+  public String fingerprint(AnnotatedCircuit circuit) {
+    String r = fingerprints.get(circuit);
+    if (r == null) {
+      r = hex(sha256(CircuitFormat.encode(circuit)));
+      fingerprints.put(circuit, r);
+    }
+    return r;
+  }
+
+  /**
+   * Deletes every entry.
+   */
+  public void clear() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path path : entries) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(CIRCUIT_EXTENSION) || name.endsWith(DEPENDENCY_EXTENSION)) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes to a temporary file and renames it into place, so a reader never sees half an entry.
+   */
+  private void writeAtomically(Path path, byte[] bytes) {
+    try {
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, "entry", ".tmp");
+      try {
+        Files.write(temp, bytes);
+        try {
+          Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+          Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      System.err.println("Couldn't write cache entry " + path + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Builds a cache key by hashing everything that went into a circuit.
+   * The circuit file format version is always included, so bumping it drops every old entry.
+   */
+  public static class Key {
+    private final MessageDigest digest;
+
+    public Key(String kind) {
+      digest = newDigest();
+      add(kind);
+      add(CircuitFormat.VERSION);
+    }
+
+    public Key add(String s) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      add(bytes.length);
+      digest.update(bytes);
+      return this;
+    }
+
+    public Key add(int x) {
+      digest.update(new byte[]{(byte) (x >>> 24), (byte) (x >>> 16), (byte) (x >>> 8), (byte) x});
+      return this;
+    }
+
+    public Key add(boolean b) {
+      digest.update((byte) (b ? 1 : 0));
+      return this;
+    }
+
+    public Key add(byte[] bytes) {
+      add(bytes.length);
+      digest.update(bytes);
+      return this;
+    }
+
+    /**
+     * Adds the contents of a file, so the key changes whenever the file does.
+     */
+    public Key addFile(Path path) throws IOException {
+      return add(sha256(Files.readAllBytes(path)));
+    }
+
+    /**
+     * Adds a hash of all of the code {@code cls} was loaded with (its jar, or the whole class directory),
+     * so the key changes whenever any code that could have gone into building a circuit does.
+     */
+    public Key addCodeSource(Class<?> cls) throws IOException {
+      return add(codeSourceHash(cls));
+    }
+
+    /**
+     * Can only be called once.
+     */
+    public String toString() {
+      return hex(digest.digest());
+    }
+  }
+
+  /**
+   * The code doesn't change while it's running, so each code source is only hashed once.
+   */
+  private static final Map<Path, byte[]> codeSourceHashes = new HashMap<Path, byte[]>();
+
+  private static synchronized byte[] codeSourceHash(Class<?> cls) throws IOException {
+    CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      throw new IOException("Can't find the code " + cls.getName() + " was loaded from");
+    }
+    Path location;
+    try {
+      location = Paths.get(codeSource.getLocation().toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("Can't find the code " + cls.getName() + " was loaded from", e);
+    }
+    byte[] r = codeSourceHashes.get(location);
+    if (r == null) {
+      r = hashTree(location);
+      codeSourceHashes.put(location, r);
+    }
+    return r;
+  }
+
+  /**
+   * @return A hash of a file, or of the names and contents of every file under a directory, in a fixed order
+   */
+  private static byte[] hashTree(Path root) throws IOException {
+    if (!Files.isDirectory(root)) {
+      return sha256(Files.readAllBytes(root));
+    }
+    List<Path> files = new ArrayList<Path>();
+    try (Stream<Path> walk = Files.walk(root)) {
+      walk.filter(Files::isRegularFile).forEach(files::add);
+    }
+    List<String> names = new ArrayList<String>();
+    Map<String, Path> byName = new HashMap<String, Path>();
+    for (Path file : files) {
+      String name = root.relativize(file).toString().replace('\\', '/');
+      names.add(name);
+      byName.put(name, file);
+    }
+    Collections.sort(names);
+    Key key = new Key("code source");
+    for (String name : names) {
+      key.add(name).add(sha256(Files.readAllBytes(byName.get(name))));
+    }
+    return key.digest.digest();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Every JVM is required to support SHA-256", e);
+    }
+  }
+
+  private static byte[] sha256(byte[] bytes) {
+    return newDigest().digest(bytes);
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
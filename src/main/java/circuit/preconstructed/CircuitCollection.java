@@ -5,20 +5,34 @@ import circuit.preconstructed.exceptions.MissingCircuitDependencyException;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.AbstractMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Safe to use from several threads at once, e.g. by {@code CircuitFileLoader}.
+ */
 public class CircuitCollection {
-  private Map<String, AnnotatedCircuit> namedCircuits = new HashMap<String, AnnotatedCircuit>();
+  private Map<String, AnnotatedCircuit> namedCircuits = new ConcurrentHashMap<String, AnnotatedCircuit>();
+  /**
+   * Parsed circuit files are looked up here before being parsed again. See {@code loadFromFile}.
+   */
+  private volatile CircuitCache cache = CircuitCache.defaultCache;
+
+  public void setCache(CircuitCache cache) {
+    this.cache = cache;
+  }
 
   public void registerCircuit(String circuitName, AnnotatedCircuit circuit) {
-    if (namedCircuits.containsKey(circuitName)) {
+    if (namedCircuits.putIfAbsent(circuitName, circuit) != null) {
       throw new IllegalArgumentException("A circuit called \"" + circuitName + "\" has already been registered!");
     }
-    namedCircuits.put(circuitName, circuit);
   }
 
   Map<String, AnnotatedCircuit> getMap() {
@@ -41,7 +55,12 @@ public class CircuitCollection {
     String circuitName = getCircuitName(file);
     AnnotatedCircuit circuit = get(circuitName);
     if (circuit == null) {
-      circuit = loadFromFile(file, true, true);
+      circuit = loadFromFile(file, true, false);
+      // Another thread may have loaded the same file in the meantime
+      AnnotatedCircuit existing = namedCircuits.putIfAbsent(circuitName, circuit);
+      if (existing != null) {
+        circuit = existing;
+      }
     }
     return circuit;
   }
@@ -51,7 +70,7 @@ public class CircuitCollection {
     registerCircuit(name, circuit);
   }
 
-  private String getCircuitName(File file) {
+  static String getCircuitName(File file) {
     String fileName = file.getName();
     int dot = fileName.lastIndexOf('.');
     String circuitName;
@@ -63,10 +82,30 @@ public class CircuitCollection {
     return circuitName;
   }
 
+  /**
+   * If there is a cache, the parsed circuit is cached under the file's contents and the circuits it uses,
+   * so editing either the file or one of its dependencies means it gets parsed again.
+   */
   public AnnotatedCircuit loadFromFile(File file, boolean strict, boolean register) throws IOException, MissingCircuitDependencyException {
     String circuitName = getCircuitName(file);
+    byte[] source = Files.readAllBytes(file.toPath());
+
+    String sourceKey = null;
+    AnnotatedCircuit circuit = null;
+    if (cache != null) {
+      sourceKey = new CircuitCache.Key("gate file").add(GateFileParser.VERSION).addCodeSource(GateFileParser.class)
+          .add(strict).add(source).toString();
+      circuit = cache.getWithDependencies(sourceKey, namedCircuits);
+    }
 
-    AnnotatedCircuit circuit = GateFileParser.parse(namedCircuits, new LineIterator(new BufferedReader(new FileReader(file))), strict, circuitName);
+    if (circuit == null) {
+      RecordingMap dependencies = new RecordingMap(namedCircuits);
+      Iterator<String> lines = new LineIterator(new BufferedReader(new StringReader(new String(source))));
+      circuit = GateFileParser.parse(dependencies, lines, strict, circuitName);
+      if (cache != null) {
+        cache.putWithDependencies(sourceKey, dependencies.used, namedCircuits, circuit);
+      }
+    }
 
     if (register) {
       registerCircuit(circuitName, circuit);
@@ -75,6 +114,35 @@ public class CircuitCollection {
     return circuit;
   }
 
+  /**
+   * Remembers which circuits the parser looked up.
+   */
+  private static class RecordingMap extends AbstractMap<String, AnnotatedCircuit> {
+    private final Map<String, AnnotatedCircuit> map;
+    final Set<String> used = new TreeSet<String>();
+
+    RecordingMap(Map<String, AnnotatedCircuit> map) {
+      this.map = map;
+    }
+
+    @Override
+    public AnnotatedCircuit get(Object key) {
+      used.add((String) key);
+      return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      used.add((String) key);
+      return map.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<String, AnnotatedCircuit>> entrySet() {
+      return map.entrySet();
+    }
+  }
+
   private static class LineIterator implements Iterator<String> {
     private String nextLine;
     private BufferedReader reader;
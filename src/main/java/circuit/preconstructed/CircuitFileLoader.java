@@ -0,0 +1,174 @@
+package circuit.preconstructed;
+
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.exceptions.MissingCircuitDependencyException;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static misc.SettingsConstants.circuitRoot;
+
+/**
+ * Loads circuit files into a {@code CircuitCollection}, along with everything they import
+ * (see {@code GateFileParser.scanImports}).
+ * <p>
+ * The imports are followed first, to build the dependency DAG of the files. Then each file is parsed on the executor
+ * as soon as everything it imports has been registered, and is registered as soon as it has been parsed.
+ * Independent files are parsed at the same time, so the wall clock time grows with the depth of the DAG,
+ * rather than the number of files.
+ * <p>
+ * Imports are paths relative to the library root. A file whose circuit name has already been registered
+ * is not loaded again (as with {@code CircuitCollection.getOrLoad}).
+ */
+public class CircuitFileLoader {
+  private final CircuitCollection collection;
+  private final Path libraryRoot;
+  private final Executor executor;
+
+  public CircuitFileLoader(CircuitCollection collection) {
+    this(collection, circuitRoot, ForkJoinPool.commonPool());
+  }
+
+  public CircuitFileLoader(CircuitCollection collection, Path libraryRoot, Executor executor) {
+    this.collection = collection;
+    this.libraryRoot = normalize(libraryRoot);
+    this.executor = executor;
+  }
+
+  /**
+   * @param files Paths relative to the library root
+   */
+  public List<AnnotatedCircuit> load(String... files) throws IOException, MissingCircuitDependencyException {
+    Path[] paths = new Path[files.length];
+    for (int i = 0; i < files.length; i++) {
+      paths[i] = libraryRoot.resolve(files[i]);
+    }
+    return load(paths);
+  }
+
+  /**
+   * @return The circuits for {@code files}, in order
+   */
+  public List<AnnotatedCircuit> load(Path... files) throws IOException, MissingCircuitDependencyException {
+    LinkedHashMap<Path, FileNode> order = new LinkedHashMap<Path, FileNode>();
+    HashMap<String, Path> names = new HashMap<String, Path>();
+    ArrayList<Path> roots = new ArrayList<Path>();
+    for (Path file : files) {
+      Path key = normalize(file);
+      roots.add(key);
+      scan(key, null, order, new ArrayList<Path>(), names);
+    }
+
+    // order holds every file after its imports, so their futures already exist when it is reached
+    HashMap<Path, CompletableFuture<AnnotatedCircuit>> futures = new HashMap<Path, CompletableFuture<AnnotatedCircuit>>();
+    for (FileNode node : order.values()) {
+      AnnotatedCircuit existing = collection.get(node.name);
+      if (existing != null) {
+        futures.put(node.path, CompletableFuture.completedFuture(existing));
+        continue;
+      }
+      CompletableFuture<?>[] imports = new CompletableFuture<?>[node.imports.size()];
+      for (int i = 0; i < imports.length; i++) {
+        imports[i] = futures.get(node.imports.get(i));
+      }
+      futures.put(node.path, CompletableFuture.allOf(imports).thenApplyAsync(ignored -> parse(node), executor));
+    }
+
+    ArrayList<AnnotatedCircuit> r = new ArrayList<AnnotatedCircuit>();
+    try {
+      for (Path root : roots) {
+        r.add(futures.get(root).join());
+      }
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof MissingCircuitDependencyException) {
+        throw (MissingCircuitDependencyException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+    return r;
+  }
+
+  private AnnotatedCircuit parse(FileNode node) {
+    try {
+      return collection.getOrLoad(node.path.toFile());
+    } catch (IOException | MissingCircuitDependencyException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Depth first, adding each file to {@code order} once all of its imports are there.
+   *
+   * @param stack The chain of imports leading to {@code path}, for finding cycles
+   */
+  private void scan(Path path, Path importedBy, Map<Path, FileNode> order, List<Path> stack, Map<String, Path> names) throws IOException {
+    if (order.containsKey(path)) {
+      return;
+    }
+    int cycleStart = stack.indexOf(path);
+    if (cycleStart != -1) {
+      StringBuilder sb = new StringBuilder("Circular import: ");
+      for (Path p : stack.subList(cycleStart, stack.size())) {
+        sb.append(libraryRoot.relativize(p)).append(" -> ");
+      }
+      sb.append(libraryRoot.relativize(path));
+      throw new IllegalArgumentException(sb.toString());
+    }
+
+    String name = CircuitCollection.getCircuitName(path.toFile());
+    Path other = names.put(name, path);
+    if (other != null && !other.equals(path)) {
+      throw new IllegalArgumentException("Both " + other + " and " + path + " would be called \"" + name + "\"");
+    }
+
+    List<String> importStrings;
+    try {
+      importStrings = GateFileParser.scanImports(Files.readAllLines(path, Charset.defaultCharset()).iterator());
+    } catch (NoSuchFileException e) {
+      throw new NoSuchFileException(path.toString(), null, importedBy == null ? null : "imported by " + importedBy);
+    }
+
+    FileNode node = new FileNode(path, name);
+    stack.add(path);
+    for (String importString : importStrings) {
+      Path imported = normalize(libraryRoot.resolve(importString));
+      node.imports.add(imported);
+      scan(imported, path, order, stack, names);
+    }
+    stack.remove(stack.size() - 1);
+
+    order.put(path, node);
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  private static class FileNode {
+    final Path path;
+    final String name;
+    final List<Path> imports = new ArrayList<Path>();
+
+    FileNode(Path path, String name) {
+      this.path = path;
+      this.name = name;
+    }
+  }
+}
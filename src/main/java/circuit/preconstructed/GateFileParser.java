@@ -10,15 +10,23 @@ import circuit.preconstructed.exceptions.MissingCircuitDependencyException;
 import circuit.preconstructed.exceptions.StrictCheckException;
 import tokens.Tokenizer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
  * public facing functions: registerCircuit, parse
  */
 public class GateFileParser {
+  /**
+   * Part of the key gate files are cached under (see {@code CircuitCollection.loadFromFile}).
+   * Bump it when the same file starts meaning a different circuit.
+   */
+  public static final int VERSION = 1;
+
   /**
    * @param lines
    * @param strict
@@ -43,6 +51,35 @@ public class GateFileParser {
     return parse(namedCircuits, new ArrayIter<String>(lines), strict, registerName);
   }
 
+  private static final String IMPORT_PREFIX = "import ";
+
+  /**
+   * A file may start with any number of import lines (before the input line), such as {@code import specialized/xor3.txt}.
+   * The parser itself ignores them; they tell {@code CircuitFileLoader} what to load first.
+   *
+   * @return The imported paths, in order
+   */
+  public static List<String> scanImports(Iterator<String> lines) {
+    ArrayList<String> imports = new ArrayList<String>();
+    Iterator<String> filtered = new LineFilterIterator(lines);
+    while (filtered.hasNext()) {
+      String line = filtered.next().trim();
+      if (!isImport(line)) {
+        break;
+      }
+      String path = line.substring(IMPORT_PREFIX.length()).trim();
+      if (path.isEmpty()) {
+        throw new IllegalArgumentException("Import line with nothing to import: \"" + line + "\"");
+      }
+      imports.add(path);
+    }
+    return imports;
+  }
+
+  private static boolean isImport(String line) {
+    return line.startsWith(IMPORT_PREFIX);
+  }
+
   private Map<String, AnnotatedCircuit> namedCircuits;
   private HashMap<String, String> nameMapping;
   private HashMap<String, BitCollection> bitCollections;
@@ -368,7 +405,11 @@ public class GateFileParser {
   }
 
   private DebugCircuit parseFile() throws MissingCircuitDependencyException {
-    this.parseInitialBoundaryLine(lines.next(), strict);
+    String firstLine = lines.next();
+    while (isImport(firstLine.trim())) {
+      firstLine = lines.next();
+    }
+    this.parseInitialBoundaryLine(firstLine, strict);
 
     String line = lines.next();
     while (lines.hasNext()) {
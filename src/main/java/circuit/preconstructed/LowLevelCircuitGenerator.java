@@ -16,8 +16,13 @@ import java.util.Map;
 import static misc.SettingsConstants.circuitRoot;
 
 public class LowLevelCircuitGenerator {
+  /**
+   * The gate files that the cached generators read, directly or indirectly.
+   */
+  private static final String[] GENERATOR_SOURCES = {"xor.txt", "if.txt", "specialized/xor3.txt", "specialized/atLeast2.txt"};
 
   private CircuitCollection circuitCollection;
+  private CircuitCache cache = CircuitCache.defaultCache;
   public final static LowLevelCircuitGenerator canonicalGenerator = new LowLevelCircuitGenerator();
 
   private LowLevelCircuitGenerator() {
@@ -31,8 +36,8 @@ public class LowLevelCircuitGenerator {
     cc.registerCircuit("and", and());
     cc.registerCircuit("or", or());
     try {
-      cc.loadFromFile(new File(circuitRoot + "xor.txt"), true, true);
-      cc.loadFromFile(new File(circuitRoot + "if.txt"), true, true);
+      cc.loadFromFile(circuitRoot.resolve("xor.txt").toFile(), true, true);
+      cc.loadFromFile(circuitRoot.resolve("if.txt").toFile(), true, true);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -45,7 +50,7 @@ public class LowLevelCircuitGenerator {
 
     AnnotatedCircuit xor;
     try {
-      xor = circuitCollection.loadFromFile(new File(circuitRoot + "xor.txt"), true, false);
+      xor = circuitCollection.loadFromFile(circuitRoot.resolve("xor.txt").toFile(), true, false);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -67,6 +72,26 @@ public class LowLevelCircuitGenerator {
     return cc;
   }
 
+  /**
+   * Large generated circuits (see {@code addition} and {@code multiplication}) are looked up here before being built.
+   * {@code null} turns caching off.
+   */
+  public void setCache(CircuitCache cache) {
+    this.cache = cache;
+    circuitCollection.setCache(cache);
+  }
+
+  private AnnotatedCircuit cached(String generatorName, int bitLength, CircuitCache.CircuitSource source) throws IOException {
+    if (cache == null || !cache.isEnabled()) {
+      return source.build();
+    }
+    CircuitCache.Key key = new CircuitCache.Key("generator").add(generatorName).add(bitLength).addCodeSource(LowLevelCircuitGenerator.class);
+    for (String file : GENERATOR_SOURCES) {
+      key.add(file).addFile(circuitRoot.resolve(file));
+    }
+    return cache.getOrBuild(key.toString(), source);
+  }
+
   private static <K, V> Map<K, V> copyMap(Map<K, V> map) {
     HashMap<K, V> r = new HashMap<K, V>();
     for (K key : map.keySet()) {
@@ -584,7 +609,11 @@ public class LowLevelCircuitGenerator {
   /**
    * Assumes two inputs of equal size
    */
-  public AnnotatedCircuit multiplication(int bitLength) throws IOException {
+  public AnnotatedCircuit multiplication(final int bitLength) throws IOException {
+    return cached("multiplication", bitLength, () -> buildMultiplication(bitLength));
+  }
+
+  private AnnotatedCircuit buildMultiplication(int bitLength) throws IOException {
     AnnotationCircuitBuilder acb = new AnnotationCircuitBuilder();
 
     int additiveItem = acb.addCircuit(identity(bitLength));
@@ -627,7 +656,11 @@ public class LowLevelCircuitGenerator {
   /**
    * Assumes two inputs of equal size
    */
-  public AnnotatedCircuit addition(int size) throws IOException {
+  public AnnotatedCircuit addition(final int size) throws IOException {
+    return cached("addition", size, () -> buildAddition(size));
+  }
+
+  private AnnotatedCircuit buildAddition(int size) throws IOException {
     // first set of nodes is input
     // next set of nodes is output
     // next set of nodes is carry bit for that column
@@ -635,8 +668,8 @@ public class LowLevelCircuitGenerator {
     AnnotatedCircuit xor3;
     AnnotatedCircuit atLeast2;
     try {
-      xor3 = circuitCollection.getOrLoad(new File(circuitRoot + "specialized/xor3.txt"));
-      atLeast2 = circuitCollection.getOrLoad(new File(circuitRoot + "specialized/atLeast2.txt"));
+      xor3 = circuitCollection.getOrLoad(circuitRoot.resolve("specialized/xor3.txt").toFile());
+      atLeast2 = circuitCollection.getOrLoad(circuitRoot.resolve("specialized/atLeast2.txt").toFile());
     } catch (MissingCircuitDependencyException e) {
       throw new RuntimeException("Missing a basic logic gate somehow?", e);
     }
@@ -0,0 +1,221 @@
+package circuit.simulation;
+
+import circuit.Circuit;
+import graph.CompactGraph;
+import graph.Levelization;
+
+/**
+ * Simulates 64 input vectors of a {@code Circuit} at once.
+ * <p>
+ * Evaluates in the order of {@code Circuit.getLevelization()}, which is worked out once and shared.
+ * After that, each pass over the circuit is a single sweep over primitive arrays,
+ * where bit {@code k} of every {@code long} word belongs to input vector {@code k}.
+ * <p>
+ * Recall that a node is true iff any of its inputs is false.
+ * So a node's word is the OR of the complements of its inputs' words,
+ * and a node without any inputs is always false (see {@code Circuit.emptyInputs()}).
+ * <p>
+ * Immutable, so a single simulator can be shared between threads,
+ * as long as each thread uses its own state array (see {@code newState()}).
+ */
+public class BitParallelSimulator implements PackedSimulator {
+  private final int size;
+  private final int[] inputs;
+  private final int[] outputs;
+  /**
+   * The non-input nodes of the circuit, in an order where each node comes after all of its inputs.
+   */
+  private final int[] order;
+  /**
+   * The inputs of {@code order[k]} are {@code fanIn[fanInStart[k]]} to {@code fanIn[fanInStart[k + 1] - 1]}.
+   */
+  private final int[] fanInStart;
+  private final int[] fanIn;
+
+  public BitParallelSimulator(Circuit circuit) {
+    CompactGraph redstone = circuit.getCompactGraph();
+    size = circuit.size();
+    inputs = toIntArray(circuit.getInputs());
+    outputs = toIntArray(circuit.getOutputs());
+
+    boolean[] isInput = new boolean[size];
+    for (int i : inputs) {
+      isInput[i] = true;
+    }
+
+    Levelization levelization = circuit.getLevelization();
+    order = new int[size - countTrue(isInput)];
+    fanInStart = new int[order.length + 1];
+    int edgeCount = 0;
+    for (int node = 0; node < size; node++) {
+      if (!isInput[node]) {
+        edgeCount += redstone.inDegree(node);
+      }
+    }
+    fanIn = new int[edgeCount];
+    int k = 0;
+    int e = 0;
+    for (int i = 0; i < levelization.orderSize(); i++) {
+      int node = levelization.node(i);
+      if (isInput[node]) {
+        continue;
+      }
+      order[k] = node;
+      fanInStart[k] = e;
+      for (int j = 0; j < redstone.inDegree(node); j++) {
+        fanIn[e++] = redstone.inNeighbor(node, j);
+      }
+      k++;
+    }
+    fanInStart[k] = e;
+  }
+
+  private static int[] toIntArray(Integer[] arr) {
+    int[] r = new int[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      r[i] = arr[i];
+    }
+    return r;
+  }
+
+  private static int countTrue(boolean[] arr) {
+    int r = 0;
+    for (boolean b : arr) {
+      if (b) {
+        r++;
+      }
+    }
+    return r;
+  }
+
+  public int inputSize() {
+    return inputs.length;
+  }
+
+  public int outputSize() {
+    return outputs.length;
+  }
+
+  public long[] newState() {
+    return new long[size];
+  }
+
+  public void simulate(long[] inputWords, long[] state, long[] outputWords) {
+    if (inputWords.length != inputs.length) {
+      throw new UnsupportedOperationException("Invalid input length: Got " + inputWords.length + " words when the circuit needed " + inputs.length + "!");
+    }
+    propagate(inputWords, state);
+    for (int i = 0; i < outputs.length; i++) {
+      outputWords[i] = state[outputs[i]];
+    }
+  }
+
+  /**
+   * Like {@code simulate(long[], long[], long[])}, but only fills in {@code state}.
+   */
+  public void propagate(long[] inputWords, long[] state) {
+    for (int i = 0; i < inputs.length; i++) {
+      state[inputs[i]] = inputWords[i];
+    }
+    for (int k = 0; k < order.length; k++) {
+      long word = 0L;
+      for (int e = fanInStart[k]; e < fanInStart[k + 1]; e++) {
+        word |= ~state[fanIn[e]];
+      }
+      state[order[k]] = word;
+    }
+  }
+
+  /**
+   * @return One word per output bit. Bit {@code k} of output {@code i} is the value of output {@code i} given input vector {@code k}.
+   */
+  public long[] simulate(long[] inputWords) {
+    long[] r = new long[outputs.length];
+    simulate(inputWords, newState(), r);
+    return r;
+  }
+
+  /**
+   * Single vector convenience method. Gives the same results as {@code Circuit.simulate}.
+   */
+  public boolean[] simulate(boolean[] input) {
+    long[] words = new long[input.length];
+    for (int i = 0; i < input.length; i++) {
+      words[i] = input[i] ? 1L : 0L;
+    }
+    long[] outputWords = simulate(words);
+
+    boolean[] r = new boolean[outputWords.length];
+    for (int i = 0; i < r.length; i++) {
+      r[i] = (outputWords[i] & 1L) != 0;
+    }
+    return r;
+  }
+
+  /**
+   * Transposes up to 64 input vectors into one word per input bit.
+   *
+   * @param vectors {@code vectors[k][i]} is bit {@code i} of vector {@code k}
+   */
+  public static long[] pack(boolean[][] vectors) {
+    if (vectors.length > Long.SIZE) {
+      throw new IllegalArgumentException("Can only pack " + Long.SIZE + " vectors at a time, got " + vectors.length);
+    }
+    int width = vectors.length == 0 ? 0 : vectors[0].length;
+    long[] r = new long[width];
+    for (int k = 0; k < vectors.length; k++) {
+      for (int i = 0; i < width; i++) {
+        if (vectors[k][i]) {
+          r[i] |= 1L << k;
+        }
+      }
+    }
+    return r;
+  }
+
+  /**
+   * The inverse of {@code pack}.
+   *
+   * @param count The number of vectors to extract
+   */
+  public static boolean[][] unpack(long[] words, int count) {
+    boolean[][] r = new boolean[count][words.length];
+    for (int k = 0; k < count; k++) {
+      for (int i = 0; i < words.length; i++) {
+        r[k][i] = (words[i] & (1L << k)) != 0;
+      }
+    }
+    return r;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int[] getInputs() {
+    return inputs;
+  }
+
+  int[] getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * Only to be read by other simulators in this package.
+   */
+  int[] getOrder() {
+    return order;
+  }
+
+  int[] getFanInStart() {
+    return fanInStart;
+  }
+
+  int[] getFanIn() {
+    return fanIn;
+  }
+
+  public String toString() {
+    return "BitParallelSimulator: " + size + " nodes (" + order.length + " computed), " + fanIn.length + " edges";
+  }
+}
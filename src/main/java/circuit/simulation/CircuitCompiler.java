@@ -0,0 +1,195 @@
+package circuit.simulation;
+
+import circuit.Circuit;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static circuit.simulation.ClassFileWriter.*;
+
+/**
+ * Turns a circuit into generated JVM classes, each node becoming straight-line bitwise operations on a {@code long[]}.
+ * <p>
+ * For a node {@code n} with inputs {@code a, b, c}, the generated code is
+ * {@code s[n] = ~(s[a] & s[b] & s[c]);}, which is the bit-parallel form of
+ * "a node is true iff any of its inputs is false".
+ * <p>
+ * Nodes are emitted in the levelized order of {@code BitParallelSimulator}.
+ * They are split over many small static methods, since HotSpot refuses to JIT
+ * methods longer than 8000 bytes, and over several classes, since each
+ * class has its own 65535 entry constant pool.
+ * <p>
+ * You probably want {@code Circuit.getCompiledCircuit()}, which caches the result.
+ */
+public class CircuitCompiler {
+  private static final String PACKAGE = "circuit/simulation/generated/";
+  private static final String PART_INTERFACE = "circuit/simulation/CompiledCircuit$Part";
+  private static final String CHUNK_DESCRIPTOR = "([J)V";
+  /**
+   * Stays under HotSpot's {@code HugeMethodLimit}.
+   */
+  private static final int MAX_CHUNK_BYTES = 7000;
+  /**
+   * The most inputs of a single node that get ANDed together in one method.
+   * Bigger nodes are accumulated into their own slot over several methods.
+   */
+  private static final int MAX_GROUP_SIZE = 1000;
+  /**
+   * Upper bound on the bytes emitted per node input: aload_0, ldc_w, laload, land
+   */
+  private static final int MAX_BYTES_PER_INPUT = 6;
+  private static final int MAX_CHUNKS_PER_CLASS = 256;
+  private static final int MAX_POOL_SIZE = 60000;
+
+  private static final AtomicInteger compiledCount = new AtomicInteger();
+
+  public static CompiledCircuit compile(Circuit circuit) {
+    return compile(circuit.getBitParallelSimulator());
+  }
+
+  public static CompiledCircuit compile(BitParallelSimulator simulator) {
+    String classPrefix = PACKAGE + "CompiledCircuit" + compiledCount.getAndIncrement() + "Part";
+    int[] order = simulator.getOrder();
+    int[] fanInStart = simulator.getFanInStart();
+    int[] fanIn = simulator.getFanIn();
+
+    PartLoader loader = new PartLoader(CompiledCircuit.class.getClassLoader());
+    ArrayList<CompiledCircuit.Part> parts = new ArrayList<>();
+
+    PartWriter writer = new PartWriter(classPrefix + parts.size());
+    for (int k = 0; k < order.length; k++) {
+      int node = order[k];
+      int start = fanInStart[k];
+      int end = fanInStart[k + 1];
+      do {
+        int groupEnd = Math.min(end, start + MAX_GROUP_SIZE);
+        if (!writer.fits(groupEnd - start)) {
+          writer.finishChunk();
+          if (writer.isFull()) {
+            parts.add(writer.load(loader));
+            writer = new PartWriter(classPrefix + parts.size());
+          }
+        }
+        writer.emitGroup(node, fanIn, start, groupEnd, start == fanInStart[k], groupEnd == end);
+        start = groupEnd;
+      } while (start < end);
+    }
+    writer.finishChunk();
+    if (writer.hasChunks()) {
+      parts.add(writer.load(loader));
+    }
+
+    return new CompiledCircuit(simulator.size(), simulator.getInputs(), simulator.getOutputs(), parts.toArray(new CompiledCircuit.Part[0]));
+  }
+
+  /**
+   * Accumulates static chunk methods into a single generated class.
+   */
+  private static class PartWriter {
+    private final String className;
+    private final ClassFileWriter classFile;
+    private final int allOnes;
+    private ArrayList<String> chunkNames;
+    private ClassFileWriter.Code chunk;
+
+    PartWriter(String className) {
+      this.className = className;
+      classFile = new ClassFileWriter(className, PART_INTERFACE);
+      allOnes = classFile.longConstant(-1L);
+      chunkNames = new ArrayList<>();
+      chunk = new ClassFileWriter.Code();
+    }
+
+    boolean fits(int groupSize) {
+      return chunk.length() + (groupSize + 1) * MAX_BYTES_PER_INPUT + 16 <= MAX_CHUNK_BYTES;
+    }
+
+    boolean isFull() {
+      return chunkNames.size() >= MAX_CHUNKS_PER_CLASS || classFile.poolSize() >= MAX_POOL_SIZE;
+    }
+
+    boolean hasChunks() {
+      return !chunkNames.isEmpty();
+    }
+
+    /**
+     * Emits {@code s[node] = ~(s[fanIn[start]] & ... & s[fanIn[end - 1]])}, or the part of it given by {@code first} and {@code last}.
+     * When a node's fan-in is split into several groups, the running AND is kept in {@code s[node]}.
+     */
+    void emitGroup(int node, int[] fanIn, int start, int end, boolean first, boolean last) {
+      chunk.op(ALOAD_0);
+      classFile.pushInt(chunk, node);
+      if (first && start == end) {
+        chunk.op(LCONST_0);
+      } else {
+        boolean empty = true;
+        if (!first) {
+          loadWord(node);
+          empty = false;
+        }
+        for (int e = start; e < end; e++) {
+          loadWord(fanIn[e]);
+          if (!empty) {
+            chunk.op(LAND);
+          }
+          empty = false;
+        }
+        if (last) {
+          chunk.op(LDC2_W);
+          chunk.u2(allOnes);
+          chunk.op(LXOR);
+        }
+      }
+      chunk.op(LASTORE);
+    }
+
+    private void loadWord(int node) {
+      chunk.op(ALOAD_0);
+      classFile.pushInt(chunk, node);
+      chunk.op(LALOAD);
+    }
+
+    void finishChunk() {
+      if (chunk.length() == 0) {
+        return;
+      }
+      chunk.op(RETURN);
+      String name = "chunk" + chunkNames.size();
+      // Stack: array, index, long, long
+      classFile.addMethod(ACC_PRIVATE | ACC_STATIC, name, CHUNK_DESCRIPTOR, 6, 1, chunk);
+      chunkNames.add(name);
+      chunk = new ClassFileWriter.Code();
+    }
+
+    CompiledCircuit.Part load(PartLoader loader) {
+      ClassFileWriter.Code evaluate = new ClassFileWriter.Code();
+      for (String name : chunkNames) {
+        evaluate.op(ALOAD_1);
+        evaluate.op(INVOKESTATIC);
+        evaluate.u2(classFile.methodConstant(classFile.thisClass(), name, CHUNK_DESCRIPTOR));
+      }
+      evaluate.op(RETURN);
+      classFile.addMethod(ACC_PUBLIC, "evaluate", CHUNK_DESCRIPTOR, 1, 2, evaluate);
+      classFile.addDefaultConstructor();
+
+      try {
+        return (CompiledCircuit.Part) loader.define(className.replace('/', '.'), classFile.toByteArray()).getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Generated class " + className + " could not be instantiated", e);
+      }
+    }
+  }
+
+  /**
+   * One loader per compiled circuit, so the generated classes can be unloaded along with it.
+   */
+  private static class PartLoader extends ClassLoader {
+    PartLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
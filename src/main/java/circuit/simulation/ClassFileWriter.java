@@ -0,0 +1,287 @@
+package circuit.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Just enough of the class file format to emit straight-line methods.
+ * <p>
+ * Since none of the emitted methods branch, no stack map frames are needed.
+ * See the JVM specification, chapter 4.
+ */
+class ClassFileWriter {
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_PRIVATE = 0x0002;
+  static final int ACC_STATIC = 0x0008;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  static final int ICONST_0 = 0x03;
+  static final int LCONST_0 = 0x09;
+  static final int BIPUSH = 0x10;
+  static final int SIPUSH = 0x11;
+  static final int LDC = 0x12;
+  static final int LDC_W = 0x13;
+  static final int LDC2_W = 0x14;
+  static final int ALOAD_0 = 0x2a;
+  static final int ALOAD_1 = 0x2b;
+  static final int LALOAD = 0x2f;
+  static final int LASTORE = 0x50;
+  static final int LAND = 0x7f;
+  static final int LXOR = 0x83;
+  static final int RETURN = 0xb1;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC = 0xb8;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private ByteArrayOutputStream poolBytes;
+  private DataOutputStream pool;
+  /**
+   * The next free constant pool index. Index 0 is never used.
+   */
+  private int poolSize;
+  private Map<String, Integer> poolIndices;
+
+  private ByteArrayOutputStream methodBytes;
+  private DataOutputStream methods;
+  private int methodCount;
+
+  private final int thisClass;
+  private final int superClass;
+  private final int[] interfaces;
+  private final int codeName;
+
+  /**
+   * @param className  Internal name, e.g. {@code "circuit/simulation/generated/Foo"}
+   * @param interfaces Internal names of the interfaces the class implements
+   */
+  ClassFileWriter(String className, String... interfaces) {
+    poolBytes = new ByteArrayOutputStream();
+    pool = new DataOutputStream(poolBytes);
+    poolSize = 1;
+    poolIndices = new HashMap<>();
+    methodBytes = new ByteArrayOutputStream();
+    methods = new DataOutputStream(methodBytes);
+    methodCount = 0;
+
+    thisClass = classConstant(className);
+    superClass = classConstant("java/lang/Object");
+    this.interfaces = new int[interfaces.length];
+    for (int i = 0; i < interfaces.length; i++) {
+      this.interfaces[i] = classConstant(interfaces[i]);
+    }
+    codeName = utf8Constant("Code");
+  }
+
+  /**
+   * @return The number of constant pool slots used so far
+   */
+  int poolSize() {
+    return poolSize;
+  }
+
+  int thisClass() {
+    return thisClass;
+  }
+
+  private interface PoolEntryWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private int constant(String key, int slots, PoolEntryWriter writer) {
+    Integer index = poolIndices.get(key);
+    if (index == null) {
+      index = poolSize;
+      try {
+        writer.write(pool);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      poolSize += slots;
+      poolIndices.put(key, index);
+    }
+    return index;
+  }
+
+  int utf8Constant(final String s) {
+    return constant("Utf8 " + s, 1, out -> {
+      out.writeByte(CONSTANT_UTF8);
+      out.writeUTF(s);
+    });
+  }
+
+  int intConstant(final int x) {
+    return constant("Integer " + x, 1, out -> {
+      out.writeByte(CONSTANT_INTEGER);
+      out.writeInt(x);
+    });
+  }
+
+  int longConstant(final long x) {
+    return constant("Long " + x, 2, out -> {
+      out.writeByte(CONSTANT_LONG);
+      out.writeLong(x);
+    });
+  }
+
+  int classConstant(String internalName) {
+    final int name = utf8Constant(internalName);
+    return constant("Class " + internalName, 1, out -> {
+      out.writeByte(CONSTANT_CLASS);
+      out.writeShort(name);
+    });
+  }
+
+  int methodConstant(int owner, String name, String descriptor) {
+    final int nameIndex = utf8Constant(name);
+    final int descriptorIndex = utf8Constant(descriptor);
+    final int nameAndType = constant("NameAndType " + name + " " + descriptor, 1, out -> {
+      out.writeByte(CONSTANT_NAME_AND_TYPE);
+      out.writeShort(nameIndex);
+      out.writeShort(descriptorIndex);
+    });
+    return constant("Methodref " + owner + " " + name + " " + descriptor, 1, out -> {
+      out.writeByte(CONSTANT_METHODREF);
+      out.writeShort(owner);
+      out.writeShort(nameAndType);
+    });
+  }
+
+  void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, Code code) {
+    int nameIndex = utf8Constant(name);
+    int descriptorIndex = utf8Constant(descriptor);
+    byte[] bytes = code.toByteArray();
+    if (bytes.length > 0xffff) {
+      throw new IllegalArgumentException("Method " + name + " is too long: " + bytes.length + " bytes");
+    }
+    try {
+      methods.writeShort(access);
+      methods.writeShort(nameIndex);
+      methods.writeShort(descriptorIndex);
+      methods.writeShort(1);
+      methods.writeShort(codeName);
+      methods.writeInt(12 + bytes.length);
+      methods.writeShort(maxStack);
+      methods.writeShort(maxLocals);
+      methods.writeInt(bytes.length);
+      methods.write(bytes);
+      methods.writeShort(0); // exception table
+      methods.writeShort(0); // attributes
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    methodCount++;
+  }
+
+  /**
+   * Adds a public no-argument constructor which just calls {@code Object()}.
+   */
+  void addDefaultConstructor() {
+    int objectInit = methodConstant(superClass, "<init>", "()V");
+    Code code = new Code();
+    code.op(ALOAD_0);
+    code.op(INVOKESPECIAL);
+    code.u2(objectInit);
+    code.op(RETURN);
+    addMethod(ACC_PUBLIC, "<init>", "()V", 1, 1, code);
+  }
+
+  byte[] toByteArray() {
+    if (poolSize > 0xffff) {
+      throw new IllegalStateException("Constant pool overflow: " + poolSize + " entries");
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(0xcafebabe);
+      out.writeShort(0); // minor version
+      out.writeShort(52); // Java 8
+      out.writeShort(poolSize);
+      poolBytes.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(interfaces.length);
+      for (int i : interfaces) {
+        out.writeShort(i);
+      }
+      out.writeShort(0); // fields
+      out.writeShort(methodCount);
+      methodBytes.writeTo(out);
+      out.writeShort(0); // attributes
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * A growable bytecode buffer.
+   */
+  static class Code {
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+
+    int length() {
+      return length;
+    }
+
+    void op(int opcode) {
+      u1(opcode);
+    }
+
+    void u1(int b) {
+      if (length == bytes.length) {
+        byte[] grown = new byte[bytes.length * 2];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+      }
+      bytes[length++] = (byte) b;
+    }
+
+    void u2(int s) {
+      u1(s >> 8);
+      u1(s);
+    }
+
+    byte[] toByteArray() {
+      byte[] r = new byte[length];
+      System.arraycopy(bytes, 0, r, 0, length);
+      return r;
+    }
+  }
+
+  /**
+   * Pushes an int using the shortest available instruction.
+   */
+  void pushInt(Code code, int x) {
+    if (-1 <= x && x <= 5) {
+      code.op(ICONST_0 + x);
+    } else if (Byte.MIN_VALUE <= x && x <= Byte.MAX_VALUE) {
+      code.op(BIPUSH);
+      code.u1(x);
+    } else if (Short.MIN_VALUE <= x && x <= Short.MAX_VALUE) {
+      code.op(SIPUSH);
+      code.u2(x);
+    } else {
+      int index = intConstant(x);
+      if (index <= 0xff) {
+        code.op(LDC);
+        code.u1(index);
+      } else {
+        code.op(LDC_W);
+        code.u2(index);
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package circuit.simulation;
+
+/**
+ * A circuit which has been compiled into JVM bytecode by {@code CircuitCompiler}.
+ * <p>
+ * Gives the same results as {@code BitParallelSimulator}, but each node is a
+ * straight-line sequence of {@code long} operations instead of a loop over its fan-in,
+ * so the JIT can compile the whole circuit into branch-free machine code.
+ * <p>
+ * Immutable, so a single compiled circuit can be shared between threads,
+ * as long as each thread uses its own state array (see {@code newState()}).
+ */
+public class CompiledCircuit implements PackedSimulator {
+  private final int size;
+  private final int[] inputs;
+  private final int[] outputs;
+  /**
+   * Evaluated in order. Each one evaluates a contiguous run of the levelized nodes.
+   */
+  private final Part[] parts;
+
+  /**
+   * Implemented by the generated classes.
+   * Needs to be public, since the generated classes live in their own class loader.
+   */
+  public interface Part {
+    /**
+     * Computes the word of every node in this part, given that every node before it has been computed.
+     */
+    void evaluate(long[] state);
+  }
+
+  CompiledCircuit(int size, int[] inputs, int[] outputs, Part[] parts) {
+    this.size = size;
+    this.inputs = inputs;
+    this.outputs = outputs;
+    this.parts = parts;
+  }
+
+  public int inputSize() {
+    return inputs.length;
+  }
+
+  public int outputSize() {
+    return outputs.length;
+  }
+
+  /**
+   * @return The number of generated classes backing this circuit
+   */
+  public int partCount() {
+    return parts.length;
+  }
+
+  public long[] newState() {
+    return new long[size];
+  }
+
+  public void simulate(long[] inputWords, long[] state, long[] outputWords) {
+    if (inputWords.length != inputs.length) {
+      throw new UnsupportedOperationException("Invalid input length: Got " + inputWords.length + " words when the circuit needed " + inputs.length + "!");
+    }
+    for (int i = 0; i < inputs.length; i++) {
+      state[inputs[i]] = inputWords[i];
+    }
+    for (Part part : parts) {
+      part.evaluate(state);
+    }
+    for (int i = 0; i < outputs.length; i++) {
+      outputWords[i] = state[outputs[i]];
+    }
+  }
+
+  /**
+   * @return One word per output bit. Bit {@code k} of output {@code i} is the value of output {@code i} given input vector {@code k}.
+   */
+  public long[] simulate(long[] inputWords) {
+    long[] r = new long[outputs.length];
+    simulate(inputWords, newState(), r);
+    return r;
+  }
+
+  public String toString() {
+    return "CompiledCircuit: " + size + " nodes in " + parts.length + " generated classes";
+  }
+}
@@ -0,0 +1,27 @@
+package circuit.simulation;
+
+/**
+ * Something which can simulate 64 input vectors of a circuit at once.
+ * <p>
+ * Bit {@code k} of every {@code long} word belongs to input vector {@code k}.
+ * Inputs and outputs are in the same order as {@code Circuit.getInputs()} and {@code Circuit.getOutputs()}.
+ */
+public interface PackedSimulator {
+  int inputSize();
+
+  int outputSize();
+
+  /**
+   * @return A scratch array large enough to hold the word of every node in the circuit.
+   */
+  long[] newState();
+
+  /**
+   * Runs one pass over the circuit without allocating anything.
+   *
+   * @param inputWords  One word per input bit
+   * @param state       Scratch space from {@code newState()}. Holds the word of every node afterwards.
+   * @param outputWords Filled with one word per output bit
+   */
+  void simulate(long[] inputWords, long[] state, long[] outputWords);
+}
@@ -0,0 +1,301 @@
+package circuit.simulation;
+
+import circuit.Circuit;
+import circuit.DebugCircuit;
+import graph.Levelization;
+
+/**
+ * A stateful simulation of a single input vector, for poking at a circuit one input at a time.
+ * <p>
+ * Keeps the value of every node. When an input changes, only the nodes downstream of it
+ * are re-evaluated, in order of topological level, and propagation stops at any node whose value didn't change.
+ * So the cost of a change is proportional to the part of the fan-out cone which actually flips,
+ * rather than to the size of the circuit.
+ * <p>
+ * Not thread safe.
+ */
+public class SimulationSession {
+  private final Circuit circuit;
+  private final int[] inputs;
+  private final int[] outputs;
+
+  /**
+   * The inputs of node {@code n} are {@code fanIn[fanInStart[n]]} to {@code fanIn[fanInStart[n + 1] - 1]}.
+   * Input nodes are treated as having no inputs.
+   */
+  private final int[] fanInStart;
+  private final int[] fanIn;
+  /**
+   * Same layout as {@code fanIn}, but for the nodes each node feeds into.
+   */
+  private final int[] fanOutStart;
+  private final int[] fanOut;
+  /**
+   * Every node is on a strictly higher level than all of its inputs.
+   */
+  private final int[] level;
+
+  private final boolean[] value;
+
+  /**
+   * The nodes waiting to be re-evaluated, bucketed by level.
+   */
+  private int[][] buckets;
+  private int[] bucketSizes;
+  private final boolean[] queued;
+  /**
+   * A min-heap of the levels with non-empty buckets, so that empty levels are never scanned.
+   */
+  private final int[] activeLevels;
+  private int activeLevelCount;
+
+  private int lastEvaluatedCount;
+
+  /**
+   * Starts with every input set to {@code false}.
+   */
+  public SimulationSession(Circuit circuit) {
+    this.circuit = circuit;
+    BitParallelSimulator simulator = circuit.getBitParallelSimulator();
+    int size = simulator.size();
+    inputs = simulator.getInputs();
+    outputs = simulator.getOutputs();
+
+    int[] order = simulator.getOrder();
+    int[] orderFanInStart = simulator.getFanInStart();
+    int[] orderFanIn = simulator.getFanIn();
+
+    // Re-index the fan-in by node instead of by position in the order, and count fan-out
+    int[] fanInCount = new int[size];
+    int[] fanOutCount = new int[size];
+    for (int k = 0; k < order.length; k++) {
+      fanInCount[order[k]] = orderFanInStart[k + 1] - orderFanInStart[k];
+      for (int e = orderFanInStart[k]; e < orderFanInStart[k + 1]; e++) {
+        fanOutCount[orderFanIn[e]]++;
+      }
+    }
+    fanInStart = prefixSums(fanInCount);
+    fanOutStart = prefixSums(fanOutCount);
+    fanIn = new int[orderFanIn.length];
+    fanOut = new int[orderFanIn.length];
+
+    int[] fanOutFill = new int[size];
+    for (int k = 0; k < order.length; k++) {
+      int node = order[k];
+      int e = fanInStart[node];
+      for (int i = orderFanInStart[k]; i < orderFanInStart[k + 1]; i++) {
+        int in = orderFanIn[i];
+        fanIn[e++] = in;
+        fanOut[fanOutStart[in] + fanOutFill[in]++] = node;
+      }
+    }
+    Levelization levelization = circuit.getLevelization();
+    level = levelization.levels();
+    int maxLevel = levelization.levelCount() - 1;
+
+    buckets = new int[maxLevel + 1][];
+    bucketSizes = new int[maxLevel + 1];
+    queued = new boolean[size];
+    activeLevels = new int[maxLevel + 1];
+    activeLevelCount = 0;
+
+    long[] state = simulator.newState();
+    simulator.propagate(new long[inputs.length], state);
+    value = new boolean[size];
+    for (int node = 0; node < size; node++) {
+      value[node] = (state[node] & 1L) != 0;
+    }
+  }
+
+  private static int[] prefixSums(int[] counts) {
+    int[] r = new int[counts.length + 1];
+    for (int i = 0; i < counts.length; i++) {
+      r[i + 1] = r[i] + counts[i];
+    }
+    return r;
+  }
+
+  public Circuit getCircuit() {
+    return circuit;
+  }
+
+  /**
+   * Sets the input bit at index {@code i}, and propagates the change.
+   */
+  public void setInput(int i, boolean b) {
+    lastEvaluatedCount = 0;
+    assertInput(i, b);
+    propagate();
+  }
+
+  /**
+   * Sets every input bit at once, propagating all of the changes together.
+   */
+  public void setInputs(boolean[] input) {
+    if (input.length != inputs.length) {
+      throw new UnsupportedOperationException("Invalid input length: Got " + input.length + " bits when the circuit needed " + inputs.length + "!");
+    }
+    lastEvaluatedCount = 0;
+    for (int i = 0; i < input.length; i++) {
+      assertInput(i, input[i]);
+    }
+    propagate();
+  }
+
+  /**
+   * Sets {@code bits.length} consecutive input bits, starting at index {@code offset}.
+   * See {@code AnnotatedCircuit.getMultibitInputIdx}.
+   */
+  public void setInputs(int offset, boolean[] bits) {
+    lastEvaluatedCount = 0;
+    for (int i = 0; i < bits.length; i++) {
+      assertInput(offset + i, bits[i]);
+    }
+    propagate();
+  }
+
+  public boolean getInput(int i) {
+    return value[inputs[i]];
+  }
+
+  public boolean getOutput(int i) {
+    return value[outputs[i]];
+  }
+
+  public boolean[] getOutputs() {
+    boolean[] r = new boolean[outputs.length];
+    for (int i = 0; i < outputs.length; i++) {
+      r[i] = value[outputs[i]];
+    }
+    return r;
+  }
+
+  /**
+   * @return The current value of any node in the circuit
+   */
+  public boolean getNode(int node) {
+    return value[node];
+  }
+
+  /**
+   * Only works if the circuit is a {@code DebugCircuit}.
+   *
+   * @return The current multibit value of the named signal, or {@code null} if there is no such signal
+   */
+  public boolean[] getSignal(String globalName) {
+    if (!(circuit instanceof DebugCircuit)) {
+      throw new IllegalStateException("Named signals are only available when simulating a DebugCircuit");
+    }
+    int[] nodes = ((DebugCircuit) circuit).getDebugNodes(globalName);
+    if (nodes == null) {
+      return null;
+    }
+    boolean[] r = new boolean[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      r[i] = value[nodes[i]];
+    }
+    return r;
+  }
+
+  /**
+   * @return The number of nodes which were re-evaluated by the last change to the inputs
+   */
+  public int getLastEvaluatedCount() {
+    return lastEvaluatedCount;
+  }
+
+  private void assertInput(int i, boolean b) {
+    int node = inputs[i];
+    if (value[node] != b) {
+      value[node] = b;
+      enqueueFanOut(node);
+    }
+  }
+
+  private void enqueueFanOut(int node) {
+    for (int e = fanOutStart[node]; e < fanOutStart[node + 1]; e++) {
+      enqueue(fanOut[e]);
+    }
+  }
+
+  private void enqueue(int node) {
+    if (queued[node]) {
+      return;
+    }
+    queued[node] = true;
+    int l = level[node];
+    if (bucketSizes[l] == 0) {
+      pushLevel(l);
+    }
+    if (buckets[l] == null) {
+      buckets[l] = new int[4];
+    } else if (bucketSizes[l] == buckets[l].length) {
+      int[] grown = new int[buckets[l].length * 2];
+      System.arraycopy(buckets[l], 0, grown, 0, bucketSizes[l]);
+      buckets[l] = grown;
+    }
+    buckets[l][bucketSizes[l]++] = node;
+  }
+
+  private void propagate() {
+    while (activeLevelCount > 0) {
+      int l = popLevel();
+      // Everything this level enqueues is on a higher level, so the bucket doesn't grow while we drain it
+      int[] bucket = buckets[l];
+      int count = bucketSizes[l];
+      bucketSizes[l] = 0;
+      for (int j = 0; j < count; j++) {
+        int node = bucket[j];
+        queued[node] = false;
+        lastEvaluatedCount++;
+
+        boolean newValue = false;
+        for (int e = fanInStart[node]; e < fanInStart[node + 1]; e++) {
+          if (!value[fanIn[e]]) {
+            newValue = true;
+            break;
+          }
+        }
+        if (newValue != value[node]) {
+          value[node] = newValue;
+          enqueueFanOut(node);
+        }
+      }
+    }
+  }
+
+  private void pushLevel(int l) {
+    int i = activeLevelCount++;
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (activeLevels[parent] <= l) {
+        break;
+      }
+      activeLevels[i] = activeLevels[parent];
+      i = parent;
+    }
+    activeLevels[i] = l;
+  }
+
+  private int popLevel() {
+    int r = activeLevels[0];
+    int last = activeLevels[--activeLevelCount];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= activeLevelCount) {
+        break;
+      }
+      if (child + 1 < activeLevelCount && activeLevels[child + 1] < activeLevels[child]) {
+        child++;
+      }
+      if (last <= activeLevels[child]) {
+        break;
+      }
+      activeLevels[i] = activeLevels[child];
+      i = child;
+    }
+    activeLevels[i] = last;
+    return r;
+  }
+}
@@ -0,0 +1,289 @@
+package circuit.verification;
+
+import circuit.AnnotatedCircuit;
+import circuit.simulation.PackedSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks an {@code AnnotatedCircuit} against a Java reference function.
+ * <p>
+ * If the input space is small enough (see {@code setMaxExhaustiveVectors}), every input is checked.
+ * Otherwise, a random sample is checked (see {@code setRandomVectors}).
+ * Either way, vectors are simulated 64 at a time, and blocks of vectors are split across cores with fork/join.
+ * <p>
+ * Multibit inputs and outputs are limited to 64 bits each, since they are handed to the reference function as {@code long}s.
+ */
+public class CircuitVerifier {
+  /**
+   * The number of 64 vector blocks handled by a single fork/join leaf.
+   */
+  private static final int BLOCKS_PER_TASK = 16;
+  /**
+   * Bit {@code i} of lane {@code k} is bit {@code i} of {@code k}, for {@code i < 6}.
+   * Used to enumerate the low bits of the input space within a block.
+   */
+  private static final long[] LANE_PATTERNS = {
+      0xaaaaaaaaaaaaaaaaL,
+      0xccccccccccccccccL,
+      0xf0f0f0f0f0f0f0f0L,
+      0xff00ff00ff00ff00L,
+      0xffff0000ffff0000L,
+      0xffffffff00000000L,
+  };
+
+  private final AnnotatedCircuit circuit;
+  private final ReferenceFunction reference;
+  private final int[] inputSizes;
+  private final int[] inputOffsets;
+  private final int[] outputSizes;
+  private final int[] outputOffsets;
+
+  private long maxExhaustiveVectors;
+  private long randomVectors;
+  private long seed;
+  private int maxCounterexamples;
+  private boolean useCompiled;
+  private ForkJoinPool pool;
+
+  public CircuitVerifier(AnnotatedCircuit circuit, ReferenceFunction reference) {
+    this.circuit = circuit;
+    this.reference = reference;
+
+    inputSizes = new int[circuit.getMultibitInputCount()];
+    inputOffsets = new int[inputSizes.length];
+    for (int i = 0; i < inputSizes.length; i++) {
+      inputSizes[i] = checkWidth(circuit.getMultibitInputSize(i));
+      inputOffsets[i] = circuit.getMultibitInputIdx(i);
+    }
+    outputSizes = new int[circuit.getMultibitOutputCount()];
+    outputOffsets = new int[outputSizes.length];
+    for (int i = 0; i < outputSizes.length; i++) {
+      outputSizes[i] = checkWidth(circuit.getMultibitOutputSize(i));
+      outputOffsets[i] = circuit.getMultibitOutputIdx(i);
+    }
+
+    maxExhaustiveVectors = 1L << 32;
+    randomVectors = 1L << 20;
+    seed = 0;
+    maxCounterexamples = 5;
+    useCompiled = false;
+    pool = ForkJoinPool.commonPool();
+  }
+
+  private static int checkWidth(int width) {
+    if (width > Long.SIZE) {
+      throw new IllegalArgumentException("Multibit values wider than " + Long.SIZE + " bits can't be verified, got " + width);
+    }
+    return width;
+  }
+
+  /**
+   * The input space is enumerated in full if it has at most this many vectors. Defaults to 2^32.
+   */
+  public void setMaxExhaustiveVectors(long maxExhaustiveVectors) {
+    this.maxExhaustiveVectors = maxExhaustiveVectors;
+  }
+
+  /**
+   * The number of random vectors to check when the input space is too big to enumerate. Defaults to 2^20.
+   */
+  public void setRandomVectors(long randomVectors) {
+    this.randomVectors = randomVectors;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Verification stops once this many counterexamples have been found. Defaults to 5.
+   * <p>
+   * The counterexamples reported are always the ones with the lowest vector indices, regardless of how the work was split.
+   */
+  public void setMaxCounterexamples(int maxCounterexamples) {
+    if (maxCounterexamples < 1) {
+      throw new IllegalArgumentException("Need to allow at least one counterexample, got " + maxCounterexamples);
+    }
+    this.maxCounterexamples = maxCounterexamples;
+  }
+
+  /**
+   * Whether to simulate with {@code Circuit.getCompiledCircuit()} instead of {@code Circuit.getBitParallelSimulator()}.
+   * Compiling costs more up front, but pays off over many vectors. Defaults to {@code false}.
+   */
+  public void setUseCompiled(boolean useCompiled) {
+    this.useCompiled = useCompiled;
+  }
+
+  public void setPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  public boolean isExhaustive() {
+    int bits = circuit.inputSize();
+    return bits < Long.SIZE - 1 && (1L << bits) <= maxExhaustiveVectors;
+  }
+
+  public VerificationResult verify() {
+    long start = System.nanoTime();
+    boolean exhaustive = isExhaustive();
+    long vectorCount = exhaustive ? 1L << circuit.inputSize() : randomVectors;
+    long blockCount = (vectorCount + Long.SIZE - 1) / Long.SIZE;
+
+    PackedSimulator simulator = useCompiled ? circuit.getCompiledCircuit() : circuit.getBitParallelSimulator();
+    VerifyTask root = new VerifyTask(new Shared(simulator, exhaustive, vectorCount), 0, blockCount);
+    pool.invoke(root);
+
+    List<Counterexample> found = new ArrayList<>(root.shared.counterexamples);
+    return new VerificationResult(exhaustive, root.shared.vectorsChecked.get(), found, System.nanoTime() - start);
+  }
+
+  /**
+   * Everything the tasks of a single {@code verify()} call have in common.
+   */
+  private class Shared {
+    final PackedSimulator simulator;
+    final boolean exhaustive;
+    final long vectorCount;
+    final TreeSet<Counterexample> counterexamples = new TreeSet<>();
+    final AtomicLong vectorsChecked = new AtomicLong();
+    /**
+     * Once enough counterexamples are found, vectors past the last of them can't change the result.
+     */
+    final AtomicLong cutoff = new AtomicLong(Long.MAX_VALUE);
+
+    Shared(PackedSimulator simulator, boolean exhaustive, long vectorCount) {
+      this.simulator = simulator;
+      this.exhaustive = exhaustive;
+      this.vectorCount = vectorCount;
+    }
+
+    synchronized void report(Counterexample counterexample) {
+      counterexamples.add(counterexample);
+      if (counterexamples.size() > maxCounterexamples) {
+        counterexamples.pollLast();
+      }
+      if (counterexamples.size() >= maxCounterexamples) {
+        cutoff.set(counterexamples.last().getVectorIndex());
+      }
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private class VerifyTask extends RecursiveAction {
+    private final Shared shared;
+    private final long fromBlock;
+    private final long toBlock;
+
+    VerifyTask(Shared shared, long fromBlock, long toBlock) {
+      this.shared = shared;
+      this.fromBlock = fromBlock;
+      this.toBlock = toBlock;
+    }
+
+    @Override
+    protected void compute() {
+      if (toBlock - fromBlock > BLOCKS_PER_TASK) {
+        long mid = fromBlock + (toBlock - fromBlock) / 2;
+        invokeAll(new VerifyTask(shared, fromBlock, mid), new VerifyTask(shared, mid, toBlock));
+        return;
+      }
+
+      PackedSimulator simulator = shared.simulator;
+      long[] inputWords = new long[simulator.inputSize()];
+      long[] state = simulator.newState();
+      long[] outputWords = new long[simulator.outputSize()];
+      long[][] laneInputs = new long[Long.SIZE][inputSizes.length];
+
+      for (long block = fromBlock; block < toBlock; block++) {
+        long base = block * Long.SIZE;
+        if (base > shared.cutoff.get()) {
+          return;
+        }
+        int lanes = (int) Math.min(Long.SIZE, shared.vectorCount - base);
+
+        if (shared.exhaustive) {
+          fillExhaustive(base, lanes, inputWords, laneInputs);
+        } else {
+          fillRandom(block, lanes, inputWords, laneInputs);
+        }
+        simulator.simulate(inputWords, state, outputWords);
+        check(base, lanes, outputWords, laneInputs);
+        shared.vectorsChecked.addAndGet(lanes);
+      }
+    }
+
+    /**
+     * Vector {@code v} has input bit {@code i} equal to bit {@code i} of {@code v}.
+     * Since blocks start at multiples of 64, the low 6 bits enumerate the lanes, and the rest are shared by the whole block.
+     */
+    private void fillExhaustive(long base, int lanes, long[] inputWords, long[][] laneInputs) {
+      for (int i = 0; i < inputWords.length; i++) {
+        if (i < LANE_PATTERNS.length) {
+          inputWords[i] = LANE_PATTERNS[i];
+        } else {
+          inputWords[i] = ((base >>> i) & 1L) != 0 ? -1L : 0L;
+        }
+      }
+      for (int k = 0; k < lanes; k++) {
+        long v = base + k;
+        for (int j = 0; j < inputSizes.length; j++) {
+          laneInputs[k][j] = (v >>> inputOffsets[j]) & mask(inputSizes[j]);
+        }
+      }
+    }
+
+    private void fillRandom(long block, int lanes, long[] inputWords, long[][] laneInputs) {
+      // Seeded per block, so that results don't depend on how the work was split
+      SplittableRandom random = new SplittableRandom(seed ^ (block * 0x9e3779b97f4a7c15L));
+      for (int i = 0; i < inputWords.length; i++) {
+        inputWords[i] = 0L;
+      }
+      for (int k = 0; k < lanes; k++) {
+        for (int j = 0; j < inputSizes.length; j++) {
+          long value = random.nextLong() & mask(inputSizes[j]);
+          laneInputs[k][j] = value;
+          for (int bit = 0; bit < inputSizes[j]; bit++) {
+            if ((value & (1L << bit)) != 0) {
+              inputWords[inputOffsets[j] + bit] |= 1L << k;
+            }
+          }
+        }
+      }
+    }
+
+    private void check(long base, int lanes, long[] outputWords, long[][] laneInputs) {
+      for (int k = 0; k < lanes; k++) {
+        long[] expected = reference.apply(laneInputs[k].clone());
+        if (expected.length != outputSizes.length) {
+          throw new IllegalArgumentException("Reference function gave " + expected.length + " outputs, but the circuit has " + outputSizes.length);
+        }
+
+        long[] actual = new long[outputSizes.length];
+        boolean matches = true;
+        for (int j = 0; j < outputSizes.length; j++) {
+          expected[j] &= mask(outputSizes[j]);
+          for (int bit = 0; bit < outputSizes[j]; bit++) {
+            actual[j] |= ((outputWords[outputOffsets[j] + bit] >>> k) & 1L) << bit;
+          }
+          matches &= expected[j] == actual[j];
+        }
+
+        if (!matches) {
+          shared.report(new Counterexample(base + k, laneInputs[k].clone(), expected, actual, outputSizes));
+        }
+      }
+    }
+  }
+
+  private static long mask(int width) {
+    return width == Long.SIZE ? -1L : (1L << width) - 1;
+  }
+}
@@ -0,0 +1,96 @@
+package circuit.verification;
+
+import java.util.ArrayList;
+
+/**
+ * An input vector on which a circuit and its reference function disagree.
+ */
+public class Counterexample implements Comparable<Counterexample> {
+  private final long vectorIndex;
+  private final long[] inputs;
+  private final long[] expected;
+  private final long[] actual;
+  private final int[] outputSizes;
+
+  Counterexample(long vectorIndex, long[] inputs, long[] expected, long[] actual, int[] outputSizes) {
+    this.vectorIndex = vectorIndex;
+    this.inputs = inputs;
+    this.expected = expected;
+    this.actual = actual;
+    this.outputSizes = outputSizes;
+  }
+
+  /**
+   * @return The position of this vector in the enumeration (or in the random sample)
+   */
+  public long getVectorIndex() {
+    return vectorIndex;
+  }
+
+  /**
+   * @return One value per multibit input
+   */
+  public long[] getInputs() {
+    return inputs.clone();
+  }
+
+  public long[] getExpected() {
+    return expected.clone();
+  }
+
+  public long[] getActual() {
+    return actual.clone();
+  }
+
+  /**
+   * @return The indices of the bits of multibit output {@code output} which came out wrong
+   */
+  public int[] getDifferingBits(int output) {
+    long diff = expected[output] ^ actual[output];
+    int[] r = new int[Long.bitCount(diff)];
+    int i = 0;
+    for (int bit = 0; bit < outputSizes[output]; bit++) {
+      if ((diff & (1L << bit)) != 0) {
+        r[i++] = bit;
+      }
+    }
+    return r;
+  }
+
+  @Override
+  public int compareTo(Counterexample o) {
+    return Long.compare(vectorIndex, o.vectorIndex);
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder("Counterexample #" + vectorIndex + ": inputs");
+    for (long input : inputs) {
+      sb.append(' ').append(input);
+    }
+    for (int output = 0; output < expected.length; output++) {
+      if (expected[output] == actual[output]) {
+        continue;
+      }
+      ArrayList<Integer> bits = new ArrayList<>();
+      for (int bit : getDifferingBits(output)) {
+        bits.add(bit);
+      }
+      sb.append("\n  output ").append(output)
+          .append(": expected ").append(bitString(expected[output], outputSizes[output]))
+          .append(", got ").append(bitString(actual[output], outputSizes[output]))
+          .append(", differing bits ").append(bits);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Little-endian, to match the rest of the project.
+   */
+  private static String bitString(long x, int width) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < width; i++) {
+      sb.append((x & (1L << i)) != 0 ? '1' : '0');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,27 @@
+package circuit.verification;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * The Java function a circuit is supposed to compute, over its multibit inputs and outputs.
+ * <p>
+ * Multibit values are little-endian, like everywhere else: bit {@code i} of a value is
+ * the {@code i}th bit of the corresponding multibit input or output.
+ * Results don't need to be masked to the output width; {@code CircuitVerifier} does that.
+ */
+public interface ReferenceFunction {
+  /**
+   * @param inputs One value per multibit input
+   * @return One value per multibit output
+   */
+  long[] apply(long[] inputs);
+
+  static ReferenceFunction unary(LongUnaryOperator f) {
+    return inputs -> new long[]{f.applyAsLong(inputs[0])};
+  }
+
+  static ReferenceFunction binary(LongBinaryOperator f) {
+    return inputs -> new long[]{f.applyAsLong(inputs[0], inputs[1])};
+  }
+}
@@ -0,0 +1,62 @@
+package circuit.verification;
+
+import java.util.Collections;
+import java.util.List;
+
+public class VerificationResult {
+  private final boolean exhaustive;
+  private final long vectorsChecked;
+  private final List<Counterexample> counterexamples;
+  private final long elapsedNanos;
+
+  VerificationResult(boolean exhaustive, long vectorsChecked, List<Counterexample> counterexamples, long elapsedNanos) {
+    this.exhaustive = exhaustive;
+    this.vectorsChecked = vectorsChecked;
+    this.counterexamples = Collections.unmodifiableList(counterexamples);
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return {@code true} if no counterexamples were found
+   */
+  public boolean passed() {
+    return counterexamples.isEmpty();
+  }
+
+  /**
+   * @return {@code true} if every possible input was checked, rather than a random sample
+   */
+  public boolean isExhaustive() {
+    return exhaustive;
+  }
+
+  /**
+   * Checking stops early once enough counterexamples have been found, so this may be less than was asked for.
+   */
+  public long getVectorsChecked() {
+    return vectorsChecked;
+  }
+
+  /**
+   * @return The counterexamples found, ordered by vector index
+   */
+  public List<Counterexample> getCounterexamples() {
+    return counterexamples;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedNanos / 1000000;
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(passed() ? "PASSED" : "FAILED")
+        .append(": ").append(vectorsChecked)
+        .append(exhaustive ? " vectors (exhaustive)" : " vectors (random)")
+        .append(" in ").append(getElapsedMillis()).append("ms");
+    for (Counterexample c : counterexamples) {
+      sb.append('\n').append(c);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,347 @@
+package cli;
+
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.CircuitFileLoader;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import misc.SettingsConstants;
+import physical2.PipelineOptions;
+import physical2.PipelineTimings;
+import physical2.SimplifiedPhysicalCircuitPipeline;
+import physical2.blocks.PathAccumulator;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static misc.SettingsConstants.root;
+
+/**
+ * The non-interactive version of {@code NorCircuit}'s compile mode, for scripts and builds.
+ * <p>
+ * Everything is loaded once, then the targets are compiled on a pool of workers,
+ * each going through trim, path accumulation, block drawing, and NBT writing independently.
+ * <p>
+ * Run {@code NorCircuit --help} for the arguments.
+ */
+public class BatchCompiler {
+  public static final int EXIT_OK = 0;
+  public static final int EXIT_FAILED = 1;
+  public static final int EXIT_USAGE = 2;
+
+  private static final String USAGE = String.join("\n",
+      "Usage: NorCircuit [options] [target...]",
+      "  --ops <n>[,<n>...]   Add the common low level operators with each bit length",
+      "  --dep <file>         Load a circuit file (and its imports), relative to " + SettingsConstants.circuitRoot,
+      "  --target <name>      Compile the named circuit (bare arguments are targets too)",
+      "  --out <dir>          Where to write schematics (default " + root.resolve("schematic") + ")",
+      "  --jobs <n>           How many targets to compile at once (default: one per core)",
+      "  --layering <mode>    How torches are assigned to z layers: linear, quadratic (default), or coloring",
+      "  --compare-layering   Also print the depth every layering would need for each target",
+      "  --placement <mode>   Where wires go in x and y: default, or annealing (slower, shorter torches)",
+      "  --streaming          Draw and write split schematics a slab at a time, to bound memory",
+      "  --compact            Route the redstone densely instead (slower, much smaller, no loops)",
+      "  --hash-cons          Merge torches which are the NOR of the same things before trimming",
+      "  --optimize           Simplify the logic until nothing changes, instead of trimming, and print the sizes before and after",
+      "  --verbose            Print each stage as it starts",
+      "  --help               Print this message");
+
+  private final List<Integer> operatorWidths = new ArrayList<Integer>();
+  private final List<String> dependencies = new ArrayList<String>();
+  private final List<String> targets = new ArrayList<String>();
+  private Path outDir = root.resolve("schematic");
+  private int jobs = Runtime.getRuntime().availableProcessors();
+  private boolean verbose = false;
+  private PathAccumulator.Layering layering = PathAccumulator.Layering.QUADRATIC;
+  private boolean compareLayering = false;
+  private SimplifiedPhysicalCircuitPipeline.Placement placement = SimplifiedPhysicalCircuitPipeline.Placement.DEFAULT;
+  private boolean streaming = false;
+  private boolean compact = false;
+  private boolean hashCons = false;
+  private boolean optimize = false;
+
+  /**
+   * @return The process exit code
+   */
+  public static int run(String[] args, PrintStream out, PrintStream err) {
+    BatchCompiler compiler = new BatchCompiler();
+    try {
+      if (!compiler.parseArgs(args, out)) {
+        return EXIT_OK;
+      }
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return EXIT_USAGE;
+    }
+    return compiler.compile(out, err);
+  }
+
+  /**
+   * @return {@code false} if there is nothing to do (i.e. help was printed)
+   */
+  private boolean parseArgs(String[] args, PrintStream out) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      switch (arg) {
+        case "--help":
+        case "-h":
+          out.println(USAGE);
+          return false;
+        case "--ops":
+          for (String width : value(args, ++i, arg).split(",")) {
+            operatorWidths.add(positiveInt(width.trim(), arg));
+          }
+          break;
+        case "--dep":
+          dependencies.add(value(args, ++i, arg));
+          break;
+        case "--target":
+          addTarget(value(args, ++i, arg));
+          break;
+        case "--out":
+          outDir = Paths.get(value(args, ++i, arg));
+          break;
+        case "--jobs":
+          jobs = positiveInt(value(args, ++i, arg), arg);
+          break;
+        case "--verbose":
+          verbose = true;
+          break;
+        case "--layering":
+          layering = layering(value(args, ++i, arg));
+          break;
+        case "--compare-layering":
+          compareLayering = true;
+          break;
+        case "--placement":
+          placement = placement(value(args, ++i, arg));
+          break;
+        case "--streaming":
+          streaming = true;
+          break;
+        case "--compact":
+          compact = true;
+          break;
+        case "--hash-cons":
+          hashCons = true;
+          break;
+        case "--optimize":
+          optimize = true;
+          break;
+        default:
+          if (arg.startsWith("-")) {
+            throw new IllegalArgumentException("Unrecognized option \"" + arg + "\"");
+          }
+          addTarget(arg);
+      }
+    }
+    if (targets.isEmpty()) {
+      throw new IllegalArgumentException("No targets given");
+    }
+    return true;
+  }
+
+  /**
+   * Each target writes its own file, so the same one twice would have two workers writing it at once
+   */
+  private void addTarget(String target) {
+    if (targets.contains(target)) {
+      throw new IllegalArgumentException("Target \"" + target + "\" given more than once");
+    }
+    targets.add(target);
+  }
+
+  private static String value(String[] args, int i, String option) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException(option + " needs a value");
+    }
+    return args[i];
+  }
+
+  private static int positiveInt(String s, String option) {
+    try {
+      int r = Integer.parseInt(s);
+      if (r > 0) {
+        return r;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    throw new IllegalArgumentException(option + " needs a positive integer, got \"" + s + "\"");
+  }
+
+  private static PathAccumulator.Layering layering(String s) {
+    try {
+      return PathAccumulator.Layering.valueOf(s.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unrecognized layering \"" + s + "\"");
+    }
+  }
+
+  private static SimplifiedPhysicalCircuitPipeline.Placement placement(String s) {
+    try {
+      return SimplifiedPhysicalCircuitPipeline.Placement.valueOf(s.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unrecognized placement \"" + s + "\"");
+    }
+  }
+
+  private int compile(PrintStream out, PrintStream err) {
+    long loadStart = System.nanoTime();
+    CircuitCollection cc = LowLevelCircuitGenerator.defaultNamedCircuits();
+    try {
+      for (int width : operatorWidths) {
+        cc.addAll(LowLevelCircuitGenerator.canonicalGenerator.operators(width));
+      }
+      if (!dependencies.isEmpty()) {
+        new CircuitFileLoader(cc).load(dependencies.toArray(new String[0]));
+      }
+      Files.createDirectories(outDir);
+    } catch (Exception e) {
+      err.println("Loading failed: " + e);
+      return EXIT_FAILED;
+    }
+    long loadMillis = (System.nanoTime() - loadStart) / 1000000;
+
+    ArrayList<TargetResult> results = new ArrayList<TargetResult>();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(jobs, targets.size()));
+    try {
+      ArrayList<Future<TargetResult>> futures = new ArrayList<Future<TargetResult>>();
+      for (String target : targets) {
+        futures.add(pool.submit(() -> compileTarget(cc, target)));
+      }
+      for (Future<TargetResult> future : futures) {
+        results.add(future.get());
+      }
+    } catch (Exception e) {
+      // compileTarget catches everything itself, so this is only interruption
+      err.println("Compilation interrupted: " + e);
+      return EXIT_FAILED;
+    } finally {
+      pool.shutdown();
+    }
+
+    printSummary(out, loadMillis, results);
+    if (compareLayering) {
+      printLayeringComparison(out, results);
+    }
+    if (optimize) {
+      printOptimization(out, results);
+    }
+
+    boolean failed = false;
+    for (TargetResult result : results) {
+      if (result.error != null) {
+        err.println(result.target + ": " + result.error);
+        failed = true;
+      }
+    }
+    return failed ? EXIT_FAILED : EXIT_OK;
+  }
+
+  private TargetResult compileTarget(CircuitCollection cc, String target) {
+    TargetResult result = new TargetResult(target);
+    long start = System.nanoTime();
+    try {
+      AnnotatedCircuit circuit = cc.get(target);
+      if (circuit == null) {
+        throw new IllegalArgumentException("There is no circuit called \"" + target + "\"");
+      }
+      result.rawNodes = circuit.size();
+      result.rawEdges = circuit.getCompactGraph().edgeCount();
+      AnnotatedCircuit shared = hashCons ? circuit.hashCons() : circuit;
+      AnnotatedCircuit trimmed = optimize ? shared.optimize() : shared.trim();
+      result.trimMillis = (System.nanoTime() - start) / 1000000;
+      result.nodes = trimmed.size();
+      result.edges = trimmed.getCompactGraph().edgeCount();
+      File outFile = outDir.resolve(target + SettingsConstants.fileExtension).toFile();
+      result.timings = SimplifiedPhysicalCircuitPipeline.circuitToSchematic(trimmed, outFile, new PipelineOptions()
+          .setVerbose(verbose)
+          .setLayering(layering)
+          .setPlacement(placement)
+          .setStreaming(streaming)
+          .setCompact(compact));
+      if (compareLayering) {
+        for (PathAccumulator.Layering other : PathAccumulator.Layering.values()) {
+          result.depths.put(other, other == layering ? result.timings.getDepth() : SimplifiedPhysicalCircuitPipeline.depth(trimmed, other, placement));
+        }
+      }
+    } catch (Exception | OutOfMemoryError e) {
+      result.error = e;
+    }
+    result.totalMillis = (System.nanoTime() - start) / 1000000;
+    return result;
+  }
+
+  private static void printSummary(PrintStream out, long loadMillis, List<TargetResult> results) {
+    out.println("Loaded circuits in " + loadMillis + "ms");
+    out.println(String.format("%-20s %8s %8s %8s %8s %8s %8s %8s %6s %6s  %s",
+        "target", "nodes", "trim", "path", "draw", "nbt", "write", "total", "depth", "files", "status"));
+    for (TargetResult r : results) {
+      if (r.timings == null) {
+        out.println(String.format("%-20s %8s %8s %8s %8s %8s %8s %8d %6s %6s  %s",
+            r.target, r.nodes < 0 ? "-" : Integer.toString(r.nodes), "-", "-", "-", "-", "-", r.totalMillis, "-", "-", "FAILED"));
+      } else {
+        PipelineTimings t = r.timings;
+        out.println(String.format("%-20s %8d %8d %8d %8d %8d %8d %8d %6d %6d  %s",
+            r.target, r.nodes, r.trimMillis, t.getPathMillis(), t.getDrawMillis(), t.getNbtMillis(), t.getWriteMillis(),
+            r.totalMillis, t.getDepth(), t.getFileCount(), "ok"));
+      }
+    }
+    out.println("(times in ms)");
+  }
+
+  private static void printLayeringComparison(PrintStream out, List<TargetResult> results) {
+    StringBuilder header = new StringBuilder(String.format("%-20s", "depth"));
+    for (PathAccumulator.Layering layering : PathAccumulator.Layering.values()) {
+      header.append(String.format(" %10s", layering.name().toLowerCase()));
+    }
+    out.println(header);
+    for (TargetResult r : results) {
+      if (r.depths.isEmpty()) {
+        continue;
+      }
+      StringBuilder line = new StringBuilder(String.format("%-20s", r.target));
+      for (PathAccumulator.Layering layering : PathAccumulator.Layering.values()) {
+        line.append(String.format(" %10d", r.depths.get(layering)));
+      }
+      out.println(line);
+    }
+  }
+
+  private static void printOptimization(PrintStream out, List<TargetResult> results) {
+    out.println(String.format("%-20s %10s %10s %10s %10s", "optimized", "raw nodes", "raw edges", "nodes", "edges"));
+    for (TargetResult r : results) {
+      if (r.nodes < 0) {
+        continue;
+      }
+      out.println(String.format("%-20s %10d %10d %10d %10d", r.target, r.rawNodes, r.rawEdges, r.nodes, r.edges));
+    }
+  }
+
+  private static class TargetResult {
+    final String target;
+    int rawNodes;
+    int rawEdges;
+    int nodes = -1;
+    int edges;
+    long trimMillis;
+    long totalMillis;
+    PipelineTimings timings;
+    final Map<PathAccumulator.Layering, Integer> depths = new EnumMap<>(PathAccumulator.Layering.class);
+    Throwable error;
+
+    TargetResult(String target) {
+      this.target = target;
+    }
+  }
+}
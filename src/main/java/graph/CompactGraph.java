@@ -0,0 +1,406 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * An immutable directed graph over the nodes {@code 0} to {@code size() - 1},
+ * stored in compressed sparse row form in both directions.
+ * <p>
+ * The out neighbors of node {@code n} are {@code outTargets[outStart[n]]} to {@code outTargets[outStart[n + 1] - 1]},
+ * and likewise for in neighbors. Each neighborhood is sorted and has no duplicates.
+ * <p>
+ * Nothing here boxes or allocates per edge. Use {@code NeighborCursor} and {@code EdgeCursor}
+ * for iteration, or {@code asTwoWayDirectedGraph()} for code which wants the generic interface.
+ */
+public final class CompactGraph {
+  private final int size;
+  private final int[] outStart;
+  private final int[] outTargets;
+  private final int[] inStart;
+  private final int[] inTargets;
+
+  private TwoWayDirectedGraph<Integer> view;
+
+  private CompactGraph(int size, int[] outStart, int[] outTargets, int[] inStart, int[] inTargets) {
+    this.size = size;
+    this.outStart = outStart;
+    this.outTargets = outTargets;
+    this.inStart = inStart;
+    this.inTargets = inTargets;
+  }
+
+  /**
+   * Builds a graph from parallel edge arrays. Duplicate edges are collapsed into one.
+   *
+   * @param starts    The start of each edge. Only the first {@code edgeCount} entries are read.
+   * @param ends      The end of each edge. Only the first {@code edgeCount} entries are read.
+   * @param edgeCount The number of edges in {@code starts} and {@code ends}
+   */
+  public static CompactGraph fromEdges(int size, int[] starts, int[] ends, int edgeCount) {
+    int[] outStart = new int[size + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      checkNode(size, starts[e]);
+      checkNode(size, ends[e]);
+      outStart[starts[e] + 1]++;
+    }
+    for (int n = 0; n < size; n++) {
+      outStart[n + 1] += outStart[n];
+    }
+    int[] fill = Arrays.copyOf(outStart, size);
+    int[] outTargets = new int[edgeCount];
+    for (int e = 0; e < edgeCount; e++) {
+      outTargets[fill[starts[e]]++] = ends[e];
+    }
+
+    // Sort each row, then squeeze out duplicates
+    int write = 0;
+    int rowStart = 0;
+    for (int n = 0; n < size; n++) {
+      int rowEnd = outStart[n + 1];
+      Arrays.sort(outTargets, rowStart, rowEnd);
+      outStart[n] = write;
+      for (int e = rowStart; e < rowEnd; e++) {
+        if (e == rowStart || outTargets[e] != outTargets[e - 1]) {
+          outTargets[write++] = outTargets[e];
+        }
+      }
+      rowStart = rowEnd;
+    }
+    outStart[size] = write;
+    if (write != outTargets.length) {
+      outTargets = Arrays.copyOf(outTargets, write);
+    }
+
+    return withInverse(size, outStart, outTargets);
+  }
+
+  /**
+   * Adopts already packed forward rows, as produced by {@code outNeighbors}. The arrays are not copied.
+   *
+   * @param outStart   {@code size + 1} row offsets into {@code outTargets}
+   * @param outTargets Each row must be strictly increasing
+   */
+  public static CompactGraph fromCsr(int size, int[] outStart, int[] outTargets) {
+    if (outStart.length != size + 1 || outStart[0] != 0 || outStart[size] != outTargets.length) {
+      throw new IllegalArgumentException("Row offsets don't describe " + outTargets.length + " edges over " + size + " nodes");
+    }
+    for (int n = 0; n < size; n++) {
+      if (outStart[n] > outStart[n + 1]) {
+        throw new IllegalArgumentException("Row offsets decrease at node " + n);
+      }
+      for (int e = outStart[n]; e < outStart[n + 1]; e++) {
+        checkNode(size, outTargets[e]);
+        if (e > outStart[n] && outTargets[e] <= outTargets[e - 1]) {
+          throw new IllegalArgumentException("Row " + n + " is not strictly increasing");
+        }
+      }
+    }
+    return withInverse(size, outStart, outTargets);
+  }
+
+  /**
+   * Fills in the backward direction. Since rows are walked in increasing order, the in neighborhoods come out sorted.
+   */
+  private static CompactGraph withInverse(int size, int[] outStart, int[] outTargets) {
+    int[] inStart = new int[size + 1];
+    for (int target : outTargets) {
+      inStart[target + 1]++;
+    }
+    for (int n = 0; n < size; n++) {
+      inStart[n + 1] += inStart[n];
+    }
+    int[] fill = Arrays.copyOf(inStart, size);
+    int[] inTargets = new int[outTargets.length];
+    for (int n = 0; n < size; n++) {
+      for (int e = outStart[n]; e < outStart[n + 1]; e++) {
+        inTargets[fill[outTargets[e]]++] = n;
+      }
+    }
+    return new CompactGraph(size, outStart, outTargets, inStart, inTargets);
+  }
+
+  private static void checkNode(int size, int node) {
+    if (node < 0 || size <= node) {
+      throw new IllegalArgumentException("Node " + node + " is not in a graph of size " + size);
+    }
+  }
+
+  /**
+   * The nodes of {@code graph} must be exactly {@code 0} to {@code graph.size() - 1}.
+   */
+  public static CompactGraph from(DirectedGraph<Integer> graph) {
+    int edgeCount = graph.edgeCount();
+    int[] starts = new int[edgeCount];
+    int[] ends = new int[edgeCount];
+    int e = 0;
+    for (Iterator<Edge<Integer>> it = graph.getEdges(); it.hasNext(); ) {
+      Edge<Integer> edge = it.next();
+      starts[e] = edge.getStart();
+      ends[e] = edge.getEnd();
+      e++;
+    }
+    return fromEdges(graph.size(), starts, ends, edgeCount);
+  }
+
+  /**
+   * The nodes of {@code graph} must be exactly {@code 0} to {@code graph.size() - 1}.
+   * Free if {@code graph} came from {@code asTwoWayDirectedGraph()}.
+   */
+  public static CompactGraph from(TwoWayDirectedGraph<Integer> graph) {
+    if (graph instanceof CompactTwoWayDirectedGraph) {
+      return ((CompactTwoWayDirectedGraph) graph).getCompactGraph();
+    }
+    return from(graph.forward);
+  }
+
+  /**
+   * @return The number of nodes in this graph
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The number of edges in this graph
+   */
+  public int edgeCount() {
+    return outTargets.length;
+  }
+
+  public int outDegree(int node) {
+    return outStart[node + 1] - outStart[node];
+  }
+
+  public int inDegree(int node) {
+    return inStart[node + 1] - inStart[node];
+  }
+
+  /**
+   * @return The {@code i}th out neighbor of {@code node}, in increasing order
+   */
+  public int outNeighbor(int node, int i) {
+    return outTargets[outStart[node] + i];
+  }
+
+  /**
+   * @return The {@code i}th in neighbor of {@code node}, in increasing order
+   */
+  public int inNeighbor(int node, int i) {
+    return inTargets[inStart[node] + i];
+  }
+
+  /**
+   * @return A copy of the out neighborhood of {@code node}, sorted
+   */
+  public int[] outNeighbors(int node) {
+    return Arrays.copyOfRange(outTargets, outStart[node], outStart[node + 1]);
+  }
+
+  /**
+   * @return A copy of the in neighborhood of {@code node}, sorted
+   */
+  public int[] inNeighbors(int node) {
+    return Arrays.copyOfRange(inTargets, inStart[node], inStart[node + 1]);
+  }
+
+  public boolean hasEdge(int start, int end) {
+    return Arrays.binarySearch(outTargets, outStart[start], outStart[start + 1], end) >= 0;
+  }
+
+  /**
+   * @return The nodes which aren't affected by the value of any other node, in increasing order
+   */
+  public int[] sources() {
+    return nodesWithoutNeighbors(inStart);
+  }
+
+  /**
+   * @return The nodes which do not affect the value of any other node, in increasing order
+   */
+  public int[] sinks() {
+    return nodesWithoutNeighbors(outStart);
+  }
+
+  private int[] nodesWithoutNeighbors(int[] start) {
+    int count = 0;
+    for (int n = 0; n < size; n++) {
+      if (start[n] == start[n + 1]) {
+        count++;
+      }
+    }
+    int[] r = new int[count];
+    int i = 0;
+    for (int n = 0; n < size; n++) {
+      if (start[n] == start[n + 1]) {
+        r[i++] = n;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * @return Which nodes are hit by propagating forward from {@code from}
+   */
+  public boolean[] traceForward(int[] from) {
+    return trace(from, outStart, outTargets);
+  }
+
+  /**
+   * @return Which nodes are hit by propagating backward from {@code from}
+   */
+  public boolean[] traceBackward(int[] from) {
+    return trace(from, inStart, inTargets);
+  }
+
+  private boolean[] trace(int[] from, int[] start, int[] targets) {
+    boolean[] r = new boolean[size];
+    int[] stack = new int[size];
+    int top = 0;
+    for (int node : from) {
+      if (!r[node]) {
+        r[node] = true;
+        stack[top++] = node;
+      }
+    }
+    while (top > 0) {
+      int node = stack[--top];
+      for (int e = start[node]; e < start[node + 1]; e++) {
+        int next = targets[e];
+        if (!r[next]) {
+          r[next] = true;
+          stack[top++] = next;
+        }
+      }
+    }
+    return r;
+  }
+
+  public NeighborCursor outCursor() {
+    return new NeighborCursor(outStart, outTargets);
+  }
+
+  public NeighborCursor inCursor() {
+    return new NeighborCursor(inStart, inTargets);
+  }
+
+  public EdgeCursor edgeCursor() {
+    return new EdgeCursor();
+  }
+
+  /**
+   * Boxes on every access, but shares storage with this graph.
+   *
+   * @return A read only view of this graph, for code which wants a {@code TwoWayDirectedGraph}
+   */
+  public TwoWayDirectedGraph<Integer> asTwoWayDirectedGraph() {
+    if (view == null) {
+      view = new CompactTwoWayDirectedGraph(this);
+    }
+    return view;
+  }
+
+  public Iterator<Edge<Integer>> getEdges() {
+    final EdgeCursor cursor = edgeCursor();
+    return new Iterator<Edge<Integer>>() {
+      private boolean advanced = false;
+      private boolean hasNext;
+
+      @Override
+      public boolean hasNext() {
+        if (!advanced) {
+          hasNext = cursor.advance();
+          advanced = true;
+        }
+        return hasNext;
+      }
+
+      @Override
+      public Edge<Integer> next() {
+        hasNext();
+        advanced = false;
+        return new Edge<>(cursor.start(), cursor.end());
+      }
+    };
+  }
+
+  /**
+   * A reusable cursor over one neighborhood.
+   * <pre>
+   *   cursor.reset(node);
+   *   while (cursor.hasNext()) {
+   *     int neighbor = cursor.next();
+   *   }
+   * </pre>
+   */
+  public static final class NeighborCursor {
+    private final int[] start;
+    private final int[] targets;
+    private int i;
+    private int end;
+
+    NeighborCursor(int[] start, int[] targets) {
+      this.start = start;
+      this.targets = targets;
+    }
+
+    public NeighborCursor reset(int node) {
+      i = start[node];
+      end = start[node + 1];
+      return this;
+    }
+
+    public boolean hasNext() {
+      return i < end;
+    }
+
+    public int next() {
+      return targets[i++];
+    }
+  }
+
+  /**
+   * A cursor over every edge in the graph, ordered by start and then by end.
+   * <pre>
+   *   while (cursor.advance()) {
+   *     int start = cursor.start();
+   *     int end = cursor.end();
+   *   }
+   * </pre>
+   */
+  public final class EdgeCursor {
+    private int node = 0;
+    private int e = -1;
+
+    /**
+     * Moves to the next edge.
+     *
+     * @return {@code false} if there are no more edges
+     */
+    public boolean advance() {
+      e++;
+      if (e >= outTargets.length) {
+        return false;
+      }
+      while (outStart[node + 1] <= e) {
+        node++;
+      }
+      return true;
+    }
+
+    public int start() {
+      return node;
+    }
+
+    public int end() {
+      return outTargets[e];
+    }
+
+    /**
+     * @return The index of the current edge, from {@code 0} to {@code edgeCount() - 1}
+     */
+    public int index() {
+      return e;
+    }
+  }
+}
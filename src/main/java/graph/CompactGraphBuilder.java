@@ -0,0 +1,57 @@
+package graph;
+
+/**
+ * Accumulates nodes and edges into growable int arrays, then packs them into a {@code CompactGraph}.
+ * <p>
+ * Nodes are numbered from {@code 0}, in the order they are added.
+ * Adding the same edge twice is harmless.
+ */
+public class CompactGraphBuilder {
+  private int size;
+  private int[] starts;
+  private int[] ends;
+  private int edgeCount;
+
+  public CompactGraphBuilder() {
+    size = 0;
+    starts = new int[16];
+    ends = new int[16];
+    edgeCount = 0;
+  }
+
+  /**
+   * @return The id of the new node
+   */
+  public int addNode() {
+    return size++;
+  }
+
+  public void ensureSize(int size) {
+    this.size = Math.max(this.size, size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Both endpoints need to be nodes by the time {@code build()} is called.
+   */
+  public void addEdge(int start, int end) {
+    if (edgeCount == starts.length) {
+      int[] grownStarts = new int[starts.length * 2];
+      int[] grownEnds = new int[ends.length * 2];
+      System.arraycopy(starts, 0, grownStarts, 0, edgeCount);
+      System.arraycopy(ends, 0, grownEnds, 0, edgeCount);
+      starts = grownStarts;
+      ends = grownEnds;
+    }
+    starts[edgeCount] = start;
+    ends[edgeCount] = end;
+    edgeCount++;
+  }
+
+  public CompactGraph build() {
+    return CompactGraph.fromEdges(size, starts, ends, edgeCount);
+  }
+}
@@ -0,0 +1,192 @@
+package graph;
+
+import java.util.*;
+
+/**
+ * A read only {@code TwoWayDirectedGraph} view of a {@code CompactGraph}.
+ * <p>
+ * Neighborhoods are views over the compact arrays, so nothing is copied until you iterate.
+ */
+class CompactTwoWayDirectedGraph extends TwoWayDirectedGraph<Integer> {
+  private final CompactGraph graph;
+
+  CompactTwoWayDirectedGraph(CompactGraph graph) {
+    super();
+    this.graph = graph;
+  }
+
+  CompactGraph getCompactGraph() {
+    return graph;
+  }
+
+  @Override
+  public boolean hasEdge(Edge<Integer> edge) {
+    return graph.hasEdge(edge.getStart(), edge.getEnd());
+  }
+
+  @Override
+  public Iterator<Edge<Integer>> getEdges() {
+    return graph.getEdges();
+  }
+
+  @Override
+  public int edgeCount() {
+    return graph.edgeCount();
+  }
+
+  @Override
+  public Set<Integer> nodes() {
+    return new NodeRange(graph.size());
+  }
+
+  @Override
+  public Set<Integer> outNeighborhood(Integer node) {
+    return new Neighborhood(node, true);
+  }
+
+  @Override
+  public Set<Integer> inNeighborhood(Integer node) {
+    return new Neighborhood(node, false);
+  }
+
+  @Override
+  public int size() {
+    return graph.size();
+  }
+
+  @Override
+  public Set<Integer> inputs() {
+    return toSet(graph.sources());
+  }
+
+  @Override
+  public Set<Integer> outputs() {
+    return toSet(graph.sinks());
+  }
+
+  @Override
+  public Set<Integer> traceForward(Integer[] input) {
+    return toSet(graph.traceForward(unbox(input)));
+  }
+
+  @Override
+  public Set<Integer> traceBackward(Integer[] input) {
+    return toSet(graph.traceBackward(unbox(input)));
+  }
+
+  private static int[] unbox(Integer[] arr) {
+    int[] r = new int[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      r[i] = arr[i];
+    }
+    return r;
+  }
+
+  /**
+   * Like the other implementations, the returned set is a fresh, editable copy.
+   */
+  private static Set<Integer> toSet(int[] nodes) {
+    Set<Integer> r = new HashSet<>();
+    for (int node : nodes) {
+      r.add(node);
+    }
+    return r;
+  }
+
+  private static Set<Integer> toSet(boolean[] nodes) {
+    Set<Integer> r = new HashSet<>();
+    for (int node = 0; node < nodes.length; node++) {
+      if (nodes[node]) {
+        r.add(node);
+      }
+    }
+    return r;
+  }
+
+  /**
+   * The set of integers from {@code 0} to {@code size - 1}.
+   */
+  private static class NodeRange extends AbstractSet<Integer> {
+    private final int size;
+
+    NodeRange(int size) {
+      this.size = size;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof Integer && 0 <= (Integer) o && (Integer) o < size;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+      return new Iterator<Integer>() {
+        private int i = 0;
+
+        @Override
+        public boolean hasNext() {
+          return i < size;
+        }
+
+        @Override
+        public Integer next() {
+          if (i >= size) {
+            throw new NoSuchElementException();
+          }
+          return i++;
+        }
+      };
+    }
+  }
+
+  private class Neighborhood extends AbstractSet<Integer> {
+    private final int node;
+    private final boolean out;
+
+    Neighborhood(int node, boolean out) {
+      this.node = node;
+      this.out = out;
+    }
+
+    @Override
+    public int size() {
+      return out ? graph.outDegree(node) : graph.inDegree(node);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Integer)) {
+        return false;
+      }
+      int other = (Integer) o;
+      if (other < 0 || graph.size() <= other) {
+        return false;
+      }
+      return out ? graph.hasEdge(node, other) : graph.hasEdge(other, node);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+      final CompactGraph.NeighborCursor cursor = (out ? graph.outCursor() : graph.inCursor()).reset(node);
+      return new Iterator<Integer>() {
+        @Override
+        public boolean hasNext() {
+          return cursor.hasNext();
+        }
+
+        @Override
+        public Integer next() {
+          if (!cursor.hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return cursor.next();
+        }
+      };
+    }
+  }
+}
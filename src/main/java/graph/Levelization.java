@@ -0,0 +1,206 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * A topological order of a {@code CompactGraph}, grouped by level, found with Kahn's algorithm in O(V + E).
+ * <p>
+ * A node's level is {@code 0} if nothing points to it, and otherwise one more than the highest level pointing to it,
+ * i.e. the length of the longest path ending at it. The order lists every level {@code 0} node, then every level
+ * {@code 1} node, and so on, so each node comes after everything pointing to it.
+ * Walking the out edges of the nodes in that order (see {@code EdgeCursor}) likewise puts every edge
+ * after all of the edges into its start, ignoring edges into sources.
+ * <p>
+ * Nodes can be made sources, whose incoming edges are ignored (as for circuit inputs, whose values are asserted).
+ * <p>
+ * Nodes on a loop, or downstream of one, never become ready. They are left out of the order and have level {@code -1},
+ * and {@code isComplete()} is {@code false}.
+ * <p>
+ * Immutable. Build it once and share it between everything that needs an order.
+ */
+public final class Levelization {
+  private final CompactGraph graph;
+  private final int[] order;
+  private final int[] level;
+  /**
+   * The nodes on level {@code l} are {@code order[levelStart[l]]} to {@code order[levelStart[l + 1] - 1]}.
+   */
+  private final int[] levelStart;
+
+  private Levelization(CompactGraph graph, int[] order, int[] level, int[] levelStart) {
+    this.graph = graph;
+    this.order = order;
+    this.level = level;
+    this.levelStart = levelStart;
+  }
+
+  public static Levelization of(CompactGraph graph) {
+    return of(graph, new int[0]);
+  }
+
+  /**
+   * @param sources Nodes to put on level {@code 0} whatever points to them
+   */
+  public static Levelization of(CompactGraph graph, int[] sources) {
+    int size = graph.size();
+    boolean[] isSource = new boolean[size];
+    for (int s : sources) {
+      isSource[s] = true;
+    }
+
+    int[] remainingInputs = new int[size];
+    int[] queue = new int[size];
+    int head = 0;
+    int tail = 0;
+    for (int node = 0; node < size; node++) {
+      remainingInputs[node] = isSource[node] ? 0 : graph.inDegree(node);
+      if (remainingInputs[node] == 0) {
+        queue[tail++] = node;
+      }
+    }
+
+    int[] level = new int[size];
+    Arrays.fill(level, -1);
+    for (int i = 0; i < tail; i++) {
+      level[queue[i]] = 0;
+    }
+    int maxLevel = tail == 0 ? -1 : 0;
+    CompactGraph.NeighborCursor cursor = graph.outCursor();
+    while (head < tail) {
+      int node = queue[head++];
+      cursor.reset(node);
+      while (cursor.hasNext()) {
+        int next = cursor.next();
+        if (isSource[next]) {
+          continue;
+        }
+        level[next] = Math.max(level[next], level[node] + 1);
+        if (--remainingInputs[next] == 0) {
+          queue[tail++] = next;
+          maxLevel = Math.max(maxLevel, level[next]);
+        }
+      }
+    }
+
+    // Nodes stuck behind a loop may have picked up a level from their other inputs
+    for (int node = 0; node < size; node++) {
+      if (remainingInputs[node] != 0) {
+        level[node] = -1;
+      }
+    }
+
+    // Counting sort of the ready nodes by level, keeping Kahn's order within a level
+    int[] levelStart = new int[maxLevel + 2];
+    for (int i = 0; i < tail; i++) {
+      levelStart[level[queue[i]] + 1]++;
+    }
+    for (int l = 0; l <= maxLevel; l++) {
+      levelStart[l + 1] += levelStart[l];
+    }
+    int[] fill = Arrays.copyOf(levelStart, maxLevel + 1);
+    int[] order = new int[tail];
+    for (int i = 0; i < tail; i++) {
+      order[fill[level[queue[i]]]++] = queue[i];
+    }
+
+    return new Levelization(graph, order, level, levelStart);
+  }
+
+  /**
+   * @return {@code false} if some nodes were left out because of a loop
+   */
+  public boolean isComplete() {
+    return order.length == graph.size();
+  }
+
+  /**
+   * @return The {@code k}th node in the order
+   */
+  public int node(int k) {
+    return order[k];
+  }
+
+  /**
+   * @return The number of nodes in the order
+   */
+  public int orderSize() {
+    return order.length;
+  }
+
+  /**
+   * @return A copy of the order
+   */
+  public int[] order() {
+    return order.clone();
+  }
+
+  /**
+   * @return The level of {@code node}, or {@code -1} if it was left out of the order
+   */
+  public int level(int node) {
+    return level[node];
+  }
+
+  /**
+   * @return A copy of every node's level, indexed by node
+   */
+  public int[] levels() {
+    return level.clone();
+  }
+
+  /**
+   * @return The number of levels, i.e. one more than the highest level
+   */
+  public int levelCount() {
+    return levelStart.length - 1;
+  }
+
+  /**
+   * @return The position in the order of the first node on level {@code l}.
+   * The nodes on level {@code l} run up to {@code levelStart(l + 1)}.
+   */
+  public int levelStart(int l) {
+    return levelStart[l];
+  }
+
+  public EdgeCursor edgeCursor() {
+    return new EdgeCursor();
+  }
+
+  /**
+   * Walks the out edges of every node in the order. Each edge comes after all of the edges into its start,
+   * unless its start is a source, whose incoming edges can come anywhere.
+   * <pre>
+   *   while (cursor.advance()) {
+   *     int start = cursor.start();
+   *     int end = cursor.end();
+   *   }
+   * </pre>
+   */
+  public final class EdgeCursor {
+    private final CompactGraph.NeighborCursor neighbors = graph.outCursor();
+    private int k = -1;
+    private int start;
+    private int end;
+
+    public boolean advance() {
+      while (k < 0 || !neighbors.hasNext()) {
+        if (++k >= order.length) {
+          return false;
+        }
+        start = order[k];
+        neighbors.reset(start);
+      }
+      end = neighbors.next();
+      return true;
+    }
+
+    public int start() {
+      return start;
+    }
+
+    public int end() {
+      return end;
+    }
+  }
+}
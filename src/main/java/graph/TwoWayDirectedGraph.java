@@ -14,6 +14,14 @@ public class TwoWayDirectedGraph<T> {
     backward = graph.invert();
   }
 
+  /**
+   * For subclasses which store the graph some other way, and so override everything that reads {@code forward} or {@code backward}.
+   */
+  protected TwoWayDirectedGraph() {
+    forward = null;
+    backward = null;
+  }
+
 //  private TwoWayDirectedGraph(DirectedGraph forward, DirectedGraph backward) {
 //    this.forward = forward;
 //    this.backward = backward;
@@ -0,0 +1,103 @@
+package misc;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of {@code long}s, for packed coordinates ({@code Point2D.pack}, {@code Point3D.pack}),
+ * that doesn't box its keys or allocate per entry.
+ */
+public final class LongHashSet {
+  private long[] keys;
+  private int size;
+  private boolean hasFree;
+
+  public LongHashSet() {
+    this(0);
+  }
+
+  public LongHashSet(int expected) {
+    keys = new long[LongHashing.capacityFor(expected)];
+    Arrays.fill(keys, LongHashing.FREE);
+  }
+
+  /**
+   * @return {@code true} if {@code key} wasn't already in the set
+   */
+  public boolean add(long key) {
+    if (key == LongHashing.FREE) {
+      if (hasFree) {
+        return false;
+      }
+      hasFree = true;
+      size++;
+      return true;
+    }
+    int mask = keys.length - 1;
+    for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return false;
+      }
+      if (keys[i] == LongHashing.FREE) {
+        keys[i] = key;
+        if (++size * 2 > keys.length) {
+          grow();
+        }
+        return true;
+      }
+    }
+  }
+
+  public boolean contains(long key) {
+    if (key == LongHashing.FREE) {
+      return hasFree;
+    }
+    int mask = keys.length - 1;
+    for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return true;
+      }
+      if (keys[i] == LongHashing.FREE) {
+        return false;
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * In no particular order
+   */
+  public void forEach(LongConsumer action) {
+    if (hasFree) {
+      action.accept(LongHashing.FREE);
+    }
+    for (long key : keys) {
+      if (key != LongHashing.FREE) {
+        action.accept(key);
+      }
+    }
+  }
+
+  private void grow() {
+    long[] old = keys;
+    keys = new long[old.length * 2];
+    Arrays.fill(keys, LongHashing.FREE);
+    int mask = keys.length - 1;
+    for (long key : old) {
+      if (key != LongHashing.FREE) {
+        int i = LongHashing.slot(key, mask);
+        while (keys[i] != LongHashing.FREE) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package misc;
+
+/**
+ * Shared pieces of the open addressing tables keyed by {@code long}.
+ * <p>
+ * Tables are a power of two long, probed linearly, and kept at most half full.
+ * {@code FREE} marks an unused slot, so a key equal to it is stored to the side of the table.
+ */
+final class LongHashing {
+  static final long FREE = Long.MIN_VALUE;
+  static final int MIN_CAPACITY = 16;
+
+  private LongHashing() {
+  }
+
+  /**
+   * Packed coordinates differ mostly in their low bits, so mix everything into the bits the mask keeps.
+   */
+  static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32) ^ (h >>> 17)) & mask;
+  }
+
+  /**
+   * @return A capacity that holds {@code expected} keys without growing
+   */
+  static int capacityFor(int expected) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < 2L * expected) {
+      if (capacity >= 1 << 30) {
+        throw new IllegalStateException("Too many keys: " + expected);
+      }
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+}
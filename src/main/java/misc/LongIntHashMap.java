@@ -0,0 +1,163 @@
+package misc;
+
+import java.util.Arrays;
+
+/**
+ * A map from {@code long}s (usually packed coordinates) to {@code int}s, that doesn't box or allocate per entry.
+ * <p>
+ * Lookups of missing keys give the {@code missing} value chosen at construction, so pick one no real value can be.
+ */
+public final class LongIntHashMap {
+  private final int missing;
+  private long[] keys;
+  private int[] values;
+  private int size;
+  private boolean hasFree;
+  private int freeValue;
+
+  public LongIntHashMap(int missing) {
+    this(missing, 0);
+  }
+
+  public LongIntHashMap(int missing, int expected) {
+    this.missing = missing;
+    int capacity = LongHashing.capacityFor(expected);
+    keys = new long[capacity];
+    Arrays.fill(keys, LongHashing.FREE);
+    values = new int[capacity];
+  }
+
+  /**
+   * @return The value of {@code key}, or the {@code missing} value
+   */
+  public int get(long key) {
+    if (key == LongHashing.FREE) {
+      return hasFree ? freeValue : missing;
+    }
+    int i = find(key);
+    return keys[i] == key ? values[i] : missing;
+  }
+
+  public boolean containsKey(long key) {
+    if (key == LongHashing.FREE) {
+      return hasFree;
+    }
+    return keys[find(key)] == key;
+  }
+
+  /**
+   * @return The previous value of {@code key}, or the {@code missing} value
+   */
+  public int put(long key, int value) {
+    if (key == LongHashing.FREE) {
+      int old = hasFree ? freeValue : missing;
+      if (!hasFree) {
+        hasFree = true;
+        size++;
+      }
+      freeValue = value;
+      return old;
+    }
+    int i = find(key);
+    if (keys[i] == key) {
+      int old = values[i];
+      values[i] = value;
+      return old;
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+    return missing;
+  }
+
+  /**
+   * Adds {@code delta} to the value of {@code key}, treating a missing key as {@code 0}
+   *
+   * @return The new value
+   */
+  public int addTo(long key, int delta) {
+    if (key == LongHashing.FREE) {
+      int value = (hasFree ? freeValue : 0) + delta;
+      put(key, value);
+      return value;
+    }
+    // Whether the key is there goes by its slot, since a stored value may well equal missing
+    int i = find(key);
+    if (keys[i] == key) {
+      return values[i] += delta;
+    }
+    keys[i] = key;
+    values[i] = delta;
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+    return delta;
+  }
+
+  /**
+   * @return The value {@code key} had, or the {@code missing} value
+   */
+  public int remove(long key) {
+    if (key == LongHashing.FREE) {
+      if (!hasFree) {
+        return missing;
+      }
+      hasFree = false;
+      size--;
+      return freeValue;
+    }
+    int i = find(key);
+    if (keys[i] != key) {
+      return missing;
+    }
+    int old = values[i];
+    size--;
+    // Shift later keys of the same run back into the hole, so lookups never stop short of them
+    int mask = keys.length - 1;
+    int hole = i;
+    for (int j = (i + 1) & mask; keys[j] != LongHashing.FREE; j = (j + 1) & mask) {
+      int home = LongHashing.slot(keys[j], mask);
+      boolean reachesHole = hole <= j ? home <= hole || home > j : home <= hole && home > j;
+      if (reachesHole) {
+        keys[hole] = keys[j];
+        values[hole] = values[j];
+        hole = j;
+      }
+    }
+    keys[hole] = LongHashing.FREE;
+    return old;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return The slot holding {@code key}, or the free slot it would go in
+   */
+  private int find(long key) {
+    int mask = keys.length - 1;
+    int i = LongHashing.slot(key, mask);
+    while (keys[i] != key && keys[i] != LongHashing.FREE) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    Arrays.fill(keys, LongHashing.FREE);
+    values = new int[keys.length];
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != LongHashing.FREE) {
+        int i = find(oldKeys[j]);
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+}
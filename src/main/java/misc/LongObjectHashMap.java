@@ -0,0 +1,97 @@
+package misc;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * A map from {@code long}s (usually packed coordinates) to objects, that doesn't box its keys.
+ * {@code null} values aren't allowed, so {@code get} returning {@code null} means the key is missing.
+ */
+public final class LongObjectHashMap<V> {
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private V freeValue;
+
+  public LongObjectHashMap() {
+    this(0);
+  }
+
+  public LongObjectHashMap(int expected) {
+    int capacity = LongHashing.capacityFor(expected);
+    keys = new long[capacity];
+    Arrays.fill(keys, LongHashing.FREE);
+    values = new Object[capacity];
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    if (key == LongHashing.FREE) {
+      return freeValue;
+    }
+    return (V) values[find(key)];
+  }
+
+  /**
+   * @return The previous value of {@code key}, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values aren't allowed");
+    }
+    if (key == LongHashing.FREE) {
+      V old = freeValue;
+      if (old == null) {
+        size++;
+      }
+      freeValue = value;
+      return old;
+    }
+    int i = find(key);
+    V old = (V) values[i];
+    keys[i] = key;
+    values[i] = value;
+    if (old == null && ++size * 2 > keys.length) {
+      grow();
+    }
+    return old;
+  }
+
+  public V computeIfAbsent(long key, LongFunction<? extends V> make) {
+    V r = get(key);
+    if (r == null) {
+      r = make.apply(key);
+      put(key, r);
+    }
+    return r;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int find(long key) {
+    int mask = keys.length - 1;
+    int i = LongHashing.slot(key, mask);
+    while (keys[i] != key && keys[i] != LongHashing.FREE) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    Arrays.fill(keys, LongHashing.FREE);
+    values = new Object[keys.length];
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != LongHashing.FREE) {
+        int i = find(oldKeys[j]);
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+}
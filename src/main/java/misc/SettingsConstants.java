@@ -11,6 +11,10 @@ public class SettingsConstants {
   public static final Path root = Paths.get("src").resolve("main").resolve("resources");
   public static final Path circuitRoot = root.resolve("circuits");
   public static final Path nbtRoot = root.resolve("nbt");
+  /**
+   * Where generated and parsed circuits are cached between runs. See {@code CircuitCache}.
+   */
+  public static final Path circuitCacheRoot = Paths.get("target").resolve("circuit-cache");
 
   public static final String OS = System.getProperty("os.name").toLowerCase();
 
@@ -6,55 +6,68 @@ import dev.dewy.nbt.tags.collection.CompoundTag;
 import physical.things.BlockConstant;
 import physical.things.Bounds;
 import physical.things.Point3D;
+import physical2.blocks.BlockStore;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static nbt.BlockIdConstants.*;
 import static misc.SettingsConstants.nbtRoot;
 
 public class NBTMaker {
   public static final Nbt NBT = new Nbt();
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
 
+  private static final int TAG_END = 0;
+  private static final int TAG_SHORT = 2;
+  private static final int TAG_BYTE_ARRAY = 7;
 
   /**
-   * @param blocks Ordered XYZ
-   * @return {@code null} if the specified range has no blocks other than {@code BlockConstant.EMPTY}
+   * Indexed by {@code BlockConstant.ordinal()}, {@code -1} for blocks without an id
    */
-  public static CompoundTag subrangeToNbt(BlockConstant[][][] blocks, Bounds b) throws IOException, SNBTParser.SNBTParseException {
-    CompoundTag tag = baseTag();
-
-    Point3D size = b.size();
-
-    tag.putShort("Width", (short) size.getX());
-    tag.putShort("Height", (short) size.getY());
-    tag.putShort("Length", (short) size.getZ());
-
-    byte[] data = flattenSubrange(blocks, b, palette);
-    if (data == null) {
-      return null;
-    }
-
-    tag.putByteArray("BlockData", data);
-
-    return tag;
-  }
+  private static final int[] PALETTE_IDS = paletteIds();
 
   /**
-   * @param blocks Ordered XYZ
+   * The base tag and palette serialized once, without the closing {@code TAG_End},
+   * so that each schematic only has to append its size and block data.
    */
-  public static CompoundTag toNbt(BlockConstant[][][] blocks) throws IOException, SNBTParser.SNBTParseException {
-    CompoundTag tag = baseTag();
+  private static byte[] header;
 
-    tag.putShort("Width", (short) blocks.length);
-    tag.putShort("Height", (short) blocks[0].length);
-    tag.putShort("Length", (short) blocks[0][0].length);
-
-    tag.putByteArray("BlockData", flatten(blocks, palette));
+  private static int[] paletteIds() {
+    int[] r = new int[BlockConstant.values().length];
+    Arrays.fill(r, -1);
+    for (Map.Entry<BlockConstant, Byte> entry : palette.entrySet()) {
+      r[entry.getKey().ordinal()] = entry.getValue() & 0xff;
+    }
+    return r;
+  }
 
-    return tag;
+  private static synchronized byte[] header() throws IOException {
+    if (header == null) {
+      CompoundTag tag;
+      try {
+        tag = baseTag();
+      } catch (SNBTParser.SNBTParseException e) {
+        throw new IOException("Invalid NBT tag", e);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      NBT.toStream(tag, out);
+      out.flush();
+      byte[] r = bytes.toByteArray();
+      if (r.length == 0 || r[r.length - 1] != TAG_END) {
+        throw new IllegalStateException("Serialized base tag doesn't end in TAG_End");
+      }
+      header = Arrays.copyOf(r, r.length - 1);
+    }
+    return header;
   }
 
   private static CompoundTag baseTag() throws IOException, SNBTParser.SNBTParseException {
@@ -65,62 +78,54 @@ public class NBTMaker {
   }
 
   /**
-   * @param blocks Ordered XYZ, where we need YZX
+   * Writes the specified range as a gzipped {@code .schematic}, streaming the block data straight from {@code blocks}
+   * rather than building a {@code CompoundTag} first. Only one row of blocks is held at a time.
+   * <p>
+   * The result is the same as the base tag with the palette, {@code Width}, {@code Height}, {@code Length},
+   * and {@code BlockData} (ordered YZX) added.
    */
-  private static byte[] flattenSubrange(BlockConstant[][][] blocks, Bounds b, Map<BlockConstant, Byte> palette) {
+  public static void writeSchematic(BlockStore blocks, Bounds b, File file) throws IOException {
     int xLo = b.getLower().getX();
     int yLo = b.getLower().getY();
     int zLo = b.getLower().getZ();
-    int xHi = b.getUpper().getX() + 1;
-    int yHi = b.getUpper().getY() + 1;
-    int zHi = b.getUpper().getZ() + 1;
-
-    int xWidth = xHi - xLo;
-    int yWidth = yHi - yLo;
-    int zWidth = zHi - zLo;
-
-    byte[] r = new byte[xWidth * yWidth * zWidth];
-    int i = 0;
-
-    boolean hasContent = false;
-    for (int y = yLo; y < yHi; y++) {
-      for (int z = zLo; z < zHi; z++) {
-        for (int x = xLo; x < xHi; x++) {
-          BlockConstant bc = blocks[x][y][z];
-          if (bc == null) {
-            bc = BlockConstant.EMPTY;
-          }
-          if (bc != BlockConstant.EMPTY) {
-            hasContent = true;
-          }
-          Byte id = palette.get(bc);
-          if (id == null) {
-            throw new IllegalArgumentException("BlockConstant without id: " + blocks[x][y][z]);
+    Point3D size = b.size();
+    int xWidth = size.getX();
+    int yWidth = size.getY();
+    int zWidth = size.getZ();
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE), WRITE_BUFFER_SIZE))) {
+      out.write(header());
+      writeShort(out, "Width", xWidth);
+      writeShort(out, "Height", yWidth);
+      writeShort(out, "Length", zWidth);
+
+      out.writeByte(TAG_BYTE_ARRAY);
+      out.writeUTF("BlockData");
+      out.writeInt(xWidth * yWidth * zWidth);
+      byte[] row = new byte[xWidth];
+      for (int y = yLo; y < yLo + yWidth; y++) {
+        for (int z = zLo; z < zLo + zWidth; z++) {
+          for (int i = 0; i < xWidth; i++) {
+            int ordinal = blocks.getOrdinal(xLo + i, y, z);
+            int id = PALETTE_IDS[ordinal];
+            if (id == -1) {
+              throw new IllegalArgumentException("BlockConstant without id: " + BlockConstant.values()[ordinal]);
+            }
+            row[i] = (byte) id;
           }
-          r[i++] = id;
+          out.write(row);
         }
       }
-    }
 
-    if (hasContent) {
-      return r;
-    } else {
-      return null;
+      out.writeByte(TAG_END);
     }
   }
 
-  /**
-   * @param blocks Ordered XYZ, where we need YZX
-   */
-  private static byte[] flatten(BlockConstant[][][] blocks, Map<BlockConstant, Byte> palette) {
-    return flattenSubrange(blocks, arrayBounds(blocks), palette);
-  }
-
-  public static Bounds arrayBounds(BlockConstant[][][] blocks) {
-    int xWidth = blocks.length;
-    int yWidth = blocks[0].length;
-    int zWidth = blocks[0][0].length;
-    return Bounds.make(new Point3D(0, 0, 0), new Point3D(xWidth - 1, yWidth - 1, zWidth - 1));
+  private static void writeShort(DataOutputStream out, String name, int value) throws IOException {
+    out.writeByte(TAG_SHORT);
+    out.writeUTF(name);
+    out.writeShort(value);
   }
 
   /**
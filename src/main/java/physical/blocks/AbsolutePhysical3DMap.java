@@ -47,6 +47,10 @@ public class AbsolutePhysical3DMap {
     blocks[p.getX()][p.getY()][p.getZ()] = block;
   }
 
+  public Point3D size() {
+    return new Point3D(blocks.length, blocks[0].length, blocks[0][0].length);
+  }
+
   public BlockConstant getBlock(Point3D p) {
     return blocks[p.getX()][p.getY()][p.getZ()];
   }
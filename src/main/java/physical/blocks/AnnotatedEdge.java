@@ -111,22 +111,25 @@ public class AnnotatedEdge implements Iterable<Pair<Point3D, BlockConstant>> {
   /**
    * Creates an annotated edge which represents approaching this object from the other end of the given connection.
    * <p>
-   * Applies a translation.
+   * Applies a translation. The connection and empty points move by the end of the connection,
+   * and the blocks by twice that, since a connection is between points two blocks apart.
    */
   public AnnotatedEdge swapPerspective() {
-    Function<Point3D, Point3D> offset = new Offset(connection.getEnd().negate());
+    Point3D end = connection.getEnd();
+    Function<Point3D, Point3D> offset = new Offset(end.negate());
+    Function<Point3D, Point3D> blockOffset = new Offset(-2 * end.getX(), -2 * end.getY(), -2 * end.getZ());
     HashSet<Point3D> newEmptyPoints = new HashSet<>();
     for (Point3D p : emptyPoints) {
       newEmptyPoints.add(offset.apply(p));
     }
     Map<Point3D, BlockConstant> newPoints = new HashMap<>();
     for (Point3D p : points.keySet()) {
-      newPoints.put(offset.apply(p), points.get(p));
+      newPoints.put(blockOffset.apply(p), points.get(p));
     }
     return new AnnotatedEdge(
         secondTorch,
         firstTorch,
-        new Edge<>(offset.apply(connection.getStart()), offset.apply(connection.getEnd())),
+        new Edge<>(offset.apply(connection.getEnd()), offset.apply(connection.getStart())),
         newEmptyPoints,
         newPoints
     );
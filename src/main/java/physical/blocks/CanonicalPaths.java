@@ -1,6 +1,7 @@
 package physical.blocks;
 
 import graph.Edge;
+import physical.things.Axis;
 import physical.things.BlockConstant;
 import physical.things.Point3D;
 import physical.things.TorchState;
@@ -162,6 +163,37 @@ public class CanonicalPaths {
     return r;
   }
 
+  /**
+   * Straight connections through a repeater, which gives the signal its full strength back.
+   * <p>
+   * Unlike the others these aren't rotations of one edge, since a repeater faces the way the signal goes
+   * and so is a different block in each direction. They can only be followed forwards.
+   */
+  public static Collection<AnnotatedEdge> repeaterConnections() {
+    ArrayList<AnnotatedEdge> r = new ArrayList<>();
+    // In the order Rotation(X, Z) turns +x into
+    BlockConstant[] facings = {BlockConstant.REPEATER_X, BlockConstant.REPEATER_Z, BlockConstant.REPEATER_X_, BlockConstant.REPEATER_Z_};
+    Rotation rotation = new Rotation(Axis.X, Axis.Z);
+    for (int i = 0; i < facings.length; i++) {
+      HashMap<Point3D, BlockConstant> blocks = new HashMap<>();
+
+      writeRedstone(blocks, new Point3D(0, 0, 0));
+      blocks.put(new Point3D(1, 0, 0), facings[i]);
+      blocks.put(new Point3D(1, -1, 0), BlockConstant.REDSTONE_BASE);
+      writeRedstone(blocks, new Point3D(2, 0, 0));
+
+      AnnotatedEdge annotatedEdge = new AnnotatedEdge(
+          TorchState.NONE,
+          TorchState.NONE,
+          new Edge<>(new Point3D(0, 0, 0), new Point3D(1, 0, 0)),
+          new HashSet<>(),
+          blocks
+      );
+      r.add(annotatedEdge.rotate(rotation.consecutiveRotations(i)));
+    }
+    return r;
+  }
+
   public static Collection<AnnotatedEdge> allConnections() {
     ArrayList<AnnotatedEdge> r = new ArrayList<>();
     r.addAll(horizConnections());
@@ -0,0 +1,249 @@
+package physical.blocks;
+
+import circuit.AnnotatedCircuit;
+import circuit.Pair;
+import graph.CompactGraph;
+import graph.Levelization;
+import physical.things.BlockConstant;
+import physical.things.Point3D;
+import physical.things.TorchState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Lays a circuit out as tightly as {@code CongestionRouter} can route it.
+ * <p>
+ * Every torch gets a place in a column for the level of the wire it feeds (see {@code Levelization}),
+ * with the inputs in the first column and the outputs in the last. Levels with many torches get several columns,
+ * to keep the layout about as long as it is wide. Within a column, wires are sorted by where
+ * the wires feeding them are, so connections mostly run straight across. Each wire becomes a net
+ * from the torches feeding it to the bases of the torches it feeds, and the router finds the redstone in between.
+ * <p>
+ * Starts with few layers of redstone and adds more until everything can be routed.
+ */
+public class CompactCircuitConstructor {
+  /**
+   * Torch bases, torch outputs, and a free column for redstone, in grid points
+   */
+  private static final int COLUMN_PITCH = 3;
+  private static final int MIN_LAYERS = 2;
+  private static final int MAX_LAYERS = 6;
+  private static final int MAX_ITERATIONS = 60;
+
+  /**
+   * A torch pointing +x from its base at the origin, from {@code CanonicalPaths}
+   */
+  private static final AnnotatedEdge TORCH = findTorch();
+
+  private final CompactGraph graph;
+  private final Integer[] inputs;
+  private final Integer[] outputs;
+  private int layers;
+  private int iterations;
+  private CongestionRouter router;
+
+  /**
+   * The z of every torch, indexed like the in edges of its wire
+   */
+  private int[][] torchZ;
+  private int[] inputZ;
+  /**
+   * The column of torches feeding each wire, where the inputs are column {@code 0}
+   */
+  private int[] column;
+  private int xSize;
+  private int zSize;
+
+  public CompactCircuitConstructor(AnnotatedCircuit circuit) {
+    this.graph = circuit.getCompactGraph();
+    this.inputs = circuit.getInputs();
+    this.outputs = circuit.getOutputs();
+  }
+
+  private static AnnotatedEdge findTorch() {
+    for (AnnotatedEdge edge : CanonicalPaths.horizConnections()) {
+      if (edge.getFirstTorchState() == TorchState.INPUT && edge.getTargetPoint().equals(new Point3D(1, 0, 0))) {
+        return edge;
+      }
+    }
+    throw new IllegalStateException("CanonicalPaths has no torch pointing +x");
+  }
+
+  /**
+   * @throws UnsupportedOperationException If the circuit has loops, which can't be put in columns
+   * @throws IllegalStateException If it can't be routed even with {@code MAX_LAYERS} layers
+   */
+  public AbsolutePhysical3DMap construct() {
+    place();
+    for (layers = MIN_LAYERS; layers <= MAX_LAYERS; layers++) {
+      router = makeRouter();
+      boolean routed = router.route(MAX_ITERATIONS);
+      iterations = router.getIterations();
+      if (routed) {
+        return router.toMap();
+      }
+    }
+    throw new IllegalStateException("Couldn't route the circuit in " + MAX_LAYERS + " layers");
+  }
+
+  /**
+   * @return How many layers of redstone the last {@code construct} needed
+   */
+  public int getLayers() {
+    return layers;
+  }
+
+  /**
+   * @return The router of the last {@code construct}, whose nets are the circuit's nodes
+   */
+  public CongestionRouter getRouter() {
+    return router;
+  }
+
+  /**
+   * @return How many rounds of routing the last {@code construct} took with that many layers
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  private void place() {
+    int size = graph.size();
+    int[] inputIds = new int[inputs.length];
+    for (int i = 0; i < inputs.length; i++) {
+      inputIds[i] = inputs[i];
+      if (graph.inDegree(inputs[i]) != 0) {
+        throw new UnsupportedOperationException("Input " + inputs[i] + " is driven by torches");
+      }
+    }
+    Levelization levelization = Levelization.of(graph, inputIds);
+    if (!levelization.isComplete()) {
+      throw new UnsupportedOperationException("The compact layout needs a circuit without loops");
+    }
+
+    // Where each wire's signal comes from, on average
+    double[] center = new double[size];
+    torchZ = new int[size][];
+    inputZ = new int[size];
+    Arrays.fill(inputZ, -1);
+    int maxZ = 0;
+    for (int i = 0; i < inputs.length; i++) {
+      inputZ[inputs[i]] = 2 * i;
+      center[inputs[i]] = 2 * i;
+      maxZ = Math.max(maxZ, 2 * i);
+    }
+
+    // About as long in z as the columns of torches will be in x
+    int edges = graph.edgeCount();
+    int height = Math.max(2 * Math.max(inputs.length, outputs.length), 2 * (int) Math.ceil(Math.sqrt(COLUMN_PITCH * edges)));
+
+    column = new int[size];
+    int columns = 1;
+    for (int l = 1; l < levelization.levelCount(); l++) {
+      ArrayList<Integer> wires = new ArrayList<>();
+      int torches = 0;
+      for (int k = levelization.levelStart(l); k < levelization.levelStart(l + 1); k++) {
+        int wire = levelization.node(k);
+        double sum = 0;
+        for (int i = 0; i < graph.inDegree(wire); i++) {
+          sum += center[graph.inNeighbor(wire, i)];
+        }
+        center[wire] = sum / graph.inDegree(wire);
+        wires.add(wire);
+        torches += graph.inDegree(wire);
+      }
+      wires.sort(Comparator.comparingDouble(wire -> center[wire]));
+
+      // A level with too many torches for one column is dealt out over several, each still spanning the whole height,
+      // so every wire can stay near the wires feeding it
+      int split = Math.max(1, (2 * torches + height - 1) / height);
+      int[] next = new int[split];
+      for (int k = 0; k < wires.size(); k++) {
+        int wire = wires.get(k);
+        int c = k % split;
+        int fanIn = graph.inDegree(wire);
+        // Torches two points apart, so redstone can get between them
+        int start = Math.max(next[c], 2 * (int) Math.round((center[wire] - (fanIn - 1)) / 2));
+        column[wire] = columns + c;
+        torchZ[wire] = new int[fanIn];
+        for (int i = 0; i < fanIn; i++) {
+          torchZ[wire][i] = start + 2 * i;
+        }
+        center[wire] = start + fanIn - 1;
+        next[c] = start + 2 * fanIn;
+        maxZ = Math.max(maxZ, next[c] - 2);
+      }
+      columns += split;
+    }
+    maxZ = Math.max(maxZ, 2 * (outputs.length - 1));
+
+    xSize = COLUMN_PITCH * columns;
+    zSize = maxZ + 2;
+  }
+
+  private CongestionRouter makeRouter() {
+    CongestionRouter router = new CongestionRouter(xSize, layers, zSize);
+    int size = graph.size();
+    for (int wire = 0; wire < size; wire++) {
+      router.addNet();
+    }
+
+    for (int wire = 0; wire < size; wire++) {
+      if (inputZ[wire] != -1) {
+        addInput(router, wire, new Point3D(0, 0, inputZ[wire]));
+      }
+      for (int i = 0; torchZ[wire] != null && i < torchZ[wire].length; i++) {
+        Point3D base = new Point3D(COLUMN_PITCH * column[wire] - 1, 0, torchZ[wire][i]);
+        addTorch(router, graph.inNeighbor(wire, i), wire, base);
+      }
+    }
+
+    // A torch base is a redstone lamp, so an output is a torch base without the torch
+    for (int i = 0; i < outputs.length; i++) {
+      Point3D lamp = new Point3D(xSize - 1, 0, 2 * i);
+      router.addBlock(outputs[i], CongestionRouter.toBlock(lamp), BlockConstant.REDSTONE_TORCH_BASE);
+      router.addSink(outputs[i], lamp);
+    }
+    return router;
+  }
+
+  /**
+   * The base belongs to the wire going into the torch, and the rest to the wire it feeds.
+   * The block above the torch is kept clear, since a torch powers whatever is on top of it.
+   */
+  private static void addTorch(CongestionRouter router, int from, int to, Point3D base) {
+    Point3D baseBlock = CongestionRouter.toBlock(base);
+    for (Pair<Point3D, BlockConstant> pair : TORCH) {
+      Point3D block = baseBlock.translate(pair.getFirst());
+      switch (pair.getSecond()) {
+        case REDSTONE_TORCH_BASE:
+          router.addBlock(from, block, BlockConstant.REDSTONE_TORCH_BASE);
+          break;
+        case REDSTONE_TORCH:
+          // CanonicalPaths doesn't say which way a torch faces, but on the +x side of its base it faces east
+          router.addBlock(to, block, BlockConstant.REDSTONE_WALL_TORCH_LEFT);
+          router.addBlock(to, block.translate(0, 1, 0), BlockConstant.AIR);
+          break;
+        default:
+          router.addBlock(to, block, pair.getSecond());
+      }
+    }
+    router.addSink(from, base);
+    router.addSource(to, base.translate(TORCH.getTargetPoint()));
+  }
+
+  /**
+   * Redstone with a lever on the side of the block under it. The block above the lever is kept clear,
+   * since a lever powers redstone next to it.
+   */
+  private static void addInput(CongestionRouter router, int wire, Point3D point) {
+    Point3D block = CongestionRouter.toBlock(point);
+    router.addBlock(wire, block, BlockConstant.REDSTONE);
+    router.addBlock(wire, block.translate(0, -1, 0), BlockConstant.REDSTONE_BASE);
+    router.addBlock(wire, block.translate(0, -1, -1), BlockConstant.CIRCUIT_INPUT);
+    router.addBlock(wire, block.translate(0, 0, -1), BlockConstant.AIR);
+    router.addSource(wire, point);
+  }
+}
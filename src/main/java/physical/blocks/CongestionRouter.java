@@ -0,0 +1,651 @@
+package physical.blocks;
+
+import a_star.GridAStar;
+import circuit.Pair;
+import physical.things.BlockConstant;
+import physical.things.Point3D;
+import physical.things.TorchState;
+import physical.transforms.Offset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Routes every net at once on a grid of points two blocks apart, PathFinder style:
+ * nets may overlap at first, and a block gets more expensive for as long as more than one net wants it,
+ * until every net has found a way around the others.
+ * <p>
+ * A net is a redstone blob. Its sources are where a torch (or an input) feeds it,
+ * and its sinks are the torch bases it has to power. Every source is routed to every sink, so whichever source is on,
+ * every sink sees it. The moves are the {@code CanonicalPaths} connections between neighboring points.
+ * A net's own blocks are nearly free for it to reuse, so its connections grow into a tree rather than a bundle.
+ * <p>
+ * A signal fades as it goes, so a search state is a point along with how many more steps the signal can take from it.
+ * Stepping through a repeater resets that, so long connections get repeaters only where they need them.
+ * <p>
+ * Blocks are claimed rather than drawn while routing. Nets may share a block that they all want to be air,
+ * but any other two claims on a block are overuse. Blocks given by {@code addBlock} can't be claimed by another net at all.
+ * <p>
+ * Points are in grid coordinates, and blocks in block coordinates, where point {@code p} is at block {@code 2p + 1}.
+ */
+public class CongestionRouter {
+  /**
+   * How many steps a signal can take from a torch, input, or repeater.
+   * Those give the redstone next to them 15, and a step is two blocks.
+   */
+  public static final int MAX_STEPS = 7;
+  private static final int LEVELS = MAX_STEPS + 1;
+
+  /**
+   * The cost of a block no other net wants. Stepping along a net's own redstone costs {@code 1}.
+   */
+  private static final int BLOCK_COST = 10;
+  /**
+   * On top of its blocks, so a repeater is only used when the signal would run out otherwise
+   */
+  private static final int REPEATER_COST = 20;
+  private static final double INITIAL_PRESENT_FACTOR = 0.5;
+  private static final double PRESENT_GROWTH = 1.5;
+  private static final double MAX_COST = 1 << 24;
+  /**
+   * Routing gives up if the overuse hasn't fallen by a tenth in this many iterations
+   */
+  private static final int STALL_ITERATIONS = 16;
+  private static final double STALL_FRACTION = 0.9;
+
+  private static final int NONE = 0;
+  private static final int REPEATER = 1;
+  private static final int OUTPUT = 2;
+
+  private final int xSize;
+  private final int ySize;
+  private final int zSize;
+  private final int blockX;
+  private final int blockY;
+  private final int blockZ;
+
+  /**
+   * Indexed by kind, then by {@code deltaKey}
+   */
+  private final Move[][] moves = new Move[3][27];
+  private final Move[] moveList;
+
+  private final ArrayList<Net> nets = new ArrayList<>();
+  /**
+   * How many nets claim each block as something other than air, and as air
+   */
+  private final int[] solid;
+  private final int[] air;
+  private final int[] history;
+  /**
+   * The net that put each block down with {@code addBlock}, or {@code -1}
+   */
+  private final int[] fixedNet;
+  private final BlockConstant[] fixedBlock;
+  private double presentFactor;
+  private int iterations;
+
+  /**
+   * Which blocks the net being routed has, valid where {@code ownStamp} is {@code stamp}
+   */
+  private final int[] ownStamp;
+  private final BlockConstant[] ownBlock;
+  /**
+   * Blocks the connection being routed may not claim, where this is {@code pairStamp}
+   */
+  private final int[] forbiddenStamp;
+  private int stamp = 0;
+  private int pairStamp = 0;
+  private int[] claimBuffer = new int[64];
+  private int claimCount;
+
+  private final GridAStar search;
+  private int sinkPoint;
+  /**
+   * The most steps left with which each point has been expanded, in the search where {@code expandedSearch} is {@code searchCount}
+   */
+  private final int[] expandedSearch;
+  private final int[] expandedSteps;
+  private int searchCount = 0;
+
+  /**
+   * @param xSize The size of the grid of points, which is {@code 2 * size + 1} blocks in each direction
+   */
+  public CongestionRouter(int xSize, int ySize, int zSize) {
+    if (xSize <= 0 || ySize <= 0 || zSize <= 0) {
+      throw new IllegalArgumentException("Grid must have positive size, not " + xSize + "x" + ySize + "x" + zSize);
+    }
+    this.xSize = xSize;
+    this.ySize = ySize;
+    this.zSize = zSize;
+    blockX = 2 * xSize + 1;
+    blockY = 2 * ySize + 1;
+    blockZ = 2 * zSize + 1;
+    long blocks = (long) blockX * blockY * blockZ;
+    long states = (long) xSize * ySize * zSize * LEVELS;
+    if (blocks > Integer.MAX_VALUE / 2 || states > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Grid too large: " + xSize + "x" + ySize + "x" + zSize);
+    }
+
+    ArrayList<Move> list = new ArrayList<>();
+    addMoves(CanonicalPaths.allConnections(), false, list);
+    addMoves(CanonicalPaths.repeaterConnections(), true, list);
+    moveList = list.toArray(new Move[0]);
+
+    int blockCount = (int) blocks;
+    solid = new int[blockCount];
+    air = new int[blockCount];
+    history = new int[blockCount];
+    fixedNet = new int[blockCount];
+    Arrays.fill(fixedNet, -1);
+    fixedBlock = new BlockConstant[blockCount];
+    ownStamp = new int[blockCount];
+    ownBlock = new BlockConstant[blockCount];
+    forbiddenStamp = new int[blockCount];
+
+    expandedSearch = new int[xSize * ySize * zSize];
+    expandedSteps = new int[xSize * ySize * zSize];
+    search = new GridAStar((int) states, moveList.length, this::neighbors, this::cost)
+        .setHeuristic(this::estimate);
+  }
+
+  /**
+   * Keeps the connections a net can follow forwards from one of its points, one per kind and direction
+   */
+  private void addMoves(Collection<AnnotatedEdge> edges, boolean repeaters, ArrayList<Move> list) {
+    for (AnnotatedEdge edge : edges) {
+      if (edge.getFirstTorchState() != TorchState.NONE || edge.getSecondTorchState() == TorchState.INPUT) {
+        continue;
+      }
+      int kind = edge.getSecondTorchState() == TorchState.OUTPUT ? OUTPUT : repeaters ? REPEATER : NONE;
+      Point3D target = edge.getTargetPoint();
+      int key = deltaKey(target.getX(), target.getY(), target.getZ());
+      if (moves[kind][key] == null) {
+        Move move = new Move(edge, kind, target, list.size());
+        moves[kind][key] = move;
+        list.add(move);
+      }
+    }
+  }
+
+  private static int deltaKey(int dx, int dy, int dz) {
+    return ((dx + 1) * 3 + (dy + 1)) * 3 + dz + 1;
+  }
+
+  public int addNet() {
+    nets.add(new Net());
+    return nets.size() - 1;
+  }
+
+  /**
+   * Puts down a block that belongs to {@code net} and that no other net may claim, such as part of a torch
+   *
+   * @param block In block coordinates
+   */
+  public void addBlock(int net, Point3D block, BlockConstant blockConstant) {
+    int b = blockIndex(block);
+    if (fixedNet[b] == net && fixedBlock[b] == blockConstant) {
+      return;
+    }
+    if (fixedNet[b] != -1 && !(fixedBlock[b] == BlockConstant.AIR && blockConstant == BlockConstant.AIR)) {
+      throw new IllegalArgumentException("Block " + block + " is already " + fixedBlock[b] + " for net " + fixedNet[b]);
+    }
+    fixedNet[b] = net;
+    fixedBlock[b] = blockConstant;
+    nets.get(net).fixed.add(new Pair<>(block, blockConstant));
+    count(b, blockConstant, 1);
+  }
+
+  /**
+   * @param point Where the signal starts at full strength, in grid coordinates
+   */
+  public void addSource(int net, Point3D point) {
+    nets.get(net).sources.add(pointIndex(point));
+  }
+
+  /**
+   * @param point A torch base (or anything else redstone can point into) the net has to reach, in grid coordinates
+   */
+  public void addSink(int net, Point3D point) {
+    nets.get(net).sinks.add(pointIndex(point));
+  }
+
+  public int netCount() {
+    return nets.size();
+  }
+
+  /**
+   * @return Where {@code net}'s signal starts, in grid coordinates
+   */
+  public List<Point3D> getSources(int net) {
+    return pointsAt(nets.get(net).sources);
+  }
+
+  /**
+   * @return What {@code net} has to reach, in grid coordinates
+   */
+  public List<Point3D> getSinks(int net) {
+    return pointsAt(nets.get(net).sinks);
+  }
+
+  private List<Point3D> pointsAt(List<Integer> points) {
+    ArrayList<Point3D> r = new ArrayList<>();
+    for (int point : points) {
+      r.add(pointAt(point));
+    }
+    return r;
+  }
+
+  /**
+   * Routes and reroutes the nets until none overlap.
+   *
+   * @return {@code false} if some net couldn't reach a sink at all, or there was still overuse after {@code maxIterations},
+   * or the overuse stopped going down
+   */
+  public boolean route(int maxIterations) {
+    for (Net net : nets) {
+      // Nearest first, since those have the least room to get around anything
+      net.sinks.sort(Comparator.comparingInt(sink -> distance(sink, net.sources)));
+    }
+    int[] overuse = new int[maxIterations + 1];
+    presentFactor = INITIAL_PRESENT_FACTOR;
+    for (iterations = 1; iterations <= maxIterations; iterations++) {
+      for (int net = 0; net < nets.size(); net++) {
+        if (iterations == 1 || isOverused(nets.get(net))) {
+          ripUp(nets.get(net));
+          if (!routeNet(nets.get(net))) {
+            return false;
+          }
+        }
+      }
+      overuse[iterations] = raiseHistory();
+      if (overuse[iterations] == 0) {
+        return true;
+      }
+      if (iterations > STALL_ITERATIONS && overuse[iterations] > STALL_FRACTION * overuse[iterations - STALL_ITERATIONS]) {
+        return false;
+      }
+      presentFactor *= PRESENT_GROWTH;
+    }
+    iterations = maxIterations;
+    return false;
+  }
+
+  /**
+   * @return How many rounds of routing the last {@code route} took
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * Draws every net. Only legal once {@code route} has succeeded.
+   */
+  public AbsolutePhysical3DMap toMap() {
+    AbsolutePhysical3DMap map = new AbsolutePhysical3DMap(blockX, blockY, blockZ);
+    for (Net net : nets) {
+      for (Pair<Point3D, BlockConstant> block : net.fixed) {
+        map.writeBlock(block.getFirst(), block.getSecond());
+      }
+      for (int[] step : net.steps) {
+        map.writeEdge(moveList[step[1]].edge, new Offset(toBlock(pointAt(step[0]))));
+      }
+    }
+    return map;
+  }
+
+  public static Point3D toBlock(Point3D point) {
+    return new Point3D(2 * point.getX() + 1, 2 * point.getY() + 1, 2 * point.getZ() + 1);
+  }
+
+  private void ripUp(Net net) {
+    for (int claim : net.claims) {
+      count(claim >> 1, (claim & 1) == 1 ? BlockConstant.AIR : BlockConstant.REDSTONE, -1);
+    }
+    net.claims = new int[0];
+    net.steps.clear();
+  }
+
+  /**
+   * Routes every source of {@code net} to every sink, reusing what's been routed so far, then claims the blocks used.
+   * <p>
+   * What's been routed can be in the way of a later sink of the same net, such as redstone climbing over the point
+   * in front of a torch base. So if a sink can't be reached, the net is routed again with that sink first.
+   *
+   * @return {@code false} if some sink can't be reached whatever the order
+   */
+  private boolean routeNet(Net net) {
+    // At least once, since a net with nothing to reach still has to claim nothing
+    for (int attempt = 0; attempt < Math.max(1, net.sinks.size()); attempt++) {
+      int failed = routeSinks(net);
+      if (failed == -1) {
+        net.claims = Arrays.copyOf(claimBuffer, claimCount);
+        for (int claim : net.claims) {
+          count(claim >> 1, (claim & 1) == 1 ? BlockConstant.AIR : BlockConstant.REDSTONE, 1);
+        }
+        return true;
+      }
+      net.sinks.add(0, net.sinks.remove(failed));
+      net.steps.clear();
+    }
+    return false;
+  }
+
+  /**
+   * @return The index of the first sink that couldn't be reached, or {@code -1} if they all were
+   */
+  private int routeSinks(Net net) {
+    stamp++;
+    claimCount = 0;
+    for (Pair<Point3D, BlockConstant> block : net.fixed) {
+      int b = blockIndex(block.getFirst());
+      ownStamp[b] = stamp;
+      ownBlock[b] = block.getSecond();
+    }
+
+    for (int k = 0; k < net.sinks.size(); k++) {
+      sinkPoint = net.sinks.get(k);
+      int[] goal = {sinkPoint * LEVELS};
+      for (int source : net.sources) {
+        pairStamp++;
+        int[] path;
+        do {
+          searchCount++;
+          int end = search.search(new int[]{source * LEVELS + MAX_STEPS}, goal);
+          if (end == -1) {
+            return k;
+          }
+          path = search.backtrace(end);
+        } while (!claim(path));
+        for (int i = 1; i < path.length; i++) {
+          net.steps.add(new int[]{path[i - 1] / LEVELS, moveBetween(path[i - 1], path[i]).index});
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Claims the blocks along {@code path}. The search only knows about blocks claimed before it,
+   * so a path can cross itself with different blocks. Then nothing is claimed, and the block it crossed itself at
+   * is forbidden to the connection being routed.
+   *
+   * @return {@code false} if the path crossed itself
+   */
+  private boolean claim(int[] path) {
+    int mark = claimCount;
+    for (int i = 1; i < path.length; i++) {
+      Move move = moveBetween(path[i - 1], path[i]);
+      int startBlock = blockIndex(path[i - 1] / LEVELS);
+      for (int j = 0; j < move.offsets.length; j++) {
+        int b = startBlock + move.offsets[j];
+        if (ownStamp[b] == stamp) {
+          if (ownBlock[b] != move.blocks[j]) {
+            for (int k = mark; k < claimCount; k++) {
+              ownStamp[claimBuffer[k] >> 1] = 0;
+            }
+            claimCount = mark;
+            forbiddenStamp[b] = pairStamp;
+            return false;
+          }
+          continue;
+        }
+        ownStamp[b] = stamp;
+        ownBlock[b] = move.blocks[j];
+        if (claimCount == claimBuffer.length) {
+          claimBuffer = Arrays.copyOf(claimBuffer, 2 * claimCount);
+        }
+        claimBuffer[claimCount++] = b << 1 | (move.blocks[j] == BlockConstant.AIR ? 1 : 0);
+      }
+    }
+    return true;
+  }
+
+  private void count(int b, BlockConstant blockConstant, int change) {
+    if (blockConstant == BlockConstant.AIR) {
+      air[b] += change;
+    } else {
+      solid[b] += change;
+    }
+  }
+
+  /**
+   * How many nets want {@code b}, counting all the ones that want it to be air as one
+   */
+  private int users(int b) {
+    return solid[b] + (air[b] > 0 ? 1 : 0);
+  }
+
+  private boolean isOverused(Net net) {
+    for (int claim : net.claims) {
+      if (users(claim >> 1) > 1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Makes every overused block permanently more expensive, by how overused it is
+   *
+   * @return How many blocks were overused
+   */
+  private int raiseHistory() {
+    int overused = 0;
+    for (int b = 0; b < history.length; b++) {
+      int over = users(b) - 1;
+      if (over > 0) {
+        history[b] += BLOCK_COST * over;
+        overused++;
+      }
+    }
+    return overused;
+  }
+
+  private int neighbors(int cell, int[] out) {
+    int point = cell / LEVELS;
+    int steps = cell % LEVELS;
+    // Cells are expanded cheapest first, so if the point was expanded before with as much signal left, this is no better
+    if (expandedSearch[point] == searchCount && expandedSteps[point] >= steps) {
+      return 0;
+    }
+    expandedSearch[point] = searchCount;
+    expandedSteps[point] = steps;
+    int z = point % zSize;
+    int y = point / zSize % ySize;
+    int x = point / zSize / ySize;
+    int count = 0;
+    for (Move move : moveList) {
+      int tx = x + move.dx;
+      int ty = y + move.dy;
+      int tz = z + move.dz;
+      if (tx < 0 || ty < 0 || tz < 0 || tx >= xSize || ty >= ySize || tz >= zSize) {
+        continue;
+      }
+      int target = (tx * ySize + ty) * zSize + tz;
+      // Only the last step into the sink points into it, and nothing else goes there
+      if ((move.kind == OUTPUT) != (target == sinkPoint)) {
+        continue;
+      }
+      if (move.kind == REPEATER) {
+        out[count++] = target * LEVELS + MAX_STEPS;
+      } else if (steps > 0) {
+        out[count++] = target * LEVELS + (move.kind == OUTPUT ? 0 : steps - 1);
+      }
+    }
+    return count;
+  }
+
+  private Move moveBetween(int from, int to) {
+    int fromPoint = from / LEVELS;
+    int toPoint = to / LEVELS;
+    int kind = toPoint == sinkPoint ? OUTPUT : to % LEVELS == MAX_STEPS ? REPEATER : NONE;
+    int dz = toPoint % zSize - fromPoint % zSize;
+    int dy = toPoint / zSize % ySize - fromPoint / zSize % ySize;
+    int dx = toPoint / zSize / ySize - fromPoint / zSize / ySize;
+    return moves[kind][deltaKey(dx, dy, dz)];
+  }
+
+  private int cost(int from, int to) {
+    Move move = moveBetween(from, to);
+    int startBlock = blockIndex(from / LEVELS);
+    boolean allOwn = true;
+    double cost = 0;
+    for (int i = 0; i < move.offsets.length; i++) {
+      int b = startBlock + move.offsets[i];
+      BlockConstant block = move.blocks[i];
+      if (ownStamp[b] == stamp) {
+        if (ownBlock[b] != block) {
+          return GridAStar.BLOCKED;
+        }
+        continue;
+      }
+      allOwn = false;
+      if (forbiddenStamp[b] == pairStamp) {
+        return GridAStar.BLOCKED;
+      }
+      if (fixedNet[b] != -1 && !(fixedBlock[b] == BlockConstant.AIR && block == BlockConstant.AIR)) {
+        return GridAStar.BLOCKED;
+      }
+      int others = block == BlockConstant.AIR ? solid[b] : users(b);
+      cost += (BLOCK_COST + history[b]) * (1 + presentFactor * others);
+    }
+    if (allOwn) {
+      return 1;
+    }
+    if (move.kind == REPEATER) {
+      cost += REPEATER_COST;
+    }
+    return 1 + (int) Math.min(cost, MAX_COST);
+  }
+
+  /**
+   * Every step costs at least {@code 1} and gets at most two closer, counting diagonals as two
+   */
+  private int estimate(int cell) {
+    int point = cell / LEVELS;
+    return (Math.abs(point % zSize - sinkPoint % zSize)
+        + Math.abs(point / zSize % ySize - sinkPoint / zSize % ySize)
+        + Math.abs(point / zSize / ySize - sinkPoint / zSize / ySize)) / 2;
+  }
+
+  /**
+   * @return The grid distance from {@code point} to the nearest of {@code points}
+   */
+  private int distance(int point, List<Integer> points) {
+    int r = Integer.MAX_VALUE;
+    for (int p : points) {
+      r = Math.min(r, Math.abs(point % zSize - p % zSize)
+          + Math.abs(point / zSize % ySize - p / zSize % ySize)
+          + Math.abs(point / zSize / ySize - p / zSize / ySize));
+    }
+    return r;
+  }
+
+  private int pointIndex(Point3D p) {
+    if (p.getX() < 0 || p.getY() < 0 || p.getZ() < 0 || p.getX() >= xSize || p.getY() >= ySize || p.getZ() >= zSize) {
+      throw new IllegalArgumentException(p + " is outside a grid of size " + xSize + "x" + ySize + "x" + zSize);
+    }
+    return (p.getX() * ySize + p.getY()) * zSize + p.getZ();
+  }
+
+  private Point3D pointAt(int point) {
+    return new Point3D(point / zSize / ySize, point / zSize % ySize, point % zSize);
+  }
+
+  private int blockIndex(Point3D b) {
+    if (b.getX() < 0 || b.getY() < 0 || b.getZ() < 0 || b.getX() >= blockX || b.getY() >= blockY || b.getZ() >= blockZ) {
+      throw new IllegalArgumentException(b + " is outside blocks of size " + blockX + "x" + blockY + "x" + blockZ);
+    }
+    return (b.getX() * blockY + b.getY()) * blockZ + b.getZ();
+  }
+
+  /**
+   * @return The block that {@code point} is at
+   */
+  private int blockIndex(int point) {
+    int z = point % zSize;
+    int y = point / zSize % ySize;
+    int x = point / zSize / ySize;
+    return ((2 * x + 1) * blockY + 2 * y + 1) * blockZ + 2 * z + 1;
+  }
+
+  /**
+   * A {@code CanonicalPaths} connection, with its blocks as offsets from the block its start point is at
+   */
+  private class Move {
+    final AnnotatedEdge edge;
+    final int kind;
+    /**
+     * Its place in {@code moveList}
+     */
+    final int index;
+    final int dx;
+    final int dy;
+    final int dz;
+    final int[] offsets;
+    final BlockConstant[] blocks;
+
+    Move(AnnotatedEdge edge, int kind, Point3D target, int index) {
+      this.edge = edge;
+      this.kind = kind;
+      this.index = index;
+      dx = target.getX();
+      dy = target.getY();
+      dz = target.getZ();
+      ArrayList<Integer> offsetList = new ArrayList<>();
+      ArrayList<BlockConstant> blockList = new ArrayList<>();
+      HashMap<Point3D, BlockConstant> edgeBlocks = new HashMap<>();
+      for (Pair<Point3D, BlockConstant> pair : edge) {
+        edgeBlocks.put(pair.getFirst(), pair.getSecond());
+        add(pair.getFirst(), pair.getSecond(), target, offsetList, blockList);
+      }
+      // Points which have to stay empty, as AnnotatedPathDrawer enforces, are claimed as air at the block the point is at
+      for (Iterator<Point3D> it = edge.emptyPoints(); it.hasNext(); ) {
+        Point3D p = it.next();
+        Point3D block = new Point3D(2 * p.getX(), 2 * p.getY(), 2 * p.getZ());
+        BlockConstant existing = edgeBlocks.get(block);
+        if (existing == null) {
+          add(block, BlockConstant.AIR, target, offsetList, blockList);
+        } else if (existing != BlockConstant.AIR) {
+          throw new IllegalStateException("Connection to " + target + " needs " + p + " empty but puts " + existing + " there");
+        }
+      }
+      offsets = new int[offsetList.size()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = offsetList.get(i);
+      }
+      blocks = blockList.toArray(new BlockConstant[0]);
+    }
+
+    private void add(Point3D p, BlockConstant block, Point3D target, ArrayList<Integer> offsetList, ArrayList<BlockConstant> blockList) {
+      // Within the box from start to target (and a block above and below), so offsets never wrap around the grid
+      if (p.getX() < Math.min(0, 2 * dx) || p.getX() > Math.max(0, 2 * dx)
+          || p.getZ() < Math.min(0, 2 * dz) || p.getZ() > Math.max(0, 2 * dz)
+          || p.getY() < Math.min(0, 2 * dy) - 1 || p.getY() > Math.max(0, 2 * dy) + 1) {
+        throw new IllegalStateException("Connection to " + target + " has a block outside its box at " + p);
+      }
+      offsetList.add((p.getX() * blockY + p.getY()) * blockZ + p.getZ());
+      blockList.add(block);
+    }
+  }
+
+  private static class Net {
+    final ArrayList<Pair<Point3D, BlockConstant>> fixed = new ArrayList<>();
+    final ArrayList<Integer> sources = new ArrayList<>();
+    final ArrayList<Integer> sinks = new ArrayList<>();
+    /**
+     * Each routed block not in {@code fixed}, as its index shifted left once, plus one if it's air
+     */
+    int[] claims = new int[0];
+    /**
+     * The moves routed, as the point each starts at and its place in {@code moveList}
+     */
+    final ArrayList<int[]> steps = new ArrayList<>();
+  }
+}
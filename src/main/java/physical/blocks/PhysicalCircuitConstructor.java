@@ -1,6 +1,8 @@
 package physical.blocks;
 
 import circuit.Pair;
+import misc.LongHashSet;
+import misc.LongIntHashMap;
 import physical.things.Bounds;
 import physical.things.Point3D;
 import physical.transforms.Offset;
@@ -25,60 +27,69 @@ import java.util.function.Function;
  * - a node with any input is required to be more than one cube large (i.e. it cannot just be the edge node, since torches don't like to power them)
  */
 public class PhysicalCircuitConstructor {
+  /**
+   * Blob ids in {@code consumedPoints} and {@code edgePoints} for a point not in the map, and one not owned by a blob
+   */
+  private static final int NOT_CONSUMED = -1;
+  private static final int UNOWNED = -2;
+
   /**
    * Map a blob ID to its AnnotatedPathDrawer
    */
   private ArrayList<AnnotatedPathDrawer> redstoneDustBlobs;
 
   /**
-   * Map a redstone spot to the blob it belongs to.
+   * Map a redstone spot (packed by {@code Point3D.pack}) to the blob it belongs to,
+   * or {@code UNOWNED} if it's consumed but not by any blob yet.
    * <p>
    * If it's an edge, then it belongs to the blob it comes from.
    * (The blob it goes to is in edgePoints.)
    */
-  private Map<Point3D, Integer> consumedPoints;
+  private LongIntHashMap consumedPoints;
 
   /**
    * Set of points which cannot contain redstone
    */
-  private Set<Point3D> emptyPoints;
+  private LongHashSet emptyPoints;
 
   /**
    * Maps a torch spot to the id of the redstone blob which it outputs to.
    * (Note that the id of the blob which it comes from is in consumedPoints.)
    */
-  private Map<Point3D, Integer> edgePoints;
+  private LongIntHashMap edgePoints;
 
   public PhysicalCircuitConstructor() {
     redstoneDustBlobs = new ArrayList<>();
-    consumedPoints = new HashMap<>();
-    edgePoints = new HashMap<>();
-    emptyPoints = new HashSet<>();
+    consumedPoints = new LongIntHashMap(NOT_CONSUMED);
+    edgePoints = new LongIntHashMap(NOT_CONSUMED);
+    emptyPoints = new LongHashSet();
   }
 
   private void putConsumedPoint(Point3D p, Integer blobId) {
+    long key = p.pack();
+    int old = consumedPoints.get(key);
     if (blobId == null) {
-      if (!consumedPoints.containsKey(p)) {
-        consumedPoints.put(p, null);
+      if (old == NOT_CONSUMED) {
+        consumedPoints.put(key, UNOWNED);
       }
     } else {
-      if (consumedPoints.containsKey(p) && consumedPoints.get(p) != null && !Objects.equals(consumedPoints.get(p), blobId)) {
+      if (old != NOT_CONSUMED && old != UNOWNED && old != blobId) {
         throw new IllegalArgumentException("Constructor already contained point");
       }
-      consumedPoints.put(p, blobId);
+      consumedPoints.put(key, blobId);
     }
   }
 
   private void putEdgePoint(Point3D p, int blobId) {
-    Integer edgeOutput = edgePoints.get(p);
-    if (edgeOutput != null && edgeOutput != blobId) {
+    int edgeOutput = edgePoints.get(p.pack());
+    if (edgeOutput != NOT_CONSUMED && edgeOutput != blobId) {
       throw new IllegalArgumentException("Connections between two blobs do not match!");
     }
-    edgePoints.put(p, blobId);
+    edgePoints.put(p.pack(), blobId);
   }
 
   public boolean isEdgePoint(Point3D p) {
-    return edgePoints.containsKey(p);
+    return edgePoints.containsKey(p.pack());
   }
 
   /**
@@ -87,7 +98,7 @@ public class PhysicalCircuitConstructor {
    * @return The id of the redstone blob which this edge feeds into
    */
   private Integer getEdgeAsInputToBlob(Point3D p) {
-    return edgePoints.get(p);
+    return blobOrNull(edgePoints.get(p.pack()));
   }
 
   /**
@@ -96,7 +107,11 @@ public class PhysicalCircuitConstructor {
    * @return The id of the redstone blob which this edge feeds from
    */
   private Integer getEdgeAsOutputToBlob(Point3D p) {
-    return consumedPoints.get(p);
+    return blobOrNull(consumedPoints.get(p.pack()));
+  }
+
+  private static Integer blobOrNull(int blobId) {
+    return blobId == NOT_CONSUMED || blobId == UNOWNED ? null : blobId;
   }
 
   /**
@@ -107,14 +122,14 @@ public class PhysicalCircuitConstructor {
     int newBlobId = redstoneDustBlobs.size();
     for (Iterator<Point3D> it = blob.emptyPointIterator(); it.hasNext(); ) {
       Point3D p = it.next();
-      if (consumedPoints.containsKey(p)) {
+      if (consumedPoints.containsKey(p.pack())) {
         throw new IllegalArgumentException("Empty point overlaps with consumed point");
       }
-      emptyPoints.add(p);
+      emptyPoints.add(p.pack());
     }
     for (Iterator<Point3D> it = blob.filledPointIterator(); it.hasNext(); ) {
       Point3D p = it.next();
-      if (emptyPoints.contains(p)) {
+      if (emptyPoints.contains(p.pack())) {
         throw new IllegalArgumentException("Consumed point overlaps with empty point");
       }
       if (blob.isInput(p)) {
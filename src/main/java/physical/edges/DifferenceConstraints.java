@@ -0,0 +1,148 @@
+package physical.edges;
+
+import graph.CompactGraph;
+import physical.things.Bounds;
+import physical.things.Point3D;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the box every node of a graph has to stay in, to be within {@code stepLength} per graph step of each placed node,
+ * along each axis separately.
+ * <p>
+ * Each axis is a system of difference constraints: {@code a - b <= stepLength} both ways along every edge,
+ * and {@code a = position} for each placed node. The tightest upper bound on a node is then its shortest path from
+ * the placed nodes, starting at their positions, and the lower bound is the same with the positions negated.
+ * Placing a node can only tighten bounds, so each placement relaxes outward from that node (incremental Bellman-Ford,
+ * with a FIFO queue as in SPFA), stopping wherever the bounds were already at least as tight.
+ * Asking for a node's bounds is then constant time, and placing touches only what it tightens.
+ * <p>
+ * Edges are followed both ways, like {@code TwoWayDirectedGraph.distanceMap}.
+ */
+public class DifferenceConstraints {
+  private static final int AXES = 3;
+  private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private final CompactGraph graph;
+  private final int stepLength;
+  /**
+   * The upper bound along each axis, then the negated lower bound along each axis, indexed by node
+   */
+  private final int[][] bound;
+  private final boolean[] placed;
+  /**
+   * A ring of the nodes whose bounds tightened but whose neighbors haven't heard yet.
+   * A node is in it at most once, so it never holds more than every node.
+   */
+  private final int[] queue;
+  private final boolean[] queued;
+  private int head;
+  private int queueSize;
+
+  public DifferenceConstraints(CompactGraph graph, int stepLength) {
+    if (stepLength < 0) {
+      throw new IllegalArgumentException("Step length must not be negative, not " + stepLength);
+    }
+    this.graph = graph;
+    this.stepLength = stepLength;
+    int size = graph.size();
+    bound = new int[2 * AXES][size];
+    for (int[] axis : bound) {
+      Arrays.fill(axis, UNBOUNDED);
+    }
+    placed = new boolean[size];
+    queue = new int[size];
+    queued = new boolean[size];
+  }
+
+  /**
+   * Fixes {@code node} at {@code position}, and tightens every other node's bounds to match.
+   * <p>
+   * A node placed outside its bounds still only tightens them; the bounds never get looser.
+   */
+  public void place(int node, Point3D position) {
+    if (placed[node]) {
+      throw new IllegalStateException("Node " + node + " is already placed");
+    }
+    placed[node] = true;
+    int[] values = {position.getX(), position.getY(), position.getZ()};
+    boolean tightened = false;
+    for (int k = 0; k < AXES; k++) {
+      tightened |= tighten(k, node, values[k]);
+      tightened |= tighten(AXES + k, node, -values[k]);
+    }
+    if (tightened) {
+      enqueue(node);
+    }
+    propagate();
+  }
+
+  public boolean isPlaced(int node) {
+    return placed[node];
+  }
+
+  /**
+   * @return {@code false} if no placed node is connected to {@code node}, so it could be anywhere
+   */
+  public boolean isBounded(int node) {
+    return bound[0][node] != UNBOUNDED;
+  }
+
+  /**
+   * @return Where {@code node} can go, or {@code null} if nowhere is within reach of every placed node
+   * @throws IllegalStateException If no placed node is connected to {@code node}
+   */
+  public Bounds bounds(int node) {
+    if (!isBounded(node)) {
+      throw new IllegalStateException("No placed node is connected to node " + node);
+    }
+    Point3D lower = new Point3D(-bound[AXES][node], -bound[AXES + 1][node], -bound[AXES + 2][node]);
+    Point3D upper = new Point3D(bound[0][node], bound[1][node], bound[2][node]);
+    if (lower.getX() > upper.getX() || lower.getY() > upper.getY() || lower.getZ() > upper.getZ()) {
+      return null;
+    }
+    return Bounds.make(lower, upper);
+  }
+
+  private void propagate() {
+    while (queueSize > 0) {
+      int node = queue[head];
+      head = (head + 1) % queue.length;
+      queueSize--;
+      queued[node] = false;
+      for (int i = 0; i < graph.outDegree(node); i++) {
+        relax(node, graph.outNeighbor(node, i));
+      }
+      for (int i = 0; i < graph.inDegree(node); i++) {
+        relax(node, graph.inNeighbor(node, i));
+      }
+    }
+  }
+
+  private void relax(int from, int to) {
+    boolean tightened = false;
+    for (int k = 0; k < 2 * AXES; k++) {
+      // Every placement bounds all axes at once, so if one is unbounded they all are
+      if (bound[k][from] != UNBOUNDED) {
+        tightened |= tighten(k, to, bound[k][from] + stepLength);
+      }
+    }
+    if (tightened && !queued[to]) {
+      enqueue(to);
+    }
+  }
+
+  private boolean tighten(int k, int node, int value) {
+    if (value < bound[k][node]) {
+      bound[k][node] = value;
+      return true;
+    }
+    return false;
+  }
+
+  private void enqueue(int node) {
+    queue[(head + queueSize) % queue.length] = node;
+    queueSize++;
+    queued[node] = true;
+  }
+}
@@ -1,10 +1,12 @@
 package physical.edges;
 
 import circuit.Pair;
+import graph.CompactGraph;
 import graph.Edge;
 import graph.GenerativeDirectedGraph;
 import graph.IntegerIterable;
 import graph.TwoWayDirectedGraph;
+import misc.LongHashSet;
 import physical.blocks.AnnotatedPathDrawer;
 import physical.things.Bounds;
 import physical.things.Point3D;
@@ -14,11 +16,17 @@ import java.util.function.Function;
 
 /**
  * Note, we are placing edges at positions!
+ * <p>
+ * Torches which feed each other must be within {@code HIGH_STRENGTH} of each other in x+z, x-z and y,
+ * so two torches some steps apart in the graph must be within that many times as far. Rather than searching the graph
+ * from each torch as it's placed, {@code DifferenceConstraints} keeps where every torch can go up to date as torches are placed.
  *
  * @param <E> original node type in the base circuit
  * @param <T> generative node type
  */
 public class TorchPlacer<E, T> {
+  private static final int MAX_PLACEMENT_ATTEMPTS = 100;
+
   /**
    * Each node is a torch.
    * Each edge is a connection between two torches, which must be at most 8 distance.
@@ -26,16 +34,38 @@ public class TorchPlacer<E, T> {
   private TwoWayDirectedGraph<T> edgeGraph;
   private Map<Edge<E>, T> edgeIds;
   private Map<T, Point3D> torchPositions;
-  private Set<Point3D> consumedPositions;
-  private Integer maxKnownDist;
+  private LongHashSet consumedPositions;
+  /**
+   * Numbers the torches for {@code constraints}
+   */
+  private Map<T, Integer> torchIndex;
+  /**
+   * In diagonal coordinates (see {@code validDiagonalPositions})
+   */
+  private DifferenceConstraints constraints;
 
   public TorchPlacer(TwoWayDirectedGraph<E> circuit, Iterable<T> generator) {
     Pair<TwoWayDirectedGraph<T>, Map<Edge<E>, T>> pair = invertNodesAndEdges(circuit, generator);
     edgeGraph = pair.getFirst();
     edgeIds = pair.getSecond();
     torchPositions = new HashMap<>();
-    consumedPositions = new HashSet<>();
-    maxKnownDist = -1;
+    consumedPositions = new LongHashSet();
+
+    torchIndex = new HashMap<>();
+    for (T torch : edgeGraph.nodes()) {
+      torchIndex.put(torch, torchIndex.size());
+    }
+    int edgeCount = edgeGraph.edgeCount();
+    int[] starts = new int[edgeCount];
+    int[] ends = new int[edgeCount];
+    int e = 0;
+    for (Iterator<Edge<T>> it = edgeGraph.getEdges(); it.hasNext(); e++) {
+      Edge<T> edge = it.next();
+      starts[e] = torchIndex.get(edge.getStart());
+      ends[e] = torchIndex.get(edge.getEnd());
+    }
+    CompactGraph graph = CompactGraph.fromEdges(torchIndex.size(), starts, ends, edgeCount);
+    constraints = new DifferenceConstraints(graph, AnnotatedPathDrawer.HIGH_STRENGTH);
   }
 
   public static <V> TorchPlacer<V, Integer> make(TwoWayDirectedGraph<V> circuit) {
@@ -48,8 +78,8 @@ public class TorchPlacer<E, T> {
    * Also, we need a way to do input and output. One input/output blob becomes many disparate edges,
    * so ideally, we would insert one extra edge immediately before any input and immediately after any output.
    * <p>
-   * Assumes that all nodes without input are input nodes, and inserts a torch before them to attach a lever to.
-   * Similarly with output nodes.
+   * Assumes that all nodes without input are input nodes, and inserts a torch before them to attach a lever to,
+   * found by {@code edgeToTorch(new Edge<>(null, node))}. Similarly with output nodes, and {@code new Edge<>(node, null)}.
    */
   private Pair<TwoWayDirectedGraph<T>, Map<Edge<E>, T>> invertNodesAndEdges(TwoWayDirectedGraph<E> graph, Iterable<T> generator) {
     GenerativeDirectedGraph<T> oneWayEdgeGraph = new GenerativeDirectedGraph<>(generator);
@@ -68,7 +98,7 @@ public class TorchPlacer<E, T> {
       Set<E> inNeighborhood = graph.inNeighborhood(edgeItem.getStart());
       if (inNeighborhood.isEmpty()) {
         oneWayEdgeGraph.addEdge(new Edge<>(
-            null,
+            edgeIds.computeIfAbsent(new Edge<>(null, edgeItem.getStart()), k -> oneWayEdgeGraph.addNode()),
             edgeId
         ));
       } else {
@@ -85,7 +115,7 @@ public class TorchPlacer<E, T> {
       if (outNeighborhood.isEmpty()) {
         oneWayEdgeGraph.addEdge(new Edge<>(
             edgeId,
-            null
+            edgeIds.computeIfAbsent(new Edge<>(edgeItem.getEnd(), null), k -> oneWayEdgeGraph.addNode())
         ));
       } else {
         for (E e : outNeighborhood) {
@@ -101,26 +131,6 @@ public class TorchPlacer<E, T> {
     return new Pair<>(new TwoWayDirectedGraph<>(oneWayEdgeGraph), edgeIds);
   }
 
-  /**
-   * Computes the min distance from the given point to each
-   * other placed point (and maybe some other points as well).
-   * <p>
-   * There are no negative cycles, so we don't need to be smart about how we go about this.
-   */
-  private Map<T, Integer> distanceMap(T torch) {
-    /* distance needs to be able to go up to maxKnownDist+1,
-     * to allow for one extra node on the frontier
-     * (noting that all placed nodes have a bounded distance).
-     *
-     * hence, cons
-     */
-    if (maxKnownDist == null) {
-      return edgeGraph.distanceMap(torch);
-    } else {
-      return edgeGraph.distanceMap(torch, maxKnownDist + 2);
-    }
-  }
-
   /**
    * Pointwise functions
    */
@@ -130,18 +140,6 @@ public class TorchPlacer<E, T> {
       p -> new Point3D((p.getX() + p.getZ()) / 2, p.getY(), (p.getX() - p.getZ()) / 2);
 
 
-  private Bounds localDiagonalBounds(int graphStepCount, T placedPoint) {
-    Point3D p = torchPositions.get(placedPoint);
-
-    Point3D pDiag = toDiag.apply(p);
-
-    int len = AnnotatedPathDrawer.HIGH_STRENGTH * graphStepCount;
-    return Bounds.make(
-        pDiag.translate(-len, -len, -len),
-        pDiag.translate(len, len, len)
-    );
-  }
-
   public boolean hasPlacedTorch() {
     return !torchPositions.isEmpty();
   }
@@ -156,22 +154,7 @@ public class TorchPlacer<E, T> {
     if (torchPositions.isEmpty()) {
       throw new IllegalStateException("This thing is empty; just add a point");
     }
-    Map<T, Integer> distances = distanceMap(torch);
-    Iterator<T> placedNodeIter = torchPositions.keySet().iterator();
-
-    Bounds b;
-    {
-      T placedTorch = placedNodeIter.next();
-      b = localDiagonalBounds(distances.get(placedTorch), placedTorch);
-    }
-
-    while (placedNodeIter.hasNext()) {
-      T placedTorch = placedNodeIter.next();
-      Bounds localBounds = localDiagonalBounds(distances.get(placedTorch), placedTorch);
-      b = Bounds.restrict(b, localBounds);
-    }
-
-    return b;
+    return constraints.bounds(torchIndex.get(torch));
   }
 
   /**
@@ -216,9 +199,13 @@ public class TorchPlacer<E, T> {
     return edgeIds.get(edge);
   }
 
+  /**
+   * @throws IllegalStateException If {@code torch} is already placed
+   */
   public void forcePlaceTorch(T torch, Point3D pos) {
+    constraints.place(torchIndex.get(torch), toDiag.apply(pos));
     torchPositions.put(torch, pos);
-    consumedPositions.add(pos);
+    consumedPositions.add(pos.pack());
   }
 
   public void attemptToPlaceTorch(T torch) {
@@ -227,15 +214,36 @@ public class TorchPlacer<E, T> {
     }
     if (!hasPlacedTorch()) {
       forcePlaceTorch(torch, new Point3D(0, 0, 0));
+      return;
     }
     Bounds positionBounds = validDiagonalPositions(torch);
+    if (positionBounds == null) {
+      throw new IllegalStateException("Torch " + torch + " is too far along the graph from some placed torch to fit anywhere");
+    }
 
-    Point3D interior;
-    do {
-      interior = positionBounds.randomInteriorPoint();
-    } while (consumedPositions.contains(interior));
+    for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; attempt++) {
+      Point3D interior = positionBounds.randomInteriorPoint();
+      if (isFreeDiagonal(interior)) {
+        forcePlaceTorch(torch, fromDiag.apply(interior));
+        return;
+      }
+    }
+    // The bounds are tight or nearly full, so look through all of them
+    for (Point3D interior : positionBounds) {
+      if (isFreeDiagonal(interior)) {
+        forcePlaceTorch(torch, fromDiag.apply(interior));
+        return;
+      }
+    }
+    throw new IllegalStateException("Every position torch " + torch + " can go is taken");
+  }
 
-    forcePlaceTorch(torch, fromDiag.apply(interior));
+  /**
+   * Only diagonal points with x+z and x-z both even or both odd are real positions. The rest would be rounded,
+   * maybe out of bounds, where they could leave some later torch nowhere to go.
+   */
+  private boolean isFreeDiagonal(Point3D interior) {
+    return (interior.getX() - interior.getZ()) % 2 == 0 && !consumedPositions.contains(fromDiag.apply(interior).pack());
   }
 
   public void placeTorchesRandomly() {
@@ -6,6 +6,13 @@ import java.util.Iterator;
  * Immutable
  */
 public class Point3D {
+  private static final int PACK_BITS = 21;
+  private static final long PACK_MASK = (1L << PACK_BITS) - 1;
+  /**
+   * Each coordinate must be at least {@code -PACK_LIMIT} and less than {@code PACK_LIMIT} to be packed
+   */
+  public static final int PACK_LIMIT = 1 << (PACK_BITS - 1);
+
   private int x;
   private int y;
   private int z;
@@ -112,6 +119,38 @@ public class Point3D {
     }
   }
 
+  /**
+   * @return {@code x}, {@code y} and {@code z} in one {@code long}, 21 bits each, for keying {@code LongHashSet} and the like.
+   * Different points always pack differently.
+   * @throws IllegalArgumentException If a coordinate is out of the range given by {@code PACK_LIMIT}
+   */
+  public long pack() {
+    return pack(x, y, z);
+  }
+
+  public static long pack(int x, int y, int z) {
+    if (x < -PACK_LIMIT || x >= PACK_LIMIT || y < -PACK_LIMIT || y >= PACK_LIMIT || z < -PACK_LIMIT || z >= PACK_LIMIT) {
+      throw new IllegalArgumentException("Can't pack (" + x + ", " + y + ", " + z + ")");
+    }
+    return (x & PACK_MASK) << (2 * PACK_BITS) | (y & PACK_MASK) << PACK_BITS | (z & PACK_MASK);
+  }
+
+  public static int unpackX(long packed) {
+    return (int) (packed << (64 - 3 * PACK_BITS) >> (64 - PACK_BITS));
+  }
+
+  public static int unpackY(long packed) {
+    return (int) (packed << (64 - 2 * PACK_BITS) >> (64 - PACK_BITS));
+  }
+
+  public static int unpackZ(long packed) {
+    return (int) (packed << (64 - PACK_BITS) >> (64 - PACK_BITS));
+  }
+
+  public static Point3D unpack(long packed) {
+    return new Point3D(unpackX(packed), unpackY(packed), unpackZ(packed));
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof Point3D) {
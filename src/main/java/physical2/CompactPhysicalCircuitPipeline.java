@@ -0,0 +1,78 @@
+package physical2;
+
+import circuit.AnnotatedCircuit;
+import nbt.NBTMaker;
+import physical.blocks.AbsolutePhysical3DMap;
+import physical.blocks.CompactCircuitConstructor;
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+import physical2.blocks.BlockStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static misc.SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
+import static physical2.SimplifiedPhysicalCircuitPipeline.print;
+import static physical2.SimplifiedPhysicalCircuitPipeline.tileDirectory;
+
+/**
+ * Creates a space efficient redstone setup representing the given circuit, by routing every wire around the others
+ * (see {@code CompactCircuitConstructor}). Much smaller than {@code SimplifiedPhysicalCircuitPipeline},
+ * but slower to lay out, and only for circuits without loops.
+ */
+public class CompactPhysicalCircuitPipeline {
+  /**
+   * The depth in the timings is the number of layers of redstone needed.
+   */
+  public static PipelineTimings circuitToSchematic(AnnotatedCircuit circuit, File outFile, PipelineOptions options) throws IOException {
+    boolean verbose = options.isVerbose();
+    PipelineTimings timings = new PipelineTimings();
+    long start = System.nanoTime();
+
+    print("Routing", verbose);
+    CompactCircuitConstructor constructor = new CompactCircuitConstructor(circuit);
+    AbsolutePhysical3DMap map = constructor.construct();
+    timings.setPathNanos(System.nanoTime() - start);
+    timings.setDepth(constructor.getLayers());
+    print("Routed in " + constructor.getIterations() + " iterations with " + constructor.getLayers() + " layers", verbose);
+
+    start = System.nanoTime();
+    print("Drawing blocks", verbose);
+    BlockStore blocks = toBlockStore(map);
+    timings.setDrawNanos(System.nanoTime() - start);
+    start = System.nanoTime();
+    print("Size: " + blocks.size(), verbose);
+    Map<Point3D, Bounds> tiles = SchematicSplitter.tiles(blocks);
+    timings.setNbtNanos(System.nanoTime() - start);
+    start = System.nanoTime();
+    timings.setFileCount(tiles.size());
+    if (tiles.size() == 1) {
+      print("Writing to file", verbose);
+      NBTMaker.writeSchematic(blocks, tiles.values().iterator().next(), outFile);
+    } else {
+      print("Too big for one file; splitting into " + tiles.size() + " labelled files in shape " + SchematicSplitter.size(blocks.size()) + " with skip size " + SCHEMATIC_WIDTH_LIMIT, verbose);
+      SchematicSplitter.writeTiles(blocks, tiles, tileDirectory(outFile), ForkJoinPool.commonPool());
+    }
+    timings.setWriteNanos(System.nanoTime() - start);
+    return timings;
+  }
+
+  private static BlockStore toBlockStore(AbsolutePhysical3DMap map) {
+    Point3D size = map.size();
+    BlockStore blocks = new BlockStore(size.getX(), size.getY(), size.getZ());
+    for (int x = 0; x < size.getX(); x++) {
+      for (int y = 0; y < size.getY(); y++) {
+        for (int z = 0; z < size.getZ(); z++) {
+          BlockConstant block = map.getBlock(new Point3D(x, y, z));
+          if (block != BlockConstant.EMPTY) {
+            blocks.set(x, y, z, block);
+          }
+        }
+      }
+    }
+    return blocks;
+  }
+}
@@ -0,0 +1,79 @@
+package physical2;
+
+import physical2.blocks.PathAccumulator;
+
+/**
+ * How {@code SimplifiedPhysicalCircuitPipeline.circuitToSchematic} should lay out and write a circuit.
+ * The defaults give the same schematic as the original pipeline.
+ */
+public class PipelineOptions {
+  private boolean verbose = false;
+  private PathAccumulator.Layering layering = PathAccumulator.Layering.QUADRATIC;
+  private SimplifiedPhysicalCircuitPipeline.Placement placement = SimplifiedPhysicalCircuitPipeline.Placement.DEFAULT;
+  private boolean streaming = false;
+  private boolean compact = false;
+
+  /**
+   * Print each stage as it starts
+   */
+  public PipelineOptions setVerbose(boolean verbose) {
+    this.verbose = verbose;
+    return this;
+  }
+
+  /**
+   * How to assign torches to z layers, which decides how long the schematic is in z
+   */
+  public PipelineOptions setLayering(PathAccumulator.Layering layering) {
+    this.layering = layering;
+    return this;
+  }
+
+  /**
+   * How to assign wires to x and y positions
+   */
+  public PipelineOptions setPlacement(SimplifiedPhysicalCircuitPipeline.Placement placement) {
+    this.placement = placement;
+    return this;
+  }
+
+  /**
+   * If the schematic has to be split, draw and write it a slab of tiles at a time,
+   * so the blocks held at once scale with the circuit's cross-section rather than its length.
+   * The tile files written are the same either way, except that a split schematic with only one non-empty tile
+   * is still written as a directory of tiles, since that isn't known until the end.
+   */
+  public PipelineOptions setStreaming(boolean streaming) {
+    this.streaming = streaming;
+    return this;
+  }
+
+  /**
+   * Build with {@code CompactPhysicalCircuitPipeline} instead, which routes the redstone densely.
+   * Layering, placement, and streaming don't apply to it.
+   */
+  public PipelineOptions setCompact(boolean compact) {
+    this.compact = compact;
+    return this;
+  }
+
+  public boolean isVerbose() {
+    return verbose;
+  }
+
+  public PathAccumulator.Layering getLayering() {
+    return layering;
+  }
+
+  public SimplifiedPhysicalCircuitPipeline.Placement getPlacement() {
+    return placement;
+  }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public boolean isCompact() {
+    return compact;
+  }
+}
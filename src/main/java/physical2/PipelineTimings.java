@@ -0,0 +1,79 @@
+package physical2;
+
+/**
+ * How long each stage of {@code SimplifiedPhysicalCircuitPipeline.circuitToSchematic} took.
+ */
+public class PipelineTimings {
+  private long pathNanos;
+  private long drawNanos;
+  private long nbtNanos;
+  private long writeNanos;
+  private int fileCount;
+  private int depth;
+
+  void setPathNanos(long pathNanos) {
+    this.pathNanos = pathNanos;
+  }
+
+  void setDrawNanos(long drawNanos) {
+    this.drawNanos = drawNanos;
+  }
+
+  void setNbtNanos(long nbtNanos) {
+    this.nbtNanos = nbtNanos;
+  }
+
+  void setWriteNanos(long writeNanos) {
+    this.writeNanos = writeNanos;
+  }
+
+  void setFileCount(int fileCount) {
+    this.fileCount = fileCount;
+  }
+
+  void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  /**
+   * Placing signals and accumulating paths ({@code PathAccumulator})
+   */
+  public long getPathMillis() {
+    return pathNanos / 1000000;
+  }
+
+  /**
+   * Turning paths into blocks ({@code BlockDrawer})
+   */
+  public long getDrawMillis() {
+    return drawNanos / 1000000;
+  }
+
+  /**
+   * Splitting the blocks into tiles and skipping the empty ones. The NBT itself is streamed out while writing.
+   */
+  public long getNbtMillis() {
+    return nbtNanos / 1000000;
+  }
+
+  /**
+   * Encoding, compressing and writing files
+   */
+  public long getWriteMillis() {
+    return writeNanos / 1000000;
+  }
+
+  /**
+   * The number of schematic files written (more than one if the build had to be split)
+   */
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * The number of z layers the torches were placed in (see {@code PathAccumulator.Layering})
+   */
+  public int getDepth() {
+    return depth;
+  }
+}
@@ -1,48 +1,156 @@
 package physical2;
 
-import dev.dewy.nbt.tags.collection.CompoundTag;
 import misc.SettingsConstants;
 import nbt.NBTMaker;
-import nbt.SNBTParser;
 import physical.things.Bounds;
 import physical.things.Point3D;
 import physical.transforms.Scale;
+import physical2.blocks.AbsolutePhysical3DMap2;
 import physical2.blocks.BlockDrawer;
+import physical2.blocks.BlockStore;
+import physical2.blocks.PathAccumulator;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 public class SchematicSplitter {
   private final static Function<Point3D, Point3D> scaleSize = new Scale(SettingsConstants.SCHEMATIC_WIDTH_LIMIT);
 
   /**
-   * @return map from position zoomed out to Pair(size, tag)
+   * Nothing is encoded here; each tile is streamed to its file by {@code NBTMaker.writeSchematic}.
+   *
+   * @return map from position zoomed out to the bounds of that tile, leaving out tiles with no blocks in them
    */
-  public static Map<Point3D, CompoundTag> makeTags(BlockDrawer blockDrawer) throws IOException, SNBTParser.SNBTParseException {
-    Map<Point3D, CompoundTag> r = new HashMap<>();
+  public static Map<Point3D, Bounds> tiles(BlockDrawer blockDrawer) {
     if (tooBig(blockDrawer.size())) {
-      Bounds arrayBounds = NBTMaker.arrayBounds(blockDrawer.getBlocks());
-
-      Bounds zoomedOutPointBounds = Bounds.make(new Point3D(0, 0, 0), size(blockDrawer).translate(-1, -1, -1));
-      for (Point3D p : zoomedOutPointBounds) {
-        Bounds b = Bounds.make(scaleSize.apply(p), scaleSize.apply(p.translate(1, 1, 1)).translate(-1, -1, -1));
-        b = Bounds.restrict(b, arrayBounds);
-        CompoundTag tag = NBTMaker.subrangeToNbt(blockDrawer.getBlocks(), b);
-        if (tag != null) {
-          r.put(p, tag);
-        }
+      return slabTiles(blockDrawer);
+    }
+    Map<Point3D, Bounds> r = new HashMap<>();
+    r.put(new Point3D(0, 0, 0), blockDrawer.getBlocks().bounds());
+    return r;
+  }
+
+  /**
+   * The tiles within the window {@code blockDrawer} drew, keyed by their position in the whole drawing,
+   * with bounds in the window's coordinates
+   */
+  private static Map<Point3D, Bounds> slabTiles(BlockDrawer blockDrawer) {
+    return slabTiles(blockDrawer.getBlocks(), blockDrawer.getZFrom(), size(blockDrawer));
+  }
+
+  /**
+   * Like {@code tiles(BlockDrawer)}, for blocks that were all drawn at once some other way
+   */
+  public static Map<Point3D, Bounds> tiles(BlockStore blocks) {
+    if (tooBig(blocks.size())) {
+      return slabTiles(blocks, 0, size(blocks.size()));
+    }
+    Map<Point3D, Bounds> r = new HashMap<>();
+    r.put(new Point3D(0, 0, 0), blocks.bounds());
+    return r;
+  }
+
+  /**
+   * @param zFrom Where {@code blocks} starts in the whole drawing
+   * @param tileCount How many tiles the whole drawing is split into along each axis
+   */
+  private static Map<Point3D, Bounds> slabTiles(BlockStore blocks, int zFrom, Point3D tileCount) {
+    Map<Point3D, Bounds> r = new HashMap<>();
+    Bounds arrayBounds = blocks.bounds();
+    int zTileFrom = zFrom / SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
+    int zTileTo = schematicWidth(zFrom + blocks.size().getZ());
+    Bounds zoomedOutPointBounds = Bounds.make(new Point3D(0, 0, zTileFrom), new Point3D(tileCount.getX() - 1, tileCount.getY() - 1, zTileTo - 1));
+    for (Point3D p : zoomedOutPointBounds) {
+      Bounds b = Bounds.make(scaleSize.apply(p).translate(0, 0, -zFrom), scaleSize.apply(p.translate(1, 1, 1)).translate(-1, -1, -1 - zFrom));
+      b = Bounds.restrict(b, arrayBounds);
+      if (blocks.hasContent(b)) {
+        r.put(p, b);
       }
-    } else {
-      r.put(new Point3D(0, 0, 0), NBTMaker.toNbt(blockDrawer.getBlocks()));
     }
     return r;
   }
 
+  /**
+   * Draws and writes the tiles one slab of {@code SCHEMATIC_WIDTH_LIMIT} in z at a time,
+   * finishing each slab's files before drawing the next, so only one slab of blocks is ever held.
+   * The files are the same as drawing everything and then using {@code tiles} and {@code writeTiles}.
+   *
+   * @return The number of files written
+   */
+  public static int writeSlabs(PathAccumulator<?> paths, Path dir, Executor executor, PipelineTimings timings) throws IOException {
+    int length = AbsolutePhysical3DMap2.size(paths.bounds()).getZ();
+    int files = 0;
+    long drawNanos = 0;
+    long nbtNanos = 0;
+    long writeNanos = 0;
+    for (int zFrom = 0; zFrom < length; zFrom += SettingsConstants.SCHEMATIC_WIDTH_LIMIT) {
+      long start = System.nanoTime();
+      BlockDrawer slab = new BlockDrawer(paths, zFrom, zFrom + SettingsConstants.SCHEMATIC_WIDTH_LIMIT);
+      drawNanos += System.nanoTime() - start;
+      start = System.nanoTime();
+      Map<Point3D, Bounds> tiles = slabTiles(slab);
+      nbtNanos += System.nanoTime() - start;
+      start = System.nanoTime();
+      writeTiles(slab.getBlocks(), tiles, dir, executor);
+      writeNanos += System.nanoTime() - start;
+      files += tiles.size();
+    }
+    timings.setDrawNanos(drawNanos);
+    timings.setNbtNanos(nbtNanos);
+    timings.setWriteNanos(writeNanos);
+    return files;
+  }
+
+  /**
+   * Writes each tile to {@code dir/x,y,z.schematic}, compressing and writing on {@code executor}.
+   * <p>
+   * Each file only depends on its own tile, so the files come out the same whatever order they are written in.
+   * A tile being written holds a row of blocks and its compression buffers,
+   * so the memory in flight is bounded by the parallelism of {@code executor}, not the number of tiles.
+   */
+  public static void writeTiles(BlockStore blocks, Map<Point3D, Bounds> tiles, Path dir, Executor executor) throws IOException {
+    ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (Map.Entry<Point3D, Bounds> tile : tiles.entrySet()) {
+      File file = dir.resolve(tile.getKey().toStringWithoutSpaces() + SettingsConstants.fileExtension).toFile();
+      futures.add(CompletableFuture.runAsync(() -> {
+        try {
+          NBTMaker.writeSchematic(blocks, tile.getValue(), file);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, executor));
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
   public static Point3D size(BlockDrawer blockDrawer) {
-    Point3D upper = blockDrawer.size();
-    return new Point3D(schematicWidth(upper.getX()), schematicWidth(upper.getY()), schematicWidth(upper.getZ()));
+    return size(blockDrawer.size());
+  }
+
+  /**
+   * @param blockSize The size of a whole drawing
+   * @return How many tiles it's split into along each axis
+   */
+  public static Point3D size(Point3D blockSize) {
+    return new Point3D(schematicWidth(blockSize.getX()), schematicWidth(blockSize.getY()), schematicWidth(blockSize.getZ()));
   }
 
   /**
@@ -52,7 +160,7 @@ public class SchematicSplitter {
     return (blockWidth + SettingsConstants.SCHEMATIC_WIDTH_LIMIT - 1) / SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
   }
 
-  private static boolean tooBig(Point3D upperBound) {
+  public static boolean tooBig(Point3D upperBound) {
     return upperBound.getX() >= SettingsConstants.SCHEMATIC_WIDTH_LIMIT || upperBound.getY() >= SettingsConstants.SCHEMATIC_WIDTH_LIMIT || upperBound.getZ() >= SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
   }
 }
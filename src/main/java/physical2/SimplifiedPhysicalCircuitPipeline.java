@@ -2,13 +2,14 @@ package physical2;
 
 import circuit.AnnotatedCircuit;
 import circuit.preconstructed.CircuitCollection;
-import dev.dewy.nbt.tags.collection.CompoundTag;
 import misc.SettingsConstants;
 import nbt.NBTMaker;
-import nbt.SNBTParser;
+import physical.things.Bounds;
 import physical.things.Point3D;
+import physical2.blocks.AbsolutePhysical3DMap2;
 import physical2.blocks.BlockDrawer;
 import physical2.blocks.PathAccumulator;
+import physical2.tiny.AnnealingPlacer;
 import physical2.tiny.DefaultLegalPositions;
 import physical2.tiny.VariableSignalPosMapAnnotated;
 import physical2.tiny.XIter;
@@ -18,6 +19,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static misc.SettingsConstants.root;
 import static misc.SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
@@ -26,51 +28,116 @@ import static misc.SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
  * Creates a not space efficient redstone setup representing the given circuit.
  */
 public class SimplifiedPhysicalCircuitPipeline {
+  /**
+   * Where wires go in x and y. Inputs and outputs always get their own rows.
+   */
+  public enum Placement {
+    /**
+     * Wherever {@code DefaultLegalPositions} is up to when a wire is first needed
+     */
+    DEFAULT,
+    /**
+     * Starts from the default and moves connected wires closer together. See {@code AnnealingPlacer}.
+     */
+    ANNEALING
+  }
 
+  /**
+   * Writes the named circuit, trimmed, to {@code schematic/<name>} with the default options.
+   */
   public static void circuitToSchematic(CircuitCollection cc, String name, boolean verbose) throws IOException {
-    circuitToSchematic(cc.get(name).trim(), root.resolve("schematic").resolve(name + SettingsConstants.fileExtension).toFile(), verbose);
+    circuitToSchematic(cc.get(name).trim(), root.resolve("schematic").resolve(name + SettingsConstants.fileExtension).toFile(),
+        new PipelineOptions().setVerbose(verbose));
   }
 
-  public static void circuitToSchematic(AnnotatedCircuit circuit, File outFile, boolean verbose) throws IOException {
-    VariableSignalPosMapAnnotated sigPosMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
-
-    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
-      sigPosMap.placeInput(i, new XIter(0, i));
-    }
-    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
-      sigPosMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+  /**
+   * If the build has to be split, the tiles are compressed and written in parallel on the common pool.
+   */
+  public static PipelineTimings circuitToSchematic(AnnotatedCircuit circuit, File outFile, PipelineOptions options) throws IOException {
+    if (options.isCompact()) {
+      return CompactPhysicalCircuitPipeline.circuitToSchematic(circuit, outFile, options);
     }
+    boolean verbose = options.isVerbose();
+    PipelineTimings timings = new PipelineTimings();
+    long start = System.nanoTime();
 
     print("Accumulating path", verbose);
-    PathAccumulator pathAccumulator = PathAccumulator.makeQuadratic(sigPosMap, circuit.getGraph());
+    PathAccumulator<?> pathAccumulator = accumulatePaths(circuit, options.getLayering(), options.getPlacement());
+    timings.setPathNanos(System.nanoTime() - start);
+    timings.setDepth(pathAccumulator.depth());
+    print("Depth: " + pathAccumulator.depth() + " layers", verbose);
+
+    Point3D size = AbsolutePhysical3DMap2.size(pathAccumulator.bounds());
+    if (options.isStreaming() && SchematicSplitter.tooBig(size)) {
+      print("Size: " + size, verbose);
+      print("Drawing and writing " + SchematicSplitter.size(size) + " tiles a slab at a time with skip size " + SCHEMATIC_WIDTH_LIMIT, verbose);
+      timings.setFileCount(SchematicSplitter.writeSlabs(pathAccumulator, tileDirectory(outFile), ForkJoinPool.commonPool(), timings));
+      return timings;
+    }
+
+    start = System.nanoTime();
     print("Drawing blocks", verbose);
     BlockDrawer blockDrawer = new BlockDrawer(pathAccumulator);
+    timings.setDrawNanos(System.nanoTime() - start);
+    start = System.nanoTime();
     print("Size: " + blockDrawer.size(), verbose);
-    print("Building tag", verbose);
-    Map<Point3D, CompoundTag> tags;
-    try {
-      tags = SchematicSplitter.makeTags(blockDrawer);
-    } catch (SNBTParser.SNBTParseException e) {
-      throw new IOException("Invalid NBT tag", e);
-    }
-    if (tags.size() == 1) {
+    print("Splitting into tiles", verbose);
+    Map<Point3D, Bounds> tiles = SchematicSplitter.tiles(blockDrawer);
+    timings.setNbtNanos(System.nanoTime() - start);
+    start = System.nanoTime();
+    timings.setFileCount(tiles.size());
+    if (tiles.size() == 1) {
       print("Writing to file", verbose);
-      NBTMaker.toFile(tags.get(tags.keySet().iterator().next()), outFile);
+      NBTMaker.writeSchematic(blockDrawer.getBlocks(), tiles.values().iterator().next(), outFile);
     } else {
-      print("Too big for one file; splitting into " + tags.size() + " labelled files in shape " + SchematicSplitter.size(blockDrawer) + " with skip size " + SCHEMATIC_WIDTH_LIMIT, verbose);
-      int dot = outFile.getName().lastIndexOf('.');
-      String filePrefix = outFile.getName().substring(0, dot);
-      Path parent = outFile.toPath().getParent().resolve(filePrefix);
-      parent.toFile().mkdir();
-      for (Point3D pos : tags.keySet()) {
-        String fileName = pos.toStringWithoutSpaces() + SettingsConstants.fileExtension;
-        File file = parent.resolve(fileName).toFile();
-        NBTMaker.toFile(tags.get(pos), file);
-      }
+      print("Too big for one file; splitting into " + tiles.size() + " labelled files in shape " + SchematicSplitter.size(blockDrawer) + " with skip size " + SCHEMATIC_WIDTH_LIMIT, verbose);
+      SchematicSplitter.writeTiles(blockDrawer.getBlocks(), tiles, tileDirectory(outFile), ForkJoinPool.commonPool());
+    }
+    timings.setWriteNanos(System.nanoTime() - start);
+    return timings;
+  }
+
+  /**
+   * @return The directory next to {@code outFile}, named after it, that split schematics go in
+   */
+  static Path tileDirectory(File outFile) {
+    int dot = outFile.getName().lastIndexOf('.');
+    String filePrefix = outFile.getName().substring(0, dot);
+    Path parent = outFile.toPath().getParent().resolve(filePrefix);
+    parent.toFile().mkdir();
+    return parent;
+  }
+
+  private static PathAccumulator<?> accumulatePaths(AnnotatedCircuit circuit, PathAccumulator.Layering layering, Placement placement) {
+    VariableSignalPosMapAnnotated sigPosMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
+
+    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
+      sigPosMap.placeInput(i, new XIter(0, i));
     }
+    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
+      sigPosMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+    }
+    if (placement == Placement.ANNEALING) {
+      new AnnealingPlacer(circuit.getCompactGraph()).place(sigPosMap);
+    }
+
+    return PathAccumulator.make(layering, sigPosMap, circuit.getGraph());
+  }
+
+  /**
+   * Only runs the first stage, for comparing layerings without drawing anything.
+   *
+   * @return The number of z layers {@code layering} needs for {@code circuit}
+   */
+  public static int depth(AnnotatedCircuit circuit, PathAccumulator.Layering layering) {
+    return depth(circuit, layering, Placement.DEFAULT);
+  }
+
+  public static int depth(AnnotatedCircuit circuit, PathAccumulator.Layering layering, Placement placement) {
+    return accumulatePaths(circuit, layering, placement).depth();
   }
 
-  private static void print(String s, boolean verbose) {
+  static void print(String s, boolean verbose) {
     if (verbose) {
       System.out.println(s);
     }
@@ -1,7 +1,6 @@
 package physical2.blocks;
 
 import circuit.Pair;
-import misc.PairSecondIterator;
 import physical.things.BlockConstant;
 import physical.things.Bounds;
 import physical.things.Point3D;
@@ -11,38 +10,76 @@ import physical2.tiny.BentPath;
 import physical2.two.Point2D;
 
 import java.util.Iterator;
-import java.util.Map;
 import java.util.function.Function;
 
 import static physical2.blocks.SideMapping.*;
 
+/**
+ * Can hold just a window of the whole map in z, from {@code zFrom} up to {@code zTo}.
+ * Blocks outside the window are dropped, so the window can be drawn by putting everything as usual,
+ * and a long map can be drawn a slab at a time.
+ */
 public class AbsolutePhysical3DMap2 {
-  private BlockConstant[][][] blocks;
+  private BlockStore blocks;
   private Function<Point3D, Point3D> scale3;
   /**
    * In zoomed out coords
    */
   private Bounds validPositions;
+  private Point3D size;
+  private int zFrom;
+  private int zTo;
 
   /**
    * @param b Path bounds
    */
   public AbsolutePhysical3DMap2(Bounds b) {
+    this(b, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param b     Path bounds
+   * @param zFrom The first block z to keep
+   * @param zTo   One past the last block z to keep. Clipped to the end of the map.
+   */
+  public AbsolutePhysical3DMap2(Bounds b, int zFrom, int zTo) {
     validPositions = b;
-    Offset offset = new Offset(b.getLower().negate());
+    scale3 = scale(b);
+    size = size(b);
+    this.zFrom = zFrom;
+    this.zTo = Math.min(zTo, size.getZ());
+    if (zFrom < 0 || zFrom >= this.zTo) {
+      throw new IllegalArgumentException("Window " + zFrom + " to " + zTo + " is outside a map of length " + size.getZ());
+    }
+    blocks = new BlockStore(size.getX(), size.getY(), this.zTo - zFrom);
+  }
 
+  private static Function<Point3D, Point3D> scale(Bounds b) {
+    Offset offset = new Offset(b.getLower().negate());
     Function<Point3D, Point3D> simpleScale = p -> new Point3D(X_SCALE * p.getX(), mapY(p.getY()), mapZ(p.getZ()));
-    scale3 = simpleScale.compose(offset);
+    return simpleScale.compose(offset);
+  }
 
-    Point3D offsetUpper = scale3.apply(b.getUpper()).translate(X_BUFFER, Y_BUFFER, 0);
+  /**
+   * @param b Path bounds
+   * @return The size of the whole map drawn from paths within {@code b}, without drawing it
+   */
+  public static Point3D size(Bounds b) {
+    Point3D offsetUpper = scale(b).apply(b.getUpper()).translate(X_BUFFER, Y_BUFFER, 0);
     // Translate by 1 in each direction to capture the outermost edge
     // Translate by an extra 1 in z to capture the circuit output
-    offsetUpper = offsetUpper.translate(1, 1, 2);
-    blocks = new BlockConstant[offsetUpper.getX()][offsetUpper.getY()][offsetUpper.getZ()];
+    return offsetUpper.translate(1, 1, 2);
   }
 
+  /**
+   * @return The size of the whole map, not just the window
+   */
   public Point3D size() {
-    return new Point3D(blocks.length, blocks[0].length, blocks[0][0].length);
+    return size;
+  }
+
+  public int getZFrom() {
+    return zFrom;
   }
 
   public static int mapY(int y) {
@@ -70,7 +107,7 @@ public class AbsolutePhysical3DMap2 {
     Point3D lo = scale3.apply(new Point3D(xy.getX(), xy.getY(), zRange.getLower()));
     Point3D hi = scale3.apply(new Point3D(xy.getX(), xy.getY(), zRange.getUpper()));
 
-    for (int z = lo.getZ(); z < hi.getZ(); z++) {
+    for (int z = Math.max(lo.getZ(), zFrom); z < Math.min(hi.getZ(), zTo); z++) {
       BlockConstant redstone = mod(z, 8) == 6 ? BlockConstant.REPEATER_Z : BlockConstant.REDSTONE;
       putBlockRaw(new Point3D(lo.getX(), lo.getY(), z), redstone);
       putBlockRaw(new Point3D(lo.getX(), lo.getY() - 1, z), BlockConstant.REDSTONE_BASE);
@@ -105,18 +142,47 @@ public class AbsolutePhysical3DMap2 {
 
   /**
    * In tiny coords
+   * <p>
    */
   public void putPath(Integer z, BentPath bp) {
-    Iterator<Pair<Point2D, Map<Point2D, BlockConstant>>> squares = new PairSecondIterator<>(bp.iterator(), SideMapping::iterateOverPath);
-
-    for (; squares.hasNext(); ) {
-      Pair<Point2D, Map<Point2D, BlockConstant>> pair = squares.next();
-      Point2D p = pair.getFirst();
-      Point3D basePoint = scale3.apply(to3D(p, z));
-      Map<Point2D, BlockConstant> square = pair.getSecond();
-      for (Point2D localPos : square.keySet()) {
-        putBlockRaw(basePoint.translate(localPos.getX(), localPos.getY(), 0), square.get(localPos));
+    int blockZ = scale3.apply(to3D(bp.getStart(), z)).getZ();
+    if (blockZ < zFrom || blockZ >= zTo) {
+      return;
+    }
+    putSquares(z, bp.iterator());
+  }
+
+  /**
+   * In tiny coords
+   * <p>
+   * Pairs up squares the same way {@code SideMapping.iterateOverPath} does, drawing each from its {@code BlockStamp}.
+   */
+  public void putSquares(Integer z, Iterator<Pair<Point2D, SquareSpecifier>> squares) {
+    Pair<Point2D, SquareSpecifier> current = squares.hasNext() ? squares.next() : null;
+    while (current != null) {
+      Pair<Point2D, SquareSpecifier> following = squares.hasNext() ? squares.next() : null;
+      if (following != null) {
+        BlockStamp first = getDoubleStamp(current.getSecond(), following.getSecond(), 0);
+        if (first != null) {
+          putStamp(current.getFirst(), z, first);
+          putStamp(following.getFirst(), z, getDoubleStamp(current.getSecond(), following.getSecond(), 1));
+          current = squares.hasNext() ? squares.next() : null;
+          continue;
+        }
+      }
+      if (!hasSingle(current.getSecond())) {
+        throw new IllegalStateException("Unrecognized SquareSpecifier sequence: " + current.getSecond() + ", "
+            + (following == null ? "[End of Sequence]" : following.getSecond()));
       }
+      putStamp(current.getFirst(), z, getSingleStamp(current.getSecond()));
+      current = following;
+    }
+  }
+
+  private void putStamp(Point2D p, int z, BlockStamp stamp) {
+    Point3D base = scale3.apply(to3D(p, z));
+    for (int i = 0; i < stamp.size(); i++) {
+      putBlockRaw(base.getX() + stamp.dx[i], base.getY() + stamp.dy[i], base.getZ(), stamp.blocks[i]);
     }
   }
 
@@ -125,24 +191,35 @@ public class AbsolutePhysical3DMap2 {
   }
 
   public void putBlockRaw(Point3D p, BlockConstant bc) {
-    BlockConstant oldBc = blocks[p.getX()][p.getY()][p.getZ()];
+    putBlockRaw(p.getX(), p.getY(), p.getZ(), bc);
+  }
 
-    if (oldBc == null || oldBc == BlockConstant.EMPTY) {
-      putBlockRawUnsafe(p, bc);
+  private void putBlockRaw(int x, int y, int z, BlockConstant bc) {
+    if (z < zFrom || z >= zTo) {
+      return;
+    }
+    BlockConstant oldBc = blocks.get(x, y, z - zFrom);
+
+    if (oldBc == BlockConstant.EMPTY) {
+      blocks.set(x, y, z - zFrom, bc);
     } else if (oldBc != bc) {
-      System.err.println("Block type mismatch overlap at " + p);
-      putBlockRawUnsafe(p, BlockConstant.ERROR);
+      System.err.println("Block type mismatch overlap at " + new Point3D(x, y, z));
+      blocks.set(x, y, z - zFrom, BlockConstant.ERROR);
     }
   }
 
   public void putBlockRawUnsafe(Point3D p, BlockConstant bc) {
-    blocks[p.getX()][p.getY()][p.getZ()] = bc;
+    if (p.getZ() >= zFrom && p.getZ() < zTo) {
+      blocks.set(p.getX(), p.getY(), p.getZ() - zFrom, bc);
+    }
   }
 
   /**
    * Plz donut edit
+   * <p>
+   * Just the window, so block z {@code getZFrom()} is at z {@code 0} here.
    */
-  public BlockConstant[][][] getBlocks() {
+  public BlockStore getBlocks() {
     return blocks;
   }
 
@@ -1,6 +1,5 @@
 package physical2.blocks;
 
-import physical.things.BlockConstant;
 import physical.things.Point3D;
 import physical2.one.Range;
 import physical2.tiny.BentPath;
@@ -16,7 +15,14 @@ public class BlockDrawer {
   private AbsolutePhysical3DMap2 blocks;
 
   public BlockDrawer(PathAccumulator<?> drawer) {
-    blocks = new AbsolutePhysical3DMap2(drawer.bounds());
+    this(drawer, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Only draws the blocks with z from {@code zFrom} up to {@code zTo}. See {@code AbsolutePhysical3DMap2}.
+   */
+  public BlockDrawer(PathAccumulator<?> drawer, int zFrom, int zTo) {
+    blocks = new AbsolutePhysical3DMap2(drawer.bounds(), zFrom, zTo);
 
     Map<Integer, Collection<BentPath>> paths = drawer.getPaths();
     for (Integer z : paths.keySet()) {
@@ -45,14 +51,24 @@ public class BlockDrawer {
     }
   }
 
+  /**
+   * @return The size of the whole drawing, even if only a window of it was drawn
+   */
   public Point3D size() {
     return blocks.size();
   }
 
+  /**
+   * @return Where the window starts in z. {@code getBlocks()} is shifted down by this much.
+   */
+  public int getZFrom() {
+    return blocks.getZFrom();
+  }
+
   /**
    * Plz donut edit
    */
-  public BlockConstant[][][] getBlocks() {
+  public BlockStore getBlocks() {
     return blocks.getBlocks();
   }
 }
@@ -0,0 +1,46 @@
+package physical2.blocks;
+
+import physical.things.BlockConstant;
+import physical2.two.Point2D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One square of a {@code SideMapping}, flattened into parallel arrays of offsets from the square's base point
+ * and the blocks to put there, so drawing a square is a loop over arrays rather than a walk over a {@code Map}.
+ */
+final class BlockStamp {
+  final int[] dx;
+  final int[] dy;
+  final BlockConstant[] blocks;
+
+  private BlockStamp(int[] dx, int[] dy, BlockConstant[] blocks) {
+    this.dx = dx;
+    this.dy = dy;
+    this.blocks = blocks;
+  }
+
+  /**
+   * The blocks are ordered by y, then x, so a stamp doesn't depend on the map's iteration order.
+   */
+  static BlockStamp of(Map<Point2D, BlockConstant> square) {
+    List<Point2D> points = new ArrayList<>(square.keySet());
+    points.sort(Comparator.comparingInt(Point2D::getY).thenComparingInt(Point2D::getX));
+    int[] dx = new int[points.size()];
+    int[] dy = new int[points.size()];
+    BlockConstant[] blocks = new BlockConstant[points.size()];
+    for (int i = 0; i < points.size(); i++) {
+      dx[i] = points.get(i).getX();
+      dy[i] = points.get(i).getY();
+      blocks[i] = square.get(points.get(i));
+    }
+    return new BlockStamp(dx, dy, blocks);
+  }
+
+  int size() {
+    return blocks.length;
+  }
+}
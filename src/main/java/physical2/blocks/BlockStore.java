@@ -0,0 +1,193 @@
+package physical2.blocks;
+
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+
+/**
+ * A box of blocks, split into cubic sections of {@code SECTION_SIZE} on a side.
+ * <p>
+ * A section is only allocated once a block other than {@code BlockConstant.EMPTY} is put in it,
+ * and stores one byte per block (the {@code BlockConstant}'s ordinal), x varying fastest.
+ * Each section also counts its non-empty blocks, so {@code hasContent} can skip whole sections without looking at them.
+ * <p>
+ * Unset blocks read as {@code BlockConstant.EMPTY}. Safe to read from several threads once nothing is writing.
+ */
+public final class BlockStore {
+  public static final int SECTION_BITS = 4;
+  public static final int SECTION_SIZE = 1 << SECTION_BITS;
+  private static final int SECTION_MASK = SECTION_SIZE - 1;
+  private static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+  private static final BlockConstant[] CONSTANTS = BlockConstant.values();
+
+  private final int xSize;
+  private final int ySize;
+  private final int zSize;
+  private final int xSections;
+  private final int ySections;
+  private final int zSections;
+  private final byte[][] sections;
+  private final int[] nonEmptyCounts;
+
+  public BlockStore(int xSize, int ySize, int zSize) {
+    if (xSize <= 0 || ySize <= 0 || zSize <= 0) {
+      throw new IllegalArgumentException("Block store must have positive size, not " + xSize + "x" + ySize + "x" + zSize);
+    }
+    this.xSize = xSize;
+    this.ySize = ySize;
+    this.zSize = zSize;
+    xSections = sectionCount(xSize);
+    ySections = sectionCount(ySize);
+    zSections = sectionCount(zSize);
+    long sectionCount = (long) xSections * ySections * zSections;
+    if (sectionCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Block store too large: " + xSize + "x" + ySize + "x" + zSize);
+    }
+    sections = new byte[(int) sectionCount][];
+    nonEmptyCounts = new int[(int) sectionCount];
+  }
+
+  private static int sectionCount(int blocks) {
+    return (blocks + SECTION_MASK) >> SECTION_BITS;
+  }
+
+  public Point3D size() {
+    return new Point3D(xSize, ySize, zSize);
+  }
+
+  /**
+   * @return From the origin to {@code size() - 1}
+   */
+  public Bounds bounds() {
+    return Bounds.make(new Point3D(0, 0, 0), new Point3D(xSize - 1, ySize - 1, zSize - 1));
+  }
+
+  private void checkPosition(int x, int y, int z) {
+    if (x < 0 || y < 0 || z < 0 || x >= xSize || y >= ySize || z >= zSize) {
+      throw new IndexOutOfBoundsException("(" + x + ", " + y + ", " + z + ") is outside a block store of size " + size());
+    }
+  }
+
+  private int sectionIndex(int x, int y, int z) {
+    return ((x >> SECTION_BITS) * ySections + (y >> SECTION_BITS)) * zSections + (z >> SECTION_BITS);
+  }
+
+  private static int indexInSection(int x, int y, int z) {
+    return (((y & SECTION_MASK) << SECTION_BITS | (z & SECTION_MASK)) << SECTION_BITS) | (x & SECTION_MASK);
+  }
+
+  public BlockConstant get(int x, int y, int z) {
+    return CONSTANTS[getOrdinal(x, y, z)];
+  }
+
+  public BlockConstant get(Point3D p) {
+    return get(p.getX(), p.getY(), p.getZ());
+  }
+
+  /**
+   * @return The ordinal of the block at that position, saving the lookup into {@code BlockConstant.values()}
+   */
+  public int getOrdinal(int x, int y, int z) {
+    checkPosition(x, y, z);
+    byte[] section = sections[sectionIndex(x, y, z)];
+    return section == null ? BlockConstant.EMPTY.ordinal() : section[indexInSection(x, y, z)];
+  }
+
+  /**
+   * @param bc {@code null} is stored as {@code BlockConstant.EMPTY}
+   */
+  public void set(int x, int y, int z, BlockConstant bc) {
+    checkPosition(x, y, z);
+    int ordinal = bc == null ? BlockConstant.EMPTY.ordinal() : bc.ordinal();
+    int s = sectionIndex(x, y, z);
+    byte[] section = sections[s];
+    if (section == null) {
+      if (ordinal == BlockConstant.EMPTY.ordinal()) {
+        return;
+      }
+      // EMPTY has ordinal 0, so a new section starts out empty
+      section = sections[s] = new byte[SECTION_VOLUME];
+    }
+    int i = indexInSection(x, y, z);
+    boolean wasEmpty = section[i] == BlockConstant.EMPTY.ordinal();
+    boolean isEmpty = ordinal == BlockConstant.EMPTY.ordinal();
+    if (wasEmpty && !isEmpty) {
+      nonEmptyCounts[s]++;
+    } else if (!wasEmpty && isEmpty) {
+      nonEmptyCounts[s]--;
+    }
+    section[i] = (byte) ordinal;
+  }
+
+  public void set(Point3D p, BlockConstant bc) {
+    set(p.getX(), p.getY(), p.getZ(), bc);
+  }
+
+  /**
+   * Sections with nothing in them are skipped, and sections entirely within {@code b} are answered from their counts,
+   * so only sections straddling the edge of {@code b} are ever scanned.
+   *
+   * @return Whether the blocks within {@code b} include any other than {@code BlockConstant.EMPTY}
+   */
+  public boolean hasContent(Bounds b) {
+    int xLo = Math.max(0, b.getLower().getX());
+    int yLo = Math.max(0, b.getLower().getY());
+    int zLo = Math.max(0, b.getLower().getZ());
+    int xHi = Math.min(xSize - 1, b.getUpper().getX());
+    int yHi = Math.min(ySize - 1, b.getUpper().getY());
+    int zHi = Math.min(zSize - 1, b.getUpper().getZ());
+    for (int sx = xLo >> SECTION_BITS; sx <= xHi >> SECTION_BITS; sx++) {
+      for (int sy = yLo >> SECTION_BITS; sy <= yHi >> SECTION_BITS; sy++) {
+        for (int sz = zLo >> SECTION_BITS; sz <= zHi >> SECTION_BITS; sz++) {
+          int s = (sx * ySections + sy) * zSections + sz;
+          if (nonEmptyCounts[s] == 0) {
+            continue;
+          }
+          int x0 = Math.max(xLo, sx << SECTION_BITS);
+          int y0 = Math.max(yLo, sy << SECTION_BITS);
+          int z0 = Math.max(zLo, sz << SECTION_BITS);
+          int x1 = Math.min(xHi, (sx << SECTION_BITS) + SECTION_MASK);
+          int y1 = Math.min(yHi, (sy << SECTION_BITS) + SECTION_MASK);
+          int z1 = Math.min(zHi, (sz << SECTION_BITS) + SECTION_MASK);
+          if (x1 - x0 == SECTION_MASK && y1 - y0 == SECTION_MASK && z1 - z0 == SECTION_MASK) {
+            return true;
+          }
+          if (scan(sections[s], x0, y0, z0, x1, y1, z1)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean scan(byte[] section, int x0, int y0, int z0, int x1, int y1, int z1) {
+    for (int y = y0; y <= y1; y++) {
+      for (int z = z0; z <= z1; z++) {
+        for (int x = x0; x <= x1; x++) {
+          if (section[indexInSection(x, y, z)] != BlockConstant.EMPTY.ordinal()) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return How many sections have been allocated, out of {@code sectionCount()}
+   */
+  public int allocatedSections() {
+    int r = 0;
+    for (byte[] section : sections) {
+      if (section != null) {
+        r++;
+      }
+    }
+    return r;
+  }
+
+  public int sectionCount() {
+    return sections.length;
+  }
+}
@@ -0,0 +1,50 @@
+package physical2.blocks;
+
+import misc.LongObjectHashMap;
+import physical2.two.Point2D;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Which z layers each (x, y) square is used in, for finding the first layer a whole footprint fits in.
+ * <p>
+ * Each square keeps a bit per layer, so the next free layer of one square is a word scan ({@code BitSet.nextClearBit}).
+ * {@code lowestFree} jumps straight past occupied runs, rather than trying every layer in turn,
+ * and only looks up the footprint's squares once.
+ */
+class OccupancyIndex {
+  private final LongObjectHashMap<BitSet> occupied = new LongObjectHashMap<>();
+
+  /**
+   * @return The lowest z at least {@code from} at which none of {@code footprint} is occupied
+   */
+  int lowestFree(Collection<Point2D> footprint, int from) {
+    ArrayList<BitSet> columns = new ArrayList<>(footprint.size());
+    for (Point2D p : footprint) {
+      BitSet column = occupied.get(p.pack());
+      if (column != null) {
+        columns.add(column);
+      }
+    }
+
+    // Raise z until a full pass over the footprint doesn't move it
+    int z = from;
+    int settled = 0;
+    for (int i = 0; settled < columns.size(); i = (i + 1) % columns.size()) {
+      int next = columns.get(i).nextClearBit(z);
+      if (next == z) {
+        settled++;
+      } else {
+        z = next;
+        settled = 1;
+      }
+    }
+    return z;
+  }
+
+  void occupy(Point2D p, int z) {
+    occupied.computeIfAbsent(p.pack(), ignored -> new BitSet()).set(z);
+  }
+}
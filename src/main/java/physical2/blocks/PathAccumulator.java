@@ -4,6 +4,7 @@ import circuit.Pair;
 import graph.Edge;
 import graph.OrderedEdgeIterable;
 import graph.TwoWayDirectedGraph;
+import misc.LongIntHashMap;
 import physical.things.Bounded;
 import physical.things.Bounds;
 import physical.things.Point3D;
@@ -16,15 +17,19 @@ import java.util.*;
 
 public class PathAccumulator<T> implements Bounded {
   private VariableSignalPosMap<T> varPosMap;
-  private Map<Integer, Set<Point2D>> consumedPoints;
+  /**
+   * The bounds of every (x, y, z) any path goes through, or {@code null} before the first path
+   */
+  private Bounds consumedBounds;
   private Map<Integer, Collection<BentPath>> paths;
   private Map<Point2D, Pair<Range, Range>> zRange;
+  private OccupancyIndex occupancy;
 
   public PathAccumulator(VariableSignalPosMap<T> varPosMap) {
     this.varPosMap = varPosMap;
     paths = new HashMap<>();
     zRange = new HashMap<>();
-    consumedPoints = new HashMap<>();
+    occupancy = new OccupancyIndex();
   }
 
   public VariableSignalPosMap<T> getVarPosMap() {
@@ -44,6 +49,37 @@ public class PathAccumulator<T> implements Bounded {
     return Range.merge(pair.getFirst(), pair.getSecond());
   }
 
+  /**
+   * How to pick the z layer of each torch
+   */
+  public enum Layering {
+    /**
+     * One layer per torch ({@code makeLinear})
+     */
+    LINEAR,
+    /**
+     * First free layer, in a fixed topological order ({@code makeQuadratic})
+     */
+    QUADRATIC,
+    /**
+     * First free layer, longest chain first ({@code makeColoring})
+     */
+    COLORING
+  }
+
+  public static <T> PathAccumulator<T> make(Layering layering, VariableSignalPosMap<T> varPosMap, TwoWayDirectedGraph<T> graph) {
+    switch (layering) {
+      case LINEAR:
+        return makeLinear(varPosMap, graph);
+      case QUADRATIC:
+        return makeQuadratic(varPosMap, graph);
+      case COLORING:
+        return makeColoring(varPosMap, graph);
+      default:
+        throw new IllegalArgumentException("Unknown layering " + layering);
+    }
+  }
+
   public static <T> PathAccumulator<T> makeQuadratic(VariableSignalPosMap<T> varPosMap, TwoWayDirectedGraph<T> graph) {
     PathAccumulator<T> r = new PathAccumulator<>(varPosMap);
     r.placeAllQuadratic(graph);
@@ -72,43 +108,131 @@ public class PathAccumulator<T> implements Bounded {
       }
 
       BentPath path = varPosMap.getPath(torch);
-      while (pathOverlap(z, path)) {
-        z++;
-      }
+      z = occupancy.lowestFree(path.consumedSpace(), z);
       minZPos.put(inputWire, z);
       addPathUnsafe(z, varPosMap.getPath(torch));
     }
   }
 
-  public static <T> PathAccumulator<T> makeLinear(VariableSignalPosMap<T> varPosMap, TwoWayDirectedGraph<T> graph) {
+  /**
+   * Like {@code makeQuadratic}, but rather than taking torches in a fixed order,
+   * schedules them to keep the schematic short in z.
+   * <p>
+   * Torches conflict if their footprints overlap (so they need different layers),
+   * and every torch into a wire has to come before every torch out of it.
+   * Whenever all the torches into a wire are placed, the torches out of it become ready.
+   * Of the ready torches, the one with the longest chain of torches still to come after it is placed first,
+   * and then the one whose footprint is shared with the most other torches.
+   * Each goes in the lowest free layer after its inputs.
+   */
+  public static <T> PathAccumulator<T> makeColoring(VariableSignalPosMap<T> varPosMap, TwoWayDirectedGraph<T> graph) {
     PathAccumulator<T> r = new PathAccumulator<>(varPosMap);
-    r.placeAllLinear(graph);
+    r.placeAllColoring(graph);
     return r;
   }
 
-  private void placeAllLinear(TwoWayDirectedGraph<T> graph) {
-    int z = 0;
+  private void placeAllColoring(TwoWayDirectedGraph<T> graph) {
+    // Positions are assigned as paths are first asked for, so ask in the same order as the other strategies
+    ArrayList<Edge<T>> torches = new ArrayList<>();
+    ArrayList<BentPath> torchPaths = new ArrayList<>();
     for (Edge<T> torch : new OrderedEdgeIterable<>(graph)) {
-      addPathUnsafe(z, varPosMap.getPath(torch));
-      z++;
+      torches.add(torch);
+      torchPaths.add(varPosMap.getPath(torch));
     }
-  }
+    int n = torches.size();
 
-  private boolean pathOverlap(Integer z, BentPath path) {
-    if (!paths.containsKey(z)) {
-      return false;
+    Map<T, List<Integer>> outTorches = new HashMap<>();
+    Map<T, Integer> unplacedInputs = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      outTorches.computeIfAbsent(torches.get(i).getStart(), ignored -> new ArrayList<>()).add(i);
+      unplacedInputs.merge(torches.get(i).getEnd(), 1, Integer::sum);
     }
 
-    Set<Point2D> layer = consumedPoints.get(z);
+    // Every torch comes after the ones into its start, so going backwards sees each torch's successors first
+    int[] tail = new int[n];
+    for (int i = n - 1; i >= 0; i--) {
+      for (int next : outTorches.getOrDefault(torches.get(i).getEnd(), Collections.emptyList())) {
+        tail[i] = Math.max(tail[i], tail[next]);
+      }
+      tail[i]++;
+    }
 
-    for (Pair<Point2D, SquareSpecifier> pair : path) {
-      Point2D point = pair.getFirst();
+    ArrayList<Set<Point2D>> footprints = new ArrayList<>(n);
+    LongIntHashMap squareUsers = new LongIntHashMap(0);
+    for (int i = 0; i < n; i++) {
+      Set<Point2D> footprint = torchPaths.get(i).consumedSpace();
+      footprints.add(footprint);
+      for (Point2D p : footprint) {
+        squareUsers.addTo(p.pack(), 1);
+      }
+    }
+    int[] crowding = new int[n];
+    for (int i = 0; i < n; i++) {
+      for (Point2D p : footprints.get(i)) {
+        crowding[i] += squareUsers.get(p.pack()) - 1;
+      }
+    }
+
+    boolean[] placed = new boolean[n];
+    PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> {
+      if (tail[a] != tail[b]) {
+        return Integer.compare(tail[b], tail[a]);
+      }
+      if (crowding[a] != crowding[b]) {
+        return Integer.compare(crowding[b], crowding[a]);
+      }
+      return Integer.compare(a, b);
+    });
+    Map<T, Integer> earliest = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      if (!unplacedInputs.containsKey(torches.get(i).getStart())) {
+        ready.add(i);
+      }
+    }
 
-      if (layer.contains(point)) {
-        return true;
+    while (!ready.isEmpty()) {
+      int i = ready.poll();
+      Edge<T> torch = torches.get(i);
+      int z = occupancy.lowestFree(footprints.get(i), earliest.getOrDefault(torch.getStart(), 0));
+      addPathUnsafe(z, torchPaths.get(i));
+      placed[i] = true;
+
+      T end = torch.getEnd();
+      earliest.merge(end, z + 1, Math::max);
+      if (unplacedInputs.merge(end, -1, Integer::sum) == 0) {
+        ready.addAll(outTorches.getOrDefault(end, Collections.emptyList()));
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      if (!placed[i]) {
+        throw new IllegalArgumentException("Can't order the torches of a circuit with a loop");
       }
     }
-    return false;
+  }
+
+  /**
+   * @return The number of z layers from the first torch to the last
+   */
+  public int depth() {
+    if (paths.isEmpty()) {
+      return 0;
+    }
+    return Collections.max(paths.keySet()) - Collections.min(paths.keySet()) + 1;
+  }
+
+  public static <T> PathAccumulator<T> makeLinear(VariableSignalPosMap<T> varPosMap, TwoWayDirectedGraph<T> graph) {
+    PathAccumulator<T> r = new PathAccumulator<>(varPosMap);
+    r.placeAllLinear(graph);
+    return r;
+  }
+
+  private void placeAllLinear(TwoWayDirectedGraph<T> graph) {
+    int z = 0;
+    for (Edge<T> torch : new OrderedEdgeIterable<>(graph)) {
+      addPathUnsafe(z, varPosMap.getPath(torch));
+      z++;
+    }
   }
 
   /**
@@ -120,11 +244,19 @@ public class PathAccumulator<T> implements Bounded {
     registerOutputZ(z, path.getStart());
 
     // Add blocks
-    Set<Point2D> layer = ensureConsumed(z);
-
+    int xLo = Integer.MAX_VALUE;
+    int yLo = Integer.MAX_VALUE;
+    int xHi = Integer.MIN_VALUE;
+    int yHi = Integer.MIN_VALUE;
     for (Pair<Point2D, SquareSpecifier> pair : path) {
-      layer.add(pair.getFirst());
+      Point2D p = pair.getFirst();
+      xLo = Math.min(xLo, p.getX());
+      yLo = Math.min(yLo, p.getY());
+      xHi = Math.max(xHi, p.getX());
+      yHi = Math.max(yHi, p.getY());
+      occupancy.occupy(p, z);
     }
+    consumedBounds = Bounds.merge(consumedBounds, Bounds.make(new Point3D(xLo, yLo, z), new Point3D(xHi, yHi, z)));
 
     // Add the path itself
     ensureLayer(z).add(path);
@@ -169,26 +301,11 @@ public class PathAccumulator<T> implements Bounded {
     return paths.get(z);
   }
 
-  private Set<Point2D> ensureConsumed(Integer z) {
-    if (!consumedPoints.containsKey(z)) {
-      consumedPoints.put(z, new HashSet<>());
-    }
-    return consumedPoints.get(z);
-  }
-
-
+  /**
+   * Kept up to date as paths are added, so drawing a slab at a time doesn't redo it for each slab
+   */
   @Override
   public Bounds bounds() {
-    Bounds b = null;
-
-    for (int z : consumedPoints.keySet()) {
-      Set<Point2D> layer = consumedPoints.get(z);
-
-      for (Point2D p : layer) {
-        b = Bounds.merge(b, new Point3D(p.getX(), p.getY(), z));
-      }
-    }
-
-    return b;
+    return consumedBounds;
   }
 }
@@ -44,6 +44,29 @@ public class SideMapping {
     }
   }
 
+  /**
+   * {@code singleMappings} and {@code doubleMappings} as {@code BlockStamp}s, indexed by {@code SquareSpecifier.index()}.
+   * {@code doubleStamps[first.index()]} is {@code null} if {@code first} doesn't start any pair,
+   * and otherwise holds the two stamps for each second specifier at {@code 2 * second.index()} and the one after.
+   */
+  private static final BlockStamp[] singleStamps = new BlockStamp[SquareSpecifier.COUNT];
+  private static final BlockStamp[][] doubleStamps = new BlockStamp[SquareSpecifier.COUNT][];
+
+  static {
+    for (Map.Entry<SquareSpecifier, Map<Point2D, BlockConstant>> entry : singleMappings.entrySet()) {
+      singleStamps[entry.getKey().index()] = BlockStamp.of(entry.getValue());
+    }
+    for (Map.Entry<Pair<SquareSpecifier, SquareSpecifier>, Pair<Map<Point2D, BlockConstant>, Map<Point2D, BlockConstant>>> entry : doubleMappings.entrySet()) {
+      int first = entry.getKey().getFirst().index();
+      int second = entry.getKey().getSecond().index();
+      if (doubleStamps[first] == null) {
+        doubleStamps[first] = new BlockStamp[2 * SquareSpecifier.COUNT];
+      }
+      doubleStamps[first][2 * second] = BlockStamp.of(entry.getValue().getFirst());
+      doubleStamps[first][2 * second + 1] = BlockStamp.of(entry.getValue().getSecond());
+    }
+  }
+
   private static Map<SquareSpecifier, Map<Point2D, BlockConstant>> defaultSingleMappings() {
     Map<SquareSpecifier, Map<Point2D, BlockConstant>> r = new HashMap<>();
     r.put(new SquareSpecifier(null, LEFT, BiSide.RIGHT, null, false), parseStringMap(new String[]{
@@ -544,6 +567,28 @@ public class SideMapping {
     return doubleMappings.get(specPair);
   }
 
+  /**
+   * The same as {@code getSingle}, as a {@code BlockStamp}
+   */
+  static BlockStamp getSingleStamp(SquareSpecifier spec) {
+    BlockStamp r = singleStamps[spec.index()];
+    if (r == null) {
+      throw new IllegalArgumentException("Illegal SquareSpecifier " + spec.toString());
+    }
+    return r;
+  }
+
+  /**
+   * The same as {@code getDouble}, as {@code BlockStamp}s
+   *
+   * @param which {@code 0} for the stamp of {@code first}, {@code 1} for the stamp of {@code second}
+   * @return {@code null} if {@code first} and {@code second} don't pair up
+   */
+  static BlockStamp getDoubleStamp(SquareSpecifier first, SquareSpecifier second, int which) {
+    BlockStamp[] seconds = doubleStamps[first.index()];
+    return seconds == null ? null : seconds[2 * second.index() + which];
+  }
+
   private static BlockConstant charToBlockConstant(char c) {
     switch (c) {
       case '.':
@@ -6,6 +6,13 @@ import physical2.two.Side;
 import java.util.Objects;
 
 public class SquareSpecifier {
+  private static final int SIDES = Side.values().length + 1;
+  private static final int BI_SIDES = BiSide.values().length + 1;
+  /**
+   * The number of distinct specifiers, i.e. one more than the highest {@code index()}
+   */
+  public static final int COUNT = SIDES * SIDES * BI_SIDES * BI_SIDES * 2;
+
   private Side s1, s2;
   private boolean repeater;
   private BiSide start, end;
@@ -49,6 +56,17 @@ public class SquareSpecifier {
     return end;
   }
 
+  /**
+   * @return A number from {@code 0} up to {@code COUNT}, the same for equal specifiers and different otherwise
+   */
+  public int index() {
+    int r = s1 == null ? 0 : s1.ordinal() + 1;
+    r = r * SIDES + (s2 == null ? 0 : s2.ordinal() + 1);
+    r = r * BI_SIDES + (start == null ? 0 : start.ordinal() + 1);
+    r = r * BI_SIDES + (end == null ? 0 : end.ordinal() + 1);
+    return r * 2 + (repeater ? 1 : 0);
+  }
+
   @Override
   public int hashCode() {
     return Objects.hashCode(s1) + 11 * Objects.hashCode(s2) + Objects.hashCode(start) * 113 + Objects.hashCode(end) * 1009 + (repeater ? 7919 : 0);
@@ -0,0 +1,230 @@
+package physical2.tiny;
+
+import graph.CompactGraph;
+import graph.Edge;
+import graph.OrderedEdgeIterable;
+import physical2.two.Point2D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Rearranges where the wires go, so that connected wires end up close together and every {@code BentPath} is short.
+ * <p>
+ * Starts from the positions {@code VariableSignalPosMap} would hand out anyway, then shuffles the wires among those
+ * positions by simulated annealing, minimizing the total Manhattan length of the torches.
+ * A move swaps a wire with whatever is at a nearby position (possibly nothing), and only the torches touching
+ * the moved wires are re-measured. The window moves are picked from shrinks as the temperature drops.
+ * <p>
+ * Shorter paths have smaller footprints, so they also conflict less when being put into z layers.
+ * Wires placed before this runs (the inputs and outputs from {@code placeInput} and {@code placeOutput}) stay where they are.
+ */
+public class AnnealingPlacer {
+  private static final int MOVES_PER_WIRE = 16;
+  private static final double COOLING = 0.92;
+  private static final double FINAL_TEMPERATURE = 0.05;
+
+  private final CompactGraph graph;
+  private long seed = 0x5eed;
+
+  private int[] xs;
+  private int[] ys;
+  /**
+   * The positions the movable wires can take, as a grid over their bounding box. {@code -1} is not a position,
+   * {@code -2} is a free position, and anything else is the wire there.
+   */
+  private int[] grid;
+  private int gridX;
+  private int gridY;
+  private int gridWidth;
+  private int gridHeight;
+
+  public AnnealingPlacer(CompactGraph graph) {
+    this.graph = graph;
+  }
+
+  public AnnealingPlacer setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Positions every wire in the graph that touches a torch.
+   *
+   * @param posMap Holds the fixed wires. Gets the rest put into it.
+   */
+  public void place(VariableSignalPosMap<Integer> posMap) {
+    int size = graph.size();
+    xs = new int[size];
+    ys = new int[size];
+    boolean[] placed = new boolean[size];
+    for (int node = 0; node < size; node++) {
+      Point2D p = posMap.getPos(node);
+      if (p != null) {
+        placed[node] = true;
+        xs[node] = p.getX();
+        ys[node] = p.getY();
+      }
+    }
+
+    // Hand out positions the same way getPath would, so annealing starts from the usual layout
+    ArrayList<Integer> wires = new ArrayList<>();
+    for (Edge<Integer> torch : new OrderedEdgeIterable<>(graph.asTwoWayDirectedGraph())) {
+      for (int node : new int[]{torch.getStart(), torch.getEnd()}) {
+        if (!placed[node]) {
+          Point2D p = posMap.assignToNext(node);
+          placed[node] = true;
+          xs[node] = p.getX();
+          ys[node] = p.getY();
+          wires.add(node);
+        }
+      }
+    }
+    if (wires.size() < 2) {
+      return;
+    }
+
+    buildGrid(wires);
+    anneal(wires);
+
+    for (int node : wires) {
+      posMap.put(node, new Point2D(xs[node], ys[node]));
+    }
+  }
+
+  private void buildGrid(ArrayList<Integer> wires) {
+    int xLo = Integer.MAX_VALUE;
+    int yLo = Integer.MAX_VALUE;
+    int xHi = Integer.MIN_VALUE;
+    int yHi = Integer.MIN_VALUE;
+    for (int node : wires) {
+      xLo = Math.min(xLo, xs[node]);
+      yLo = Math.min(yLo, ys[node]);
+      xHi = Math.max(xHi, xs[node]);
+      yHi = Math.max(yHi, ys[node]);
+    }
+    gridX = xLo;
+    gridY = yLo;
+    gridWidth = xHi - xLo + 1;
+    gridHeight = yHi - yLo + 1;
+    grid = new int[gridWidth * gridHeight];
+    Arrays.fill(grid, -1);
+    for (int node : wires) {
+      grid[cell(xs[node], ys[node])] = node;
+    }
+  }
+
+  private int cell(int x, int y) {
+    return (y - gridY) * gridWidth + (x - gridX);
+  }
+
+  private void anneal(ArrayList<Integer> wires) {
+    SplittableRandom random = new SplittableRandom(seed);
+    int moves = MOVES_PER_WIRE * wires.size();
+    int window = Math.max(gridWidth, gridHeight);
+
+    // Start hot enough that a typical uphill move is usually accepted
+    double uphill = 0;
+    int uphillCount = 0;
+    for (int i = 0; i < Math.min(moves, 1000); i++) {
+      int node = wires.get(random.nextInt(wires.size()));
+      int target = pickTarget(node, window, random);
+      if (target != -1) {
+        int delta = swapDelta(node, target);
+        if (delta > 0) {
+          uphill += delta;
+          uphillCount++;
+        }
+      }
+    }
+    if (uphillCount == 0) {
+      return;
+    }
+    double temperature = 2 * uphill / uphillCount;
+
+    while (temperature > FINAL_TEMPERATURE) {
+      int accepted = 0;
+      for (int i = 0; i < moves; i++) {
+        int node = wires.get(random.nextInt(wires.size()));
+        int target = pickTarget(node, window, random);
+        if (target == -1) {
+          continue;
+        }
+        int delta = swapDelta(node, target);
+        if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+          swap(node, target);
+          accepted++;
+        }
+      }
+      temperature *= COOLING;
+      // Keep the window at the size where moves are still being accepted
+      double acceptance = (double) accepted / moves;
+      window = Math.max(1, Math.min(Math.max(gridWidth, gridHeight), (int) Math.round(window * (0.56 + acceptance))));
+    }
+  }
+
+  /**
+   * @return A grid cell near {@code node} to swap with, or {@code -1} if the one picked isn't a position
+   */
+  private int pickTarget(int node, int window, SplittableRandom random) {
+    int x = xs[node] + random.nextInt(2 * window + 1) - window;
+    int y = ys[node] + random.nextInt(2 * window + 1) - window;
+    if (x < gridX || y < gridY || x >= gridX + gridWidth || y >= gridY + gridHeight || (x == xs[node] && y == ys[node])) {
+      return -1;
+    }
+    int c = cell(x, y);
+    return grid[c] == -1 ? -1 : c;
+  }
+
+  /**
+   * @return How much the total length changes if {@code node} swaps places with whatever is in {@code targetCell}
+   */
+  private int swapDelta(int node, int targetCell) {
+    int other = grid[targetCell];
+    int tx = targetCell % gridWidth + gridX;
+    int ty = targetCell / gridWidth + gridY;
+    // The torch between the two, if any, is left out both before and after, since it's just as long either way
+    int delta = length(node, tx, ty, other) - length(node, xs[node], ys[node], other);
+    if (other >= 0) {
+      delta += length(other, xs[node], ys[node], node) - length(other, tx, ty, node);
+    }
+    return delta;
+  }
+
+  /**
+   * @param swapped The wire {@code node} swaps with, or negative for none.
+   *                Torches between the two are left out, since swapping doesn't change their length.
+   * @return The total Manhattan length of the torches touching {@code node}, if it were at {@code (x, y)}
+   */
+  private int length(int node, int x, int y, int swapped) {
+    int r = 0;
+    for (int i = 0; i < graph.outDegree(node); i++) {
+      int next = graph.outNeighbor(node, i);
+      if (next != swapped) {
+        r += Math.abs(xs[next] - x) + Math.abs(ys[next] - y);
+      }
+    }
+    for (int i = 0; i < graph.inDegree(node); i++) {
+      int prev = graph.inNeighbor(node, i);
+      if (prev != swapped) {
+        r += Math.abs(xs[prev] - x) + Math.abs(ys[prev] - y);
+      }
+    }
+    return r;
+  }
+
+  private void swap(int node, int targetCell) {
+    int other = grid[targetCell];
+    int tx = targetCell % gridWidth + gridX;
+    int ty = targetCell / gridWidth + gridY;
+    grid[cell(xs[node], ys[node])] = other >= 0 ? other : -2;
+    if (other >= 0) {
+      xs[other] = xs[node];
+      ys[other] = ys[node];
+    }
+    grid[targetCell] = node;
+    xs[node] = tx;
+    ys[node] = ty;
+  }
+}
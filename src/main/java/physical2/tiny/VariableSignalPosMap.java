@@ -1,6 +1,7 @@
 package physical2.tiny;
 
 import graph.Edge;
+import misc.LongHashSet;
 import physical2.two.Point2D;
 
 import java.util.*;
@@ -14,7 +15,7 @@ import java.util.*;
  */
 public class VariableSignalPosMap<T> {
   private Map<T, Point2D> posMap;
-  private Set<Point2D> consumedPoints;
+  private LongHashSet consumedPoints;
   private Iterator<Point2D> legalPositions;
 
   /**
@@ -23,12 +24,12 @@ public class VariableSignalPosMap<T> {
   public VariableSignalPosMap(Iterable<Point2D> legalPositions) {
     this.posMap = new HashMap<>();
     this.legalPositions = legalPositions.iterator();
-    this.consumedPoints = new HashSet<>();
+    this.consumedPoints = new LongHashSet();
   }
 
   public void put(T blob, Point2D pos) {
     posMap.put(blob, pos);
-    consumedPoints.add(pos);
+    consumedPoints.add(pos.pack());
   }
 
   public Point2D getPos(T blob) {
@@ -39,7 +40,7 @@ public class VariableSignalPosMap<T> {
     Point2D p;
     do {
       p = legalPositions.next();
-    } while (consumedPoints.contains(p));
+    } while (consumedPoints.contains(p.pack()));
     put(blob, p);
     return p;
   }
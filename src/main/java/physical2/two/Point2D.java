@@ -40,6 +40,30 @@ public class Point2D {
     return x * other.x + y * other.y;
   }
 
+  /**
+   * @return {@code x} and {@code y} in one {@code long}, for keying {@code LongHashSet} and the like.
+   * Different points always pack differently.
+   */
+  public long pack() {
+    return pack(x, y);
+  }
+
+  public static long pack(int x, int y) {
+    return (long) x << 32 | (y & 0xFFFFFFFFL);
+  }
+
+  public static int unpackX(long packed) {
+    return (int) (packed >> 32);
+  }
+
+  public static int unpackY(long packed) {
+    return (int) packed;
+  }
+
+  public static Point2D unpack(long packed) {
+    return new Point2D(unpackX(packed), unpackY(packed));
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof Point2D) {
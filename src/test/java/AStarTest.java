@@ -1,9 +1,11 @@
 import a_star.AStar;
+import a_star.GridAStar;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -143,6 +145,97 @@ public class AStarTest {
         new int[]{537, 699, 497, 121, 956},
         new int[]{805, 732, 524, 37, 331},
     }, 2297);
+    testGrid(new int[][]{
+        new int[]{131, 673, 234, 103, 18},
+        new int[]{201, 96, 342, 965, 150},
+        new int[]{630, 803, 746, 422, 111},
+        new int[]{537, 699, 497, 121, 956},
+        new int[]{805, 732, 524, 37, 331},
+    }, 2297);
+    testGridAgainstAStar(new Random(83), 60);
+    System.out.println("Tests complete");
+  }
+
+  private static void testGrid(int[][] maze, int trueCost) throws UnitTestFailException {
+    GridAStar aStar = new GridAStar(maze[0].length, maze.length, 1, (from, to) -> maze[to / maze[0].length][to % maze[0].length]);
+    int goal = aStar.search(new int[]{aStar.index(0, 0, 0)}, new int[]{aStar.index(maze[0].length - 1, maze.length - 1, 0)});
+    if (goal == -1 || aStar.getPathCost(goal) + maze[0][0] != trueCost) {
+      throw new UnitTestFailException("grid cost does not match answer key");
+    }
+  }
+
+  /**
+   * Runs many searches on one {@code GridAStar} over a random maze with walls (cost {@code 0}),
+   * with a Manhattan heuristic, and checks each against {@code AStar} with no heuristic.
+   */
+  private static void testGridAgainstAStar(Random random, int size) throws UnitTestFailException {
+    int[][] maze = new int[size][size];
+    for (int[] row : maze) {
+      for (int x = 0; x < size; x++) {
+        row[x] = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(9);
+      }
+    }
+    GridAStar grid = new GridAStar(size, size, 1, (from, to) -> {
+      int c = maze[to / size][to % size];
+      return c == 0 ? GridAStar.BLOCKED : c;
+    });
+
+    long gridNanos = 0;
+    long mapNanos = 0;
+    for (int query = 0; query < 20; query++) {
+      int sx = random.nextInt(size);
+      int sy = random.nextInt(size);
+      int gx = random.nextInt(size);
+      int gy = random.nextInt(size);
+      maze[sy][sx] = 1;
+      maze[gy][gx] = 1;
+
+      long start = System.nanoTime();
+      grid.setHeuristic(cell -> Math.abs(grid.x(cell) - gx) + Math.abs(grid.y(cell) - gy));
+      int goal = grid.search(new int[]{grid.index(sx, sy, 0)}, new int[]{grid.index(gx, gy, 0)});
+      gridNanos += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      AStar<MazePosition> aStar = new AStar<>(new WalledMovesFunc(maze), new CostFunction(maze), new BadHeuristic());
+      MazePosition mazeGoal = new MazePosition(gx, gy);
+      aStar.pathFind(new MazePosition[]{new MazePosition(sx, sy)}, new HashSet<>(Collections.singletonList(mazeGoal)));
+      mapNanos += System.nanoTime() - start;
+
+      Integer expected = aStar.getPathCost(mazeGoal);
+      if (expected == null ? goal != -1 : goal == -1 || grid.getPathCost(goal) != expected) {
+        throw new UnitTestFailException("grid found cost " + (goal == -1 ? "none" : grid.getPathCost(goal)) + " but AStar found " + expected);
+      }
+      if (goal != -1) {
+        int cost = 0;
+        int[] path = grid.backtrace(goal);
+        for (int i = 1; i < path.length; i++) {
+          if (Math.abs(grid.x(path[i]) - grid.x(path[i - 1])) + Math.abs(grid.y(path[i]) - grid.y(path[i - 1])) != 1) {
+            throw new UnitTestFailException("grid path jumps from " + path[i - 1] + " to " + path[i]);
+          }
+          cost += maze[grid.y(path[i])][grid.x(path[i])];
+        }
+        if (cost != grid.getPathCost(goal)) {
+          throw new UnitTestFailException("cost of grid steps does not match cached cost-to-goal");
+        }
+      }
+    }
+    System.out.println("GridAStar " + gridNanos / 1000000 + "ms, AStar " + mapNanos / 1000000 + "ms");
+  }
+
+  private static class WalledMovesFunc extends MovesFunc {
+    private int[][] maze;
+
+    public WalledMovesFunc(int[][] maze) {
+      super(maze);
+      this.maze = maze;
+    }
+
+    @Override
+    public Collection<MazePosition> apply(MazePosition pos) {
+      Collection<MazePosition> r = super.apply(pos);
+      r.removeIf(p -> maze[p.y][p.x] == 0);
+      return r;
+    }
   }
 
   private static void test(int[][] maze, int trueCost) throws UnitTestFailException {
@@ -0,0 +1,158 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import graph.CompactGraph;
+import graph.Edge;
+import graph.OrderedEdgeIterable;
+import physical2.tiny.AnnealingPlacer;
+import physical2.tiny.DefaultLegalPositions;
+import physical2.tiny.VariableSignalPosMapAnnotated;
+import physical2.tiny.XIter;
+import physical2.two.Point2D;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the change in length {@code AnnealingPlacer} works out for each swap against measuring every torch again,
+ * including swaps between connected wires, and that annealing leaves the torches shorter overall.
+ */
+public class AnnealingPlacerTest {
+  public static void main(String[] args) throws Exception {
+    CircuitCollection cc = LowLevelCircuitGenerator.canonicalGenerator.operators(4);
+    Random random = new Random(23);
+    for (String name : new String[]{"+", "*", "^"}) {
+      AnnotatedCircuit circuit = cc.get(name).trim();
+      CompactGraph graph = circuit.getCompactGraph();
+
+      VariableSignalPosMapAnnotated annealed = positions(circuit);
+      AnnealingPlacer placer = new AnnealingPlacer(graph);
+      placer.place(annealed);
+      checkSwaps(name, placer, graph, random);
+
+      int before = totalLength(graph, defaultPositions(circuit));
+      int after = totalLength(graph, annealed);
+      if (after > before) {
+        throw new UnitTestFailException(name + ": annealing took the total length from " + before + " to " + after);
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  /**
+   * Swaps random wires around by hand, checking {@code swapDelta} before each swap
+   */
+  private static void checkSwaps(String name, AnnealingPlacer placer, CompactGraph graph, Random random) throws Exception {
+    int[] xs = (int[]) field("xs").get(placer);
+    int[] ys = (int[]) field("ys").get(placer);
+    int[] grid = (int[]) field("grid").get(placer);
+    Method swapDelta = method("swapDelta");
+    Method swap = method("swap");
+
+    List<Integer> cells = new ArrayList<>();
+    for (int c = 0; c < grid.length; c++) {
+      if (grid[c] != -1) {
+        cells.add(c);
+      }
+    }
+    int connected = 0;
+    for (int i = 0; i < 2000; i++) {
+      int nodeCell = cells.get(random.nextInt(cells.size()));
+      int targetCell = cells.get(random.nextInt(cells.size()));
+      int node = grid[nodeCell];
+      if (node < 0 || nodeCell == targetCell) {
+        continue;
+      }
+      int other = grid[targetCell];
+      if (other >= 0 && (contains(graph, node, other) || contains(graph, other, node))) {
+        connected++;
+      }
+      int before = totalLength(graph, xs, ys);
+      int delta = (Integer) swapDelta.invoke(placer, node, targetCell);
+      swap.invoke(placer, node, targetCell);
+      int after = totalLength(graph, xs, ys);
+      if (after - before != delta) {
+        throw new UnitTestFailException(name + ": swapping " + node + " with " + other + " gave a delta of " + delta + ", but changed the length by " + (after - before));
+      }
+    }
+    if (connected == 0) {
+      throw new UnitTestFailException(name + ": never swapped two connected wires");
+    }
+  }
+
+  private static VariableSignalPosMapAnnotated positions(AnnotatedCircuit circuit) {
+    VariableSignalPosMapAnnotated posMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
+    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
+      posMap.placeInput(i, new XIter(0, i));
+    }
+    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
+      posMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+    }
+    return posMap;
+  }
+
+  /**
+   * Where the wires go without annealing, handing out positions in torch order the way the placer starts out
+   */
+  private static VariableSignalPosMapAnnotated defaultPositions(AnnotatedCircuit circuit) {
+    VariableSignalPosMapAnnotated posMap = positions(circuit);
+    CompactGraph graph = circuit.getCompactGraph();
+    for (Edge<Integer> torch : new OrderedEdgeIterable<>(graph.asTwoWayDirectedGraph())) {
+      for (int node : new int[]{torch.getStart(), torch.getEnd()}) {
+        if (posMap.getPos(node) == null) {
+          posMap.assignToNext(node);
+        }
+      }
+    }
+    return posMap;
+  }
+
+  private static int totalLength(CompactGraph graph, VariableSignalPosMapAnnotated posMap) {
+    int[] xs = new int[graph.size()];
+    int[] ys = new int[graph.size()];
+    for (int node = 0; node < graph.size(); node++) {
+      Point2D p = posMap.getPos(node);
+      if (p != null) {
+        xs[node] = p.getX();
+        ys[node] = p.getY();
+      }
+    }
+    return totalLength(graph, xs, ys);
+  }
+
+  private static int totalLength(CompactGraph graph, int[] xs, int[] ys) {
+    int r = 0;
+    for (int node = 0; node < graph.size(); node++) {
+      for (int i = 0; i < graph.outDegree(node); i++) {
+        int next = graph.outNeighbor(node, i);
+        r += Math.abs(xs[next] - xs[node]) + Math.abs(ys[next] - ys[node]);
+      }
+    }
+    return r;
+  }
+
+  private static boolean contains(CompactGraph graph, int from, int to) {
+    for (int i = 0; i < graph.outDegree(from); i++) {
+      if (graph.outNeighbor(from, i) == to) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Field field(String name) throws NoSuchFieldException {
+    Field f = AnnealingPlacer.class.getDeclaredField(name);
+    f.setAccessible(true);
+    return f;
+  }
+
+  private static Method method(String name) throws NoSuchMethodException {
+    Method m = AnnealingPlacer.class.getDeclaredMethod(name, int.class, int.class);
+    m.setAccessible(true);
+    return m;
+  }
+}
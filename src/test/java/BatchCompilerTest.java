@@ -0,0 +1,74 @@
+import cli.BatchCompiler;
+import misc.SettingsConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Checks the exit codes {@code BatchCompiler} gives for help, bad arguments, and targets that don't exist,
+ * and that compiling several targets at once writes each of them.
+ */
+public class BatchCompilerTest {
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("batch-compiler-test");
+
+    check(BatchCompiler.EXIT_OK, "Usage", "--help");
+    check(BatchCompiler.EXIT_USAGE, "Unrecognized option", "--no-such-option", "+");
+    check(BatchCompiler.EXIT_USAGE, "No targets given", "--ops", "4");
+    check(BatchCompiler.EXIT_USAGE, "needs a positive integer", "--jobs", "0", "+");
+    check(BatchCompiler.EXIT_USAGE, "given more than once", "+", "--target", "+");
+    check(BatchCompiler.EXIT_FAILED, "no such circuit", "--ops", "4", "--out", dir.toString(), "no such circuit");
+
+    // A gate file and a generated operator, compiled side by side
+    Path gateFile = dir.resolve("pick.txt");
+    Files.write(gateFile, Arrays.asList("a:1 b:1", "r = and a b", "r"));
+    Path outDir = dir.resolve("out");
+    check(BatchCompiler.EXIT_OK, "ok", "--ops", "4", "--dep", gateFile.toString(), "--jobs", "2", "--out", outDir.toString(), "pick", "+");
+    for (String target : new String[]{"pick", "+"}) {
+      deleteOutput(outDir, target);
+    }
+    Files.delete(outDir);
+    Files.delete(gateFile);
+
+    Files.delete(dir);
+    System.out.println("Tests complete");
+  }
+
+  /**
+   * Deletes what was written for {@code target}: one schematic, or a directory of tiles if it was too big for one
+   */
+  private static void deleteOutput(Path outDir, String target) throws Exception {
+    File schematic = outDir.resolve(target + SettingsConstants.fileExtension).toFile();
+    File tiles = outDir.resolve(target).toFile();
+    File[] files = schematic.isFile() ? new File[]{schematic} : tiles.listFiles();
+    if (files == null || files.length == 0) {
+      throw new UnitTestFailException(target + " wasn't written to " + outDir);
+    }
+    for (File file : files) {
+      if (file.length() == 0) {
+        throw new UnitTestFailException(file + " is empty");
+      }
+      Files.delete(file.toPath());
+    }
+    if (tiles.isDirectory()) {
+      Files.delete(tiles.toPath());
+    }
+  }
+
+  private static void check(int expected, String message, String... args) throws UnitTestFailException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    int code = BatchCompiler.run(args, new PrintStream(out, true), new PrintStream(err, true));
+    String printed = out.toString() + err.toString();
+    if (code != expected) {
+      throw new UnitTestFailException(String.join(" ", args) + " exited with " + code + ", not " + expected + ":\n" + printed);
+    }
+    if (!printed.contains(message)) {
+      throw new UnitTestFailException(String.join(" ", args) + " didn't say \"" + message + "\":\n" + printed);
+    }
+  }
+}
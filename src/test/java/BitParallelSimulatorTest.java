@@ -0,0 +1,73 @@
+import circuit.AnnotatedCircuit;
+import circuit.Circuit;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import circuit.simulation.BitParallelSimulator;
+
+/**
+ * Checks the bit-parallel simulator against {@code Circuit.simulate} over every input of some small operators.
+ */
+public class BitParallelSimulatorTest {
+  public static void main(String[] args) throws Exception {
+    CircuitCollection cc6 = LowLevelCircuitGenerator.canonicalGenerator.operators(6);
+
+    for (String name : new String[]{"+", "*", "^", "&", "|", "!", "<<2", ">>4"}) {
+      AnnotatedCircuit circuit = cc6.get(name);
+      exhaustiveCompare(name, circuit);
+      exhaustiveCompare(name + " (trimmed)", circuit.trim());
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void exhaustiveCompare(String name, Circuit circuit) throws UnitTestFailException {
+    int width = circuit.inputSize();
+    long vectorCount = 1L << width;
+    BitParallelSimulator simulator = circuit.getBitParallelSimulator();
+
+    long start = System.nanoTime();
+    boolean[][] slowOutputs = new boolean[(int) vectorCount][];
+    for (long v = 0; v < vectorCount; v++) {
+      slowOutputs[(int) v] = circuit.simulate(toBits(v, width));
+    }
+    long slowTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    long[] inputWords = new long[width];
+    long[] state = simulator.newState();
+    long[] outputWords = new long[simulator.outputSize()];
+    for (long base = 0; base < vectorCount; base += Long.SIZE) {
+      int lanes = (int) Math.min(Long.SIZE, vectorCount - base);
+      for (int i = 0; i < width; i++) {
+        inputWords[i] = 0L;
+        for (int k = 0; k < lanes; k++) {
+          if (((base + k) & (1L << i)) != 0) {
+            inputWords[i] |= 1L << k;
+          }
+        }
+      }
+      simulator.simulate(inputWords, state, outputWords);
+
+      boolean[][] fastOutputs = BitParallelSimulator.unpack(outputWords, lanes);
+      for (int k = 0; k < lanes; k++) {
+        boolean[] expected = slowOutputs[(int) (base + k)];
+        for (int i = 0; i < expected.length; i++) {
+          if (fastOutputs[k][i] != expected[i]) {
+            throw new UnitTestFailException(name + ": outputs don't match at bit " + i + " for input " + (base + k));
+          }
+        }
+      }
+    }
+    long fastTime = System.nanoTime() - start;
+
+    System.out.println(name + ": " + vectorCount + " vectors, " + slowTime / 1000000 + "ms -> " + fastTime / 1000000 + "ms");
+  }
+
+  private static boolean[] toBits(long x, int width) {
+    boolean[] r = new boolean[width];
+    for (int i = 0; i < width; i++) {
+      r[i] = (x & (1L << i)) != 0;
+    }
+    return r;
+  }
+}
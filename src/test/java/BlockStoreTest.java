@@ -0,0 +1,82 @@
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+import physical2.blocks.BlockStore;
+
+import java.util.Random;
+
+/**
+ * Checks a {@code BlockStore} against a plain array under random writes, including emptying blocks again,
+ * with sizes and bounds that straddle section boundaries and reach past the edges of the store.
+ */
+public class BlockStoreTest {
+  private static final BlockConstant[] CONSTANTS = BlockConstant.values();
+
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(13);
+    for (int trial = 0; trial < 20; trial++) {
+      int xSize = 1 + random.nextInt(3 * BlockStore.SECTION_SIZE);
+      int ySize = 1 + random.nextInt(3 * BlockStore.SECTION_SIZE);
+      int zSize = 1 + random.nextInt(3 * BlockStore.SECTION_SIZE);
+      BlockStore store = new BlockStore(xSize, ySize, zSize);
+      BlockConstant[][][] dense = new BlockConstant[xSize][ySize][zSize];
+
+      for (int step = 0; step < 2000; step++) {
+        int x = random.nextInt(xSize);
+        int y = random.nextInt(ySize);
+        int z = random.nextInt(zSize);
+        // Mostly empty, so sections fill up and empty out again
+        BlockConstant bc = random.nextInt(3) == 0 ? CONSTANTS[random.nextInt(CONSTANTS.length)] : random.nextBoolean() ? null : BlockConstant.EMPTY;
+        store.set(x, y, z, bc);
+        dense[x][y][z] = bc;
+
+        if (step % 20 == 0) {
+          Point3D lower = new Point3D(random.nextInt(xSize + 20) - 10, random.nextInt(ySize + 20) - 10, random.nextInt(zSize + 20) - 10);
+          Point3D upper = lower.translate(random.nextInt(2 * BlockStore.SECTION_SIZE), random.nextInt(2 * BlockStore.SECTION_SIZE), random.nextInt(2 * BlockStore.SECTION_SIZE));
+          Bounds bounds = Bounds.make(lower, upper);
+          if (store.hasContent(bounds) != hasContent(dense, bounds)) {
+            throw new UnitTestFailException("hasContent(" + lower + " to " + upper + ") should be " + hasContent(dense, bounds));
+          }
+        }
+      }
+
+      for (int x = 0; x < xSize; x++) {
+        for (int y = 0; y < ySize; y++) {
+          for (int z = 0; z < zSize; z++) {
+            BlockConstant expected = dense[x][y][z] == null ? BlockConstant.EMPTY : dense[x][y][z];
+            if (store.get(x, y, z) != expected || store.getOrdinal(x, y, z) != expected.ordinal()) {
+              throw new UnitTestFailException("(" + x + ", " + y + ", " + z + ") is " + store.get(x, y, z) + ", not " + expected);
+            }
+          }
+        }
+      }
+      if (store.hasContent(store.bounds()) != hasContent(dense, store.bounds())) {
+        throw new UnitTestFailException("hasContent of the whole store should be " + hasContent(dense, store.bounds()));
+      }
+
+      for (Point3D outside : new Point3D[]{new Point3D(-1, 0, 0), new Point3D(0, -1, 0), new Point3D(0, 0, -1), new Point3D(xSize, 0, 0), new Point3D(0, ySize, 0), new Point3D(0, 0, zSize)}) {
+        try {
+          store.get(outside);
+          throw new UnitTestFailException("Reading " + outside + " outside a store of size " + store.size() + " didn't throw");
+        } catch (IndexOutOfBoundsException expected) {
+          // As it should
+        }
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static boolean hasContent(BlockConstant[][][] dense, Bounds bounds) {
+    for (int x = Math.max(0, bounds.getLower().getX()); x <= Math.min(dense.length - 1, bounds.getUpper().getX()); x++) {
+      for (int y = Math.max(0, bounds.getLower().getY()); y <= Math.min(dense[0].length - 1, bounds.getUpper().getY()); y++) {
+        for (int z = Math.max(0, bounds.getLower().getZ()); z <= Math.min(dense[0][0].length - 1, bounds.getUpper().getZ()); z++) {
+          if (dense[x][y][z] != null && dense[x][y][z] != BlockConstant.EMPTY) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
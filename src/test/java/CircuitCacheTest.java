@@ -0,0 +1,144 @@
+import circuit.AnnotatedCircuit;
+import circuit.CircuitFormat;
+import circuit.DebugCircuit;
+import circuit.MappedCircuitFile;
+import circuit.preconstructed.CircuitCache;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import graph.CompactGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that circuits survive a trip through {@code CircuitFormat} (and {@code MappedCircuitFile}),
+ * and that {@code CircuitCache} hits when nothing changed and misses when a source or the code did.
+ */
+public class CircuitCacheTest {
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("circuit-cache-test");
+    CircuitCache cache = new CircuitCache(dir.resolve("cache"));
+    LowLevelCircuitGenerator gen = LowLevelCircuitGenerator.canonicalGenerator;
+    if (CircuitCache.defaultCache.isEnabled()) {
+      throw new UnitTestFailException("The default cache should stay off outside NorCircuit");
+    }
+
+    // Round trips
+    gen.setCache(null);
+    AnnotatedCircuit product = gen.multiplication(8);
+    roundTrip("*", product);
+    mapped(dir.resolve("product.circuit"), product);
+
+    // Generated circuits
+    gen.setCache(cache);
+    AnnotatedCircuit cold = gen.multiplication(8);
+    AnnotatedCircuit warm = gen.multiplication(8);
+    if (!cache.fingerprint(cold).equals(cache.fingerprint(product)) || !cache.fingerprint(warm).equals(cache.fingerprint(product))) {
+      throw new UnitTestFailException("Cached multiplication differs from the generated one");
+    }
+    gen.setCache(CircuitCache.defaultCache);
+
+    // Gate files, and invalidating them
+    File gateFile = dir.resolve("pick.txt").toFile();
+    Files.write(gateFile.toPath(), Arrays.asList("a:1 b:1", "r = and a b", "r"));
+    DebugCircuit and = loadFresh(cache, gateFile);
+    roundTrip("pick", and);
+    DebugCircuit andAgain = loadFresh(cache, gateFile);
+    if (!cache.fingerprint(and).equals(cache.fingerprint(andAgain))) {
+      throw new UnitTestFailException("Cached gate file differs from the parsed one");
+    }
+
+    Files.write(gateFile.toPath(), Arrays.asList("a:1 b:1", "r = or a b", "r"));
+    DebugCircuit or = loadFresh(cache, gateFile);
+    if (!Arrays.equals(or.simulate(new boolean[]{true, false}), new boolean[]{true})) {
+      throw new UnitTestFailException("Editing a gate file didn't invalidate its cache entry");
+    }
+
+    // Code, where only the contents count
+    String same = codeKey(dir.resolve("code-a"), false);
+    if (!same.equals(codeKey(dir.resolve("code-b"), false))) {
+      throw new UnitTestFailException("The same code in two places gave different keys");
+    }
+    if (same.equals(codeKey(dir.resolve("code-c"), true))) {
+      throw new UnitTestFailException("Adding a class didn't change the key");
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void mapped(Path path, AnnotatedCircuit circuit) throws Exception {
+    CircuitFormat.write(circuit, path);
+    try (MappedCircuitFile file = MappedCircuitFile.open(path)) {
+      if (file.size() != circuit.size() || file.edgeCount() != circuit.getCompactGraph().edgeCount()
+          || file.getInputSizes().length != circuit.getMultibitInputCount() || file.hasDebugSection()) {
+        throw new UnitTestFailException("Mapped file header doesn't match the circuit");
+      }
+      CompactGraph.EdgeCursor expected = circuit.getCompactGraph().edgeCursor();
+      MappedCircuitFile.EdgeCursor actual = file.edgeCursor();
+      while (expected.advance()) {
+        if (!actual.advance() || actual.start() != expected.start() || actual.end() != expected.end()) {
+          throw new UnitTestFailException("Mapped edges don't match the circuit");
+        }
+      }
+      if (actual.advance()) {
+        throw new UnitTestFailException("Mapped file has extra edges");
+      }
+    }
+  }
+
+  /**
+   * @return The key of a class loaded from its own copy in {@code classDir}, which may also get another class file
+   */
+  private static String codeKey(Path classDir, boolean extraClass) throws Exception {
+    String classFile = UnitTestFailException.class.getName() + ".class";
+    Files.createDirectories(classDir);
+    try (InputStream in = UnitTestFailException.class.getResourceAsStream(classFile)) {
+      Files.copy(in, classDir.resolve(classFile));
+    }
+    if (extraClass) {
+      Files.write(classDir.resolve("Extra.class"), new byte[]{1, 2, 3});
+    }
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{classDir.toUri().toURL()}, null)) {
+      Class<?> cls = loader.loadClass(UnitTestFailException.class.getName());
+      return new CircuitCache.Key("code").addCodeSource(cls).toString();
+    }
+  }
+
+  private static DebugCircuit loadFresh(CircuitCache cache, File file) throws Exception {
+    CircuitCollection cc = LowLevelCircuitGenerator.defaultNamedCircuits();
+    cc.setCache(cache);
+    return (DebugCircuit) cc.loadFromFile(file, true, false);
+  }
+
+  private static void roundTrip(String name, AnnotatedCircuit circuit) throws UnitTestFailException {
+    byte[] bytes = CircuitFormat.encode(circuit);
+    AnnotatedCircuit copy;
+    try {
+      copy = CircuitFormat.decode(ByteBuffer.wrap(bytes));
+    } catch (IOException e) {
+      throw new UnitTestFailException(name + ": couldn't decode: " + e.getMessage());
+    }
+    if (!Arrays.equals(bytes, CircuitFormat.encode(copy))) {
+      throw new UnitTestFailException(name + ": encoding changed after a round trip");
+    }
+    if ((circuit instanceof DebugCircuit) != (copy instanceof DebugCircuit)) {
+      throw new UnitTestFailException(name + ": debug names were lost");
+    }
+    long[] inputWords = new long[circuit.inputSize()];
+    Random random = new Random(name.hashCode());
+    for (int i = 0; i < inputWords.length; i++) {
+      inputWords[i] = random.nextLong();
+    }
+    if (!Arrays.equals(circuit.simulate(inputWords), copy.simulate(inputWords))) {
+      throw new UnitTestFailException(name + ": round trip simulates differently");
+    }
+  }
+}
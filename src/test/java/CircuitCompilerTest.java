@@ -0,0 +1,125 @@
+import circuit.AnnotatedCircuit;
+import circuit.Circuit;
+import circuit.SimpleCircuitBuilder;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import circuit.simulation.BitParallelSimulator;
+import circuit.simulation.CompiledCircuit;
+import circuit.simulation.PackedSimulator;
+
+import java.util.Random;
+
+/**
+ * Checks compiled circuits against the bit-parallel simulator on random inputs, and times both.
+ * Also checks circuits made to need a node split over several methods, and several generated classes.
+ */
+public class CircuitCompilerTest {
+  private static final int PASSES = 20000;
+
+  public static void main(String[] args) throws Exception {
+    CircuitCollection cc = LowLevelCircuitGenerator.canonicalGenerator.operators(32);
+
+    for (String name : new String[]{"+", "*", "^", "!", ">>8"}) {
+      AnnotatedCircuit circuit = cc.get(name).trim();
+      BitParallelSimulator simulator = circuit.getBitParallelSimulator();
+
+      long start = System.nanoTime();
+      CompiledCircuit compiled = circuit.getCompiledCircuit();
+      long compileTime = System.nanoTime() - start;
+      if (circuit.getCompiledCircuit() != compiled) {
+        throw new UnitTestFailException(name + ": compiled circuit was not cached");
+      }
+      long[] inputWords = crossCheck(name, circuit);
+
+      // Once to warm up the JIT, once to measure
+      time(simulator, inputWords);
+      time(compiled, inputWords);
+      System.out.println(name + ": " + compiled + ", compiled in " + compileTime / 1000000 + "ms; "
+          + time(simulator, inputWords) + "ms -> " + time(compiled, inputWords) + "ms for " + PASSES * Long.SIZE + " vectors");
+    }
+
+    // A node with more inputs than go in one method (MAX_GROUP_SIZE), so its AND is split over several.
+    // Each input is only negated into one stretch of its fan in, so the output is their OR only if no stretch is lost.
+    SimpleCircuitBuilder wide = new SimpleCircuitBuilder();
+    int[] wideInputs = addInputs(wide, 4);
+    int or = wide.addNode();
+    for (int i = 0; i < 2500; i++) {
+      int not = wide.addNode();
+      wide.addEdge(wideInputs[i / 700], not);
+      wide.addEdge(not, or);
+    }
+    wide.registerOutput(or);
+    crossCheck("wide fan in", wide.toCircuit());
+
+    // Enough nodes that they don't fit in one generated class (MAX_CHUNKS_PER_CLASS, MAX_POOL_SIZE)
+    Random random = new Random(19);
+    SimpleCircuitBuilder big = new SimpleCircuitBuilder();
+    int[] bigInputs = addInputs(big, 64);
+    int[] nodes = new int[120000];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = big.addNode();
+      for (int k = 0; k < 2; k++) {
+        int back = 1 + random.nextInt(Math.min(i + 64, 500));
+        big.addEdge(back > i ? bigInputs[back - i - 1] : nodes[i - back], nodes[i]);
+      }
+    }
+    for (int i = nodes.length - 64; i < nodes.length; i++) {
+      big.registerOutput(nodes[i]);
+    }
+    Circuit bigCircuit = big.toCircuit();
+    crossCheck("many parts", bigCircuit);
+    if (bigCircuit.getCompiledCircuit().partCount() < 2) {
+      throw new UnitTestFailException("many parts: only compiled into " + bigCircuit.getCompiledCircuit().partCount() + " class");
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static int[] addInputs(SimpleCircuitBuilder scb, int count) {
+    int[] r = new int[count];
+    for (int i = 0; i < count; i++) {
+      r[i] = scb.addNode();
+      scb.registerInput(r[i]);
+    }
+    return r;
+  }
+
+  /**
+   * Compares the compiled circuit with the bit-parallel simulator on random inputs
+   *
+   * @return The last inputs used
+   */
+  private static long[] crossCheck(String name, Circuit circuit) throws UnitTestFailException {
+    BitParallelSimulator simulator = circuit.getBitParallelSimulator();
+    CompiledCircuit compiled = circuit.getCompiledCircuit();
+    Random random = new Random(name.hashCode());
+    long[] inputWords = new long[circuit.inputSize()];
+    long[] expected = new long[circuit.outputSize()];
+    long[] actual = new long[circuit.outputSize()];
+    long[] state = simulator.newState();
+    for (int pass = 0; pass < 100; pass++) {
+      for (int i = 0; i < inputWords.length; i++) {
+        inputWords[i] = random.nextLong();
+      }
+      simulator.simulate(inputWords, state, expected);
+      compiled.simulate(inputWords, state, actual);
+      for (int i = 0; i < expected.length; i++) {
+        if (expected[i] != actual[i]) {
+          throw new UnitTestFailException(name + ": compiled output bit " + i + " doesn't match on pass " + pass);
+        }
+      }
+    }
+    return inputWords;
+  }
+
+  private static long time(PackedSimulator simulator, long[] inputWords) {
+    long[] state = simulator.newState();
+    long[] outputWords = new long[simulator.outputSize()];
+    long start = System.nanoTime();
+    for (int pass = 0; pass < PASSES; pass++) {
+      inputWords[pass % inputWords.length] ^= pass;
+      simulator.simulate(inputWords, state, outputWords);
+    }
+    return (System.nanoTime() - start) / 1000000;
+  }
+}
@@ -0,0 +1,98 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.CircuitFileLoader;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads a small library of circuit files with imports, and checks that bad imports are reported.
+ */
+public class CircuitFileLoaderTest {
+  public static void main(String[] args) throws Exception {
+    Path library = Files.createTempDirectory("circuit-library");
+    Files.createDirectories(library.resolve("gates"));
+
+    // A diamond: top imports left and right, which both import gates/nand
+    write(library.resolve("gates/nand.txt"), "a:1 b:1", "r = not (and a b)", "r");
+    write(library.resolve("left.txt"), "import gates/nand.txt", "a:1 b:1", "r = nand a b", "r");
+    write(library.resolve("right.txt"), "import gates/nand.txt", "a:1 b:1", "r = nand a a", "r");
+    write(library.resolve("top.txt"), "import left.txt", "import right.txt", "", "a:1 b:1", "r = and (left a b) (right a b)", "r");
+
+    // A wide level of independent files
+    ArrayList<String> wide = new ArrayList<String>();
+    for (int i = 0; i < 16; i++) {
+      wide.add("wide" + i + ".txt");
+      write(library.resolve("wide" + i + ".txt"), "import gates/nand.txt", "a:1", "r = nand a a", "r");
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      CircuitCollection cc = newCollection();
+      List<AnnotatedCircuit> loaded = new CircuitFileLoader(cc, library, pool).load("top.txt");
+      for (String name : new String[]{"nand", "left", "right", "top"}) {
+        if (!cc.contains(name)) {
+          throw new UnitTestFailException("Import " + name + " wasn't registered");
+        }
+      }
+      // top = nand(a, b) & !a
+      for (int v = 0; v < 4; v++) {
+        boolean a = (v & 1) != 0;
+        boolean b = (v & 2) != 0;
+        boolean expected = !(a && b) && !a;
+        if (loaded.get(0).simulate(new boolean[]{a, b})[0] != expected) {
+          throw new UnitTestFailException("top gave the wrong answer for " + a + ", " + b);
+        }
+      }
+
+      CircuitCollection wideCollection = newCollection();
+      List<AnnotatedCircuit> wideLoaded = new CircuitFileLoader(wideCollection, library, pool).load(wide.toArray(new String[0]));
+      if (wideLoaded.size() != wide.size()) {
+        throw new UnitTestFailException("Expected " + wide.size() + " circuits, got " + wideLoaded.size());
+      }
+
+      write(library.resolve("loop1.txt"), "import loop2.txt", "a:1", "r = not a", "r");
+      write(library.resolve("loop2.txt"), "import loop1.txt", "a:1", "r = not a", "r");
+      expectFailure("Circular import", () -> new CircuitFileLoader(newCollection(), library, pool).load("loop1.txt"));
+
+      write(library.resolve("dangling.txt"), "import nowhere.txt", "a:1", "r = not a", "r");
+      expectFailure("nowhere.txt", () -> new CircuitFileLoader(newCollection(), library, pool).load("dangling.txt"));
+    } finally {
+      pool.shutdown();
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static CircuitCollection newCollection() {
+    CircuitCollection cc = LowLevelCircuitGenerator.defaultNamedCircuits();
+    cc.setCache(null);
+    return cc;
+  }
+
+  private static void write(Path path, String... lines) throws Exception {
+    Files.write(path, Arrays.asList(lines));
+  }
+
+  private interface Action {
+    void run() throws Exception;
+  }
+
+  private static void expectFailure(String messagePart, Action action) throws UnitTestFailException {
+    try {
+      action.run();
+    } catch (Exception e) {
+      if (String.valueOf(e.getMessage()).contains(messagePart)) {
+        return;
+      }
+      throw new UnitTestFailException("Expected a failure mentioning \"" + messagePart + "\", got " + e);
+    }
+    throw new UnitTestFailException("Expected a failure mentioning \"" + messagePart + "\"");
+  }
+}
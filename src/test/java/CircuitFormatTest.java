@@ -0,0 +1,135 @@
+import circuit.AnnotatedCircuit;
+import circuit.CircuitFormat;
+import circuit.DebugCircuit;
+import circuit.MappedCircuitFile;
+import circuit.preconstructed.CircuitCache;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that {@code CircuitFormat} rejects bad files with an {@code IOException} rather than anything else,
+ * and that reading a file doesn't leave it held open.
+ */
+public class CircuitFormatTest {
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("circuit-format-test");
+    LowLevelCircuitGenerator gen = LowLevelCircuitGenerator.canonicalGenerator;
+    gen.setCache(null);
+    AnnotatedCircuit sum = gen.addition(4);
+    gen.setCache(CircuitCache.defaultCache);
+    File gateFile = dir.resolve("pick.txt").toFile();
+    Files.write(gateFile.toPath(), Arrays.asList("a:1 b:1", "r = and a b", "r"));
+    DebugCircuit and = (DebugCircuit) LowLevelCircuitGenerator.defaultNamedCircuits().loadFromFile(gateFile, true, false);
+
+    for (AnnotatedCircuit circuit : new AnnotatedCircuit[]{sum, and}) {
+      byte[] bytes = CircuitFormat.encode(circuit);
+      truncated(bytes);
+      corrupted(bytes, new Random(bytes.length));
+
+      byte[] badMagic = bytes.clone();
+      badMagic[0] = 'X';
+      expectError(badMagic, "Not a circuit file");
+      byte[] badVersion = bytes.clone();
+      badVersion[4] = (byte) (CircuitFormat.VERSION + 1);
+      expectError(badVersion, "Unsupported circuit file version " + (CircuitFormat.VERSION + 1));
+    }
+
+    // Files
+    Path path = dir.resolve("sum.circuit");
+    CircuitFormat.write(sum, path);
+    CircuitFormat.read(path);
+    Files.delete(path);
+    Files.write(path, Arrays.copyOf(CircuitFormat.encode(sum), 10));
+    try {
+      CircuitFormat.read(path);
+      throw new UnitTestFailException("Read a truncated file");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    CircuitFormat.write(sum, path);
+    MappedCircuitFile file = MappedCircuitFile.open(path);
+    int size = file.size();
+    file.close();
+    if (file.size() != size) {
+      throw new UnitTestFailException("Closing forgot the size");
+    }
+    try {
+      file.getCompactGraph();
+      throw new UnitTestFailException("Read a closed file");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    // The cache can be cleared right after reading entries
+    CircuitCache cache = new CircuitCache(dir.resolve("cache"));
+    cache.put("sum", sum);
+    if (cache.get("sum") == null) {
+      throw new UnitTestFailException("Cache entry went missing");
+    }
+    cache.clear();
+    if (cache.get("sum") != null) {
+      throw new UnitTestFailException("Clearing the cache left an entry behind");
+    }
+    cache.put("sum", sum);
+    cache.get("sum");
+    cache.put("sum", and);
+    if (!(cache.get("sum") instanceof DebugCircuit)) {
+      throw new UnitTestFailException("Overwriting a cache entry didn't take");
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  /**
+   * Every proper prefix must fail to decode.
+   */
+  private static void truncated(byte[] bytes) throws UnitTestFailException {
+    for (int length = 0; length < bytes.length; length++) {
+      try {
+        CircuitFormat.decode(ByteBuffer.wrap(bytes, 0, length));
+        throw new UnitTestFailException("Decoded a file cut off at " + length + " of " + bytes.length + " bytes");
+      } catch (IOException e) {
+        // Expected
+      } catch (RuntimeException e) {
+        throw new UnitTestFailException("Cutting off at " + length + " of " + bytes.length + " bytes threw " + e);
+      }
+    }
+  }
+
+  /**
+   * Damaged bytes may still decode to some circuit, but mustn't throw anything but an {@code IOException}.
+   */
+  private static void corrupted(byte[] bytes, Random random) throws UnitTestFailException {
+    for (int i = 0; i < 2000; i++) {
+      byte[] copy = bytes.clone();
+      int at = random.nextInt(copy.length);
+      copy[at] = (byte) random.nextInt(256);
+      try {
+        CircuitFormat.decode(ByteBuffer.wrap(copy));
+      } catch (IOException e) {
+        // Expected
+      } catch (RuntimeException e) {
+        throw new UnitTestFailException("Changing byte " + at + " threw " + e);
+      }
+    }
+  }
+
+  private static void expectError(byte[] bytes, String message) throws UnitTestFailException {
+    try {
+      CircuitFormat.decode(ByteBuffer.wrap(bytes));
+      throw new UnitTestFailException("Decoded a file that should say: " + message);
+    } catch (IOException e) {
+      if (!e.getMessage().startsWith(message)) {
+        throw new UnitTestFailException("Expected \"" + message + "\" but got \"" + e.getMessage() + "\"");
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import circuit.verification.CircuitVerifier;
+import circuit.verification.Counterexample;
+import circuit.verification.ReferenceFunction;
+import circuit.verification.VerificationResult;
+
+/**
+ * Verifies some of the generated arithmetic circuits against their Java equivalents.
+ */
+public class CircuitVerifierTest {
+  public static void main(String[] args) throws Exception {
+    LowLevelCircuitGenerator generator = LowLevelCircuitGenerator.canonicalGenerator;
+
+    expectPass("+ (8 bit)", generator.addition(8), ReferenceFunction.binary((a, b) -> a + b), true);
+    expectPass("* (8 bit)", generator.multiplication(8), ReferenceFunction.binary((a, b) -> a * b), true);
+    expectPass("+ (32 bit)", generator.addition(32), ReferenceFunction.binary((a, b) -> a + b), false);
+    expectPass("* (16 bit)", generator.multiplication(16), ReferenceFunction.binary((a, b) -> a * b), false);
+    expectPass("<<3 (16 bit)", LowLevelCircuitGenerator.leftShift(3, 16), ReferenceFunction.unary(a -> a << 3), true);
+    expectPass(">>5 (16 bit)", LowLevelCircuitGenerator.rightShift(5, 16), ReferenceFunction.unary(a -> a >>> 5), true);
+
+    CircuitVerifier wrong = new CircuitVerifier(generator.addition(8), ReferenceFunction.binary((a, b) -> a + b + 1));
+    wrong.setMaxCounterexamples(3);
+    VerificationResult result = wrong.verify();
+    if (result.passed() || result.getCounterexamples().size() != 3) {
+      throw new UnitTestFailException("Expected 3 counterexamples against a wrong reference, got: " + result);
+    }
+    Counterexample first = result.getCounterexamples().get(0);
+    if (first.getVectorIndex() != 0 || first.getActual()[0] != 0 || first.getExpected()[0] != 1) {
+      throw new UnitTestFailException("Unexpected first counterexample: " + first);
+    }
+    System.out.println(result);
+
+    System.out.println("Tests complete");
+  }
+
+  private static void expectPass(String name, AnnotatedCircuit circuit, ReferenceFunction reference, boolean exhaustive) throws UnitTestFailException {
+    CircuitVerifier verifier = new CircuitVerifier(circuit, reference);
+    verifier.setMaxExhaustiveVectors(1L << 20);
+    VerificationResult result = verifier.verify();
+    System.out.println(name + ": " + result);
+    if (!result.passed()) {
+      throw new UnitTestFailException(name + " failed verification");
+    }
+    if (result.isExhaustive() != exhaustive) {
+      throw new UnitTestFailException(name + ": expected exhaustive=" + exhaustive);
+    }
+  }
+}
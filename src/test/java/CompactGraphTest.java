@@ -0,0 +1,179 @@
+import graph.CompactGraph;
+import graph.CompactGraphBuilder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks {@code CompactGraph} against a plain adjacency matrix on random graphs with duplicate edges and self loops,
+ * down to graphs with no nodes or no edges, built every way a graph can be built.
+ */
+public class CompactGraphTest {
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(29);
+    for (int trial = 0; trial < 200; trial++) {
+      int size = trial < 5 ? trial : random.nextInt(60);
+      int edgeCount = size == 0 || trial % 7 == 0 ? 0 : random.nextInt(4 * size);
+      boolean[][] matrix = new boolean[size][size];
+      int[] starts = new int[edgeCount + 3];
+      int[] ends = new int[edgeCount + 3];
+      CompactGraphBuilder builder = new CompactGraphBuilder();
+      builder.ensureSize(size);
+      for (int e = 0; e < edgeCount; e++) {
+        // Repeats some earlier edges
+        boolean repeat = e > 0 && random.nextInt(4) == 0;
+        starts[e] = repeat ? starts[e - 1] : random.nextInt(size);
+        ends[e] = repeat ? ends[e - 1] : random.nextInt(size);
+        matrix[starts[e]][ends[e]] = true;
+        builder.addEdge(starts[e], ends[e]);
+      }
+      // Past edgeCount, so never read
+      Arrays.fill(starts, edgeCount, starts.length, -1);
+      Arrays.fill(ends, edgeCount, ends.length, -1);
+
+      String name = "graph " + trial + " (" + size + " nodes)";
+      CompactGraph graph = CompactGraph.fromEdges(size, starts, ends, edgeCount);
+      check(name, graph, matrix);
+      check(name + " from the builder", builder.build(), matrix);
+      check(name + " from its view", CompactGraph.from(graph.asTwoWayDirectedGraph()), matrix);
+
+      int[] outStart = new int[size + 1];
+      int[] outTargets = new int[graph.edgeCount()];
+      for (int node = 0; node < size; node++) {
+        int[] row = graph.outNeighbors(node);
+        System.arraycopy(row, 0, outTargets, outStart[node], row.length);
+        outStart[node + 1] = outStart[node] + row.length;
+      }
+      check(name + " from its rows", CompactGraph.fromCsr(size, outStart, outTargets), matrix);
+    }
+
+    expectReject("an edge to a node past the end", () -> CompactGraph.fromEdges(2, new int[]{0}, new int[]{2}, 1));
+    expectReject("an edge from a negative node", () -> CompactGraph.fromEdges(2, new int[]{-1}, new int[]{0}, 1));
+    expectReject("a row with a repeat", () -> CompactGraph.fromCsr(2, new int[]{0, 2, 2}, new int[]{1, 1}));
+    expectReject("rows that don't cover the edges", () -> CompactGraph.fromCsr(2, new int[]{0, 1, 1}, new int[]{1, 0}));
+
+    System.out.println("Tests complete");
+  }
+
+  private static void check(String name, CompactGraph graph, boolean[][] matrix) throws UnitTestFailException {
+    int size = matrix.length;
+    if (graph.size() != size) {
+      throw new UnitTestFailException(name + ": has " + graph.size() + " nodes");
+    }
+    int edges = 0;
+    CompactGraph.NeighborCursor outCursor = graph.outCursor();
+    CompactGraph.NeighborCursor inCursor = graph.inCursor();
+    for (int node = 0; node < size; node++) {
+      int[] outs = row(matrix, node, true);
+      int[] ins = row(matrix, node, false);
+      edges += outs.length;
+      if (graph.outDegree(node) != outs.length || !Arrays.equals(graph.outNeighbors(node), outs)
+          || graph.inDegree(node) != ins.length || !Arrays.equals(graph.inNeighbors(node), ins)) {
+        throw new UnitTestFailException(name + ": node " + node + " has out neighbors " + Arrays.toString(graph.outNeighbors(node))
+            + " and in neighbors " + Arrays.toString(graph.inNeighbors(node)) + ", not " + Arrays.toString(outs) + " and " + Arrays.toString(ins));
+      }
+      for (int i = 0; i < outs.length; i++) {
+        if (graph.outNeighbor(node, i) != outs[i]) {
+          throw new UnitTestFailException(name + ": out neighbor " + i + " of " + node + " is " + graph.outNeighbor(node, i));
+        }
+      }
+      for (int i = 0; i < ins.length; i++) {
+        if (graph.inNeighbor(node, i) != ins[i]) {
+          throw new UnitTestFailException(name + ": in neighbor " + i + " of " + node + " is " + graph.inNeighbor(node, i));
+        }
+      }
+      if (!Arrays.equals(drain(outCursor.reset(node)), outs) || !Arrays.equals(drain(inCursor.reset(node)), ins)) {
+        throw new UnitTestFailException(name + ": cursors over node " + node + " disagree with its neighbors");
+      }
+      for (int other = 0; other < size; other++) {
+        if (graph.hasEdge(node, other) != matrix[node][other]) {
+          throw new UnitTestFailException(name + ": hasEdge(" + node + ", " + other + ") should be " + matrix[node][other]);
+        }
+      }
+    }
+    if (graph.edgeCount() != edges) {
+      throw new UnitTestFailException(name + ": has " + graph.edgeCount() + " edges, not " + edges);
+    }
+
+    CompactGraph.EdgeCursor edgeCursor = graph.edgeCursor();
+    int index = 0;
+    for (int start = 0; start < size; start++) {
+      for (int end : row(matrix, start, true)) {
+        if (!edgeCursor.advance() || edgeCursor.start() != start || edgeCursor.end() != end || edgeCursor.index() != index) {
+          throw new UnitTestFailException(name + ": edge " + index + " should be " + start + " -> " + end);
+        }
+        index++;
+      }
+    }
+    if (edgeCursor.advance()) {
+      throw new UnitTestFailException(name + ": edge cursor went past the last edge");
+    }
+
+    int[] sources = graph.sources();
+    int[] sinks = graph.sinks();
+    for (int node = 0; node < size; node++) {
+      if ((Arrays.binarySearch(sources, node) >= 0) != (row(matrix, node, false).length == 0)
+          || (Arrays.binarySearch(sinks, node) >= 0) != (row(matrix, node, true).length == 0)) {
+        throw new UnitTestFailException(name + ": node " + node + " is wrongly a source or sink");
+      }
+    }
+    if (size > 0) {
+      int from = size / 2;
+      if (!Arrays.equals(graph.traceForward(new int[]{from}), reach(matrix, from, true))
+          || !Arrays.equals(graph.traceBackward(new int[]{from}), reach(matrix, from, false))) {
+        throw new UnitTestFailException(name + ": tracing from " + from + " reached the wrong nodes");
+      }
+    }
+  }
+
+  /**
+   * @return The sorted out ({@code forward}) or in neighbors of {@code node}
+   */
+  private static int[] row(boolean[][] matrix, int node, boolean forward) {
+    int[] r = new int[matrix.length];
+    int count = 0;
+    for (int other = 0; other < matrix.length; other++) {
+      if (forward ? matrix[node][other] : matrix[other][node]) {
+        r[count++] = other;
+      }
+    }
+    return Arrays.copyOf(r, count);
+  }
+
+  private static boolean[] reach(boolean[][] matrix, int from, boolean forward) {
+    boolean[] r = new boolean[matrix.length];
+    r[from] = true;
+    for (boolean changed = true; changed; ) {
+      changed = false;
+      for (int node = 0; node < matrix.length; node++) {
+        if (r[node]) {
+          for (int next : row(matrix, node, forward)) {
+            if (!r[next]) {
+              r[next] = true;
+              changed = true;
+            }
+          }
+        }
+      }
+    }
+    return r;
+  }
+
+  private static int[] drain(CompactGraph.NeighborCursor cursor) {
+    int[] r = new int[0];
+    while (cursor.hasNext()) {
+      r = Arrays.copyOf(r, r.length + 1);
+      r[r.length - 1] = cursor.next();
+    }
+    return r;
+  }
+
+  private static void expectReject(String what, Runnable build) throws UnitTestFailException {
+    try {
+      build.run();
+    } catch (IllegalArgumentException expected) {
+      return;
+    }
+    throw new UnitTestFailException("Building a graph with " + what + " didn't throw");
+  }
+}
@@ -0,0 +1,194 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import physical.blocks.AbsolutePhysical3DMap;
+import physical.blocks.CompactCircuitConstructor;
+import physical.blocks.CongestionRouter;
+import physical.things.BlockConstant;
+import physical.things.Point3D;
+import physical2.blocks.BlockDrawer;
+import physical2.blocks.PathAccumulator;
+import physical2.tiny.DefaultLegalPositions;
+import physical2.tiny.VariableSignalPosMapAnnotated;
+import physical2.tiny.XIter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Checks that the compact layout routes small circuits so that every wire powers what it feeds and nothing else,
+ * keeps every input, and comes out smaller than the simplified one.
+ */
+public class CompactRoutingTest {
+  private static final int FULL_STRENGTH = 15;
+  private static final int[][] SIDES = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+
+  public static void main(String[] args) throws Exception {
+    for (String name : new String[]{"!", "^"}) {
+      AnnotatedCircuit circuit = LowLevelCircuitGenerator.canonicalGenerator.operators(8).get(name).trim();
+      // Routing throws if some block would be wanted by two wires, so getting a map means none are
+      CompactCircuitConstructor constructor = new CompactCircuitConstructor(circuit);
+      AbsolutePhysical3DMap map = constructor.construct();
+      Point3D size = map.size();
+      checkNets(name, map, constructor.getRouter());
+
+      int levers = 0;
+      for (int x = 0; x < size.getX(); x++) {
+        for (int y = 0; y < size.getY(); y++) {
+          for (int z = 0; z < size.getZ(); z++) {
+            if (map.getBlock(new Point3D(x, y, z)) == BlockConstant.CIRCUIT_INPUT) {
+              levers++;
+            }
+          }
+        }
+      }
+      if (levers != circuit.getInputs().length) {
+        throw new UnitTestFailException(name + ": " + levers + " levers for " + circuit.getInputs().length + " inputs");
+      }
+
+      Point3D simplified = simplifiedSize(circuit);
+      if (volume(size) >= volume(simplified)) {
+        throw new UnitTestFailException(name + ": compact " + size + " is no smaller than simplified " + simplified);
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  /**
+   * Follows each net's signal through the drawn redstone and repeaters, and checks that it reaches every sink
+   * and that no redstone carries two nets' signals. Redstone connects to redstone next to it,
+   * and to redstone a block up or down from that unless a solid block cuts it off.
+   */
+  private static void checkNets(String name, AbsolutePhysical3DMap map, CongestionRouter router) throws UnitTestFailException {
+    Point3D size = map.size();
+    int[][][] owner = new int[size.getX()][size.getY()][size.getZ()];
+    for (int[][] plane : owner) {
+      for (int[] row : plane) {
+        Arrays.fill(row, -1);
+      }
+    }
+
+    for (int net = 0; net < router.netCount(); net++) {
+      HashMap<Point3D, Integer> strength = new HashMap<>();
+      ArrayDeque<Point3D> queue = new ArrayDeque<>();
+      for (Point3D source : router.getSources(net)) {
+        Point3D block = CongestionRouter.toBlock(source);
+        if (map.getBlock(block) != BlockConstant.REDSTONE) {
+          throw new UnitTestFailException(name + ": net " + net + " starts at " + map.getBlock(block) + ", not redstone, at " + block);
+        }
+        strength.put(block, FULL_STRENGTH);
+        queue.add(block);
+      }
+      while (!queue.isEmpty()) {
+        Point3D dust = queue.poll();
+        int s = strength.get(dust);
+        int other = owner[dust.getX()][dust.getY()][dust.getZ()];
+        if (other != -1 && other != net) {
+          throw new UnitTestFailException(name + ": nets " + other + " and " + net + " share the redstone at " + dust);
+        }
+        owner[dust.getX()][dust.getY()][dust.getZ()] = net;
+        for (int[] side : SIDES) {
+          Point3D next = dust.translate(side[0], 0, side[1]);
+          Point3D up = next.translate(0, 1, 0);
+          Point3D down = next.translate(0, -1, 0);
+          if (isRedstone(map, next)) {
+            relax(strength, queue, next, s - 1);
+          } else if (repeaterDirection(map, next) == side) {
+            relax(strength, queue, next.translate(side[0], 0, side[1]), FULL_STRENGTH);
+          } else if (!isSolid(map, next)) {
+            if (isRedstone(map, down)) {
+              relax(strength, queue, down, s - 1);
+            }
+          }
+          if (isRedstone(map, up) && !isSolid(map, dust.translate(0, 1, 0))) {
+            relax(strength, queue, up, s - 1);
+          }
+        }
+      }
+
+      for (Point3D sink : router.getSinks(net)) {
+        Point3D block = CongestionRouter.toBlock(sink);
+        boolean powered = false;
+        for (int[] side : SIDES) {
+          Integer s = strength.get(block.translate(side[0], 0, side[1]));
+          powered |= s != null && s > 0;
+        }
+        if (!powered) {
+          throw new UnitTestFailException(name + ": net " + net + " doesn't power its sink at " + block);
+        }
+      }
+    }
+
+    for (int x = 0; x < size.getX(); x++) {
+      for (int y = 0; y < size.getY(); y++) {
+        for (int z = 0; z < size.getZ(); z++) {
+          if (map.getBlock(new Point3D(x, y, z)) == BlockConstant.REDSTONE && owner[x][y][z] == -1) {
+            throw new UnitTestFailException(name + ": no signal reaches the redstone at " + new Point3D(x, y, z));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Signals only get weaker along redstone, so a block only needs looking at again when a signal gets there stronger
+   */
+  private static void relax(HashMap<Point3D, Integer> strength, ArrayDeque<Point3D> queue, Point3D block, int s) {
+    if (s > 0 && s > strength.getOrDefault(block, 0)) {
+      strength.put(block, s);
+      queue.add(block);
+    }
+  }
+
+  /**
+   * @return The side of {@code SIDES} a repeater at {@code p} sends its signal towards, or {@code null}
+   */
+  private static int[] repeaterDirection(AbsolutePhysical3DMap map, Point3D p) {
+    switch (block(map, p)) {
+      case REPEATER_X:
+        return SIDES[0];
+      case REPEATER_Z:
+        return SIDES[1];
+      case REPEATER_X_:
+        return SIDES[2];
+      case REPEATER_Z_:
+        return SIDES[3];
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isRedstone(AbsolutePhysical3DMap map, Point3D p) {
+    return block(map, p) == BlockConstant.REDSTONE;
+  }
+
+  private static boolean isSolid(AbsolutePhysical3DMap map, Point3D p) {
+    BlockConstant block = block(map, p);
+    return block == BlockConstant.REDSTONE_BASE || block == BlockConstant.REDSTONE_TORCH_BASE || block == BlockConstant.REDSTONE_BLOCK;
+  }
+
+  private static BlockConstant block(AbsolutePhysical3DMap map, Point3D p) {
+    Point3D size = map.size();
+    if (p.getX() < 0 || p.getY() < 0 || p.getZ() < 0 || p.getX() >= size.getX() || p.getY() >= size.getY() || p.getZ() >= size.getZ()) {
+      return BlockConstant.AIR;
+    }
+    return map.getBlock(p);
+  }
+
+  private static Point3D simplifiedSize(AnnotatedCircuit circuit) {
+    VariableSignalPosMapAnnotated sigPosMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
+    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
+      sigPosMap.placeInput(i, new XIter(0, i));
+    }
+    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
+      sigPosMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+    }
+    PathAccumulator<?> paths = PathAccumulator.make(PathAccumulator.Layering.COLORING, sigPosMap, circuit.getGraph());
+    return new BlockDrawer(paths).size();
+  }
+
+  private static long volume(Point3D size) {
+    return (long) size.getX() * size.getY() * size.getZ();
+  }
+}
@@ -1,6 +1,7 @@
 import circuit.Circuit;
 import circuit.DebugCircuit;
 import circuit.Pair;
+import circuit.SimpleCircuitBuilder;
 import circuit.preconstructed.CircuitCollection;
 import circuit.preconstructed.LowLevelCircuitGenerator;
 
@@ -28,8 +29,8 @@ public class DefaultCircuitTest {
     cc4.registerCircuit("any4", LowLevelCircuitGenerator.any(4));
     cc4.registerCircuit("all4", LowLevelCircuitGenerator.all(4));
 
-    cc4.getOrLoad(new File(circuitRoot + "specialized/xor3.txt"));
-    cc4.getOrLoad(new File(circuitRoot + "specialized/atLeast2.txt"));
+    cc4.getOrLoad(circuitRoot.resolve("specialized/xor3.txt").toFile());
+    cc4.getOrLoad(circuitRoot.resolve("specialized/atLeast2.txt").toFile());
 
     ArrayList<CircuitTest> fourBitProducts = new ArrayList<>();
     for (int i = 0; i < 16; i++) {
@@ -45,7 +46,7 @@ public class DefaultCircuitTest {
     CircuitCollection cc64 = LowLevelCircuitGenerator.defaultNamedCircuits();
     cc64.addAll(gen.operators(64));
 
-    cc64.getOrLoad(new File(circuitRoot + "specialized/constant5.txt"));
+    cc64.getOrLoad(circuitRoot.resolve("specialized/constant5.txt").toFile());
 
     CircuitTestCollection[] ctcs = new CircuitTestCollection[]{
         new CircuitTestCollection(cc4, new CircuitTest[]{
@@ -195,12 +196,47 @@ public class DefaultCircuitTest {
         } catch (Exception e) {
           throw new RuntimeException("On trimmed test " + test.toString(), e);
         }
+        try {
+          runCircuitTest(test.getCircuit().optimize(), test.input, test.expectedOutput);
+        } catch (Exception e) {
+          throw new RuntimeException("On optimized test " + test.toString(), e);
+        }
+        if (test.getCircuit().optimize().size() > test.getCircuit().trim().size()) {
+          throw new UnitTestFailException("Optimizing " + test + " left more nodes than trimming");
+        }
       }
     }
 
+    deadLatch();
+
     System.out.println("Tests complete");
   }
 
+  /**
+   * A loop that no output depends on never feeds nothing, but it still has to go.
+   * It never settles, so the output is checked against the trimmed circuit.
+   */
+  private static void deadLatch() throws UnitTestFailException {
+    SimpleCircuitBuilder scb = new SimpleCircuitBuilder();
+    scb.ensureSize(5);
+    scb.registerInput(0);
+    scb.registerInput(1);
+    scb.addEdge(0, 2);
+    scb.addEdge(1, 2);
+    scb.registerOutput(2);
+    scb.addEdge(0, 3);
+    scb.addEdge(3, 4);
+    scb.addEdge(4, 3);
+    Circuit circuit = scb.toCircuit();
+    if (circuit.trim().size() != 3 || circuit.optimize().size() != 3) {
+      throw new UnitTestFailException("Dead latch trimmed to " + circuit.trim().size() + " nodes and optimized to " + circuit.optimize().size() + ", not 3");
+    }
+    for (int v = 0; v < 4; v++) {
+      boolean[] input = {(v & 1) != 0, (v & 2) != 0};
+      runCircuitTest(circuit.optimize(), input, circuit.trim().simulate(input));
+    }
+  }
+
   private static void runCircuitTest(Circuit circuit, boolean[] input, boolean[] expectedOutput) throws UnitTestFailException {
     if (circuit == null) {
       throw new UnitTestFailException("Missing circuit!");
@@ -225,6 +261,13 @@ public class DefaultCircuitTest {
         throw new UnitTestFailException("Outputs don't match at bit " + i + ". Expected " + boolArrToStr(expectedOutput) + ", got " + boolArrToStr(output));
       }
     }
+
+    boolean[] packedOutput = circuit.getBitParallelSimulator().simulate(input);
+    for (int i = 0; i < packedOutput.length; i++) {
+      if (packedOutput[i] != expectedOutput[i]) {
+        throw new UnitTestFailException("Bit-parallel outputs don't match at bit " + i + ". Expected " + boolArrToStr(expectedOutput) + ", got " + boolArrToStr(packedOutput));
+      }
+    }
   }
 
 
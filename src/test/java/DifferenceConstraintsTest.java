@@ -0,0 +1,112 @@
+import graph.CompactGraph;
+import physical.edges.DifferenceConstraints;
+import physical.things.Bounds;
+import physical.things.Point3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the incremental bounds match searching the graph from every placed node, after each placement.
+ */
+public class DifferenceConstraintsTest {
+  private static final int STEP = 8;
+
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(7);
+    for (int trial = 0; trial < 20; trial++) {
+      int size = 50 + random.nextInt(100);
+      int edgeCount = size + random.nextInt(2 * size);
+      int[] starts = new int[edgeCount];
+      int[] ends = new int[edgeCount];
+      for (int e = 0; e < edgeCount; e++) {
+        starts[e] = random.nextInt(size);
+        ends[e] = random.nextInt(size);
+      }
+      CompactGraph graph = CompactGraph.fromEdges(size, starts, ends, edgeCount);
+      DifferenceConstraints constraints = new DifferenceConstraints(graph, STEP);
+
+      List<Integer> placed = new ArrayList<>();
+      Point3D[] positions = new Point3D[size];
+      for (int k = 0; k < size / 3; k++) {
+        int node = random.nextInt(size);
+        if (constraints.isPlaced(node)) {
+          continue;
+        }
+        // Somewhere it's allowed if there's anywhere, like a placer would
+        Bounds bounds = constraints.isBounded(node) ? constraints.bounds(node) : Bounds.make(new Point3D(0, 0, 0));
+        Point3D position = bounds == null ? new Point3D(random.nextInt(100), 0, 0) : bounds.randomInteriorPoint();
+        constraints.place(node, position);
+        positions[node] = position;
+        placed.add(node);
+        check(graph, constraints, placed, positions);
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void check(CompactGraph graph, DifferenceConstraints constraints, List<Integer> placed, Point3D[] positions) throws UnitTestFailException {
+    int size = graph.size();
+    int[] upper = new int[3 * size];
+    int[] lower = new int[3 * size];
+    Arrays.fill(upper, Integer.MAX_VALUE);
+    Arrays.fill(lower, Integer.MIN_VALUE);
+    for (int p : placed) {
+      int[] distance = distances(graph, p);
+      int[] value = {positions[p].getX(), positions[p].getY(), positions[p].getZ()};
+      for (int n = 0; n < size; n++) {
+        if (distance[n] != -1) {
+          for (int k = 0; k < 3; k++) {
+            upper[3 * n + k] = Math.min(upper[3 * n + k], value[k] + STEP * distance[n]);
+            lower[3 * n + k] = Math.max(lower[3 * n + k], value[k] - STEP * distance[n]);
+          }
+        }
+      }
+    }
+
+    for (int n = 0; n < size; n++) {
+      boolean reached = upper[3 * n] != Integer.MAX_VALUE;
+      if (reached != constraints.isBounded(n)) {
+        throw new UnitTestFailException("node " + n + " should " + (reached ? "" : "not ") + "be bounded");
+      }
+      if (!reached) {
+        continue;
+      }
+      Bounds bounds = constraints.bounds(n);
+      Point3D lo = new Point3D(lower[3 * n], lower[3 * n + 1], lower[3 * n + 2]);
+      Point3D hi = new Point3D(upper[3 * n], upper[3 * n + 1], upper[3 * n + 2]);
+      boolean empty = lo.getX() > hi.getX() || lo.getY() > hi.getY() || lo.getZ() > hi.getZ();
+      if (empty ? bounds != null : bounds == null || !bounds.getLower().equals(lo) || !bounds.getUpper().equals(hi)) {
+        throw new UnitTestFailException("node " + n + " has bounds " + (bounds == null ? "null" : bounds.getLower() + " to " + bounds.getUpper()) + ", not " + lo + " to " + hi);
+      }
+    }
+  }
+
+  /**
+   * Steps from {@code start} following edges both ways, or {@code -1} where it can't reach
+   */
+  private static int[] distances(CompactGraph graph, int start) {
+    int[] distance = new int[graph.size()];
+    Arrays.fill(distance, -1);
+    int[] queue = new int[graph.size()];
+    int head = 0;
+    int tail = 0;
+    distance[start] = 0;
+    queue[tail++] = start;
+    while (head < tail) {
+      int node = queue[head++];
+      for (int[] neighbors : new int[][]{graph.outNeighbors(node), graph.inNeighbors(node)}) {
+        for (int next : neighbors) {
+          if (distance[next] == -1) {
+            distance[next] = distance[node] + 1;
+            queue[tail++] = next;
+          }
+        }
+      }
+    }
+    return distance;
+  }
+}
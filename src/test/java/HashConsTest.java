@@ -0,0 +1,58 @@
+import circuit.AnnotatedCircuit;
+import circuit.Circuit;
+import circuit.SimpleCircuitBuilder;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import circuit.verification.CircuitVerifier;
+import circuit.verification.ReferenceFunction;
+import circuit.verification.VerificationResult;
+
+/**
+ * Checks that hash consing merges repeated nodes, including ones only repeated once their inputs are merged,
+ * and keeps the generated arithmetic circuits correct.
+ */
+public class HashConsTest {
+  public static void main(String[] args) throws Exception {
+    // Two copies of nor(nor(a, b)), each feeding its own output
+    SimpleCircuitBuilder scb = new SimpleCircuitBuilder();
+    int a = scb.addNode();
+    int b = scb.addNode();
+    int[] outputs = new int[2];
+    for (int copy = 0; copy < 2; copy++) {
+      int nor = scb.addNode();
+      int not = scb.addNode();
+      outputs[copy] = scb.addNode();
+      scb.addEdge(a, nor);
+      scb.addEdge(b, nor);
+      scb.addEdge(nor, not);
+      scb.addEdge(not, outputs[copy]);
+    }
+    scb.registerInput(a);
+    scb.registerInput(b);
+    scb.registerOutput(outputs[0]);
+    scb.registerOutput(outputs[1]);
+    Circuit hashConsed = scb.toCircuit().hashCons();
+    // The inner nodes are shared, but the outputs have to stay apart
+    if (hashConsed.size() != 6) {
+      throw new UnitTestFailException("Expected 6 nodes after hash consing, not " + hashConsed.size());
+    }
+
+    LowLevelCircuitGenerator generator = LowLevelCircuitGenerator.canonicalGenerator;
+    expectPass("+", generator.addition(8), ReferenceFunction.binary((x, y) -> x + y));
+    expectPass("*", generator.multiplication(8), ReferenceFunction.binary((x, y) -> x * y));
+
+    System.out.println("Tests complete");
+  }
+
+  private static void expectPass(String name, AnnotatedCircuit circuit, ReferenceFunction reference) throws UnitTestFailException {
+    AnnotatedCircuit hashConsed = circuit.hashCons();
+    if (hashConsed.size() >= circuit.size()) {
+      throw new UnitTestFailException(name + ": hash consing left all " + circuit.size() + " nodes");
+    }
+    CircuitVerifier verifier = new CircuitVerifier(hashConsed, reference);
+    verifier.setMaxExhaustiveVectors(1L << 16);
+    VerificationResult result = verifier.verify();
+    if (!result.passed()) {
+      throw new UnitTestFailException(name + " is wrong after hash consing: " + result);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+import circuit.IntMerger;
+import circuit.Merger;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Checks that the union-find merger answers the same as the map-based one under random merges and deletions.
+ */
+public class IntMergerTest {
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(3);
+    for (int trial = 0; trial < 50; trial++) {
+      int size = 1 + random.nextInt(200);
+      Merger<Integer> expected = new Merger<>();
+      IntMerger actual = new IntMerger(size);
+      for (int step = 0; step < 2 * size; step++) {
+        int a = random.nextInt(size);
+        if (random.nextInt(10) == 0) {
+          expected.delete(a);
+          actual.delete(a);
+        } else {
+          int b = random.nextInt(size);
+          expected.merge(a, b);
+          actual.merge(a, b);
+        }
+        int item = random.nextInt(size);
+        check(expected, actual, item);
+      }
+      for (int item = 0; item < size; item++) {
+        check(expected, actual, item);
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void check(Merger<Integer> expected, IntMerger actual, int item) throws UnitTestFailException {
+    if (!Objects.equals(expected.getMapping(item), actual.getMapping(item))) {
+      throw new UnitTestFailException(item + " maps to " + actual.getMapping(item) + ", not " + expected.getMapping(item));
+    }
+    if (expected.isDeleted(item) != actual.isDeleted(item) || expected.isSelfMapped(item) != actual.isSelfMapped(item)) {
+      throw new UnitTestFailException(item + " disagrees on being deleted or self mapped");
+    }
+    HashSet<Integer> members = new HashSet<>(expected.getAccumulation(item));
+    // A deleted accumulation also holds null itself
+    members.remove(null);
+    if (!members.equals(new HashSet<>(actual.getAccumulation(item)))) {
+      throw new UnitTestFailException(item + " accumulates " + actual.getAccumulation(item) + ", not " + members);
+    }
+  }
+}
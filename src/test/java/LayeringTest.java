@@ -0,0 +1,71 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import physical2.SimplifiedPhysicalCircuitPipeline;
+import physical2.blocks.PathAccumulator;
+import physical2.tiny.AnnealingPlacer;
+import physical2.tiny.BentPath;
+import physical2.tiny.DefaultLegalPositions;
+import physical2.tiny.VariableSignalPosMapAnnotated;
+import physical2.tiny.XIter;
+import physical2.two.Point2D;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that every layering keeps the paths within a layer apart, with either placement,
+ * and that coloring is no deeper than quadratic.
+ */
+public class LayeringTest {
+  public static void main(String[] args) throws Exception {
+    LowLevelCircuitGenerator gen = LowLevelCircuitGenerator.canonicalGenerator;
+    CircuitCollection cc = gen.operators(8);
+
+    for (String name : new String[]{"+", "*", "^", "!"}) {
+      AnnotatedCircuit circuit = cc.get(name).trim();
+      for (PathAccumulator.Layering layering : PathAccumulator.Layering.values()) {
+        // Putting a torch before one of its inputs throws, so getting this far means the order held
+        checkLayersDisjoint(name, layering, place(circuit, layering, false));
+        checkLayersDisjoint(name + " annealed", layering, place(circuit, layering, true));
+      }
+
+      int quadratic = SimplifiedPhysicalCircuitPipeline.depth(circuit, PathAccumulator.Layering.QUADRATIC);
+      int coloring = SimplifiedPhysicalCircuitPipeline.depth(circuit, PathAccumulator.Layering.COLORING);
+      if (coloring > quadratic) {
+        throw new UnitTestFailException(name + ": coloring took " + coloring + " layers, but quadratic only " + quadratic);
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static PathAccumulator<?> place(AnnotatedCircuit circuit, PathAccumulator.Layering layering, boolean anneal) {
+    VariableSignalPosMapAnnotated sigPosMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
+    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
+      sigPosMap.placeInput(i, new XIter(0, i));
+    }
+    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
+      sigPosMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+    }
+    if (anneal) {
+      new AnnealingPlacer(circuit.getCompactGraph()).place(sigPosMap);
+    }
+    return PathAccumulator.make(layering, sigPosMap, circuit.getGraph());
+  }
+
+  private static void checkLayersDisjoint(String name, PathAccumulator.Layering layering, PathAccumulator<?> placed) throws UnitTestFailException {
+    for (Map.Entry<Integer, Collection<BentPath>> layer : placed.getPaths().entrySet()) {
+      Set<Point2D> used = new HashSet<>();
+      for (BentPath path : layer.getValue()) {
+        for (Point2D p : path.consumedSpace()) {
+          if (!used.add(p)) {
+            throw new UnitTestFailException(name + " with " + layering + ": two paths share " + p + " in layer " + layer.getKey());
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+import graph.CompactGraph;
+import graph.Levelization;
+
+import java.util.Arrays;
+
+/**
+ * Checks levels, the level order, and the edge order on small graphs, including ones with loops.
+ */
+public class LevelizationTest {
+  public static void main(String[] args) throws UnitTestFailException {
+    // 0 -> 2, 1 -> 2, 2 -> 3, 0 -> 3, 3 -> 4
+    CompactGraph dag = CompactGraph.fromEdges(5, new int[]{0, 1, 2, 0, 3}, new int[]{2, 2, 3, 3, 4}, 5);
+    Levelization l = Levelization.of(dag);
+    check(l.isComplete(), "acyclic graph should be complete");
+    check(Arrays.equals(l.levels(), new int[]{0, 0, 1, 2, 3}), "levels were " + Arrays.toString(l.levels()));
+    check(l.levelCount() == 4, "level count was " + l.levelCount());
+    for (int k = 1; k < l.orderSize(); k++) {
+      check(l.level(l.node(k - 1)) <= l.level(l.node(k)), "order isn't grouped by level: " + Arrays.toString(l.order()));
+    }
+    check(l.levelStart(1) == 2 && l.levelStart(2) == 3, "level 1 should be just node 2");
+
+    checkEdgeOrder(dag, l, new int[0]);
+
+    // Making 3 a source cuts it off from 0 and 2
+    int[] sources = {3};
+    Levelization sourced = Levelization.of(dag, sources);
+    check(Arrays.equals(sourced.levels(), new int[]{0, 0, 1, 0, 1}), "levels with a source were " + Arrays.toString(sourced.levels()));
+    checkEdgeOrder(dag, sourced, sources);
+
+    // 0 -> 1, 1 -> 2, 2 -> 1, 2 -> 3, 0 -> 4: everything from the loop on is left out
+    CompactGraph loop = CompactGraph.fromEdges(5, new int[]{0, 1, 2, 2, 0}, new int[]{1, 2, 1, 3, 4}, 5);
+    Levelization looped = Levelization.of(loop);
+    check(!looped.isComplete(), "graph with a loop shouldn't be complete");
+    check(Arrays.equals(looped.levels(), new int[]{0, -1, -1, -1, 1}), "levels with a loop were " + Arrays.toString(looped.levels()));
+    check(looped.orderSize() == 2, "order with a loop had " + looped.orderSize() + " nodes");
+
+    System.out.println("Tests complete");
+  }
+
+  /**
+   * Every edge comes after all the edges into its start, unless that start is one of {@code sources}.
+   */
+  private static void checkEdgeOrder(CompactGraph graph, Levelization l, int[] sources) throws UnitTestFailException {
+    boolean[] source = new boolean[graph.size()];
+    for (int s : sources) {
+      source[s] = true;
+    }
+    int[] seenInto = new int[graph.size()];
+    Levelization.EdgeCursor cursor = l.edgeCursor();
+    int edges = 0;
+    while (cursor.advance()) {
+      check(source[cursor.start()] || seenInto[cursor.start()] == graph.inDegree(cursor.start()),
+          "edge " + cursor.start() + " -> " + cursor.end() + " came too early");
+      seenInto[cursor.end()]++;
+      edges++;
+    }
+    check(edges == graph.edgeCount(), "edge cursor gave " + edges + " edges");
+  }
+
+  private static void check(boolean condition, String message) throws UnitTestFailException {
+    if (!condition) {
+      throw new UnitTestFailException(message);
+    }
+  }
+}
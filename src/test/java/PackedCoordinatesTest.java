@@ -0,0 +1,91 @@
+import misc.LongHashSet;
+import misc.LongIntHashMap;
+import misc.LongObjectHashMap;
+import physical.things.Point3D;
+import physical2.two.Point2D;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that packing coordinates round trips, and that the primitive tables agree with {@code HashSet}
+ * through growth, including on the key they use to mark free slots.
+ */
+public class PackedCoordinatesTest {
+  public static void main(String[] args) throws UnitTestFailException {
+    int limit = Point3D.PACK_LIMIT;
+    int[] values = {0, 1, -1, 5, -5, limit - 1, -limit};
+    for (int x : values) {
+      for (int y : values) {
+        for (int z : values) {
+          long packed = Point3D.pack(x, y, z);
+          check(Point3D.unpack(packed).equals(new Point3D(x, y, z)), "(" + x + ", " + y + ", " + z + ") didn't round trip");
+        }
+        check(Point2D.unpack(Point2D.pack(x, y)).equals(new Point2D(x, y)), "Point2D(" + x + ", " + y + ") didn't round trip");
+      }
+    }
+    check(Point2D.unpack(Point2D.pack(Integer.MIN_VALUE, Integer.MAX_VALUE)).equals(new Point2D(Integer.MIN_VALUE, Integer.MAX_VALUE)), "extreme Point2D didn't round trip");
+    try {
+      Point3D.pack(limit, 0, 0);
+      throw new UnitTestFailException("packing out of range should throw");
+    } catch (IllegalArgumentException ignored) {
+    }
+
+    Random random = new Random(1);
+    LongHashSet set = new LongHashSet();
+    LongIntHashMap map = new LongIntHashMap(-1);
+    LongObjectHashMap<Long> objects = new LongObjectHashMap<>();
+    Set<Long> expected = new HashSet<>();
+    for (int i = 0; i < 10000; i++) {
+      long key = i % 100 == 0 ? Long.MIN_VALUE : Point3D.pack(random.nextInt(64) - 32, random.nextInt(64) - 32, random.nextInt(64) - 32);
+      check(set.add(key) == expected.add(key), "add disagreed on " + key);
+      map.addTo(key, 1);
+      objects.computeIfAbsent(key, k -> k);
+    }
+    check(set.size() == expected.size() && map.size() == expected.size() && objects.size() == expected.size(), "sizes disagree");
+    Set<Long> iterated = new HashSet<>();
+    set.forEach(iterated::add);
+    check(iterated.equals(expected), "iteration disagrees");
+    for (long key : expected) {
+      check(set.contains(key) && map.get(key) > 0 && objects.get(key) == key, "lost " + key);
+    }
+    check(!set.contains(Point3D.pack(100, 0, 0)) && map.get(Point3D.pack(100, 0, 0)) == -1, "found a key never added");
+
+    // A count that passes through the missing value is still a count
+    for (long key : new long[]{Point3D.pack(1, 2, 3), Long.MIN_VALUE}) {
+      LongIntHashMap counts = new LongIntHashMap(-1);
+      counts.addTo(key, -1);
+      check(counts.addTo(key, 3) == 2 && counts.get(key) == 2 && counts.size() == 1, "addTo lost a count of -1 at " + key);
+    }
+
+    // Removing keys from the middle of probe runs, in a table small enough that the runs are long
+    LongIntHashMap removing = new LongIntHashMap(-1);
+    Map<Long, Integer> removingExpected = new HashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(10) == 0 ? Long.MIN_VALUE : random.nextInt(200);
+      if (random.nextBoolean()) {
+        Integer old = removingExpected.put(key, i);
+        check(removing.put(key, i) == (old == null ? -1 : old), "put disagreed on " + key);
+      } else {
+        Integer old = removingExpected.remove(key);
+        check(removing.remove(key) == (old == null ? -1 : old), "remove disagreed on " + key);
+      }
+      check(removing.size() == removingExpected.size(), "sizes disagree after removing");
+    }
+    for (long key = 0; key < 200; key++) {
+      Integer value = removingExpected.get(key);
+      check(removing.get(key) == (value == null ? -1 : value), "lost " + key + " after removing");
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void check(boolean condition, String message) throws UnitTestFailException {
+    if (!condition) {
+      throw new UnitTestFailException(message);
+    }
+  }
+}
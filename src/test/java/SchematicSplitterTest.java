@@ -0,0 +1,92 @@
+import dev.dewy.nbt.tags.collection.CompoundTag;
+import misc.SettingsConstants;
+import nbt.BlockIdConstants;
+import nbt.NBTMaker;
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+import physical2.SchematicSplitter;
+import physical2.blocks.BlockStore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the tiles a drawing is split into, written in parallel, put back together into the same drawing.
+ */
+public class SchematicSplitterTest {
+  private static final int WIDTH = SettingsConstants.SCHEMATIC_WIDTH_LIMIT;
+
+  public static void main(String[] args) throws Exception {
+    // Not a whole number of tiles in any direction, and with nothing in some of them
+    BlockStore blocks = new BlockStore(2 * WIDTH + 7, WIDTH + 3, 3 * WIDTH + 1);
+    Point3D size = blocks.size();
+    Random random = new Random(17);
+    BlockConstant[] drawable = {BlockConstant.AIR, BlockConstant.REDSTONE, BlockConstant.REDSTONE_BASE, BlockConstant.REDSTONE_TORCH_BASE, BlockConstant.REPEATER_Z};
+    for (int i = 0; i < 3000; i++) {
+      int x = random.nextInt(size.getX());
+      int y = random.nextInt(size.getY());
+      // Leaves the middle slab of tiles empty
+      int z = random.nextBoolean() ? random.nextInt(WIDTH) : 2 * WIDTH + random.nextInt(WIDTH + 1);
+      blocks.set(x, y, z, drawable[random.nextInt(drawable.length)]);
+    }
+
+    Map<Point3D, Bounds> tiles = SchematicSplitter.tiles(blocks);
+    Point3D tileCount = SchematicSplitter.size(blocks.size());
+    if (tiles.size() == 0 || tiles.size() >= tileCount.getX() * tileCount.getY() * tileCount.getZ()) {
+      throw new UnitTestFailException(tiles.size() + " tiles out of " + tileCount + ", when the middle slab is empty");
+    }
+
+    Path dir = Files.createTempDirectory("schematic-splitter-test");
+    SchematicSplitter.writeTiles(blocks, tiles, dir, ForkJoinPool.commonPool());
+
+    int[][][] ids = new int[size.getX()][size.getY()][size.getZ()];
+    for (int[][] plane : ids) {
+      for (int[] row : plane) {
+        Arrays.fill(row, -1);
+      }
+    }
+    for (Point3D tile : tiles.keySet()) {
+      File file = dir.resolve(tile.toStringWithoutSpaces() + SettingsConstants.fileExtension).toFile();
+      CompoundTag tag = NBTMaker.NBT.fromFile(file);
+      int width = tag.getShort("Width").getValue();
+      int height = tag.getShort("Height").getValue();
+      int length = tag.getShort("Length").getValue();
+      byte[] data = tag.getByteArray("BlockData").getValue();
+      int i = 0;
+      for (int y = 0; y < height; y++) {
+        for (int z = 0; z < length; z++) {
+          for (int x = 0; x < width; x++) {
+            int bx = WIDTH * tile.getX() + x;
+            int by = WIDTH * tile.getY() + y;
+            int bz = WIDTH * tile.getZ() + z;
+            if (ids[bx][by][bz] != -1) {
+              throw new UnitTestFailException("Tiles overlap at (" + bx + ", " + by + ", " + bz + ")");
+            }
+            ids[bx][by][bz] = data[i++];
+          }
+        }
+      }
+      Files.delete(file.toPath());
+    }
+    Files.delete(dir);
+
+    for (int x = 0; x < size.getX(); x++) {
+      for (int y = 0; y < size.getY(); y++) {
+        for (int z = 0; z < size.getZ(); z++) {
+          BlockConstant block = blocks.get(x, y, z);
+          if (ids[x][y][z] == -1 ? block != BlockConstant.EMPTY : ids[x][y][z] != BlockIdConstants.palette.get(block)) {
+            throw new UnitTestFailException("(" + x + ", " + y + ", " + z + ") is " + block + " but came back as " + ids[x][y][z]);
+          }
+        }
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+}
@@ -0,0 +1,68 @@
+import dev.dewy.nbt.tags.collection.CompoundTag;
+import nbt.BlockIdConstants;
+import nbt.NBTMaker;
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+import physical2.blocks.BlockStore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a schematic streamed by {@code NBTMaker.writeSchematic} reads back as the same blocks,
+ * with the palette and dimensions a {@code .schematic} needs.
+ */
+public class SchematicWriteTest {
+  public static void main(String[] args) throws Exception {
+    List<BlockConstant> drawable = new ArrayList<>(BlockIdConstants.palette.keySet());
+    Random random = new Random(11);
+    BlockStore blocks = new BlockStore(40, 20, 35);
+    for (int i = 0; i < 4000; i++) {
+      blocks.set(random.nextInt(40), random.nextInt(20), random.nextInt(35), drawable.get(random.nextInt(drawable.size())));
+    }
+
+    File file = Files.createTempFile("schematic-write-test", ".schematic").toFile();
+    file.deleteOnExit();
+    // Part of the store, so the offset into it matters
+    Bounds bounds = Bounds.make(new Point3D(3, 2, 5), new Point3D(36, 18, 29));
+    NBTMaker.writeSchematic(blocks, bounds, file);
+    CompoundTag tag = NBTMaker.NBT.fromFile(file);
+
+    if (!tag.getCompound("Palette").equals(BlockIdConstants.paletteTag)) {
+      throw new UnitTestFailException("Palette doesn't match BlockIdConstants");
+    }
+    if (!tag.getInt("PaletteMax").getValue().equals(BlockIdConstants.paletteSize.getValue())) {
+      throw new UnitTestFailException("PaletteMax is " + tag.getInt("PaletteMax").getValue() + ", not " + BlockIdConstants.paletteSize.getValue());
+    }
+    Point3D size = bounds.size();
+    int width = tag.getShort("Width").getValue();
+    int height = tag.getShort("Height").getValue();
+    int length = tag.getShort("Length").getValue();
+    if (width != size.getX() || height != size.getY() || length != size.getZ()) {
+      throw new UnitTestFailException("Size is " + width + "x" + height + "x" + length + ", not " + size);
+    }
+
+    byte[] data = tag.getByteArray("BlockData").getValue();
+    if (data.length != width * height * length) {
+      throw new UnitTestFailException("BlockData has " + data.length + " blocks, not " + width * height * length);
+    }
+    int i = 0;
+    for (int y = 0; y < height; y++) {
+      for (int z = 0; z < length; z++) {
+        for (int x = 0; x < width; x++) {
+          Point3D p = bounds.getLower().translate(x, y, z);
+          byte expected = BlockIdConstants.palette.get(blocks.get(p));
+          if (data[i++] != expected) {
+            throw new UnitTestFailException("Block " + p + " is " + data[i - 1] + ", not " + blocks.get(p) + " (" + expected + ")");
+          }
+        }
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+}
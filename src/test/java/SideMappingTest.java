@@ -0,0 +1,148 @@
+import circuit.Pair;
+import misc.PairSecondIterator;
+import physical.things.BlockConstant;
+import physical.things.Bounds;
+import physical.things.Point3D;
+import physical2.blocks.AbsolutePhysical3DMap2;
+import physical2.blocks.BlockStore;
+import physical2.blocks.SideMapping;
+import physical2.blocks.SquareSpecifier;
+import physical2.one.BiSide;
+import physical2.tiny.BentPath;
+import physical2.two.Point2D;
+import physical2.two.Side;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks that drawing squares from their precomputed stamps puts down the same blocks as drawing them
+ * from the maps {@code SideMapping.getSingle}, {@code getDouble} and {@code iterateOverPath} give,
+ * for every legal square and pair of squares, and for whole paths.
+ */
+public class SideMappingTest {
+  private static final Point2D CENTER = new Point2D(2, 2);
+  private static final Bounds SQUARE_BOUNDS = Bounds.make(new Point3D(0, 0, 0), new Point3D(4, 4, 0));
+
+  public static void main(String[] args) throws Exception {
+    List<SquareSpecifier> specs = allSpecifiers();
+    int singles = 0;
+    int doubles = 0;
+    for (SquareSpecifier first : specs) {
+      if (SideMapping.hasSingle(first)) {
+        singles++;
+        AbsolutePhysical3DMap2 expected = new AbsolutePhysical3DMap2(SQUARE_BOUNDS);
+        putMap(expected, SQUARE_BOUNDS, CENTER, 0, SideMapping.getSingle(first));
+        AbsolutePhysical3DMap2 actual = new AbsolutePhysical3DMap2(SQUARE_BOUNDS);
+        actual.putSquares(0, Arrays.asList(new Pair<>(CENTER, first)).iterator());
+        compare(first.toString(), expected, actual);
+      }
+      for (SquareSpecifier second : specs) {
+        Pair<SquareSpecifier, SquareSpecifier> pair = new Pair<>(first, second);
+        if (SideMapping.hasDouble(pair)) {
+          doubles++;
+          Point2D next = step(CENTER, first.getSide2());
+          AbsolutePhysical3DMap2 expected = new AbsolutePhysical3DMap2(SQUARE_BOUNDS);
+          putMap(expected, SQUARE_BOUNDS, CENTER, 0, SideMapping.getDouble(pair).getFirst());
+          putMap(expected, SQUARE_BOUNDS, next, 0, SideMapping.getDouble(pair).getSecond());
+          AbsolutePhysical3DMap2 actual = new AbsolutePhysical3DMap2(SQUARE_BOUNDS);
+          actual.putSquares(0, Arrays.asList(new Pair<>(CENTER, first), new Pair<>(next, second)).iterator());
+          compare(pair.toString(), expected, actual);
+        }
+      }
+    }
+    if (singles == 0 || doubles == 0) {
+      throw new UnitTestFailException("Found " + singles + " legal squares and " + doubles + " legal pairs");
+    }
+
+    // Whole paths, where which squares get paired up matters too
+    Random random = new Random(19);
+    Bounds bounds = Bounds.make(new Point3D(0, 0, 0), new Point3D(40, 40, 40));
+    AbsolutePhysical3DMap2 expected = new AbsolutePhysical3DMap2(bounds);
+    AbsolutePhysical3DMap2 actual = new AbsolutePhysical3DMap2(bounds);
+    for (int z = 0; z <= 40; z++) {
+      Point2D start = new Point2D(14 + random.nextInt(13), 14 + random.nextInt(13));
+      Point2D end = new Point2D(14 + random.nextInt(13), 14 + random.nextInt(13));
+      if (start.equals(end)) {
+        continue;
+      }
+      BentPath path = new BentPath(start, end);
+      Iterator<Pair<Point2D, Map<Point2D, BlockConstant>>> squares = new PairSecondIterator<>(path.iterator(), SideMapping::iterateOverPath);
+      while (squares.hasNext()) {
+        Pair<Point2D, Map<Point2D, BlockConstant>> square = squares.next();
+        putMap(expected, bounds, square.getFirst(), z, square.getSecond());
+      }
+      actual.putPath(z, path);
+    }
+    compare("paths", expected, actual);
+
+    System.out.println("Tests complete");
+  }
+
+  private static List<SquareSpecifier> allSpecifiers() {
+    List<Side> sides = new ArrayList<>(Arrays.asList(Side.values()));
+    sides.add(null);
+    List<BiSide> biSides = new ArrayList<>(Arrays.asList(BiSide.values()));
+    biSides.add(null);
+    List<SquareSpecifier> r = new ArrayList<>();
+    for (Side s1 : sides) {
+      for (Side s2 : sides) {
+        for (BiSide start : biSides) {
+          for (BiSide end : biSides) {
+            r.add(new SquareSpecifier(s1, s2, start, end, false));
+            r.add(new SquareSpecifier(s1, s2, start, end, true));
+          }
+        }
+      }
+    }
+    return r;
+  }
+
+  private static Point2D step(Point2D p, Side side) {
+    if (side == null) {
+      return p;
+    }
+    switch (side) {
+      case UP:
+        return new Point2D(p.getX(), p.getY() + 1);
+      case DOWN:
+        return new Point2D(p.getX(), p.getY() - 1);
+      case LEFT:
+        return new Point2D(p.getX() - 1, p.getY());
+      default:
+        return new Point2D(p.getX() + 1, p.getY());
+    }
+  }
+
+  /**
+   * Draws a square the way paths were drawn before stamps, a map entry at a time
+   */
+  private static void putMap(AbsolutePhysical3DMap2 map, Bounds bounds, Point2D p, int z, Map<Point2D, BlockConstant> square) {
+    Point3D base = new Point3D(
+        SideMapping.X_SCALE * (p.getX() - bounds.getLower().getX()),
+        AbsolutePhysical3DMap2.mapY(p.getY() - bounds.getLower().getY()),
+        AbsolutePhysical3DMap2.mapZ(z - bounds.getLower().getZ()));
+    for (Map.Entry<Point2D, BlockConstant> entry : square.entrySet()) {
+      map.putBlockRaw(base.translate(entry.getKey().getX(), entry.getKey().getY(), 0), entry.getValue());
+    }
+  }
+
+  private static void compare(String what, AbsolutePhysical3DMap2 expected, AbsolutePhysical3DMap2 actual) throws UnitTestFailException {
+    BlockStore e = expected.getBlocks();
+    BlockStore a = actual.getBlocks();
+    Point3D size = e.size();
+    for (int x = 0; x < size.getX(); x++) {
+      for (int y = 0; y < size.getY(); y++) {
+        for (int z = 0; z < size.getZ(); z++) {
+          if (e.get(x, y, z) != a.get(x, y, z)) {
+            throw new UnitTestFailException(what + ": (" + x + ", " + y + ", " + z + ") is " + a.get(x, y, z) + ", not " + e.get(x, y, z));
+          }
+        }
+      }
+    }
+  }
+}
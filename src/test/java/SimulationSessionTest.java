@@ -0,0 +1,115 @@
+import circuit.AnnotatedCircuit;
+import circuit.DebugCircuit;
+import circuit.Pair;
+import circuit.preconstructed.CircuitCollection;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import circuit.simulation.SimulationSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static misc.SettingsConstants.circuitRoot;
+
+/**
+ * Checks that a simulation session keeps up with {@code Circuit.simulate} however its inputs are changed,
+ * reads named signals like {@code DebugCircuit.simulateDebug}, and does no work when nothing changes.
+ */
+public class SimulationSessionTest {
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(5);
+    CircuitCollection cc6 = LowLevelCircuitGenerator.canonicalGenerator.operators(6);
+    for (String name : new String[]{"+", "*", "^", "!", ">>2"}) {
+      randomChanges(name, cc6.get(name), random);
+    }
+
+    DebugCircuit ifCircuit = (DebugCircuit) LowLevelCircuitGenerator.defaultNamedCircuits()
+        .loadFromFile(circuitRoot.resolve("if.txt").toFile(), true, false);
+    SimulationSession session = new SimulationSession(ifCircuit);
+    for (int v = 0; v < 1 << ifCircuit.inputSize(); v++) {
+      boolean[] input = toBits(v, ifCircuit.inputSize());
+      session.setInputs(input);
+      ArrayList<Pair<String, boolean[]>> signals = ifCircuit.simulateDebug(input);
+      if (signals.isEmpty()) {
+        throw new UnitTestFailException("if: has no named signals to check");
+      }
+      for (Pair<String, boolean[]> signal : signals) {
+        if (!Arrays.equals(session.getSignal(signal.getFirst()), signal.getSecond())) {
+          throw new UnitTestFailException("if: " + signal.getFirst() + " is " + Arrays.toString(session.getSignal(signal.getFirst()))
+              + " for input " + v + ", not " + Arrays.toString(signal.getSecond()));
+        }
+      }
+    }
+    if (session.getSignal("no such signal") != null) {
+      throw new UnitTestFailException("if: found a signal that doesn't exist");
+    }
+
+    System.out.println("Tests complete");
+  }
+
+  private static void randomChanges(String name, AnnotatedCircuit circuit, Random random) throws UnitTestFailException {
+    SimulationSession session = new SimulationSession(circuit);
+    boolean[] input = new boolean[circuit.inputSize()];
+    check(name + " at first", circuit, session, input);
+
+    for (int step = 0; step < 200; step++) {
+      String change;
+      switch (random.nextInt(3)) {
+        case 0: {
+          int i = random.nextInt(input.length);
+          input[i] = !input[i];
+          session.setInput(i, input[i]);
+          change = "setInput(" + i + ")";
+          break;
+        }
+        case 1: {
+          for (int i = 0; i < input.length; i++) {
+            input[i] = random.nextBoolean();
+          }
+          session.setInputs(input.clone());
+          change = "setInputs";
+          break;
+        }
+        default: {
+          int id = random.nextInt(circuit.getMultibitInputCount());
+          int offset = circuit.getMultibitInputIdx(id);
+          boolean[] bits = new boolean[circuit.getMultibitInputSize(id)];
+          for (int i = 0; i < bits.length; i++) {
+            bits[i] = random.nextBoolean();
+            input[offset + i] = bits[i];
+          }
+          session.setInputs(offset, bits);
+          change = "setInputs(" + offset + ", ...)";
+          break;
+        }
+      }
+      check(name + " after " + change + " in step " + step, circuit, session, input);
+
+      // Setting an input to what it already is changes nothing, so nothing should need evaluating
+      int i = random.nextInt(input.length);
+      session.setInput(i, input[i]);
+      if (session.getLastEvaluatedCount() != 0) {
+        throw new UnitTestFailException(name + ": re-setting input " + i + " evaluated " + session.getLastEvaluatedCount() + " nodes");
+      }
+      session.setInputs(input.clone());
+      if (session.getLastEvaluatedCount() != 0) {
+        throw new UnitTestFailException(name + ": re-setting every input evaluated " + session.getLastEvaluatedCount() + " nodes");
+      }
+    }
+  }
+
+  private static void check(String what, AnnotatedCircuit circuit, SimulationSession session, boolean[] input) throws UnitTestFailException {
+    boolean[] expected = circuit.simulate(input);
+    if (!Arrays.equals(session.getOutputs(), expected)) {
+      throw new UnitTestFailException(what + ": outputs are " + Arrays.toString(session.getOutputs()) + ", not " + Arrays.toString(expected));
+    }
+  }
+
+  private static boolean[] toBits(int v, int width) {
+    boolean[] r = new boolean[width];
+    for (int i = 0; i < width; i++) {
+      r[i] = (v & (1 << i)) != 0;
+    }
+    return r;
+  }
+}
@@ -0,0 +1,49 @@
+import circuit.AnnotatedCircuit;
+import circuit.preconstructed.LowLevelCircuitGenerator;
+import physical.things.Point3D;
+import physical2.blocks.BlockDrawer;
+import physical2.blocks.BlockStore;
+import physical2.blocks.PathAccumulator;
+import physical2.tiny.DefaultLegalPositions;
+import physical2.tiny.VariableSignalPosMapAnnotated;
+import physical2.tiny.XIter;
+
+/**
+ * Checks that drawing a circuit a window of z at a time gives the same blocks as drawing it all at once.
+ */
+public class SlabDrawingTest {
+  public static void main(String[] args) throws Exception {
+    AnnotatedCircuit circuit = LowLevelCircuitGenerator.canonicalGenerator.operators(8).get("+").trim();
+    VariableSignalPosMapAnnotated sigPosMap = new VariableSignalPosMapAnnotated(circuit, new DefaultLegalPositions());
+    for (int i = 0; i < circuit.getMultibitInputCount(); i++) {
+      sigPosMap.placeInput(i, new XIter(0, i));
+    }
+    for (int i = 0; i < circuit.getMultibitOutputCount(); i++) {
+      sigPosMap.placeOutput(i, new XIter(0, i + circuit.getMultibitInputCount()));
+    }
+    PathAccumulator<?> paths = PathAccumulator.make(PathAccumulator.Layering.QUADRATIC, sigPosMap, circuit.getGraph());
+
+    BlockStore whole = new BlockDrawer(paths).getBlocks();
+    Point3D size = whole.size();
+    // An odd width, so windows start on both even (torch) and odd (repeater) z
+    int width = 7;
+    for (int zFrom = 0; zFrom < size.getZ(); zFrom += width) {
+      BlockDrawer slab = new BlockDrawer(paths, zFrom, zFrom + width);
+      if (!slab.size().equals(size)) {
+        throw new UnitTestFailException("slab at " + zFrom + " thinks the whole drawing is " + slab.size() + ", not " + size);
+      }
+      BlockStore blocks = slab.getBlocks();
+      for (int x = 0; x < size.getX(); x++) {
+        for (int y = 0; y < size.getY(); y++) {
+          for (int z = 0; z < blocks.size().getZ(); z++) {
+            if (blocks.get(x, y, z) != whole.get(x, y, zFrom + z)) {
+              throw new UnitTestFailException("slab at " + zFrom + " differs at " + new Point3D(x, y, zFrom + z));
+            }
+          }
+        }
+      }
+    }
+
+    System.out.println("Tests complete");
+  }
+}